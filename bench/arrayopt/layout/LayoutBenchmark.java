@@ -0,0 +1,408 @@
+/*
+ * LayoutBenchmark.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+import java.util.*;
+
+/**
+ * A command-line micro-benchmark harness for the hot paths of the layout
+ * package. It measures the distance kernels of {@link LayoutEvaluation}, the
+ * re-embedding of single probes with {@link OptimumSingleProbeEmbedding}, the
+ * {@link GreedyPlacer#fillRegion} method with several window sizes, and each
+ * {@link LayoutAlgorithm} end to end.
+ * 
+ * <P>All chips are synthetic and created with
+ * {@link Chip#createRandomLayout(Random)} using fixed seeds, so that every
+ * run (and every version of the code) works on exactly the same input. Each
+ * benchmark is executed a number of times without measurement (warm-up) so
+ * that the virtual machine can compile the code, and then a number of measured
+ * times; the minimum and average time per operation are reported.</P>
+ * 
+ * <P>This class lives in a separate source tree (<CODE>bench</CODE>) but in the
+ * same package as the algorithms, so that it can access package-private
+ * methods. It is compiled and executed with the <CODE>bench</CODE> target of
+ * the makefile. Usage:</P>
+ * 
+ * <PRE>
+ * java -cp bin:bench/bin arrayopt.layout.LayoutBenchmark [&lt;group&gt;
+ *          [&lt;sizes&gt; [&lt;warm-up&gt; [&lt;iterations&gt;]]]]
+ * </PRE>
+ * 
+ * <P>where <CODE>group</CODE> is one of <CODE>kernels</CODE>,
+ * <CODE>ospe</CODE>, <CODE>greedy</CODE>, <CODE>algorithms</CODE> or
+ * <CODE>all</CODE> (default), and <CODE>sizes</CODE> is a comma-separated list
+ * of chip dimensions (default <CODE>50,100,200</CODE>).</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class LayoutBenchmark
+{
+	private static final String SYNC_DEP_SEQ = "ACGTACGTACGTACGTACGTACGTACGT" +
+	"ACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGTACGT" +
+	"ACGTACGTACGTACGTACGT";
+
+	private static final int PROBE_LENGTH = 25;
+	
+	private static final long CHIP_SEED = 4711;
+	
+	private static final long PAIR_SEED = 1234;
+	
+	private static final int NUM_PAIRS = 100000;
+	
+	private static final int NUM_REEMBEDS = 1000;
+	
+	private static final int GREEDY_WINDOWS[] = {10, 100, 1000};
+	
+	/**
+	 * Value computed by the benchmarks, printed at the end so that the
+	 * virtual machine cannot discard the computations.
+	 */
+	private static long checksum = 0;
+	
+	private int warmup;
+	
+	private int iterations;
+	
+	public static void main (String args[])
+	{
+		LayoutBenchmark bench;
+		String group, sizes[];
+		int warmup, iterations;
+		
+		try
+		{
+			group = (args.length > 0) ? args[0] : "all";
+			sizes = ((args.length > 1) ? args[1] : "50,100,200").split(",");
+			warmup = (args.length > 2) ? Integer.parseInt(args[2]) : 3;
+			iterations = (args.length > 3) ? Integer.parseInt(args[3]) : 5;
+		}
+		catch (NumberFormatException e)
+		{
+			System.err.println("ERROR: Invalid numeric argument " +
+					e.getMessage());
+			System.exit(1);
+			return;
+		}
+		
+		bench = new LayoutBenchmark (warmup, iterations);
+		
+		for (int i = 0; i < sizes.length; i++)
+		{
+			SimpleChip chip = createChip(Integer.parseInt(sizes[i]));
+			
+			System.out.println("# chip " + sizes[i] + "x" + sizes[i] + ", " +
+					chip.getNumberOfProbes() + " probes");
+			
+			if (group.equals("all") || group.equals("kernels"))
+				bench.runKernels (chip);
+			
+			if (group.equals("all") || group.equals("ospe"))
+				bench.runReembedding (chip);
+			
+			if (group.equals("all") || group.equals("greedy"))
+				bench.runGreedy (chip);
+			
+			if (group.equals("all") || group.equals("algorithms"))
+				bench.runAlgorithms (chip);
+		}
+		
+		System.out.println("# checksum " + checksum);
+	}
+	
+	public LayoutBenchmark (int warmup, int iterations)
+	{
+		this.warmup = warmup;
+		this.iterations = iterations;
+	}
+	
+	/**
+	 * Creates a square chip with random probes (one on each spot) using a
+	 * fixed seed.
+	 */
+	private static SimpleChip createChip (int dim)
+	{
+		SimpleChip chip;
+		
+		chip = new SimpleChip (dim, dim, dim * dim, PROBE_LENGTH, SYNC_DEP_SEQ);
+		chip.createRandomLayout(new Random(CHIP_SEED + dim));
+		
+		return chip;
+	}
+	
+	private void runKernels (final SimpleChip chip)
+	{
+		final int pair[] = new int [2 * NUM_PAIRS];
+		Random rnd = new Random (PAIR_SEED);
+		
+		for (int i = 0; i < pair.length; i++)
+			pair[i] = rnd.nextInt(chip.getNumberOfProbes());
+		
+		measure ("hammingDistance", NUM_PAIRS, new Benchmark () {
+			long run ()
+			{
+				long sum = 0;
+				for (int i = 0; i < pair.length; i += 2)
+					sum += LayoutEvaluation.hammingDistance(chip, pair[i],
+								pair[i + 1]);
+				return sum;
+			}
+		});
+		
+		measure ("conflictDistance", NUM_PAIRS, new Benchmark () {
+			long run ()
+			{
+				double sum = 0;
+				for (int i = 0; i < pair.length; i += 2)
+					sum += LayoutEvaluation.conflictDistance(chip, pair[i],
+								pair[i + 1]);
+				return (long) sum;
+			}
+		});
+		
+		measure ("weightedDistance", NUM_PAIRS, new Benchmark () {
+			long run ()
+			{
+				double sum = 0;
+				for (int i = 0; i < pair.length; i += 2)
+					sum += LayoutEvaluation.weightedDistance(chip, pair[i],
+								pair[i + 1]);
+				return (long) sum;
+			}
+		});
+		
+		measure ("borderLength", 1, new Benchmark () {
+			long run ()
+			{
+				return LayoutEvaluation.borderLength(chip);
+			}
+		});
+		
+		measure ("averageConflictIndex", 1, new Benchmark () {
+			long run ()
+			{
+				return (long) LayoutEvaluation.averageConflictIndex(chip);
+			}
+		});
+	}
+	
+	private void runReembedding (SimpleChip chip)
+	{
+		final int row[] = new int [NUM_REEMBEDS];
+		final int col[] = new int [NUM_REEMBEDS];
+		Random rnd = new Random (PAIR_SEED);
+		int mode[] = {OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN,
+						OptimumSingleProbeEmbedding.CONFLICT_INDEX_MIN};
+		String name[] = {"OSPE-BL reembedSpot", "OSPE-CI reembedSpot"};
+		int kernel[] = {OptimumSingleProbeEmbedding.DEFAULT_KERNEL,
+						OptimumSingleProbeEmbedding.SPLIT_KERNEL,
+						OptimumSingleProbeEmbedding.SINGLE_PRECISION_KERNEL};
+		String kernel_name[] = {"", " split", " single"};
+		
+		for (int i = 0; i < NUM_REEMBEDS; i++)
+		{
+			row[i] = rnd.nextInt(chip.getNumberOfRows());
+			col[i] = rnd.nextInt(chip.getNumberOfColumns());
+		}
+		
+		for (int m = 0; m < mode.length; m++)
+			for (int k = 0; k < kernel.length; k++)
+			{
+				final SimpleChip copy = chip.clone();
+				final OptimumSingleProbeEmbedding ospe =
+					OptimumSingleProbeEmbedding.createEmbedder(copy, mode[m],
+							kernel[k]);
+				
+				measure (name[m] + kernel_name[k], NUM_REEMBEDS,
+						new Benchmark () {
+					long run ()
+					{
+						double sum = 0;
+						for (int i = 0; i < row.length; i++)
+							sum += ospe.reembedSpot(row[i], col[i]);
+						return (long) sum;
+					}
+				});
+			}
+	}
+	
+	private void runGreedy (final SimpleChip chip)
+	{
+		for (int i = 0; i < GREEDY_WINDOWS.length; i++)
+		{
+			final GreedyPlacer greedy = new GreedyPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, GREEDY_WINDOWS[i], 0,
+					GreedyPlacer.SORT_SEQUENCES);
+			
+			measure ("GreedyPlacer.fillRegion window=" + GREEDY_WINDOWS[i], 1,
+				new Benchmark () {
+					private SimpleChip copy;
+					private int id[];
+					
+					void prepare ()
+					{
+						copy = chip.clone();
+						id = copy.getMovableProbes();
+						copy.resetLayout();
+					}
+					
+					long run ()
+					{
+						return greedy.fillRegion(copy, copy.getChipRegion(),
+									id);
+					}
+				});
+		}
+	}
+	
+	private void runAlgorithms (final SimpleChip chip)
+	{
+		LayoutAlgorithm alg[] = {
+			new SequentialPlacer (SequentialPlacer.SORT_SEQUENCES),
+			new KThreadingPlacer (0, KThreadingPlacer.SORT_SEQUENCES),
+			new GreedyPlacer (GreedyPlacer.BORDER_LENGTH_MIN, 100, 0,
+					GreedyPlacer.SORT_SEQUENCES),
+			new GreedyPlacer (GreedyPlacer.CONFLICT_INDEX_MIN, 100, 0,
+					GreedyPlacer.SORT_EMBEDDINGS),
+			new GreedyPlusPlacer (GreedyPlacer.BORDER_LENGTH_MIN, 50, 0),
+			new RowEpitaxial (RowEpitaxial.BORDER_LENGTH_MIN, 50),
+			new OneDimensionalPartitioning (new KThreadingPlacer (0,
+					KThreadingPlacer.SORT_SEQUENCES), 4),
+			new TwoDimensionalPartitioning (new GreedyPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, 100, 0,
+					GreedyPlacer.SORT_SEQUENCES), 4),
+			new TwoDimensionalCentralPartitioning (new SequentialPlacer (
+					SequentialPlacer.SORT_EMBEDDINGS), 4),
+			new PivotPartitioning (new GreedyPlusPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, 50, 0),
+					PivotPartitioning.MODE_BORDER_LENGTH, 3),
+			new PivotPlusPartitioning (new GreedyPlusPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, 50, 0),
+					PivotPartitioning.MODE_BORDER_LENGTH, 3),
+			new NewPivotPartitioning (new GreedyPlusPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, 50, 0),
+					PivotPartitioning.MODE_BORDER_LENGTH, 3),
+			new ClusterPartitioning (new GreedyPlusPlacer (
+					GreedyPlacer.BORDER_LENGTH_MIN, 50, 0),
+					ClusterPartitioning.MODE_BORDER_LENGTH),
+			new SequentialReembedding (
+					OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN, true, 2),
+			new SequentialReembedding (
+					OptimumSingleProbeEmbedding.CONFLICT_INDEX_MIN, false, 1),
+			new PriorityReembedding (
+					OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN,
+					PriorityReembedding.PRIORITY_NUM_OF_EMBEDDINGS, true, 1),
+			new LeftMostEmbedding (),
+			new RightMostEmbedding (),
+			new CenteredEmbedding (),
+			new AlignedEmbedding (),
+			new EdgeEmbedding ()
+		};
+		
+		for (int i = 0; i < alg.length; i++)
+		{
+			final LayoutAlgorithm a = alg[i];
+			String name;
+			
+			// not all algorithms override toString
+			name = a.toString();
+			if (name.startsWith(a.getClass().getName() + "@"))
+				name = a.getClass().getSimpleName();
+			
+			measure (name, 1, new Benchmark () {
+				private SimpleChip copy;
+				
+				void prepare ()
+				{
+					copy = chip.clone();
+				}
+				
+				long run ()
+				{
+					a.changeLayout(copy);
+					return LayoutEvaluation.borderLength(copy);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Runs a benchmark and prints the minimum and average time per operation.
+	 * 
+	 * @param name name of the benchmark
+	 * @param ops number of operations executed in one run
+	 * @param b benchmark instance
+	 */
+	private void measure (String name, int ops, Benchmark b)
+	{
+		long start, time, min = Long.MAX_VALUE, total = 0;
+		
+		for (int i = 0; i < warmup; i++)
+		{
+			b.prepare();
+			checksum += b.run();
+		}
+		
+		for (int i = 0; i < iterations; i++)
+		{
+			b.prepare();
+			start = System.nanoTime();
+			checksum += b.run();
+			time = System.nanoTime() - start;
+			
+			total += time;
+			if (time < min) min = time;
+		}
+		
+		System.out.printf("%-60s %14.1f %14.1f ns/op%n", name,
+				min / (double) ops, total / (double) iterations / ops);
+	}
+	
+	/**
+	 * A benchmark consists of an optional preparation step, which is not
+	 * measured, and the code to be measured. The latter must return a value
+	 * that depends on its computations.
+	 */
+	private static abstract class Benchmark
+	{
+		void prepare ()
+		{
+		}
+		
+		abstract long run ();
+	}
+}
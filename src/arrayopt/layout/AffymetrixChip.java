@@ -457,9 +457,11 @@ public class AffymetrixChip extends Chip
 	 * This method is an alternative to reading a layout from an input stream
 	 * ({@link #readLayout(Reader)}), and is specially useful for evaluating
 	 * algorithms.
+	 * 
+	 * @param rnd random number generator
 	 */
 	@Override
-	public void createRandomLayout ()
+	public void createRandomLayout (Random rnd)
 	{
 		// TODO implement this
 		throw new IllegalStateException ("Method not implemented.");
@@ -476,11 +478,14 @@ public class AffymetrixChip extends Chip
 	 */
 	protected boolean validateEmbeddings (int p1, int p2)
 	{
-		int diff = 0;
+		int diff = 0, o1, o2;
+
+		o1 = embeddingOffset(p1);
+		o2 = embeddingOffset(p2);
 
 		// count the number of differing bits
-		for (int i = 0; i < embed[p1].length; i++)
-			diff += Integer.bitCount(embed[p1][i] ^ embed[p2][i]);
+		for (int i = 0; i < embed_words; i++)
+			diff += Long.bitCount(embed[o1 + i] ^ embed[o2 + i]);
 
 		// there must be two differences
 		// (due to the middle bases)
@@ -547,7 +552,8 @@ public class AffymetrixChip extends Chip
 	@Override
 	public void writeLayout (PrintWriter out)
 	{
-		int		mask = 0, w, pos;
+		int		w, pos;
+		long	mask = 0;
 		char	fix, typ;
 
 		for (int c = 0; c < num_cols; c++)
@@ -570,16 +576,16 @@ public class AffymetrixChip extends Chip
 				// print probe
 				for (w = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
-						// use next 4-byte word
+						// use next 8-byte word
 						w++;
 
 						// turn on very first bit of mask only
-						mask = 0x01 << (Integer.SIZE - 1);
+						mask = 0x01L << (Long.SIZE - 1);
 					}
 
-					if ((mask & embed[spot[r][c]][w]) != 0)
+					if ((mask & embed[embeddingOffset(spot[r][c]) + w]) != 0)
 						out.print (dep_seq[pos]);
 
 					mask >>>= 1;
@@ -590,16 +596,16 @@ public class AffymetrixChip extends Chip
 				// print embedding
 				for (w = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
-						// use next 4-byte word
+						// use next 8-byte word
 						w++;
 
 						// turn on very first bit of mask only
-						mask = 0x01 << (Integer.SIZE - 1);
+						mask = 0x01L << (Long.SIZE - 1);
 					}
 
-					if ((mask & embed[spot[r][c]][w]) != 0)
+					if ((mask & embed[embeddingOffset(spot[r][c]) + w]) != 0)
 						out.print (dep_seq[pos]);
 					else
 						out.print (' ');
@@ -616,6 +622,60 @@ public class AffymetrixChip extends Chip
 		out.flush();
 	}
 
+	/**
+	 * Computes the number of ways in which a pair of probes can be embedded
+	 * into the deposition sequence. The PM and MM probes differ only in the
+	 * middle base and are thus treated as two "combined" probes of length
+	 * {@link #probe_len} + 1, whose middle bases are synthesized in opposite
+	 * orders. The number of embeddings of the pair is the sum of the number of
+	 * embeddings of the two combined probes.
+	 *
+	 * @param probe_id ID of the probe pair
+	 * @return the number of different embeddings the pair can have
+	 */
+	@Override
+	protected long countEmbeddings (int probe_id)
+	{
+		char	probe_1[], probe_2[], base, comp;
+		int		i, pos, w;
+		long	bitmask = 0;
+		
+		probe_1 = new char [probe_len + 1];
+		probe_2 = new char [probe_len + 1];
+		
+		for (i = 0, w = -1, pos = 0; pos < embed_len; pos++)
+		{
+			if (pos % Long.SIZE == 0)
+			{
+				w++;
+				bitmask = 0x01L << (Long.SIZE - 1);
+			}
+			else
+				bitmask >>>= 1;
+			
+			if ((embed[embeddingOffset(probe_id) + w] & bitmask) == 0)
+				continue;
+			
+			if (i != AFFY_MIDDLE_BASE - 1)
+			{
+				probe_1[i]   = dep_seq[pos];
+				probe_2[i++] = dep_seq[pos];
+			}
+			else
+			{
+				base = dep_seq[pos];
+				comp = getBaseComplement(base);
+				
+				probe_1[i] = base;
+				probe_2[i++] = comp;
+				probe_1[i] = comp;
+				probe_2[i++] = base;
+			}
+		}
+		
+		return countEmbeddings (probe_1) + countEmbeddings (probe_2);
+	}
+
 	/**
 	 * Creates and returns a copy of this AffymetrixChip object. The new object
 	 * will contain the same chip specification as the cloned object, i.e.
@@ -153,25 +153,26 @@ public class AlignedEmbedding implements SingleProbeEmbeddingAlgorithm,
 			int cycle_len, int middle_base, int min_step)
 	{
 		int free, max_shift, shift;
-		int base, pos, w, bitmask = 0;
+		int base, pos, w;
+		long bitmask = 0;
 		
 		// leftmost embedding with no shift
 		embedder.reembedProbe(chip, id, 0);
 		
 		// count number of masked steps after last productive step
 		pos = embed_len - 1;
-		w = (int) Math.floor(pos / (double) Integer.SIZE);
-		bitmask = 0x01 << (Integer.SIZE - (embed_len % Integer.SIZE));
+		w = (int) Math.floor(pos / (double) Long.SIZE);
+		bitmask = 0x01L << (Long.SIZE - (embed_len % Long.SIZE));
 		for (free = 0; pos >= 0; pos--)
 		{
-			if ((chip.embed[id][w] & bitmask) == 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & bitmask) == 0)
 				free++;
 			else
 				break;
 			
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
-				bitmask = 0x01;
+				bitmask = 0x01L;
 				w--;
 			}
 			else
@@ -183,18 +184,18 @@ public class AlignedEmbedding implements SingleProbeEmbeddingAlgorithm,
 
 		// find the middle base's current position
 		pos = embed_len - 1;
-		bitmask = 0x01 << (Integer.SIZE - (embed_len % Integer.SIZE));
+		bitmask = 0x01L << (Long.SIZE - (embed_len % Long.SIZE));
 		for (w = -1, pos = -1, base = 0; base < middle_base;)
 		{
-			if ((++pos % Integer.SIZE) == 0)
+			if ((++pos % Long.SIZE) == 0)
 			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 				w++;
 			}
 			else
 				bitmask >>>= 1;
 			
-			if ((chip.embed[id][w] & bitmask) != 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & bitmask) != 0)
 				base++;
 		}
 		
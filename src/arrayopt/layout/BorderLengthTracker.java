@@ -0,0 +1,360 @@
+/*
+ * BorderLengthTracker.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+/**
+ * This class keeps track of the border length of a chip while its layout is
+ * being modified. The total border length (and, optionally, the border length
+ * of each masking step) is computed once when the tracker is created. After
+ * that, it is updated incrementally by only examining the neighbors of the
+ * spots that are modified.
+ * 
+ * <P>Changes to the chip are always done in two phases: first, the spots that
+ * are about to change are removed with {@link #removeSpot(int, int)}; then,
+ * after the chip has been modified (new probe IDs were assigned to the spots
+ * or the probes were re-embedded), the spots are added back with
+ * {@link #addSpot(int, int)}. While a spot is removed, its borders are
+ * ignored, so that several neighboring spots can be changed at once (as, for
+ * instance, when two spots are swapped or when a pair of PM/MM probes of an
+ * {@link AffymetrixChip} is re-embedded) without counting their common
+ * borders twice. The methods {@link #setSpot(int, int, int)} and
+ * {@link #swapSpots(int, int, int, int)} are provided for convenience.</P>
+ * 
+ * <P>The tracker has no way of knowing whether the chip was modified without
+ * following this protocol. In this case, {@link #reset()} must be called to
+ * compute the border length from scratch.</P>
+ * 
+ * <P>Spots that are not neighbors of each other can be removed and added
+ * concurrently by different threads (as long as their neighbors are not being
+ * modified at the same time), for instance when the spots of a color class
+ * are re-embedded in parallel. The border length should only be read once
+ * all such threads have finished.</P>
+ * 
+ * <P>Removing or adding a spot takes time proportional to the number of
+ * embedding words for each neighbor. If the border length of each masking
+ * step is also being tracked, the number of conflicts between the neighbors
+ * must also be taken into account.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class BorderLengthTracker
+{
+	/**
+	 * The chip whose border length is being tracked.
+	 */
+	private Chip chip;
+	
+	/**
+	 * Whether the border length of each masking step is also tracked.
+	 */
+	private boolean track_masks;
+	
+	/**
+	 * Current total border length.
+	 */
+	private long border;
+	
+	/**
+	 * Current border length of each masking step (if tracked).
+	 */
+	private long mask_border[];
+	
+	/**
+	 * Marks the spots that were removed and not yet added back.
+	 */
+	private boolean removed[][];
+	
+	/**
+	 * Number of rows of the chip.
+	 */
+	private int num_rows;
+	
+	/**
+	 * Number of columns of the chip.
+	 */
+	private int num_cols;
+	
+	/**
+	 * Creates a new tracker for the given chip that keeps track of the total
+	 * border length as well as the border length of each masking step.
+	 * 
+	 * @param chip chip whose border length is to be tracked
+	 */
+	public BorderLengthTracker (Chip chip)
+	{
+		this (chip, true);
+	}
+	
+	/**
+	 * Creates a new tracker for the given chip. The border length of each
+	 * masking step is only tracked if requested since it requires examining
+	 * every conflict between the neighbors of a modified spot.
+	 * 
+	 * @param chip chip whose border length is to be tracked
+	 * @param track_masks whether to keep track of the border length of each
+	 * masking step
+	 */
+	public BorderLengthTracker (Chip chip, boolean track_masks)
+	{
+		this.chip = chip;
+		this.track_masks = track_masks;
+		this.num_rows = chip.getNumberOfRows();
+		this.num_cols = chip.getNumberOfColumns();
+		this.removed = new boolean [num_rows][num_cols];
+		
+		if (track_masks)
+			this.mask_border = new long [chip.getEmbeddingLength()];
+		
+		reset ();
+	}
+	
+	/**
+	 * Computes the border length of the chip from scratch. All spots are
+	 * considered to be present (i.e. spots previously removed with
+	 * {@link #removeSpot(int, int)} are automatically added back).
+	 */
+	public void reset ()
+	{
+		int r, c, id1, id2;
+		
+		border = 0;
+		
+		if (track_masks)
+			for (int step = 0; step < mask_border.length; step++)
+				mask_border[step] = 0;
+		
+		for (r = 0; r < num_rows; r++)
+			for (c = 0; c < num_cols; c++)
+			{
+				removed[r][c] = false;
+				
+				if ((id1 = chip.spot[r][c]) == Chip.EMPTY_SPOT)
+					continue;
+				
+				// right neighbor
+				if (c + 1 < num_cols)
+					if ((id2 = chip.spot[r][c + 1]) != Chip.EMPTY_SPOT)
+						updateBorder (id1, id2, 1);
+				
+				// bottom neighbor
+				if (r + 1 < num_rows)
+					if ((id2 = chip.spot[r + 1][c]) != Chip.EMPTY_SPOT)
+						updateBorder (id1, id2, 1);
+			}
+	}
+	
+	/**
+	 * Returns the current border length of the chip. The borders of removed
+	 * spots are not included.
+	 * 
+	 * @return the current border length
+	 */
+	public long getBorderLength ()
+	{
+		return border;
+	}
+	
+	/**
+	 * Returns the current normalized border length of the chip, i.e. the border
+	 * length divided by the number of borders between spots. 
+	 * 
+	 * @return the current normalized border length
+	 */
+	public double getNormalizedBorderLength ()
+	{
+		return border / (double) chip.getNumberOfBorders();
+	}
+	
+	/**
+	 * Returns the current border length of a given masking step.
+	 * 
+	 * @param step masking step (between 0 and the embedding length - 1)
+	 * @return the current border length of the mask
+	 * @throws IllegalStateException if masks are not being tracked
+	 */
+	public long getMaskBorderLength (int step)
+	{
+		if (!track_masks)
+			throw new IllegalStateException
+				("Border length of masks is not being tracked.");
+		
+		return mask_border[step];
+	}
+	
+	/**
+	 * Removes a spot from the tracker, i.e. subtracts the borders between the
+	 * spot and its (non-removed) neighbors from the border length. This method
+	 * must be called before the probe ID of the spot or the embedding of its
+	 * probe is modified. Empty spots can also be removed (in which case the
+	 * border length does not change), so that probes can be placed on them.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @throws IllegalStateException if the spot is already removed
+	 */
+	public void removeSpot (int row, int col)
+	{
+		if (removed[row][col])
+			throw new IllegalStateException
+				("Spot (" + row + "," + col + ") is already removed.");
+		
+		updateNeighbors (row, col, -1);
+		
+		removed[row][col] = true;
+	}
+	
+	/**
+	 * Adds a spot back to the tracker, i.e. adds the borders between the spot
+	 * and its (non-removed) neighbors to the border length. This method must
+	 * be called after the probe ID of the spot or the embedding of its probe
+	 * has been modified.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @throws IllegalStateException if the spot has not been removed
+	 */
+	public void addSpot (int row, int col)
+	{
+		if (!removed[row][col])
+			throw new IllegalStateException
+				("Spot (" + row + "," + col + ") has not been removed.");
+		
+		removed[row][col] = false;
+		
+		updateNeighbors (row, col, +1);
+	}
+	
+	/**
+	 * Assigns a probe ID to a spot and updates the border length accordingly.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @param id probe ID (or {@link Chip#EMPTY_SPOT})
+	 * @return the change in the border length caused by the assignment 
+	 */
+	public long setSpot (int row, int col, int id)
+	{
+		long old_border = border;
+		
+		removeSpot (row, col);
+		chip.spot[row][col] = id;
+		addSpot (row, col);
+		
+		return border - old_border;
+	}
+	
+	/**
+	 * Swaps the probes of two spots and updates the border length
+	 * accordingly.
+	 * 
+	 * @param r1 row of the first spot
+	 * @param c1 column of the first spot
+	 * @param r2 row of the second spot
+	 * @param c2 column of the second spot
+	 * @return the change in the border length caused by the swap
+	 */
+	public long swapSpots (int r1, int c1, int r2, int c2)
+	{
+		long old_border = border;
+		int id;
+		
+		removeSpot (r1, c1);
+		removeSpot (r2, c2);
+		
+		id = chip.spot[r1][c1];
+		chip.spot[r1][c1] = chip.spot[r2][c2];
+		chip.spot[r2][c2] = id;
+		
+		addSpot (r1, c1);
+		addSpot (r2, c2);
+		
+		return border - old_border;
+	}
+	
+	private void updateNeighbors (int row, int col, int sign)
+	{
+		int id1, id2;
+		
+		if ((id1 = chip.spot[row][col]) == Chip.EMPTY_SPOT)
+			return;
+		
+		// top neighbor
+		if (row > 0 && !removed[row - 1][col])
+			if ((id2 = chip.spot[row - 1][col]) != Chip.EMPTY_SPOT)
+				updateBorder (id1, id2, sign);
+		
+		// bottom neighbor
+		if (row + 1 < num_rows && !removed[row + 1][col])
+			if ((id2 = chip.spot[row + 1][col]) != Chip.EMPTY_SPOT)
+				updateBorder (id1, id2, sign);
+		
+		// left neighbor
+		if (col > 0 && !removed[row][col - 1])
+			if ((id2 = chip.spot[row][col - 1]) != Chip.EMPTY_SPOT)
+				updateBorder (id1, id2, sign);
+		
+		// right neighbor
+		if (col + 1 < num_cols && !removed[row][col + 1])
+			if ((id2 = chip.spot[row][col + 1]) != Chip.EMPTY_SPOT)
+				updateBorder (id1, id2, sign);
+	}
+	
+	private void updateBorder (int id1, int id2, int sign)
+	{
+		long dist;
+		
+		if (track_masks)
+		{
+			// the conflicts are added to the masks one at a time
+			synchronized (this)
+			{
+				border += sign * LayoutEvaluation.maskConflicts(chip, id1, id2,
+						mask_border, sign);
+			}
+		}
+		else
+		{
+			dist = LayoutEvaluation.hammingDistanceSpots(chip, id1, id2);
+			
+			synchronized (this)
+			{
+				border += sign * dist;
+			}
+		}
+	}
+}
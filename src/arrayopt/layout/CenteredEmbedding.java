@@ -102,7 +102,8 @@ public class CenteredEmbedding implements SingleProbeEmbeddingAlgorithm,
 	public void reembedProbe (SimpleChip chip, int probe_id)
 	{
 		int cycle_len, left, right, shift;
-		int pos, idx, bitmask = 0;
+		int pos, idx;
+		long bitmask = 0;
 		double s;
 
 		if ((cycle_len = chip.depositionSequenceCycleLength()) <= 0)
@@ -115,15 +116,15 @@ public class CenteredEmbedding implements SingleProbeEmbeddingAlgorithm,
 		// count number of masked steps before first productive step
 		for (left = 0, idx = -1, pos = 0; pos < chip.embed_len; pos++)
 		{
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 				idx++;
 			}
 			else
 				bitmask >>>= 1;
 				
-			if ((chip.embed[probe_id][idx] & bitmask) == 0)
+			if ((chip.embed[chip.embeddingOffset(probe_id) + idx] & bitmask) == 0)
 				left++;
 			else
 				break;
@@ -131,18 +132,18 @@ public class CenteredEmbedding implements SingleProbeEmbeddingAlgorithm,
 		
 		// count number of masked steps after last productive step
 		pos = chip.dep_seq.length - 1;
-		idx = (int) Math.floor(pos / (double) Integer.SIZE);
-		bitmask = 0x01 << (Integer.SIZE - (chip.dep_seq.length % Integer.SIZE));
+		idx = (int) Math.floor(pos / (double) Long.SIZE);
+		bitmask = 0x01L << (Long.SIZE - (chip.dep_seq.length % Long.SIZE));
 		for (right = 0; pos >= 0; pos--)
 		{
-			if ((chip.embed[probe_id][idx] & bitmask) == 0)
+			if ((chip.embed[chip.embeddingOffset(probe_id) + idx] & bitmask) == 0)
 				right++;
 			else
 				break;
 			
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
-				bitmask = 0x01;
+				bitmask = 0x01L;
 				idx--;
 			}
 			else
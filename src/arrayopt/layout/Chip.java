@@ -144,22 +144,45 @@ public abstract class Chip implements Cloneable
 	/**
 	 * This is an array containing the embeddings of all probes on the chip
 	 * (one embedding for every single probe of a probe pair or tuple). Each
-	 * probe has a unique probe ID which is used to index this array. To reduce
-	 * memory requirements, all embeddings are encoded as binary strings (whose
-	 * length equals {@link #embed_len}) that are stored in an array of
-	 * integers. This binary string tells how the probe is embedded into the
-	 * deposition sequence. A <CODE>'1'</CODE> means that the base at the
-	 * corresponding position of the deposition sequence is appended to the
-	 * probe during the synthesis process (the spot is unmasked), while a
-	 * <CODE>'0'</CODE> means that the probe does not receive that base (the
-	 * spot is masked). For example, if the deposition sequence is
-	 * <CODE>'TGCATGCATGCA...'</CODE>, the embedding
+	 * probe has a unique probe ID which is used to locate its embedding in
+	 * this array. To reduce memory requirements, all embeddings are encoded as
+	 * binary strings (whose length equals {@link #embed_len}) that are stored
+	 * in {@link #embed_words} consecutive longs (the first step corresponds to
+	 * the most significant bit of the first word). This binary string tells
+	 * how the probe is embedded into the deposition sequence. A
+	 * <CODE>'1'</CODE> means that the base at the corresponding position of
+	 * the deposition sequence is appended to the probe during the synthesis
+	 * process (the spot is unmasked), while a <CODE>'0'</CODE> means that the
+	 * probe does not receive that base (the spot is masked). For example, if
+	 * the deposition sequence is <CODE>'TGCATGCATGCA...'</CODE>, the embedding
 	 * <CODE>'0010111001001'</CODE> corresponds to the probe
-	 * <CODE>'CTGTA...'</CODE>. <B>Implementation notes:</B> 1) for ease of
-	 * access, this is a public variable. <B>To do:</B> use an array of bites
-	 * instead of an array of integers to reduce wasted memory space.
+	 * <CODE>'CTGTA...'</CODE>.
+	 *
+	 * <P>All embeddings are kept in a single contiguous array (instead of one
+	 * array per probe) to avoid the overhead of millions of small objects and
+	 * to allow sequential scans over the embeddings of several probes. The
+	 * <CODE>w</CODE>-th word of the embedding of probe <CODE>id</CODE> is
+	 * found at position <CODE>embeddingOffset(id) + w</CODE> (see
+	 * {@link #embeddingOffset}).</P>
+	 *
+	 * <P><B>Implementation notes:</B> for ease of access, this is a public
+	 * variable.</P>
+	 */
+	public long embed[];
+
+	/**
+	 * Number of words (longs) used to encode the embedding of a single
+	 * probe, i.e. the stride between consecutive embeddings in the
+	 * {@link #embed} array.
 	 */
-	public int embed[][];
+	protected int embed_words;
+
+	/**
+	 * Bit mask selecting the bits of the last embedding word that correspond
+	 * to actual masking steps. The remaining (trailing) bits are always zero
+	 * but this mask can be used to make sure they are never counted.
+	 */
+	protected long embed_last_mask;
 
 	/**
 	 * Flags which spots are fixed. Fixed spots cannot be changed, i.e. if they
@@ -188,6 +211,41 @@ public abstract class Chip implements Cloneable
 	 */
 	protected int fixed_probe[];
 
+	/**
+	 * Number of embeddings of each probe, or zero if it has not been computed
+	 * yet (see {@link #numberOfEmbeddings}).
+	 */
+	private long num_embed[];
+
+	/**
+	 * Deposition sequence for which the numbers of embeddings in
+	 * {@link #num_embed} were computed.
+	 */
+	private char num_embed_dep_seq[];
+
+	/**
+	 * Open addressing hash table mapping probe sequences to the ID (plus one)
+	 * of a probe with that sequence whose number of embeddings is known. Zero
+	 * marks an empty slot.
+	 */
+	private int seq_table[];
+
+	/**
+	 * Hash value of the probe sequence stored on each slot of
+	 * {@link #seq_table}.
+	 */
+	private long seq_table_key[];
+
+	/**
+	 * Buffers used to decode and compare probe sequences.
+	 */
+	private char seq_buf_1[], seq_buf_2[];
+
+	/**
+	 * Buffer used to count the embeddings of a probe.
+	 */
+	private long count_buf[];
+
 	/**
 	 * Creates a new instance of a chip.
 	 *
@@ -222,11 +280,14 @@ public abstract class Chip implements Cloneable
 		this.embed_len = dep_seq.length();
 		this.probe_len = probe_len;
 
-		// how many integers are needed to encode each embedding?
-		int b = (int) Math.ceil((double) embed_len / Integer.SIZE);
+		// how many longs are needed to encode each embedding?
+		this.embed_words = (embed_len + Long.SIZE - 1) / Long.SIZE;
+
+		// mask of the bits used in the last word of an embedding
+		this.embed_last_mask = -1L << (embed_words * Long.SIZE - embed_len);
 
-		// allocate space for probe embeddings
-		this.embed = new int [num_probes][b];
+		// allocate a single contiguous block for all probe embeddings
+		this.embed = new long [num_probes * embed_words];
 
 		// allocate space for spots
 		this.spot = new int [num_rows][num_cols];
@@ -378,6 +439,30 @@ public abstract class Chip implements Cloneable
 		return this.probe_len;
 	}
 
+	/**
+	 * Returns the number of words (longs) used to encode the embedding of
+	 * a single probe in the {@link #embed} array.
+	 *
+	 * @return number of words per embedding
+	 */
+	public int getEmbeddingWords ()
+	{
+		return this.embed_words;
+	}
+
+	/**
+	 * Returns the position of the first word of a probe's embedding in the
+	 * {@link #embed} array. The remaining words of the embedding immediately
+	 * follow this position.
+	 *
+	 * @param probe_id probe ID
+	 * @return position of the probe's first embedding word
+	 */
+	public final int embeddingOffset (int probe_id)
+	{
+		return probe_id * this.embed_words;
+	}
+
 	/**
 	 * Returns a rectangular region representing the grid of spots of this
 	 * chip.
@@ -514,10 +599,24 @@ public abstract class Chip implements Cloneable
 	 * Create a random set of probes and a random layout for this chip. This
 	 * method is an alternative to reading a layout from an input stream
 	 * ({@link #readLayout(Reader)}), and is specially useful for evaluating
-	 * algorithms. This method must be provided by sub-classes according to
-	 * their specific implementation details.
+	 * algorithms. This method uses a new random number generator; see
+	 * {@link #createRandomLayout(Random)}.
 	 */
-	public abstract void createRandomLayout ();
+	public void createRandomLayout ()
+	{
+		createRandomLayout (new Random ());
+	}
+
+	/**
+	 * Create a random set of probes and a random layout for this chip using the
+	 * given random number generator. A generator initialized with a fixed seed
+	 * always produces the same layout, which is useful for benchmarks. This
+	 * method must be provided by sub-classes according to their specific
+	 * implementation details.
+	 * 
+	 * @param rnd random number generator
+	 */
+	public abstract void createRandomLayout (Random rnd);
 	
 	/**
 	 * This method stores a probe sequence as a binary string encoded in
@@ -533,7 +632,8 @@ public abstract class Chip implements Cloneable
 	protected void encodeEmbedding (String probe, String embedding, int probe_id)
 	{
 		char ch;
-		int  mask = 0, w, pos, len = 0;
+		int  w, pos, len = 0;
+		long mask = 0;
 
 		if (embedding.length() != embed_len)
 			throw new IllegalArgumentException ("invalid embedding length");
@@ -542,18 +642,18 @@ public abstract class Chip implements Cloneable
 			throw new IllegalArgumentException ("invalid probe length");
 
 		// turn all bits off
-		for (w = 0; w < embed[probe_id].length; w++)
-			embed[probe_id][w] = 0;
+		Arrays.fill (embed, embeddingOffset(probe_id),
+						embeddingOffset(probe_id + 1), 0);
 
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
-				// next 4-byte word
+				// next 8-byte word
 				w++;
 
 				// turn on very first bit of mask only
-				mask = 0x01 << (Integer.SIZE - 1);
+				mask = 0x01L << (Long.SIZE - 1);
 			}
 
 			// if step is not masked
@@ -572,7 +672,7 @@ public abstract class Chip implements Cloneable
 						" is not synchronized with the deposition sequence");
 				
 				// turn on bit to indicate productive step
-				embed[probe_id][w] |= mask;
+				embed[embeddingOffset(probe_id) + w] |= mask;
 				
 				len++;
 			}
@@ -599,58 +699,221 @@ public abstract class Chip implements Cloneable
 	 */
 	public long[] computeProbeRanks (int pid[], int start, int end)
 	{
-		int  i, word, step, bitmask = 0;
-		long base_mask, rank[];
-		
-		rank = new long[end - start + 1];
+		int  i, w, off, z;
+		long bits, code[], rank[];
 		
-		for (i = start; i <= end; i++)
-			rank[i - start] = 0;
+		// 2-bit code of the base synthesized at each step
+		code = new long[embed_len];
 		
-		for (word = -1, step = 0; step < embed_len; step++)
+		for (z = 0; z < embed_len; z++)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
-				word++;
-			}
-			else
-				bitmask >>>= 1;
-
-			switch (dep_seq[step])
+			switch (dep_seq[z])
 			{
 				case 'A':
-					base_mask = 0x00;
+					code[z] = 0x00;
 					break;
 					
 				case 'C':
-					base_mask = 0x01;
+					code[z] = 0x01;
 					break;
 
 				case 'G':
-					base_mask = 0x02;
+					code[z] = 0x02;
 					break;
 					
 				case 'T':
-					base_mask = 0x03;
+					code[z] = 0x03;
 					break;
 				
 				default:
 					throw new IllegalArgumentException
 						("Illegal deposition sequence.");
 			}
+		}
+		
+		rank = new long[end - start + 1];
+		
+		for (i = start; i <= end; i++)
+		{
+			off = embeddingOffset(pid[i]);
 			
-			for (i = start; i <= end; i++)
-				if ((bitmask & embed[pid[i]][word]) != 0)
+			for (w = 0; w < embed_words; w++)
+			{
+				// visit the unmasked steps of each word from left to right
+				for (bits = embed[off + w]; bits != 0;
+						bits &= ~(0x01L << (Long.SIZE - 1 - z)))
 				{
+					z = Long.numberOfLeadingZeros(bits);
+					
 					rank[i - start] <<= 2;
-					rank[i - start] |= base_mask;
+					rank[i - start] |= code[w * Long.SIZE + z];
 				}
+			}
 		}
 		
 		return rank;
 	}
 
+	/**
+	 * Returns the number of ways in which a probe can be embedded into the
+	 * deposition sequence. For chips with probe pairs or tuples, this is the
+	 * number of embeddings of the whole pair or tuple (see
+	 * {@link #countEmbeddings(int)}).
+	 *
+	 * <P>The numbers of embeddings are computed lazily and memoized, so that
+	 * successive algorithms running on the same chip pay for them only once.
+	 * Since the probe sequences cannot change once the layout specification
+	 * has been loaded, the memoized values are only discarded when the
+	 * deposition sequence is replaced. Moreover, probes with identical
+	 * sequences share the same computation: the sequences are hashed, and a
+	 * probe whose sequence matches that of a probe already counted simply
+	 * copies its number of embeddings.</P>
+	 *
+	 * @param probe_id probe ID
+	 * @return the number of different embeddings the probe can have
+	 */
+	public synchronized long numberOfEmbeddings (int probe_id)
+	{
+		int  slot, mask, other;
+		long key;
+
+		if (num_embed == null || num_embed_dep_seq != dep_seq)
+			resetEmbeddingCounts ();
+
+		if (num_embed[probe_id] != 0)
+			return num_embed[probe_id];
+
+		// look for a probe with the same sequence
+		key = decodeSequence (probe_id, seq_buf_1);
+		mask = seq_table.length - 1;
+
+		for (slot = (int) (key ^ (key >>> 32)) & mask; seq_table[slot] != 0;
+				slot = (slot + 1) & mask)
+		{
+			if (seq_table_key[slot] != key) continue;
+
+			other = seq_table[slot] - 1;
+			decodeSequence (other, seq_buf_2);
+
+			if (Arrays.equals(seq_buf_1, seq_buf_2))
+				return num_embed[probe_id] = num_embed[other];
+		}
+
+		num_embed[probe_id] = countEmbeddings (probe_id);
+
+		seq_table[slot] = probe_id + 1;
+		seq_table_key[slot] = key;
+
+		return num_embed[probe_id];
+	}
+
+	/**
+	 * Discards the numbers of embeddings computed so far.
+	 */
+	private void resetEmbeddingCounts ()
+	{
+		int size;
+
+		// hash table is at most half full
+		for (size = 2; size < 2 * num_probes; size <<= 1);
+
+		num_embed = new long [num_probes];
+		num_embed_dep_seq = dep_seq;
+		seq_table = new int [size];
+		seq_table_key = new long [size];
+		seq_buf_1 = new char [embed_len];
+		seq_buf_2 = new char [embed_len];
+		count_buf = new long [embed_len + 1];
+	}
+
+	/**
+	 * Stores the sequence of bases of a probe on a buffer (as given by its
+	 * embedding), filling the remaining positions with zeros, and returns a
+	 * hash value of the sequence.
+	 */
+	protected long decodeSequence (int probe_id, char seq[])
+	{
+		int  i, pos, w;
+		long bitmask = 0, hash = 0xcbf29ce484222325L;
+
+		for (i = 0, w = -1, pos = 0; pos < embed_len; pos++)
+		{
+			if (pos % Long.SIZE == 0)
+			{
+				w++;
+				bitmask = 0x01L << (Long.SIZE - 1);
+			}
+			else
+				bitmask >>>= 1;
+
+			if ((embed[embeddingOffset(probe_id) + w] & bitmask) != 0)
+			{
+				seq[i++] = dep_seq[pos];
+				hash = (hash ^ dep_seq[pos]) * 0x100000001b3L;
+			}
+		}
+
+		for (; i < seq.length; i++)
+			seq[i] = 0;
+
+		return hash;
+	}
+
+	/**
+	 * Computes the number of ways in which a probe (or a pair or tuple of
+	 * probes in case of multi-probe chips) can be embedded into the deposition
+	 * sequence. This method is called by {@link #numberOfEmbeddings} and must
+	 * be provided by sub-classes.
+	 *
+	 * @param probe_id probe ID
+	 * @return the number of different embeddings the probe can have
+	 */
+	protected abstract long countEmbeddings (int probe_id);
+
+	/**
+	 * Computes the number of ways in which a sequence of bases can be embedded
+	 * into the deposition sequence.
+	 *
+	 * @param probe sequence of bases
+	 * @return the number of different embeddings of the sequence
+	 */
+	protected long countEmbeddings (char probe[])
+	{
+		int	r, c, last_row;
+		long top, tmp, m[] = count_buf;
+		
+		for (r = 0; r < probe.length; r++)
+			m[r] = 0;
+		
+		last_row = 0;
+		
+		for (c = 0; c < dep_seq.length; c++)
+		{
+			top = 1;
+			
+			for (r = 0; r <= last_row; r++)
+			{
+				if (probe[r] == dep_seq[c])
+				{
+					tmp = m[r];
+					m[r] += top;
+					top = tmp;
+				}
+				else
+					top = m[r];
+			}
+			
+			if (m[last_row] > 0)
+				if (last_row < probe.length - 1)
+					last_row++;
+		}
+		
+		if (m[probe.length - 1] < 0)
+			throw new IllegalStateException ("Integer overflow.");
+		
+		return m[probe.length - 1];
+	}
+
 	/**
 	 * Print the specification of the chip's current layout. This method should
 	 * be provided by the sub-classes depending on the specific probe scheme
@@ -671,13 +934,14 @@ public abstract class Chip implements Cloneable
 	{
 		BMPFile bmp;
 		byte[]	empty, masked, unmasked;
-		int		w, mask, id;
+		int		w, id;
+		long	mask;
 		
-		// which 4-byte word will be interrogated?
-		w = (int) Math.floor((double) step / Integer.SIZE);
+		// which 8-byte word will be interrogated?
+		w = (int) Math.floor((double) step / Long.SIZE);
 
 		// prepare mask to interrogate corresponding bit
-		mask = 0x01 << (Integer.SIZE - 1 - (step - w * Integer.SIZE));
+		mask = 0x01L << (Long.SIZE - 1 - (step - w * Long.SIZE));
 		
 		// start BMP file
 		bmp = new BMPFile (num_rows, num_cols, out);
@@ -697,7 +961,7 @@ public abstract class Chip implements Cloneable
 				if ((id = spot[r][c]) == EMPTY_SPOT)
 					// empty spot
 					out.write(empty);
-				else if ((embed[id][w] & mask) == 0)
+				else if ((embed[embeddingOffset(id) + w] & mask) == 0)
 					// masked spot
 					out.write(masked);
 				else
@@ -720,20 +984,21 @@ public abstract class Chip implements Cloneable
 	 */
 	public void printEmbedding (int probe_id)
 	{
-		int mask = 0, w, pos;
+		int w, pos;
+		long mask = 0;
 		
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
-				// use next 4-byte word
+				// use next 8-byte word
 				w++;
 
 				// turn on very first bit of mask only
-				mask = 0x01 << (Integer.SIZE - 1);
+				mask = 0x01L << (Long.SIZE - 1);
 			}
 
-			if ((mask & embed[probe_id][w]) == 0)
+			if ((mask & embed[embeddingOffset(probe_id) + w]) == 0)
 				System.err.print (" ");
 			else
 				System.err.print (dep_seq[pos]);
@@ -750,20 +1015,21 @@ public abstract class Chip implements Cloneable
 	 */
 	public void printBinaryEmbedding (int probe_id)
 	{
-		int mask = 0, w, pos;
+		int w, pos;
+		long mask = 0;
 		
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
-				// use next 4-byte word
+				// use next 8-byte word
 				w++;
 
 				// turn on very first bit of mask only
-				mask = 0x01 << (Integer.SIZE - 1);
+				mask = 0x01L << (Long.SIZE - 1);
 			}
 
-			if ((mask & embed[probe_id][w]) == 0)
+			if ((mask & embed[embeddingOffset(probe_id) + w]) == 0)
 				System.err.print ('0');
 			else
 				System.err.print ('1');
@@ -780,22 +1046,23 @@ public abstract class Chip implements Cloneable
 	 */
 	public void printProbe (int probe_id)
 	{
-		int mask = 0, w, pos;
+		int w, pos;
+		long mask = 0;
 		
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
-				// use next 4-byte word
+				// use next 8-byte word
 				w++;
 
 				// turn on very first bit of mask only
-				mask = 0x01 << (Integer.SIZE - 1);
+				mask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 				mask >>>= 1;
 
-			if ((mask & embed[probe_id][w]) != 0)
+			if ((mask & embed[embeddingOffset(probe_id) + w]) != 0)
 				System.err.print (dep_seq[pos]);
 		}
 	}
@@ -844,10 +1111,20 @@ public abstract class Chip implements Cloneable
 		for (i = 0; i < this.spot.length; i++)
 			c.spot[i] = this.spot[i].clone();
 		
-		// embeddings
+		// embeddings (stored in a single array)
 		c.embed = this.embed.clone();
-		for (i = 0; i < this.embed.length; i++)
-			c.embed[i] = this.embed[i].clone();
+		
+		// numbers of embeddings computed so far
+		c.num_embed = null;
+		if (this.num_embed != null && this.num_embed_dep_seq == this.dep_seq)
+		{
+			c.resetEmbeddingCounts ();
+			System.arraycopy (this.num_embed, 0, c.num_embed, 0, num_probes);
+			System.arraycopy (this.seq_table, 0, c.seq_table, 0,
+					seq_table.length);
+			System.arraycopy (this.seq_table_key, 0, c.seq_table_key, 0,
+					seq_table.length);
+		}
 		
 		return c;
 	}
@@ -913,16 +1190,8 @@ public abstract class Chip implements Cloneable
 		}
 							
 		// check if embeddings have the same contents
-		if (this.embed.length != other.embed.length) return false;
-		
-		for (i = 0; i < this.embed.length; i++)
-		{
-			if (this.embed[i].length != other.embed[i].length) return false;
-			
-			for (j = 0; j < this.embed[i].length; j++)
-				if (this.embed[i][j] != other.embed[i][j])
-					return false;
-		}
+		if (this.embed_words != other.embed_words) return false;
+		if (!Arrays.equals(this.embed, other.embed)) return false;
 
 		// check the list of fixed probes
 		if (this.fixed_probe.length != other.fixed_probe.length) return false;
@@ -1050,7 +1319,8 @@ public abstract class Chip implements Cloneable
 	 */
 	protected boolean compatibleEmbedding (int id, Chip other)
 	{
-		int 	this_pos, other_pos, this_w, other_w, this_mask, other_mask;
+		int 	this_pos, other_pos, this_w, other_w;
+		long 	this_mask, other_mask;
 		char	ch;
 		
 		this_pos = other_pos = -1;
@@ -1059,11 +1329,11 @@ public abstract class Chip implements Cloneable
 		
 		while (++this_pos < this.embed_len)
 		{
-			if (this_pos % Integer.SIZE == 0)
+			if (this_pos % Long.SIZE == 0)
 			{
-				// use next 4-byte word
+				// use next 8-byte word
 				this_w++;
-				this_mask = 0x01 << (Integer.SIZE - 1);
+				this_mask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 			{
@@ -1072,7 +1342,7 @@ public abstract class Chip implements Cloneable
 
 			// when the embedding has a set bit, that
 			// means we found the probe's next base
-			if ((this_mask & this.embed[id][this_w]) != 0)
+			if ((this_mask & this.embed[this.embeddingOffset(id) + this_w]) != 0)
 			{
 				ch = this.dep_seq[this_pos];
 				
@@ -1080,18 +1350,18 @@ public abstract class Chip implements Cloneable
 				// base on the 'other' chip
 				while (++other_pos < other.embed_len)
 				{
-					if (other_pos % Integer.SIZE == 0)
+					if (other_pos % Long.SIZE == 0)
 					{
-						// use next 4-byte word
+						// use next 8-byte word
 						other_w++;
-						other_mask = 0x01 << (Integer.SIZE - 1);
+						other_mask = 0x01L << (Long.SIZE - 1);
 					}
 					else
 					{
 						other_mask >>>= 1;
 					}
 
-					if ((other_mask & other.embed[id][other_w]) != 0)
+					if ((other_mask & other.embed[other.embeddingOffset(id) + other_w]) != 0)
 					{
 						// check if bases are equal
 						if (other.dep_seq[other_pos] != ch)
@@ -182,9 +182,8 @@ public class ClusterPartitioning implements LayoutAlgorithm
 		this.offset = pivots;
 		
 		// create probe ranking array
-		rank = new long[nonpivots];
+		rank = chip.computeProbeRanks (pid, offset, pid.length - 1);
 		rank_sort = new RankSorting (pid, rank, offset);
-		computeProbeRanks (offset, pid.length - 1);
 		
 		// TODO remove this if block
 		if (sortprobes)
@@ -219,13 +218,13 @@ public class ClusterPartitioning implements LayoutAlgorithm
 		// (or 2 in case of Affymetrix chips since the middle bases of PM/MM
 		// pairs usually have some degree of freedom); pivots with more than 2
 		// possible embeddings are considered 'fake' pivots
-		if (ospe.numberOfEmbeddings(pid[0]) > 2)
+		if (chip.numberOfEmbeddings(pid[0]) > 2)
 		{
 			// yes: we call these probes as 'fake' pivots
 			start_fake = 0;
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[0]);
+			long noe = chip.numberOfEmbeddings(pid[0]);
 			System.err.println(num_pivots + " fake pivots selected => noe: " + noe);
 		}
 		else
@@ -235,7 +234,7 @@ public class ClusterPartitioning implements LayoutAlgorithm
 			start_fake = num_pivots;
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[0]);
+			long noe = chip.numberOfEmbeddings(pid[0]);
 			System.err.println(num_pivots + " true pivots selected => noe: " + noe);
 		}
 		
@@ -248,7 +247,7 @@ public class ClusterPartitioning implements LayoutAlgorithm
 			num_pivots = findPivots (num_pivots, end);
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[num_pivots - 1]);
+			long noe = chip.numberOfEmbeddings(pid[num_pivots - 1]);
 			System.err.println("Pivot list extended to " + num_pivots + " => noe: " + noe);
 		}
 		
@@ -282,12 +281,12 @@ public class ClusterPartitioning implements LayoutAlgorithm
 		int i, border, tmp;
 		long noe, min;
 		
-		min = ospe.numberOfEmbeddings(pid[start]);
+		min = chip.numberOfEmbeddings(pid[start]);
 		
 		// select probes with the lowest number of embeddings as pivots
 		for (border = start + 1, i = border; i <= end; i++)
 		{
-			if ((noe = ospe.numberOfEmbeddings(pid[i])) == min)
+			if ((noe = chip.numberOfEmbeddings(pid[i])) == min)
 			{
 				tmp = pid[border];
 				pid[border] = pid[i];
@@ -348,56 +347,6 @@ public class ClusterPartitioning implements LayoutAlgorithm
 		}		
 	}
 	
-	private void computeProbeRanks (int start, int end)
-	{
-		int  i, word, step, bitmask = 0;
-		long base_mask;
-		
-		for (i = start; i <= end; i++)
-			rank[i - offset] = 0;
-		
-		for (word = -1, step = 0; step < chip.embed_len; step++)
-		{
-			if (step % Integer.SIZE == 0)
-			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
-				word++;
-			}
-			else
-				bitmask >>>= 1;
-
-			switch (chip.dep_seq[step])
-			{
-				case 'A':
-					base_mask = 0x00;
-					break;
-					
-				case 'C':
-					base_mask = 0x01;
-					break;
-
-				case 'G':
-					base_mask = 0x02;
-					break;
-					
-				case 'T':
-					base_mask = 0x03;
-					break;
-				
-				default:
-					throw new IllegalArgumentException
-						("Illegal deposition sequence.");
-			}
-			
-			for (i = start; i <= end; i++)
-				if ((bitmask & chip.embed[pid[i]][word]) != 0)
-				{
-					rank[i - offset] <<= 2;
-					rank[i - offset] |= base_mask;
-				}
-		}
-	}
-
 	private class RankSorting implements ArrayIndexedCollection
 	{
 		private int probe_id[];
@@ -103,6 +103,11 @@ public abstract class ConflictIndex
 	 */
 	private static ConflictIndex loaded_def = new Default ();
 
+	/**
+	 * Constant representing the currently loaded definition.
+	 */
+	private static int loaded_def_id = DEFAULT_DEFINITION;
+
 	/**
 	 * Loads a pre-defined conflict index definition. Each available defintion
 	 * have a corresponding public constant in this class.
@@ -133,6 +138,19 @@ public abstract class ConflictIndex
 				throw new IllegalArgumentException
 					("Unknown conflict index definition: " + def);
 		}
+		
+		loaded_def_id = def;
+	}
+
+	/**
+	 * Returns the constant representing the currently loaded conflict index
+	 * definition.
+	 * 
+	 * @return constant representing the current definition
+	 */
+	public static int getDefinition ()
+	{
+		return loaded_def_id;
 	}
 	
 	/**
@@ -0,0 +1,329 @@
+/*
+ * ConflictIndexField.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+/**
+ * This class maintains the conflict index of every spot of a chip so that the
+ * total (or average) conflict index can be obtained without re-computing the
+ * conflict indices of all spots after the layout is modified. It is most
+ * useful for iterative algorithms that need to evaluate the layout after each
+ * iteration, when usually only a fraction of the spots have changed.
+ * 
+ * <P>The algorithm modifying the layout must notify the field of every spot
+ * whose probe or embedding may have changed by calling
+ * {@link #update(int, int)}. The field keeps a snapshot of the probe ID and of
+ * the embedding of every spot, so that only spots that were actually modified
+ * since the last notification have their conflict regions (see
+ * {@link ConflictIndex#dimConflictRegion()}) marked as dirty. When
+ * {@link #refresh()} is called, only the conflict indices of the dirty spots
+ * are re-computed, without scanning the whole chip. Spots can also be
+ * explicitly marked as dirty with {@link #markDirty(int, int)}. If the layout
+ * is modified without notifications, {@link #rescan()} compares the whole
+ * chip against the snapshot instead.</P>
+ * 
+ * <P>Notifications of distinct spots can be made concurrently (for instance,
+ * by parallel re-embedding passes).</P>
+ * 
+ * <P>The running total conflict index is updated by subtracting the old and
+ * adding the new conflict index of each re-computed spot, and may therefore
+ * accumulate small rounding errors. The average conflict index, on the other
+ * hand, is always computed from the conflict indices of all spots and
+ * is identical to the value returned by
+ * {@link LayoutEvaluation#averageConflictIndex(Chip)}.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class ConflictIndexField
+{
+	/**
+	 * The chip whose conflict indices are being maintained.
+	 */
+	private Chip chip;
+	
+	/**
+	 * Conflict index of each spot.
+	 */
+	private double ci[][];
+	
+	/**
+	 * Spots whose conflict indices must be re-computed.
+	 */
+	private boolean dirty[][];
+	
+	/**
+	 * List of the dirty spots (as <CODE>row * num_cols + col</CODE>).
+	 */
+	private int dirty_spot[];
+	
+	/**
+	 * Number of dirty spots.
+	 */
+	private int num_dirty;
+	
+	/**
+	 * Probe ID of each spot when its conflict index was last computed.
+	 */
+	private int snapshot_id[][];
+	
+	/**
+	 * Embedding of each spot when its conflict index was last computed, stored
+	 * contiguously in row-major order (see {@link Chip#embed}).
+	 */
+	private long snapshot_embed[];
+	
+	/**
+	 * Running total conflict index.
+	 */
+	private double total;
+	
+	private int num_rows;
+	
+	private int num_cols;
+	
+	private int embed_words;
+	
+	/**
+	 * Creates a new conflict index field and computes the conflict indices of
+	 * all spots of the chip.
+	 * 
+	 * @param chip chip whose conflict indices are to be maintained
+	 */
+	public ConflictIndexField (Chip chip)
+	{
+		this.chip = chip;
+		this.num_rows = chip.getNumberOfRows();
+		this.num_cols = chip.getNumberOfColumns();
+		this.embed_words = chip.getEmbeddingWords();
+		this.ci = new double [num_rows][num_cols];
+		this.dirty = new boolean [num_rows][num_cols];
+		this.dirty_spot = new int [num_rows * num_cols];
+		this.snapshot_id = new int [num_rows][num_cols];
+		this.snapshot_embed = new long [num_rows * num_cols * embed_words];
+		
+		reset ();
+	}
+	
+	/**
+	 * Re-computes the conflict indices of all spots and takes a new snapshot
+	 * of the chip.
+	 */
+	public void reset ()
+	{
+		total = 0;
+		num_dirty = 0;
+		
+		for (int r = 0; r < num_rows; r++)
+			for (int c = 0; c < num_cols; c++)
+			{
+				takeSnapshot (r, c);
+				dirty[r][c] = false;
+				ci[r][c] = LayoutEvaluation.conflictIndex(chip, r, c);
+				total += ci[r][c];
+			}
+	}
+	
+	/**
+	 * Marks a spot and all spots within its conflict region as dirty. Their
+	 * conflict indices will be re-computed on the next call to
+	 * {@link #refresh()}.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 */
+	public synchronized void markDirty (int row, int col)
+	{
+		int ci_dim, min_row, max_row, min_col, max_col;
+		
+		ci_dim = ConflictIndex.dimConflictRegion();
+		
+		min_row = Math.max(row - ci_dim, 0);
+		max_row = Math.min(row + ci_dim, num_rows - 1);
+		min_col = Math.max(col - ci_dim, 0);
+		max_col = Math.min(col + ci_dim, num_cols - 1);
+		
+		for (int r = min_row; r <= max_row; r++)
+			for (int c = min_col; c <= max_col; c++)
+				if (!dirty[r][c])
+				{
+					dirty[r][c] = true;
+					dirty_spot[num_dirty++] = r * num_cols + c;
+				}
+	}
+	
+	/**
+	 * Notifies the field that the probe or the embedding of a spot may have
+	 * changed. If the spot differs from its snapshot, a new snapshot is taken
+	 * and the spot is marked as dirty (see {@link #markDirty(int, int)}).
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 */
+	public void update (int row, int col)
+	{
+		if (changedSince (row, col))
+		{
+			takeSnapshot (row, col);
+			markDirty (row, col);
+		}
+	}
+	
+	/**
+	 * Brings the field up to date with the current layout of the chip by
+	 * re-computing the conflict indices of all dirty spots. Modifications
+	 * that were not notified with {@link #update(int, int)} are not detected
+	 * (see {@link #rescan()}).
+	 * 
+	 * @return number of spots whose conflict indices were re-computed
+	 */
+	public int refresh ()
+	{
+		int r, c, s, count;
+		
+		for (count = 0; count < num_dirty; count++)
+		{
+			s = dirty_spot[count];
+			r = s / num_cols;
+			c = s % num_cols;
+			
+			total -= ci[r][c];
+			ci[r][c] = LayoutEvaluation.conflictIndex(chip, r, c);
+			total += ci[r][c];
+			
+			dirty[r][c] = false;
+		}
+		
+		num_dirty = 0;
+		
+		return count;
+	}
+	
+	/**
+	 * Brings the field up to date with the current layout of the chip when
+	 * it may have been modified without notifications. Every spot is compared
+	 * against its snapshot, as if {@link #update(int, int)} had been called
+	 * for all spots, and the dirty spots are then re-computed.
+	 * 
+	 * @return number of spots whose conflict indices were re-computed
+	 */
+	public int rescan ()
+	{
+		for (int r = 0; r < num_rows; r++)
+			for (int c = 0; c < num_cols; c++)
+				update (r, c);
+		
+		return refresh ();
+	}
+	
+	/**
+	 * Returns the conflict index of a spot as of the last call to
+	 * {@link #refresh()}.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @return conflict index of the spot
+	 */
+	public double getConflictIndex (int row, int col)
+	{
+		return ci[row][col];
+	}
+	
+	/**
+	 * Returns the running total conflict index of the chip as of the last call
+	 * to {@link #refresh()}.
+	 * 
+	 * @return the total conflict index
+	 */
+	public double getTotalConflictIndex ()
+	{
+		return total;
+	}
+	
+	/**
+	 * Returns the average conflict index of the chip as of the last call to
+	 * {@link #refresh()}. The result is identical to the value returned by
+	 * {@link LayoutEvaluation#averageConflictIndex(Chip)}.
+	 * 
+	 * @return the average conflict index
+	 */
+	public double getAverageConflictIndex ()
+	{
+		double	conf = 0;
+		int		num_probes;
+		
+		num_probes = chip.getNumberOfProbes();
+		
+		for (int r = 0; r < num_rows; r++)
+			for (int c = 0; c < num_cols; c++)
+				if (snapshot_id[r][c] != Chip.EMPTY_SPOT)
+					conf += ci[r][c] / num_probes;
+		
+		return conf;
+	}
+	
+	private boolean changedSince (int row, int col)
+	{
+		int id, s, o;
+		
+		if ((id = chip.spot[row][col]) != snapshot_id[row][col])
+			return true;
+		
+		if (id == Chip.EMPTY_SPOT)
+			return false;
+		
+		s = (row * num_cols + col) * embed_words;
+		o = chip.embeddingOffset(id);
+		
+		for (int w = 0; w < embed_words; w++)
+			if (chip.embed[o + w] != snapshot_embed[s + w])
+				return true;
+		
+		return false;
+	}
+	
+	private void takeSnapshot (int row, int col)
+	{
+		int id;
+		
+		snapshot_id[row][col] = id = chip.spot[row][col];
+		
+		if (id != Chip.EMPTY_SPOT)
+			System.arraycopy (chip.embed, chip.embeddingOffset(id),
+				snapshot_embed, (row * num_cols + col) * embed_words,
+				embed_words);
+	}
+}
@@ -44,7 +44,7 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 {
 	private LeftMostEmbedding left_embed = new LeftMostEmbedding();
 	
-	private int embed[];
+	private long embed[];
 	
 	public void changeLayout (Chip chip)
 	{
@@ -59,9 +59,9 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 	public void reembedProbeSet (Chip chip, int probe_id[], int first, int last)
 	{
 		if (embed == null)
-			embed = new int [chip.embed[0].length];
-		else if (embed.length != chip.embed[0].length)
-			embed = new int [chip.embed[0].length];
+			embed = new long [chip.embed_words];
+		else if (embed.length != chip.embed_words)
+			embed = new long [chip.embed_words];
 		
 		if (chip instanceof SimpleChip)
 		{
@@ -80,9 +80,9 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 	public void reembedProbe (Chip chip, int probe_id)
 	{
 		if (embed == null)
-			embed = new int [chip.embed[0].length];
-		else if (embed.length != chip.embed[0].length)
-			embed = new int [chip.embed[0].length];
+			embed = new long [chip.embed_words];
+		else if (embed.length != chip.embed_words)
+			embed = new long [chip.embed_words];
 
 		if (chip instanceof SimpleChip)
 			reembed ((SimpleChip) chip, probe_id);
@@ -95,9 +95,9 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 	public void reembedProbe (SimpleChip chip, int probe_id)
 	{
 		if (embed == null)
-			embed = new int [chip.embed[0].length];
-		else if (embed.length != chip.embed[0].length)
-			embed = new int [chip.embed[0].length];
+			embed = new long [chip.embed_words];
+		else if (embed.length != chip.embed_words)
+			embed = new long [chip.embed_words];
 		
 		reembed (chip, probe_id);
 	}
@@ -105,16 +105,17 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 	public void reembedProbe (AffymetrixChip chip, int probe_id)
 	{
 		if (embed == null)
-			embed = new int [chip.embed[0].length];
-		else if (embed.length != chip.embed[0].length)
-			embed = new int [chip.embed[0].length];
+			embed = new long [chip.embed_words];
+		else if (embed.length != chip.embed_words)
+			embed = new long [chip.embed_words];
 		
 		reembed (chip, probe_id);
 	}
 
 	private void reembed (SimpleChip chip, int id)
 	{
-		int embed_len, step, rstep, mask, rmask, w, rw, len_right = 0;
+		int embed_len, step, rstep, w, rw, len_right = 0;
+		long mask, rmask;
 		
 		// first, a left-most embedding (with no shift)
 		left_embed.reembedProbe(chip, id, 0);
@@ -122,16 +123,16 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		embed_len = chip.getEmbeddingLength();
 		
 		rstep = step = embed_len - 1;
-		rmask = mask = 0x01 << Integer.SIZE - (embed_len % Integer.SIZE); 
-		rw = w = chip.embed[id].length - 1;
+		rmask = mask = 0x01L << Long.SIZE - (embed_len % Long.SIZE); 
+		rw = w = chip.embed_words - 1;
 		
 		// find last unmasked step
-		while ((chip.embed[id][w] & mask) == 0)
+		while ((chip.embed[chip.embeddingOffset(id) + w] & mask) == 0)
 		{
-			if ((step-- % Integer.SIZE) == 0)
+			if ((step-- % Long.SIZE) == 0)
 			{
 				w--;
-				mask = 0x01;
+				mask = 0x01L;
 			}
 			else
 				mask <<= 1;
@@ -140,10 +141,10 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		// find end of right part
 		while (chip.dep_seq[rstep] != chip.dep_seq[step])
 		{
-			if ((rstep-- % Integer.SIZE) == 0)
+			if ((rstep-- % Long.SIZE) == 0)
 			{
 				rw--;
-				rmask = 0x01;
+				rmask = 0x01L;
 			}
 			else
 				rmask <<= 1;
@@ -153,25 +154,25 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		
 		do
 		{
-			if ((chip.embed[id][w] & mask) != 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & mask) != 0)
 			{
-				chip.embed[id][w] &= ~mask;
-				chip.embed[id][rw] |= rmask;
+				chip.embed[chip.embeddingOffset(id) + w] &= ~mask;
+				chip.embed[chip.embeddingOffset(id) + rw] |= rmask;
 				len_right = embed_len - rstep;
 			}
 
-			if ((step-- % Integer.SIZE) == 0)
+			if ((step-- % Long.SIZE) == 0)
 			{
 				w--;
-				mask = 0x01;
+				mask = 0x01L;
 			}
 			else
 				mask <<= 1;
 
-			if ((rstep-- % Integer.SIZE) == 0)
+			if ((rstep-- % Long.SIZE) == 0)
 			{
 				rw--;
-				rmask = 0x01;
+				rmask = 0x01L;
 			}
 			else
 				rmask <<= 1;
@@ -181,7 +182,8 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 
 	private void reembed (AffymetrixChip chip, int id)
 	{
-		int embed_len, step, rstep, mask, rmask, w, rw, len_right = 0;
+		int embed_len, step, rstep, w, rw, len_right = 0;
+		long mask, rmask;
 		
 		// first, a left-most embedding (with no shift)
 		left_embed.reembedProbe(chip, id, 0);
@@ -189,16 +191,16 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		embed_len = chip.getEmbeddingLength();
 		
 		rstep = step = embed_len - 1;
-		rmask = mask = 0x01 << Integer.SIZE - (embed_len % Integer.SIZE); 
-		rw = w = chip.embed[id].length - 1;
+		rmask = mask = 0x01L << Long.SIZE - (embed_len % Long.SIZE); 
+		rw = w = chip.embed_words - 1;
 		
 		// find last unmasked step
-		while ((chip.embed[id][w] & mask) == 0)
+		while ((chip.embed[chip.embeddingOffset(id) + w] & mask) == 0)
 		{
-			if ((step-- % Integer.SIZE) == 0)
+			if ((step-- % Long.SIZE) == 0)
 			{
 				w--;
-				mask = 0x01;
+				mask = 0x01L;
 			}
 			else
 				mask <<= 1;
@@ -207,10 +209,10 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		// find end of right part
 		while (chip.dep_seq[rstep] != chip.dep_seq[step])
 		{
-			if ((rstep-- % Integer.SIZE) == 0)
+			if ((rstep-- % Long.SIZE) == 0)
 			{
 				rw--;
-				rmask = 0x01;
+				rmask = 0x01L;
 			}
 			else
 				rmask <<= 1;
@@ -220,32 +222,32 @@ public class EdgeEmbedding implements SingleProbeEmbeddingAlgorithm,
 		
 		do
 		{
-			if ((chip.embed[id][w] & mask) != 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & mask) != 0)
 			{
-				chip.embed[id][w] &= ~mask;
-				chip.embed[id][rw] |= rmask;
+				chip.embed[chip.embeddingOffset(id) + w] &= ~mask;
+				chip.embed[chip.embeddingOffset(id) + rw] |= rmask;
 				len_right = embed_len - rstep;
 			}
 
-			if ((chip.embed[id + 1][w] & mask) != 0)
+			if ((chip.embed[chip.embeddingOffset(id + 1) + w] & mask) != 0)
 			{
-				chip.embed[id + 1][w] &= ~mask;
-				chip.embed[id + 1][rw] |= rmask;
+				chip.embed[chip.embeddingOffset(id + 1) + w] &= ~mask;
+				chip.embed[chip.embeddingOffset(id + 1) + rw] |= rmask;
 				len_right = embed_len - rstep;
 			}
 
-			if ((step-- % Integer.SIZE) == 0)
+			if ((step-- % Long.SIZE) == 0)
 			{
 				w--;
-				mask = 0x01;
+				mask = 0x01L;
 			}
 			else
 				mask <<= 1;
 
-			if ((rstep-- % Integer.SIZE) == 0)
+			if ((rstep-- % Long.SIZE) == 0)
 			{
 				rw--;
-				rmask = 0x01;
+				rmask = 0x01L;
 			}
 			else
 				rmask <<= 1;
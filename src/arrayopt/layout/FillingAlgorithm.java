@@ -40,7 +40,7 @@ package arrayopt.layout;
 /**
  *
  */
-public interface FillingAlgorithm
+public interface FillingAlgorithm extends Cloneable
 {
 	/**
 	 *
@@ -52,4 +52,13 @@ public interface FillingAlgorithm
 	 */
 	public int fillRegion (Chip chip, Region region, int probe_id[], int start,
 		int end);
+
+	/**
+	 * Creates and returns a copy of this filling algorithm with the same
+	 * options but with no working data in common, so that both instances can
+	 * fill different regions of a chip concurrently.
+	 *
+	 * @return a clone of this instance
+	 */
+	public FillingAlgorithm clone ();
 }
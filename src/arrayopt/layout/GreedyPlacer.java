@@ -37,6 +37,10 @@
 
 package arrayopt.layout;
 
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.AtomicLong;
+
 /**
  * This class implements the Greedy placement algorithm.
  * 
@@ -65,6 +69,30 @@ package arrayopt.layout;
  * {@link #KEEP_ORDER}, {@link #RANDOM_ORDER}, {@link #SORT_EMBEDDINGS},
  * {@link #SORT_SEQUENCES} and {@link #TSP_ORDER}.</P>
  * 
+ * <P>With large windows, the search for the best candidate dominates the
+ * running time. The algorithm can be configured to examine the candidates in
+ * parallel ({@link #PARALLEL_SEARCH}). In this case, the candidates of the window are copied to a flat array, which is
+ * split into chunks that are examined by tasks of a fork-join pool. The tasks
+ * share the best cost found so far, so that the computation of the conflict
+ * index of a candidate can still be stopped as soon as it exceeds the best
+ * cost. The selected probe is the same as in the serial search, i.e. ties are
+ * broken in the same way.</P>
+ * 
+ * <P>In conflict index mode, the candidates can alternatively be found with a
+ * nearest-neighbor index of the embeddings ({@link #INDEX_SEARCH}, see
+ * {@link HammingIndex}) instead of the window of the ordered list. The index
+ * is queried with the embeddings of the spot's immediate neighbors and
+ * returns the candidates in increasing order of (an estimate of) their
+ * Hamming distance to them, regardless of their position in the list. In this
+ * case, {@link #window_size} is the maximum number of candidates examined for
+ * each spot. Ties are broken in favor of the probe that comes first in the
+ * specified order. Placed probes are removed from the index. If the index
+ * cannot find any candidate, the window of the list is examined as usual. The
+ * index search is not available in border length mode, where the probes that
+ * follow the last placed one in the ordered list are usually better
+ * candidates than the nearest neighbors of a single neighbor, and a larger
+ * window gives better layouts in less time.</P>
+ * 
  * @author Sergio A. de Carvalho Jr.
  */
 public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
@@ -119,6 +147,25 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	 */
 	public static final int TSP_ORDER = 4;
 	
+	/**
+	 * Constant to indicate that the candidates are examined by scanning a
+	 * window of the ordered list of probes.
+	 */
+	public static final int WINDOW_SEARCH = 0;
+	
+	/**
+	 * Constant to indicate that the candidates of large windows of the ordered
+	 * list of probes are examined in parallel (on the common fork-join pool).
+	 */
+	public static final int PARALLEL_SEARCH = 1;
+	
+	/**
+	 * Constant to indicate that the candidates are found with a
+	 * nearest-neighbor index of the embeddings ({@link HammingIndex}). Only
+	 * available in conflict index mode.
+	 */
+	public static final int INDEX_SEARCH = 2;
+	
 	/**
 	 * This variable stores the current minimization mode used by the algorithm.
 	 * Possible values are {@link #BORDER_LENGTH_MIN} and
@@ -145,6 +192,37 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	 */
 	private int kvalue;
 	
+	/**
+	 * Whether the candidates of large windows are examined in parallel.
+	 */
+	private boolean parallel;
+	
+	/**
+	 * Whether the candidates are found with a nearest-neighbor index.
+	 */
+	private boolean indexed;
+	
+	/**
+	 * Nearest-neighbor index of the probes not yet placed (index search only).
+	 */
+	private HammingIndex index;
+	
+	/**
+	 * Node of the list of each probe (indexed by probe ID, index search only).
+	 */
+	private MyLinkedList node_of[];
+	
+	/**
+	 * Minimum number of candidates in the window for the search to be done in
+	 * parallel.
+	 */
+	private static final int MIN_PARALLEL_WINDOW = 1024;
+	
+	/**
+	 * Number of candidates examined by each parallel task.
+	 */
+	private static final int CHUNK_SIZE = 256;
+	
 	private ProbeOrderingAlgorithm ordering;
 	
 	private RectangularRegion chip_region;
@@ -165,6 +243,39 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	
 	private int num_neighbors;
 	
+	/**
+	 * Nodes of the candidates in the current window (parallel search only).
+	 */
+	private MyLinkedList cand_node[];
+	
+	/**
+	 * Probe IDs of the candidates in the current window (parallel and index
+	 * search only).
+	 */
+	private int cand_id[];
+	
+	/**
+	 * Number of candidates in the current window (parallel search only).
+	 */
+	private int num_cand;
+	
+	/**
+	 * Minimum cost found by each chunk of candidates (parallel search only).
+	 */
+	private double chunk_min[];
+	
+	/**
+	 * Position of the best candidate of each chunk, or -1 if the chunk has no
+	 * candidate better than those of other chunks (parallel search only).
+	 */
+	private int chunk_best[];
+	
+	/**
+	 * Best cost found so far by any chunk, stored as the bits of a double
+	 * (parallel search only).
+	 */
+	private AtomicLong bound = new AtomicLong ();
+	
 	/**
 	 * Creates an instance of the Greedy placement algorithm with the desired
 	 * minimization mode, window size, k value and probe ordering.
@@ -182,6 +293,27 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	 * @param order order of probes during placement/filling
 	 */
 	public GreedyPlacer (int mode, int window_size, int kvalue, int order)
+	{
+		this (mode, window_size, kvalue, order, WINDOW_SEARCH);
+	}
+	
+	/**
+	 * Creates an instance of the Greedy placement algorithm with the desired
+	 * minimization mode, window size, k value, probe ordering and candidate
+	 * search. The parallel search produces the same layout as the window
+	 * search.
+	 * 
+	 * @see #WINDOW_SEARCH
+	 * @see #PARALLEL_SEARCH
+	 * @see #INDEX_SEARCH
+	 * @param mode minimization mode, either border length or conflict index
+	 * @param window_size maximum number of candidades examined for each spot
+	 * @param kvalue amplitude of k-threading
+	 * @param order order of probes during placement/filling
+	 * @param search how the candidates are searched
+	 */
+	public GreedyPlacer (int mode, int window_size, int kvalue, int order,
+			int search)
 	{
 		switch (mode)
 		{
@@ -227,6 +359,26 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		this.window_size = window_size;
 		this.kvalue = kvalue;
 		this.order = order;
+		switch (search)
+		{
+			case WINDOW_SEARCH:
+				break;
+				
+			case PARALLEL_SEARCH:
+				this.parallel = window_size >= MIN_PARALLEL_WINDOW;
+				break;
+				
+			case INDEX_SEARCH:
+				if (mode != CONFLICT_INDEX_MIN)
+					throw new IllegalArgumentException ("Index search is " +
+							"only available in conflict index mode.");
+				this.indexed = true;
+				break;
+				
+			default:
+				throw new IllegalArgumentException
+					("Illegal value for argument 'search'.");
+		}
 	}
 
 	/**
@@ -300,6 +452,21 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 			prev.next = curr;
 			prev = curr;
 		}
+		
+		if (indexed)
+		{
+			// index the probes and map them to their nodes
+			index = new HammingIndex (chip, probe_id, start, end);
+			
+			if (node_of == null || node_of.length != chip.getNumberOfProbes())
+				node_of = new MyLinkedList [chip.getNumberOfProbes()];
+			
+			for (curr = head; curr != null; curr = curr.next)
+				node_of[curr.info] = curr;
+			
+			if (cand_id == null)
+				cand_id = new int [window_size];
+		}
 
 		if (chip instanceof SimpleChip)
 		{
@@ -399,6 +566,12 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		// place selected probe
 		chip.spot[r][c] = list.info;
 		
+		if (indexed)
+		{
+			index.remove(list.info);
+			node_of[list.info] = null;
+		}
+		
 		// delete element from the list
 		if (list.next != null)
 		{
@@ -432,6 +605,10 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		// find node so that the search will examine 
 		// window_size elements around the last placed probe 
 		best = node = findStartingNode (middle);
+		
+		if (parallel)
+			return parallelSearch (chip, node);
+		
 		min = Long.MAX_VALUE;
 		
 		for (count = 0; node != null && count < window_size; count++)
@@ -453,7 +630,7 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	{
 		MyLinkedList node, best;
 		double	cost, min;
-		int		count;
+		int		count, id;
 		boolean	empty;
 		
 		// prepare for conflict index computation
@@ -462,10 +639,27 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		// return if region around the spot is empty
 		// (any probe can be placed)
 		if (empty) return middle;
+		
+		if (indexed)
+		{
+			// the index is queried with the immediate neighbors
+			// and examines at most window_size candidates
+			if (!examineNeighbors_bl (chip, row, col))
+			{
+				id = index.findNearest(neighbor_id, num_neighbors, cand_id,
+						window_size, new CandidateConflict (chip));
+				
+				if (id >= 0) return node_of[id];
+			}
+		}
 
 		// find node so that the search will examine 
 		// window_size elements around the last placed probe 
 		best = node = findStartingNode (middle);
+		
+		if (parallel)
+			return parallelSearch (chip, node);
+		
 		min = Double.POSITIVE_INFINITY;
 		
 		for (count = 0; node != null && count < window_size; count++)
@@ -482,6 +676,111 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		return best;
 	}
 
+	/**
+	 * Examines the candidates of the window in parallel. The candidates are
+	 * copied to a flat array which is split into chunks of
+	 * {@link #CHUNK_SIZE} elements. Each chunk finds its best candidate, and
+	 * the chunks' results are then combined in order, so that ties are broken
+	 * as in the serial search: in border length mode, the first candidate with
+	 * minimum cost is selected; in conflict index mode, the last one.
+	 */
+	private MyLinkedList parallelSearch (SimpleChip chip, MyLinkedList node)
+	{
+		int k, num_chunks, best = -1;
+		double min;
+		
+		if (cand_id == null)
+		{
+			cand_id = new int [window_size];
+			cand_node = new MyLinkedList [window_size];
+			num_chunks = (window_size + CHUNK_SIZE - 1) / CHUNK_SIZE;
+			chunk_min = new double [num_chunks];
+			chunk_best = new int [num_chunks];
+		}
+		
+		// copy the window to the flat array
+		for (num_cand = 0; node != null && num_cand < window_size; num_cand++)
+		{
+			cand_node[num_cand] = node;
+			cand_id[num_cand] = node.info;
+			node = node.next;
+		}
+		
+		num_chunks = (num_cand + CHUNK_SIZE - 1) / CHUNK_SIZE;
+		bound.set(Double.doubleToLongBits(Double.POSITIVE_INFINITY));
+		
+		ForkJoinPool.commonPool().invoke(
+				new CandidateScan (chip, 0, num_chunks - 1));
+		
+		// combine the results of the chunks in order
+		min = Double.POSITIVE_INFINITY;
+		for (k = 0; k < num_chunks; k++)
+		{
+			if (chunk_best[k] < 0) continue;
+			
+			if (mode == BORDER_LENGTH_MIN ? chunk_min[k] < min :
+											chunk_min[k] <= min)
+			{
+				min = chunk_min[k];
+				best = chunk_best[k];
+			}
+		}
+		
+		return cand_node[best];
+	}
+	
+	/**
+	 * Finds the best candidate of a chunk of the flat candidate array.
+	 */
+	private void scanChunk (SimpleChip chip, int k)
+	{
+		int i, last, best = -1;
+		double cost, min, max;
+		
+		last = Math.min((k + 1) * CHUNK_SIZE, num_cand);
+		min = Double.POSITIVE_INFINITY;
+		
+		for (i = k * CHUNK_SIZE; i < last; i++)
+		{
+			if (mode == BORDER_LENGTH_MIN)
+			{
+				cost = borderLength (chip, cand_id[i]);
+				if (cost < min)
+				{
+					min = cost;
+					best = i;
+				}
+				continue;
+			}
+			
+			// the conflict index computation can stop as soon
+			// as it exceeds the best cost found by any chunk
+			max = Math.min(min, Double.longBitsToDouble(bound.get()));
+			cost = conflictIndex (chip, cand_id[i], max);
+			if (cost <= max)
+			{
+				min = cost;
+				best = i;
+				updateBound (cost);
+			}
+		}
+		
+		chunk_min[k] = min;
+		chunk_best[k] = best;
+	}
+	
+	/**
+	 * Lowers the best cost shared by the chunks (if the given cost is lower).
+	 */
+	private void updateBound (double cost)
+	{
+		long curr, bits = Double.doubleToLongBits(cost);
+		
+		while (cost < Double.longBitsToDouble(curr = bound.get()))
+			if (bound.compareAndSet(curr, bits))
+				break;
+	}
+	
 	private void conflictIndexSetup (SimpleChip chip)
 	{
 		// prepare for faster conflict index calculations
@@ -541,7 +840,8 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	{
 		boolean empty = true;
 		double delta;
-		int r, c, id, base, step, word, bitmask = 0;
+		int r, c, id, off, base, step, word, last;
+		long bits;
 		
 		// reset costs
 		for (step = 0; step < embed_len; step++)
@@ -569,28 +869,29 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 				
 				empty = false;
 				
-				for (base = 0, step = 0, word = - 1; step < embed_len; step++)
+				off = chip.embeddingOffset(id);
+				
+				for (base = 0, step = 0, word = 0; step < embed_len; word++)
 				{
-					if (step % Integer.SIZE == 0)
+					// scan the bits of the current word from left to right
+					bits = chip.embed[off + word];
+					last = Math.min(step + Long.SIZE, embed_len);
+					
+					for (; step < last; step++, bits <<= 1)
 					{
-						word++;
-						bitmask = 0x01 << (Integer.SIZE - 1);
-					}
-					else
-						bitmask >>>= 1;
-
-					// check state of embedding at current step
-					if ((chip.embed[id][word] & bitmask) != 0)
-					{
-						// spot is in an unmasked step
-						m_cost[step] += delta;
-						
-						base++;
-					}
-					else
-					{
-						// spot is in a masked step
-						u_cost[step] += pos_weight[base] * delta;
+						// check state of embedding at current step
+						if (bits < 0)
+						{
+							// spot is in an unmasked step
+							m_cost[step] += delta;
+							
+							base++;
+						}
+						else
+						{
+							// spot is in a masked step
+							u_cost[step] += pos_weight[base] * delta;
+						}
 					}
 				}
 			}
@@ -636,41 +937,80 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 	
 	private double conflictIndex (SimpleChip chip, int id, double max)
 	{
-		int base, step, word, bitmask = 0;
+		int base, step, word, last, off;
+		long bits;
 		double ci = 0;
 		
-		for (base = 0, step = 0, word = - 1; step < embed_len; step++)
+		off = chip.embeddingOffset(id);
+		
+		for (base = 0, step = 0, word = 0; step < embed_len; word++)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				word++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
-			}
-			else
-				bitmask >>>= 1;
+			// scan the bits of the current word from left to right
+			bits = chip.embed[off + word];
+			last = Math.min(step + Long.SIZE, embed_len);
 			
-			// check embedding state at current step 
-			if ((chip.embed[id][word] & bitmask) != 0)
+			for (; step < last; step++, bits <<= 1)
 			{
-				// spot is in an unmasked step
-				ci += u_cost[step];
+				// check embedding state at current step 
+				if (bits < 0)
+				{
+					// spot is in an unmasked step
+					ci += u_cost[step];
 
-				// increment the number of synthesized bases
-				base++;
-			}
-			else
-			{
-				// spot is in a masked step
-				ci += pos_weight[base] * m_cost[step];
-				
-				// stop if CI exceeds limit
-				if (ci > max) break;
+					// increment the number of synthesized bases
+					base++;
+				}
+				else
+				{
+					// spot is in a masked step
+					ci += pos_weight[base] * m_cost[step];
+					
+					// stop if CI exceeds limit
+					if (ci > max) return ci;
+				}
 			}
 		}
 
 		return ci;
 	}
 
+	/**
+	 * Creates and returns a copy of this GreedyPlacer object with the same
+	 * options. Working data is not shared between the instances.
+	 *
+	 * @return a clone of this instance
+	 */
+	@Override
+	public GreedyPlacer clone ()
+	{
+		GreedyPlacer c;
+		
+		try
+		{
+			c = (GreedyPlacer) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+		
+		// working data is created on demand
+		c.index = null;
+		c.node_of = null;
+		c.cand_node = null;
+		c.cand_id = null;
+		c.chunk_min = null;
+		c.chunk_best = null;
+		c.m_cost = null;
+		c.u_cost = null;
+		c.pos_weight = null;
+		c.neighbor_id = new int [4];
+		c.bound = new AtomicLong ();
+		
+		return c;
+	}
+
 	/**
 	 * Returns the algorithm's name together with current options.
 	 * 
@@ -721,7 +1061,65 @@ public class GreedyPlacer implements LayoutAlgorithm, FillingAlgorithm
 		}
 
 		return this.getClass().getSimpleName() + m + window_size + "-" +
-					kvalue + ord;
+					kvalue + ord + (parallel ? "-Parallel" : "") +
+					(indexed ? "-Index" : "");
+	}
+	
+	/**
+	 * Examines a range of chunks of the flat candidate array, splitting it in
+	 * two halves until a single chunk remains.
+	 */
+	private class CandidateScan extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private SimpleChip chip;
+		
+		private int first;
+		
+		private int last;
+		
+		CandidateScan (SimpleChip chip, int first, int last)
+		{
+			this.chip = chip;
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			int mid;
+			
+			if (first == last)
+			{
+				scanChunk (chip, first);
+				return;
+			}
+			
+			mid = (first + last) >>> 1;
+			
+			invokeAll (new CandidateScan (chip, first, mid),
+					   new CandidateScan (chip, mid + 1, last));
+		}
+	}
+	
+	/**
+	 * Conflict index of the candidates found with the nearest-neighbor index.
+	 */
+	private class CandidateConflict implements HammingIndex.Distance
+	{
+		private SimpleChip chip;
+		
+		CandidateConflict (SimpleChip chip)
+		{
+			this.chip = chip;
+		}
+		
+		public double distance (int id, double max)
+		{
+			return conflictIndex (chip, id, max);
+		}
 	}
 	
 	private class MyLinkedList
@@ -70,6 +70,18 @@ package arrayopt.layout;
  * to its neighbors to fill a given spot. A doubly-linked list is used to
  * maintain the sorting during the whole algorith.</P>
  * 
+ * <P>In conflict index mode, the candidates can alternatively be found with a
+ * nearest-neighbor index of the current embeddings
+ * ({@link GreedyPlacer#INDEX_SEARCH}, see {@link HammingIndex}), queried with
+ * the embeddings of the spot's filled neighbors. Since the cost of a
+ * candidate is the minimum distance of any of its embeddings, the index only
+ * gives an estimate of the best candidates. In this case, {@link #window_size}
+ * is the number of candidates examined for each spot, and ties are broken in
+ * favor of the probe that comes first in the sorted list. The index search is
+ * not available in border length mode, where the window of the sorted list,
+ * whose candidates share long prefixes, finds better candidates in less
+ * time.</P>
+ * 
  * @author Sergio A. de Carvalho Jr.
  */
 public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
@@ -97,6 +109,41 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 	
 	private ProbeOrderingAlgorithm ordering;
 	
+	/**
+	 * Whether the candidates are found with a nearest-neighbor index.
+	 */
+	private boolean indexed;
+	
+	/**
+	 * Nearest-neighbor index of the probes not yet placed (index search only).
+	 */
+	private HammingIndex index;
+	
+	/**
+	 * Node of the list of each probe (indexed by probe ID, index search only).
+	 */
+	private MyLinkedList node_of[];
+	
+	/**
+	 * IDs of the candidates examined for a spot.
+	 */
+	private int cand_id[];
+	
+	/**
+	 * Nodes of the list of the candidates examined for a spot (window search
+	 * only).
+	 */
+	private MyLinkedList cand_node[];
+	
+	/**
+	 * Distances of the candidates examined for a spot (window search only).
+	 */
+	private double cand_dist[];
+	
+	private int neighbor_id[] = new int[4];
+	
+	private int num_neighbors;
+	
 	/**
 	 * Creates an instance of the Greedy Plus placement algorithm with the
 	 * desired minimization mode, window size and k value.
@@ -106,6 +153,22 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 	 * @param kvalue amplitude of k-threading
 	 */
 	public GreedyPlusPlacer (int mode, int window_size, int kvalue)
+	{
+		this (mode, window_size, kvalue, GreedyPlacer.WINDOW_SEARCH);
+	}
+	
+	/**
+	 * Creates an instance of the Greedy Plus placement algorithm with the
+	 * desired minimization mode, window size, k value and candidate search.
+	 * 
+	 * @see GreedyPlacer#WINDOW_SEARCH
+	 * @see GreedyPlacer#INDEX_SEARCH
+	 * @param mode minimization mode, either border length or conflict index
+	 * @param window_size maximum number of candidades examined for each spot
+	 * @param kvalue amplitude of k-threading
+	 * @param search how the candidates are searched
+	 */
+	public GreedyPlusPlacer (int mode, int window_size, int kvalue, int search)
 	{
 		switch (mode)
 		{
@@ -122,6 +185,23 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 		if (kvalue < 0)
 			throw new IllegalArgumentException ("Invalid k value: " + kvalue);
 
+		switch (search)
+		{
+			case GreedyPlacer.WINDOW_SEARCH:
+				break;
+				
+			case GreedyPlacer.INDEX_SEARCH:
+				if (mode != OptimumSingleProbeEmbedding.CONFLICT_INDEX_MIN)
+					throw new IllegalArgumentException ("Index search is " +
+							"only available in conflict index mode.");
+				this.indexed = true;
+				break;
+				
+			default:
+				throw new IllegalArgumentException
+					("Illegal value for argument 'search'.");
+		}
+
 		this.window_size = window_size;
 		this.kvalue = kvalue;
 		this.ordering = new SortedSequencesOrdering();
@@ -197,6 +277,25 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 			prev.next = curr;
 			prev = curr;
 		}
+		
+		if (indexed)
+		{
+			// index the probes and map them to their nodes
+			index = new HammingIndex (chip, probe_id, start, end);
+			
+			if (node_of == null || node_of.length != chip.getNumberOfProbes())
+				node_of = new MyLinkedList [chip.getNumberOfProbes()];
+			
+			for (curr = head; curr != null; curr = curr.next)
+				node_of[curr.info] = curr;
+		}
+		
+		if (cand_id == null || cand_id.length != window_size)
+		{
+			cand_id = new int [window_size];
+			cand_node = new MyLinkedList [window_size];
+			cand_dist = new double [window_size];
+		}
 
 		if (chip instanceof SimpleChip)
 		{
@@ -290,46 +389,95 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 			int col, MyLinkedList node)
 	{
 		MyLinkedList best;
-		double	cost, min;
-		int		count;
+		int		num, i, id;
+		
+		if (indexed)
+		{
+			// the index is queried with the immediate neighbors
+			// and examines at most window_size candidates
+			examineNeighbors (chip, row, col);
+			
+			if (num_neighbors > 0)
+			{
+				id = index.findNearest(neighbor_id, num_neighbors, cand_id,
+						window_size, new SpotDistance (row, col));
+				
+				if (id >= 0)
+				{
+					// re-embed best probe optimally
+					ospe.reembedProbe(id);
+					
+					return placeProbe (chip, row, col, node_of[id]);
+				}
+			}
+		}
 		
 		// find node so that the search will examine 
 		// window_size elements around the last placed probe 
 		node = findStartingNode (node);
 		
-		// compute cost of placing first element in the spot
-		min = ospe.minDistanceSpot(row, col, node.info);
-		best = node;
+		// collect the candidates of the window
+		for (num = 0; node != null && num < window_size; num++)
+		{
+			cand_node[num] = node;
+			cand_id[num] = node.info;
+			node = node.next;
+		}
+		
+		// compute the cost of placing every candidate in the spot at once
+		i = ospe.minDistanceSpot(row, col, cand_id, 0, num - 1, cand_dist, 0);
+		best = cand_node[i];
 		
 		// TODO if min == 0, place a pivot (probe with min number of embeddings)
 		
-		if (min > 0)
-		{
-			node = node.next;
-			
-			for (count = 1; node != null && count < window_size; count++)
-			{
-				cost = ospe.minDistanceProbe(node.info, min);
-				if (cost < min)
-				{
-					min = cost;
-					best = node;
-				}
-				
-				// TODO in case of ties, choose probe with less embeddings
-				
-				// TODO in case of ties, choose probe closer to last placed
+		// TODO in case of ties, choose probe with less embeddings
+		
+		// TODO in case of ties, choose probe closer to last placed
+		
+		// re-embed best probe optimally
+		if (cand_dist[i] > 0)
+			ospe.reembedProbe(best.info);
+		
+		return placeProbe (chip, row, col, best);
+	}
+	
+	private void examineNeighbors (SimpleChip chip, int row, int col)
+	{
+		int id;
+		
+		num_neighbors = 0;
+		
+		if (row > 0)
+			if ((id = chip.spot[row - 1][col]) != Chip.EMPTY_SPOT)
+				neighbor_id[num_neighbors++] = id;
 
-				node = node.next;
-			}
+		if (row < chip.getNumberOfRows() - 1)
+			if ((id = chip.spot[row + 1][col]) != Chip.EMPTY_SPOT)
+				neighbor_id[num_neighbors++] = id;
 
-			// re-embed best probe optimally
-			ospe.reembedProbe(best.info);
-		}
+		if (col > 0)
+			if ((id = chip.spot[row][col - 1]) != Chip.EMPTY_SPOT)
+				neighbor_id[num_neighbors++] = id;
+
+		if (col < chip.getNumberOfColumns() - 1)
+			if ((id = chip.spot[row][col + 1]) != Chip.EMPTY_SPOT)
+				neighbor_id[num_neighbors++] = id;
+	}
+	
+	private MyLinkedList placeProbe (SimpleChip chip, int row, int col,
+			MyLinkedList best)
+	{
+		MyLinkedList node;
 		
 		// place best probe on the spot
 		chip.spot[row][col] = best.info;
 		
+		if (indexed)
+		{
+			index.remove(best.info);
+			node_of[best.info] = null;
+		}
+		
 		node = null;
 		
 		// and delete it from the list
@@ -417,6 +565,39 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 		return node;
 	}
 	
+	/**
+	 * Creates and returns a copy of this GreedyPlusPlacer object with the same
+	 * options. Working data is not shared between the instances.
+	 *
+	 * @return a clone of this instance
+	 */
+	@Override
+	public GreedyPlusPlacer clone ()
+	{
+		GreedyPlusPlacer c;
+		
+		try
+		{
+			c = (GreedyPlusPlacer) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+		
+		// working data is created on demand
+		c.ospe = null;
+		c.index = null;
+		c.node_of = null;
+		c.cand_id = null;
+		c.cand_node = null;
+		c.cand_dist = null;
+		c.neighbor_id = new int [4];
+		
+		return c;
+	}
+
 	/**
 	 * Returns the algorithm's name together with current options.
 	 * 
@@ -442,7 +623,8 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 				break;
 		}
 		
-		return this.getClass().getSimpleName() + m + window_size + "-" + kvalue;
+		return this.getClass().getSimpleName() + m + window_size + "-" + kvalue +
+					(indexed ? "-Index" : "");
 	}
 	
 	private class MyLinkedList
@@ -459,4 +641,35 @@ public class GreedyPlusPlacer implements LayoutAlgorithm, FillingAlgorithm
 			this.next = null;
 		}
 	}
+	
+	/**
+	 * Minimum distance of the candidates found with the nearest-neighbor index
+	 * when placed on a spot. The first candidate sets up the costs of the
+	 * spot, which are reused by the following ones.
+	 */
+	private class SpotDistance implements HammingIndex.Distance
+	{
+		private int row;
+		
+		private int col;
+		
+		private boolean first = true;
+		
+		SpotDistance (int row, int col)
+		{
+			this.row = row;
+			this.col = col;
+		}
+		
+		public double distance (int id, double max)
+		{
+			if (first)
+			{
+				first = false;
+				return ospe.minDistanceSpot(row, col, id);
+			}
+			// else
+				return ospe.minDistanceProbe(id, max);
+		}
+	}
 }
@@ -0,0 +1,566 @@
+/*
+ * HammingIndex.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+/**
+ * This class implements a nearest-neighbor index of probe embeddings in the
+ * Hamming space using multi-index hashing. The embeddings are split into a
+ * number of disjoint chunks of consecutive masking steps, and each chunk has
+ * its own hash table mapping the value of the chunk (the bits of the
+ * embedding in those steps) to the list of probes with that value.
+ * 
+ * <P>The index is searched with the embedding of a query probe and a chunk
+ * radius <CODE>r</CODE>: every indexed probe whose embedding differs from the
+ * query in exactly <CODE>r</CODE> bits of at least one chunk is returned.
+ * Searching with increasing radii (starting from zero) eventually finds all
+ * probes, from the most similar to the least similar. Moreover, since the
+ * chunks are disjoint, a probe that has not been found after all radii up to
+ * <CODE>r</CODE> have been searched differs from the query in at least
+ * <CODE>r + 1</CODE> bits of every chunk, that is, its Hamming distance to the
+ * query is at least {@link #getNumberOfChunks()} * <CODE>(r + 1)</CODE>. This
+ * lower bound allows the search to stop as soon as the best probe found is
+ * provably the nearest neighbor.</P>
+ * 
+ * <P>The {@link #findNearest} method implements the whole search for the
+ * candidate with minimum distance to a set of query probes (usually the
+ * neighbors of a spot), examining the probes found with increasing radii
+ * (up to {@link #MAX_SEARCH_RADIUS}). The distance of each candidate is
+ * computed by a {@link Distance} given by the caller.</P>
+ * 
+ * <P>Probes can be removed from the index (for instance, once they are placed
+ * on the chip) in constant time per chunk. The index also remembers the order
+ * in which the probes were given (their rank), so that ties can be broken
+ * consistently.</P>
+ * 
+ * <P>The index refers to the embeddings stored in the chip; they must not be
+ * modified while the index is in use.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class HammingIndex
+{
+	/**
+	 * Minimum number of bits of a chunk.
+	 */
+	private static final int MIN_CHUNK_BITS = 8;
+	
+	/**
+	 * Maximum number of bits of a chunk.
+	 */
+	private static final int MAX_CHUNK_BITS = 32;
+	
+	/**
+	 * Maximum chunk radius searched by {@link #findNearest}. Larger radii
+	 * enumerate too many chunk values to pay off.
+	 */
+	public static final int MAX_SEARCH_RADIUS = 2;
+	
+	private Chip chip;
+	
+	/**
+	 * Number of chunks in which the embeddings are split.
+	 */
+	private int num_chunks;
+	
+	/**
+	 * First masking step of each chunk.
+	 */
+	private int chunk_first[];
+	
+	/**
+	 * Number of masking steps of each chunk.
+	 */
+	private int chunk_len[];
+	
+	/**
+	 * Hash table keys (chunk values) of each chunk.
+	 */
+	private long table_key[][];
+	
+	/**
+	 * Bucket of each hash table entry, or -1 if the entry is free.
+	 */
+	private int table_bucket[][];
+	
+	/**
+	 * First position of each bucket in the list of entries of each chunk.
+	 */
+	private int bucket_start[][];
+	
+	/**
+	 * Current number of probes in each bucket of each chunk.
+	 */
+	private int bucket_size[][];
+	
+	/**
+	 * Probe IDs of each chunk, grouped by bucket.
+	 */
+	private int entry[][];
+	
+	/**
+	 * Position of each probe in the list of entries of each chunk (indexed by
+	 * probe ID).
+	 */
+	private int entry_pos[][];
+	
+	/**
+	 * Bucket of each probe in each chunk (indexed by probe ID).
+	 */
+	private int entry_bucket[][];
+	
+	/**
+	 * Rank of each probe, i.e. its position in the list given at
+	 * instantiation time (indexed by probe ID), or -1 if not indexed.
+	 */
+	private int rank[];
+	
+	/**
+	 * Whether each probe is currently in the index (indexed by probe ID).
+	 */
+	private boolean present[];
+	
+	/**
+	 * Marks the probes already found by the current query.
+	 */
+	private int mark[];
+	
+	/**
+	 * Identifies the current query.
+	 */
+	private int stamp;
+	
+	/**
+	 * Number of probes currently in the index.
+	 */
+	private int size;
+	
+	/**
+	 * Creates an index of a list of probes delimited by a starting and ending
+	 * positions. The rank of each probe is its position in the list.
+	 * 
+	 * @param chip chip containing the probes
+	 * @param probe_id list of probe IDs
+	 * @param start first element of the list
+	 * @param end last element of the list
+	 */
+	public HammingIndex (Chip chip, int probe_id[], int start, int end)
+	{
+		int embed_len, num_probes, bits, len, n, j, i;
+		
+		this.chip = chip;
+		
+		embed_len = chip.getEmbeddingLength();
+		num_probes = chip.getNumberOfProbes();
+		n = end - start + 1;
+		
+		// use chunks with about log2(n) bits, so that
+		// buckets are expected to contain few probes
+		bits = Long.SIZE - Long.numberOfLeadingZeros(Math.max(n, 1));
+		bits = Math.max(MIN_CHUNK_BITS, Math.min(MAX_CHUNK_BITS, bits));
+		bits = Math.min(bits, embed_len);
+		
+		num_chunks = (embed_len + bits - 1) / bits;
+		
+		// distribute the steps evenly among the chunks
+		chunk_first = new int [num_chunks];
+		chunk_len = new int [num_chunks];
+		for (j = 0, i = 0; j < num_chunks; j++)
+		{
+			len = (embed_len - i) / (num_chunks - j);
+			chunk_first[j] = i;
+			chunk_len[j] = len;
+			i += len;
+		}
+		
+		rank = new int [num_probes];
+		present = new boolean [num_probes];
+		mark = new int [num_probes];
+		
+		for (i = 0; i < num_probes; i++)
+			rank[i] = -1;
+		
+		for (i = start; i <= end; i++)
+		{
+			rank[probe_id[i]] = i - start;
+			present[probe_id[i]] = true;
+		}
+		
+		size = n;
+		
+		table_key = new long [num_chunks][];
+		table_bucket = new int [num_chunks][];
+		bucket_start = new int [num_chunks][];
+		bucket_size = new int [num_chunks][];
+		entry = new int [num_chunks][];
+		entry_pos = new int [num_chunks][];
+		entry_bucket = new int [num_chunks][];
+		
+		for (j = 0; j < num_chunks; j++)
+			buildChunk (j, probe_id, start, end);
+	}
+	
+	private void buildChunk (int j, int probe_id[], int start, int end)
+	{
+		int capacity, i, id, b, num_buckets, slot, pos;
+		long value;
+		
+		// hash table with at most 50% load
+		capacity = Integer.highestOneBit(Math.max(end - start + 1, 1)) << 2;
+		table_key[j] = new long [capacity];
+		table_bucket[j] = new int [capacity];
+		for (slot = 0; slot < capacity; slot++)
+			table_bucket[j][slot] = -1;
+		
+		entry_bucket[j] = new int [chip.getNumberOfProbes()];
+		entry_pos[j] = new int [chip.getNumberOfProbes()];
+		
+		// assign a bucket to each distinct chunk value
+		// (bucket_size is temporarily used to count the probes)
+		bucket_size[j] = new int [end - start + 1];
+		for (num_buckets = 0, i = start; i <= end; i++)
+		{
+			id = probe_id[i];
+			value = chunkValue (id, j);
+			slot = findSlot (j, value);
+			
+			if ((b = table_bucket[j][slot]) < 0)
+			{
+				table_key[j][slot] = value;
+				table_bucket[j][slot] = b = num_buckets++;
+			}
+			
+			entry_bucket[j][id] = b;
+			bucket_size[j][b]++;
+		}
+		
+		// compute where each bucket starts
+		bucket_start[j] = new int [num_buckets];
+		for (pos = 0, b = 0; b < num_buckets; b++)
+		{
+			bucket_start[j][b] = pos;
+			pos += bucket_size[j][b];
+			bucket_size[j][b] = 0;
+		}
+		
+		// fill buckets keeping the order of the list
+		entry[j] = new int [end - start + 1];
+		for (i = start; i <= end; i++)
+		{
+			id = probe_id[i];
+			b = entry_bucket[j][id];
+			pos = bucket_start[j][b] + bucket_size[j][b]++;
+			entry[j][pos] = id;
+			entry_pos[j][id] = pos;
+		}
+	}
+	
+	/**
+	 * Returns the number of chunks in which the embeddings are split.
+	 * 
+	 * @return number of chunks
+	 */
+	public int getNumberOfChunks ()
+	{
+		return num_chunks;
+	}
+	
+	/**
+	 * Returns the maximum chunk radius that can be searched, i.e. the length
+	 * of the shortest chunk (the first one, since the remainder of the steps
+	 * goes to the last chunks).
+	 * 
+	 * @return maximum search radius
+	 */
+	public int getMaxRadius ()
+	{
+		return chunk_len[0];
+	}
+	
+	/**
+	 * Returns the number of probes currently in the index.
+	 * 
+	 * @return number of indexed probes
+	 */
+	public int size ()
+	{
+		return size;
+	}
+	
+	/**
+	 * Returns true if the probe is currently in the index.
+	 * 
+	 * @param id probe ID
+	 * @return true if the probe is in the index, false otherwise
+	 */
+	public boolean contains (int id)
+	{
+		return present[id];
+	}
+	
+	/**
+	 * Returns the rank of a probe, i.e. its position in the list of probes
+	 * given at instantiation time (even if it was later removed).
+	 * 
+	 * @param id probe ID
+	 * @return rank of the probe or -1 if it was never indexed
+	 */
+	public int rank (int id)
+	{
+		return rank[id];
+	}
+	
+	/**
+	 * Removes a probe from the index.
+	 * 
+	 * @param id probe ID
+	 */
+	public void remove (int id)
+	{
+		int j, b, pos, last, other;
+		
+		if (!present[id]) return;
+		
+		for (j = 0; j < num_chunks; j++)
+		{
+			// swap the probe with the last one of its bucket
+			b = entry_bucket[j][id];
+			pos = entry_pos[j][id];
+			last = bucket_start[j][b] + --bucket_size[j][b];
+			
+			other = entry[j][last];
+			entry[j][pos] = other;
+			entry_pos[j][other] = pos;
+			entry[j][last] = id;
+			entry_pos[j][id] = last;
+		}
+		
+		present[id] = false;
+		size--;
+	}
+	
+	/**
+	 * Starts a new query. Probes are only returned once by
+	 * {@link #search(int[], int, int, int[], int, int)} between two calls of
+	 * this method.
+	 */
+	public void startQuery ()
+	{
+		if (++stamp == 0)
+		{
+			// stamp overflow: clear all marks
+			for (int i = 0; i < mark.length; i++)
+				mark[i] = 0;
+			stamp = 1;
+		}
+	}
+	
+	/**
+	 * Searches the index for probes whose embeddings differ from the embedding
+	 * of (at least) one of the query probes in exactly <CODE>radius</CODE>
+	 * bits of at least one chunk. The probes found (which have not been found
+	 * before by the current query) are appended to the list of candidates,
+	 * until its size reaches the given maximum.
+	 * 
+	 * @param query list of query probe IDs
+	 * @param num_queries number of query probes
+	 * @param radius chunk radius
+	 * @param cand list of candidates
+	 * @param num current number of candidates in the list
+	 * @param max maximum number of candidates in the list
+	 * @return new number of candidates in the list
+	 */
+	public int search (int query[], int num_queries, int radius, int cand[],
+			int num, int max)
+	{
+		int q, j, len, slot, b, i, last, id;
+		long value, flip, low, next;
+		
+		for (q = 0; q < num_queries; q++)
+			for (j = 0; j < num_chunks; j++)
+			{
+				len = chunk_len[j];
+				
+				if (radius > len) continue;
+				
+				value = chunkValue (query[q], j);
+				
+				// enumerate all masks of len bits with radius bits set
+				// (in lexicographic order, using Gosper's hack)
+				for (flip = (1L << radius) - 1; (flip >>> len) == 0;)
+				{
+					slot = findSlot (j, value ^ flip);
+					
+					if ((b = table_bucket[j][slot]) >= 0)
+					{
+						i = bucket_start[j][b];
+						last = i + bucket_size[j][b];
+						
+						for (; i < last; i++)
+						{
+							id = entry[j][i];
+							
+							if (mark[id] == stamp) continue;
+							
+							mark[id] = stamp;
+							cand[num++] = id;
+							
+							if (num >= max) return num;
+						}
+					}
+					
+					if (flip == 0) break;
+					
+					// next mask with the same number of bits set
+					low = flip & -flip;
+					next = flip + low;
+					flip = (((next ^ flip) >>> 2) / low) | next;
+				}
+			}
+		
+		return num;
+	}
+	
+	/**
+	 * Starts a new query and finds the probe with minimum distance to a set of
+	 * query probes. The index is searched with increasing chunk radii (up to
+	 * {@link #MAX_SEARCH_RADIUS}) and the distance of every probe found is
+	 * computed with <CODE>dist</CODE>, using the minimum distance found so far
+	 * as the maximum. The search stops after the radius in which the number
+	 * of candidates reaches the given maximum or a candidate with zero
+	 * distance is found. Ties are broken in favor of the probe with lower
+	 * rank.
+	 * 
+	 * @param query list of query probe IDs
+	 * @param num_queries number of query probes
+	 * @param cand list where the candidates are stored
+	 * @param max maximum number of candidates examined
+	 * @param dist distance function
+	 * @return ID of the best candidate, or -1 if none was found
+	 */
+	public int findNearest (int query[], int num_queries, int cand[], int max,
+			Distance dist)
+	{
+		int radius, max_radius, num, i, id, best = -1;
+		double d, min = Double.POSITIVE_INFINITY;
+		
+		startQuery ();
+		
+		max_radius = Math.min(MAX_SEARCH_RADIUS, getMaxRadius());
+		
+		for (radius = 0, num = 0, i = 0; radius <= max_radius; radius++)
+		{
+			num = search (query, num_queries, radius, cand, num, max);
+			
+			for (; i < num; i++)
+			{
+				id = cand[i];
+				d = dist.distance(id, min);
+				
+				if (best < 0 || d < min || (d == min && rank[id] < rank[best]))
+				{
+					min = d;
+					best = id;
+				}
+			}
+			
+			if (num >= max || min == 0) break;
+		}
+		
+		return best;
+	}
+	
+	/**
+	 * Returns the value of a chunk of a probe's embedding (the bits of the
+	 * chunk's masking steps, the first step being the most significant bit).
+	 */
+	private long chunkValue (int id, int j)
+	{
+		int off, first, len, w, b;
+		long value;
+		
+		off = chip.embeddingOffset(id);
+		first = chunk_first[j];
+		len = chunk_len[j];
+		
+		w = first / Long.SIZE;
+		b = first % Long.SIZE;
+		
+		value = chip.embed[off + w] << b;
+		
+		// the chunk continues in the next word
+		if (b + len > Long.SIZE)
+			value |= chip.embed[off + w + 1] >>> (Long.SIZE - b);
+		
+		return value >>> (Long.SIZE - len);
+	}
+	
+	/**
+	 * Returns the slot of the hash table of a chunk where a value is stored or
+	 * where it should be stored (linear probing).
+	 */
+	private int findSlot (int j, long value)
+	{
+		int slot, mask;
+		
+		mask = table_key[j].length - 1;
+		slot = (int) ((value * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+		
+		while (table_bucket[j][slot] >= 0 && table_key[j][slot] != value)
+			slot = (slot + 1) & mask;
+		
+		return slot;
+	}
+	
+	/**
+	 * Distance function used by {@link HammingIndex#findNearest} to evaluate
+	 * the candidates.
+	 */
+	public interface Distance
+	{
+		/**
+		 * Computes the distance of a candidate. The exact distance is only
+		 * needed if it does not exceed the given maximum; otherwise, any value
+		 * greater than the maximum may be returned.
+		 * 
+		 * @param id probe ID of the candidate
+		 * @param max maximum distance of interest
+		 * @return distance of the candidate
+		 */
+		public abstract double distance (int id, double max);
+	}
+}
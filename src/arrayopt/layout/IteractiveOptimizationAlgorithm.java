@@ -40,10 +40,19 @@ package arrayopt.layout;
 /**
  *
  */
-public interface IteractiveOptimizationAlgorithm
+public interface IteractiveOptimizationAlgorithm extends Cloneable
 {
 	/**
 	 *
 	 */
 	public float optimizeLayout (Chip chip, Region region);
+
+	/**
+	 * Creates and returns a copy of this optimization algorithm with the same
+	 * options but with no working data in common, so that both instances can
+	 * optimize different regions of a chip concurrently.
+	 * 
+	 * @return a clone of this instance
+	 */
+	public IteractiveOptimizationAlgorithm clone ();
 }
@@ -300,6 +300,27 @@ public class KThreadingPlacer implements LayoutAlgorithm, FillingAlgorithm
 		return end - start + 1;
 	}
 
+	/**
+	 * Creates and returns a copy of this KThreadingPlacer object with the same
+	 * options.
+	 *
+	 * @return a clone of this instance
+	 */
+	@Override
+	public KThreadingPlacer clone ()
+	{
+		try
+		{
+			// this class has no working data
+			return (KThreadingPlacer) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+	}
+
 	/**
 	 * Returns the algorithm's name together with current options.
 	 * 
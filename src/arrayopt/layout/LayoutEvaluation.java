@@ -38,12 +38,21 @@
 package arrayopt.layout;
 
 import java.io.PrintWriter;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
 
 /**
  *
  */
 public class LayoutEvaluation
 {
+	/**
+	 * Minimum number of rows of a band of the chip that is evaluated as a
+	 * single task by the parallel evaluation methods.
+	 */
+	private static final int MIN_BAND_ROWS = 4;
+	
 	/**
 	 * Computes the Hamming distance between the embeddings of two probes. The
 	 * Hamming distance gives the number of masking steps that the two
@@ -67,80 +76,91 @@ public class LayoutEvaluation
 	
 	public static int hammingDistance (SimpleChip chip, int id_1, int id_2)
 	{
-		int w, lastw, hd = 0, shift, bits;
+		int w, lastw, hd = 0, o1, o2;
+		long bits;
 		
 		// index of the last word
-		lastw = chip.embed[id_1].length - 1;
+		lastw = chip.embed_words - 1;
+
+		// position of the embeddings
+		o1 = chip.embeddingOffset(id_1);
+		o2 = chip.embeddingOffset(id_2);
 
 		// count the differences in the first words
 		for (w = 0; w < lastw; w++)
-			hd += Integer.bitCount(chip.embed[id_1][w] ^ chip.embed[id_2][w]);
+			hd += Long.bitCount(chip.embed[o1 + w] ^ chip.embed[o2 + w]);
 		
 		// bitwise xor of the last word
-		bits = chip.embed[id_1][lastw] ^ chip.embed[id_2][lastw];
+		bits = chip.embed[o1 + lastw] ^ chip.embed[o2 + lastw];
 		
 		// clear any unused bits
-		shift = (1 + lastw) * Integer.SIZE - chip.embed_len;
-		bits >>>= shift;
-		bits <<= shift;
+		bits &= chip.embed_last_mask;
 
 		// count the differences in the last word
-		hd += Integer.bitCount(bits);
+		hd += Long.bitCount(bits);
 
 		return hd;
 	}
 
 	public static int hammingDistanceSpots (Chip chip, int id_1, int id_2)
 	{
-		int w, lastw, hd = 0, shift, bits;
+		int w, lastw, hd = 0, o1, o2;
+		long bits;
 		
 		// index of the last word
-		lastw = chip.embed[id_1].length - 1;
+		lastw = chip.embed_words - 1;
+
+		// position of the embeddings
+		o1 = chip.embeddingOffset(id_1);
+		o2 = chip.embeddingOffset(id_2);
 
 		// count the differences in the first words
 		for (w = 0; w < lastw; w++)
-			hd += Integer.bitCount(chip.embed[id_1][w] ^ chip.embed[id_2][w]);
+			hd += Long.bitCount(chip.embed[o1 + w] ^ chip.embed[o2 + w]);
 		
 		// bitwise xor of the last word
-		bits = chip.embed[id_1][lastw] ^ chip.embed[id_2][lastw];
+		bits = chip.embed[o1 + lastw] ^ chip.embed[o2 + lastw];
 		
 		// clear any unused bits
-		shift = (1 + lastw) * Integer.SIZE - chip.embed_len;
-		bits >>>= shift;
-		bits <<= shift;
+		bits &= chip.embed_last_mask;
 
 		// count the differences in the last word
-		hd += Integer.bitCount(bits);
+		hd += Long.bitCount(bits);
 
 		return hd;
 	}
 
 	public static int hammingDistance (AffymetrixChip chip, int id_1, int id_2)
 	{
-		int w, lastw, hd = 0, shift, bits;
+		int w, lastw, hd = 0, pm1, mm1, pm2, mm2;
+		long bits;
 		
 		// index of the last word
-		lastw = chip.embed[id_1].length - 1;
+		lastw = chip.embed_words - 1;
+
+		// position of the embeddings (MM probes follow the PM probes)
+		pm1 = chip.embeddingOffset(id_1);
+		mm1 = pm1 + chip.embed_words;
+		pm2 = chip.embeddingOffset(id_2);
+		mm2 = pm2 + chip.embed_words;
 
 		// count the differences in the first words
 		for (w = 0; w < lastw; w++)
 		{
-			bits = chip.embed[id_1][w] | chip.embed[id_1 + 1][w];
-			bits = bits ^ (chip.embed[id_2][w] | chip.embed[id_2 + 1][w]);
-			hd += Integer.bitCount(bits);
+			bits = chip.embed[pm1 + w] | chip.embed[mm1 + w];
+			bits = bits ^ (chip.embed[pm2 + w] | chip.embed[mm2 + w]);
+			hd += Long.bitCount(bits);
 		}
 		
 		// bitwise xor of the last word
-		bits = chip.embed[id_1][lastw] | chip.embed[id_1 + 1][lastw];
-		bits = bits ^ (chip.embed[id_2][lastw] | chip.embed[id_2 + 1][lastw]);
+		bits = chip.embed[pm1 + lastw] | chip.embed[mm1 + lastw];
+		bits = bits ^ (chip.embed[pm2 + lastw] | chip.embed[mm2 + lastw]);
 		
 		// clear any unused bits
-		shift = (1 + lastw) * Integer.SIZE - chip.embed_len;
-		bits >>>= shift;
-		bits <<= shift;
+		bits &= chip.embed_last_mask;
 
 		// count the differences in the last word
-		hd += Integer.bitCount(bits);
+		hd += Long.bitCount(bits);
 		
 		return hd;
 	}
@@ -169,40 +189,52 @@ public class LayoutEvaluation
 	public static double conflictDistance (SimpleChip chip, int id_1,
 			int id_2)
 	{
-		int probe_len, embed_len, base_1, base_2, pos, w, bitmask = 0;
+		int probe_len, base_1, base_2, w, o1, o2, z;
+		long bits_1, bits_2, diff, before;
 		double dist = 0;
 		
 		probe_len = chip.getProbeLength();
-		embed_len = chip.getEmbeddingLength();
+		o1 = chip.embeddingOffset(id_1);
+		o2 = chip.embeddingOffset(id_2);
 		base_1 = base_2 = 0;
 
-		for (w = -1, pos = 0; pos < embed_len; pos++)
+		for (w = 0; w < chip.embed_words; w++)
 		{
-			if (pos % Integer.SIZE == 0)
-			{
-				w++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
-			}
-			else
-				bitmask >>>= 1;
+			bits_1 = chip.embed[o1 + w];
+			bits_2 = chip.embed[o2 + w];
 			
-			if ((bitmask & chip.embed[id_1][w]) == 0)
+			// only steps where the embeddings differ generate conflicts
+			diff = bits_1 ^ bits_2;
+			if (w == chip.embed_words - 1) diff &= chip.embed_last_mask;
+			
+			// visit the differing steps from left to right
+			while (diff != 0)
 			{
-				if ((bitmask & chip.embed[id_2][w]) != 0)
+				z = Long.numberOfLeadingZeros(diff);
+				
+				// mask of the steps (of this word) before the current one
+				before = ~(-1L >>> z);
+				
+				if (bits_1 << z >= 0)
 				{
-					base_2++;
-					dist += ConflictIndex.positionWeight(base_1, probe_len);
+					// id_1 is masked while id_2 is unmasked
+					dist += ConflictIndex.positionWeight(
+							base_1 + Long.bitCount(bits_1 & before), probe_len);
 				}
-			}
-			else
-			{
-				base_1++;
-				
-				if ((bitmask & chip.embed[id_2][w]) == 0)
-					dist += ConflictIndex.positionWeight(base_2, probe_len);
 				else
-					base_2++;
+				{
+					// id_1 is unmasked while id_2 is masked
+					dist += ConflictIndex.positionWeight(
+							base_2 + Long.bitCount(bits_2 & before), probe_len);
+				}
+				
+				// clear the step just examined
+				diff &= ~(0x01L << (Long.SIZE - 1 - z));
 			}
+			
+			// count the bases synthesized in this word
+			base_1 += Long.bitCount(bits_1);
+			base_2 += Long.bitCount(bits_2);
 		}
 
 		return dist;
@@ -236,36 +268,38 @@ public class LayoutEvaluation
 	public static double weightedDistance (SimpleChip chip, int id_1,
 			int id_2)
 	{
-		int base = 0, bitmask = 0, w, pos, probe_len;
+		int base = 0, w, o1, o2, z, probe_len;
+		long bits_1, conflicts;
 		double dist = 0;
 		
 		probe_len = chip.getProbeLength();
+		o1 = chip.embeddingOffset(id_1);
+		o2 = chip.embeddingOffset(id_2);
 
-		for (w = -1, pos = 0; pos < chip.getEmbeddingLength(); pos++)
+		for (w = 0; w < chip.embed_words; w++)
 		{
-			if (pos % Integer.SIZE == 0)
-			{
-				// next 4-byte word
-				w++;
-
-				// turn on very last bit of mask only
-				bitmask = 0x01 << (Integer.SIZE - 1);
-			}
+			bits_1 = chip.embed[o1 + w];
 			
-			if ((bitmask & chip.embed[id_1][w]) != 0)
-			{
-				// probe id_1 is unmasked: no conflict comming from id_2
-				base++;
-			}
-			else if ((bitmask & chip.embed[id_2][w]) != 0)
+			// there is a conflict whenever probe id_1 is
+			// masked while probe id_2 is unmasked
+			conflicts = ~bits_1 & chip.embed[o2 + w];
+			if (w == chip.embed_words - 1) conflicts &= chip.embed_last_mask;
+			
+			// visit the conflicting steps from left to right
+			while (conflicts != 0)
 			{
-				// probe id_2 is unmasked: there is a conflict!
-				dist += ConflictIndex.positionWeight(base, probe_len);
+				z = Long.numberOfLeadingZeros(conflicts);
+				
+				// count bases of id_1 synthesized before this step
+				dist += ConflictIndex.positionWeight(base +
+						Long.bitCount(bits_1 & ~(-1L >>> z)), probe_len);
+				
+				// clear the step just examined
+				conflicts &= ~(0x01L << (Long.SIZE - 1 - z));
 			}
 
-			// shift interrogating bit to the right
-			// ('>>>' means a unsigned shift)
-			bitmask >>>= 1;
+			// count the bases synthesized in this word
+			base += Long.bitCount(bits_1);
 		}
 
 		return dist;
@@ -280,10 +314,37 @@ public class LayoutEvaluation
 	}
 	
 	public static void analyzeBorderLength (Chip chip, PrintWriter out)
+	{
+		// border length of each mask
+		printMaskBorderLength (chip, new MaskBitplanes(chip).borderLength(),
+				out);
+	}
+	
+	/**
+	 * Parallel version of {@link #analyzeBorderLength(Chip, PrintWriter)}.
+	 * The bitplanes of the masks are created in bands of rows and their
+	 * border lengths are computed using the given pool (see
+	 * {@link MaskBitplanes#MaskBitplanes(Chip, ForkJoinPool)}). The output is
+	 * identical to the serial version.
+	 * 
+	 * @param chip chip to be analyzed
+	 * @param out output writer
+	 * @param pool fork-join pool used to create and evaluate the bitplanes
+	 */
+	public static void analyzeBorderLength (Chip chip, PrintWriter out,
+			ForkJoinPool pool)
+	{
+		printMaskBorderLength (chip,
+				new MaskBitplanes(chip, pool).borderLength(pool), out);
+	}
+	
+	private static void printMaskBorderLength (Chip chip, long mask_border[],
+			PrintWriter out)
 	{
 		RectangularRegion region;
-		int r, c, id1, id2, w, step, bitmask = 0;
-		int embed_len, num_borders, border;
+		int r, c, id1, w, step;
+		long bitmask = 0, border;
+		int embed_len, num_borders;
 		int b, mbase, mbases[];
 		double norm_bl;
 		
@@ -304,62 +365,23 @@ public class LayoutEvaluation
 				
 				for (b = 0, w = -1, step = 0; b <= mbase; step++)
 				{
-					if (step % Integer.SIZE == 0)
+					if (step % Long.SIZE == 0)
 					{
-						bitmask = 0x01 << (Integer.SIZE - 1);
+						bitmask = 0x01L << (Long.SIZE - 1);
 						w++;
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id1][w] & bitmask) != 0) b++;
+					if ((chip.embed[chip.embeddingOffset(id1) + w] & bitmask) != 0) b++;
 				}
 				
 				mbases[step - 1]++;
 			}		
 		
-		for (w = -1, step = 0; step < embed_len; step++)
+		for (step = 0; step < embed_len; step++)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
-				w++;
-			}
-			else
-				bitmask >>>= 1;
-			
-			// compute current mask's border length
-			border = 0;
-			
-			// first, conflicts in the vertical borders between spots
-			for (r = region.first_row; r <= region.last_row; r ++)
-				for (c = region.first_col; c < region.last_col; c++)
-				{
-					if ((id1 = chip.spot[r][c]) == Chip.EMPTY_SPOT)
-						continue;
-					
-					if ((id2 = chip.spot[r][c + 1]) == Chip.EMPTY_SPOT)
-						continue;
-					
-					if (((chip.embed[id1][w] ^ chip.embed[id2][w])
-							& bitmask) != 0)
-						border++;
-				}
-
-			// now, conflicts in the horizontal borders between spots
-			for (c = region.first_col; c <= region.last_col; c ++)
-				for (r = region.first_row; r < region.last_row; r++)
-				{
-					if ((id1 = chip.spot[r][c]) == Chip.EMPTY_SPOT)
-						continue;
-					
-					if ((id2 = chip.spot[r + 1][c]) == Chip.EMPTY_SPOT)
-						continue;
-					
-					if (((chip.embed[id1][w] ^ chip.embed[id2][w])
-							& bitmask) != 0)
-						border++;
-				}
+			border = mask_border[step];
 			
 			norm_bl = border / (double) num_borders;
 			out.println((step+1) + "\t" + mbases[step] + "\t" + border +
@@ -408,6 +430,45 @@ public class LayoutEvaluation
 		return border;
 	}
 
+	/**
+	 * Parallel version of {@link #borderLength(Chip, RectangularRegion)}. The
+	 * region is split into bands of rows that are evaluated as separate tasks
+	 * of the given fork-join pool.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param region region of the chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return border length of the region
+	 */
+	public static long borderLength (Chip chip, RectangularRegion region,
+			ForkJoinPool pool)
+	{
+		return pool.invoke(new BorderLengthTask(chip, region, null,
+				region.first_row, region.last_row, bandRows(region, pool)))[0];
+	}
+
+	/**
+	 * Computes the border length of each masking step in parallel. The region
+	 * is split into bands of rows that are evaluated as separate tasks of the
+	 * given fork-join pool. The results are the same as those given by a
+	 * {@link BorderLengthTracker}.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param region region of the chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return the border length of each masking step
+	 */
+	public static long[] maskBorderLength (Chip chip, RectangularRegion region,
+			ForkJoinPool pool)
+	{
+		long mask_border[];
+		
+		mask_border = new long [chip.getEmbeddingLength()];
+		
+		return pool.invoke(new BorderLengthTask(chip, region, mask_border,
+				region.first_row, region.last_row, bandRows(region, pool)));
+	}
+
 	public static long borderLength (Chip chip, int row, int col)
 	{
 		int id;
@@ -524,6 +585,154 @@ public class LayoutEvaluation
 		return conf;
 	}
 
+	/**
+	 * Parallel version of {@link #analyzeConflictIndex(Chip)}. The conflict
+	 * indices are computed in bands of rows using the given fork-join pool
+	 * and then reduced in the same order as in the serial version, so that
+	 * the results are identical.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return average conflict index of the chip
+	 */
+	public static double analyzeConflictIndex (Chip chip, ForkJoinPool pool)
+	{
+		RectangularRegion region;
+		double	conf, avg_conf, min_conf, max_conf, ci[][];
+		int		num_probes, min_row, max_row, min_col, max_col;
+		
+		min_conf = Double.POSITIVE_INFINITY;
+		avg_conf = max_conf = 0;
+		min_row = max_row = min_col = max_col = -1;
+		
+		region = chip.getChipRegion();
+		num_probes = chip.getNumberOfProbes();
+		ci = conflictIndex(chip, region, pool);
+		
+		for (int r = region.first_row; r <= region.last_row; r++)
+			for (int c = region.first_col; c <= region.last_col; c++)
+				if (chip.spot[r][c] != Chip.EMPTY_SPOT)
+				{
+					conf = ci[r - region.first_row][c - region.first_col];
+					
+					if (conf < min_conf)
+					{
+						min_conf = conf;
+						min_row = r;
+						min_col = c;
+					}
+					else if (conf > max_conf)
+					{
+						max_conf = conf;
+						max_row = r;
+						max_col = c;
+					}
+					
+					avg_conf += conf / num_probes; 
+				}
+		
+		System.err.println("Min conflict: " + min_conf + "(" + min_row + "," +
+				min_col + ")");
+		System.err.println("Avg conflict: " + avg_conf);
+		System.err.println("Max conflict: " + max_conf + "(" + max_row + "," +
+				max_col + ")");
+		
+		return avg_conf;
+	}
+
+	/**
+	 * Parallel version of {@link #averageConflictIndex(Chip)}. The result is
+	 * identical to the serial version.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return average conflict index of the chip
+	 */
+	public static double averageConflictIndex (Chip chip, ForkJoinPool pool)
+	{
+		RectangularRegion region;
+		double	conf = 0, ci[][];
+		int		num_probes;
+		
+		region = chip.getChipRegion();
+		num_probes = chip.getNumberOfProbes();
+		ci = conflictIndex(chip, region, pool);
+		
+		for (int r = region.first_row; r <= region.last_row; r++)
+			for (int c = region.first_col; c <= region.last_col; c++)
+				if (chip.spot[r][c] != Chip.EMPTY_SPOT)
+					conf += ci[r - region.first_row][c - region.first_col] /
+								num_probes;
+		
+		return conf;
+	}
+
+	/**
+	 * Parallel version of {@link #totalConflictIndex(Chip)}. The result is
+	 * identical to the serial version.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return total conflict index of the chip
+	 */
+	public static double totalConflictIndex (Chip chip, ForkJoinPool pool)
+	{
+		return totalConflictIndex(chip, chip.getChipRegion(), pool);
+	}
+
+	/**
+	 * Parallel version of {@link #totalConflictIndex(Chip, RectangularRegion)}.
+	 * The result is identical to the serial version.
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param region region of the chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return total conflict index of the region
+	 */
+	public static double totalConflictIndex (Chip chip, RectangularRegion
+			region, ForkJoinPool pool)
+	{
+		double	conf = 0, ci[][];
+		
+		ci = conflictIndex(chip, region, pool);
+		
+		for (int r = region.first_row; r <= region.last_row; r++)
+			for (int c = region.first_col; c <= region.last_col; c++)
+				if (chip.spot[r][c] != Chip.EMPTY_SPOT)
+					conf += ci[r - region.first_row][c - region.first_col];
+		
+		return conf;
+	}
+
+	/**
+	 * Computes the conflict index of every spot of a region in parallel. The
+	 * region is split into bands of rows that are evaluated as separate tasks
+	 * of the given fork-join pool. Empty spots have a conflict index of zero.
+	 * 
+	 * <P>Note that the conflict indices are not summed by the tasks. Instead,
+	 * the caller should reduce the returned matrix in a fixed order, so that
+	 * the result does not depend on how the tasks were scheduled.</P>
+	 * 
+	 * @param chip chip to be evaluated
+	 * @param region region of the chip to be evaluated
+	 * @param pool fork-join pool used to evaluate the bands
+	 * @return matrix with the conflict index of each spot, relative to the
+	 * top-left corner of the region
+	 */
+	public static double[][] conflictIndex (Chip chip, RectangularRegion region,
+			ForkJoinPool pool)
+	{
+		double ci[][];
+		
+		ci = new double [region.last_row - region.first_row + 1]
+		                [region.last_col - region.first_col + 1];
+		
+		pool.invoke(new ConflictIndexTask(chip, region, ci,
+				region.first_row, region.last_row, bandRows(region, pool)));
+		
+		return ci;
+	}
+
 	/**
 	 * Computes the conflict index of a spot. If the spot is empty, its confict
 	 * index is zero. Otherwise, this method calls the
@@ -559,12 +768,12 @@ public class LayoutEvaluation
 	{
 		RectangularRegion	region;
 		double	conf, posw;
-		int		ci_dim, embed_len, probe_len, r, c, step;
-		int		word, base, bitmask = 0;
+		int		ci_dim, probe_len, r, c, id, off, z;
+		int		word, base;
+		long	bits, masked, bitmask;
 
 		ci_dim = ConflictIndex.dimConflictRegion();
 		region = chip.getChipRegion();
-		embed_len = chip.getEmbeddingLength();
 		probe_len = chip.getProbeLength();
 
 		// define region around the spot that needs to be examined
@@ -575,52 +784,273 @@ public class LayoutEvaluation
 		
 		conf = 0;
 
-		for (base = 0, step = 0, word = - 1; step < embed_len; step++)
+		off = chip.embeddingOffset(pid);
+
+		for (base = 0, word = 0; word < chip.embed_words; word++)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				word++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
-			}
-			else
-				bitmask >>>= 1;
+			bits = chip.embed[off + word];
+
+			// only masked steps can suffer conflicts (light directed to
+			// neighboring spots cannot cause any damage to unmasked steps)
+			masked = ~bits;
+			if (word == chip.embed_words - 1) masked &= chip.embed_last_mask;
 
-			// check the state of the embedding
-			// at the current masking step
-			if ((chip.embed[pid][word] & bitmask) != 0)
+			// visit the masked steps from left to right
+			while (masked != 0)
 			{
-				// spot is in an unmasked step
-				// (a nucleotide is being synthesized)
+				z = Long.numberOfLeadingZeros(masked);
+				bitmask = 0x01L << (Long.SIZE - 1 - z);
+				masked &= ~bitmask;
 
-				// increment the number of synthesized bases
-				base++;
+				// compute position multiplier (a conflict would harm the
+				// next nucleotide to be synthesized); the number of bases
+				// synthesized so far is given by the unmasked steps before
+				// the current one
+				posw = ConflictIndex.positionWeight (base +
+							Long.bitCount(bits & ~(-1L >>> z)), probe_len);
 
-				// no conflict in this step (light directed to
-				// neighboring spots cannot cause any damage here)
-				continue;
+				for (r = min_row; r <= max_row; r++)
+				{
+					for (c = min_col; c <= max_col; c++)
+					{
+						// skip if neighbor is empty
+						if ((id = chip.spot[r][c]) == Chip.EMPTY_SPOT)
+							continue;
+
+						// conflict only when neighbor is unmasked
+						if ((chip.embed[chip.embeddingOffset(id) + word]
+								& bitmask) == 0)
+							continue;
+
+						conf += posw *
+								ConflictIndex.distanceWeight(r,c, row, col);
+					}
+				}
 			}
 
-			// masked step: compute position multiplier (a conflict
-			// would harm the next nucleotide to be synthesized)
-			posw = ConflictIndex.positionWeight (base, probe_len);
+			// count the bases synthesized in this word
+			base += Long.bitCount(bits);
+		}
+
+		return conf;
+	}
 
-			for (r = min_row; r <= max_row; r++)
+	/**
+	 * Counts the conflicts between two neighboring spots in each masking step,
+	 * i.e. the steps in which the embeddings of the probes differ. The count
+	 * of each of these steps is incremented by the given amount.
+	 * 
+	 * @param chip chip containing the probes
+	 * @param id_1 ID of first probe
+	 * @param id_2 ID of second probe
+	 * @param mask_border border length of each masking step
+	 * @param inc amount added to the count of each step
+	 * @return number of masking steps that the embeddings differ 
+	 */
+	static int maskConflicts (Chip chip, int id_1, int id_2,
+			long mask_border[], int inc)
+	{
+		int w, o1, o2, z, base, hd = 0;
+		long bits;
+		
+		o1 = chip.embeddingOffset(id_1);
+		o2 = chip.embeddingOffset(id_2);
+		
+		for (w = 0, base = 0; w < chip.embed_words; w++, base += Long.SIZE)
+		{
+			bits = chip.embed[o1 + w] ^ chip.embed[o2 + w];
+			
+			// clear any unused bits of the last word
+			if (w == chip.embed_words - 1)
+				bits &= chip.embed_last_mask;
+			
+			hd += Long.bitCount(bits);
+			
+			// visit the steps where the embeddings differ
+			while (bits != 0)
+			{
+				z = Long.numberOfLeadingZeros(bits);
+				mask_border[base + z] += inc;
+				bits &= ~(0x01L << (Long.SIZE - 1 - z));
+			}
+		}
+		
+		return hd;
+	}
+	
+	/**
+	 * Returns the number of rows of the bands in which a region is split when
+	 * evaluated in parallel (a few bands per worker thread of the pool).
+	 */
+	private static int bandRows (RectangularRegion region, ForkJoinPool pool)
+	{
+		int rows;
+		
+		rows = region.last_row - region.first_row + 1;
+		
+		return Math.max(rows / (4 * pool.getParallelism()), MIN_BAND_ROWS);
+	}
+	
+	/**
+	 * Computes the border length of a band of rows. A band is responsible for
+	 * the horizontal borders between its spots and the vertical borders
+	 * between the spots of its rows and the spots of the row below (unless it
+	 * is the last row of the region). If the array of mask border lengths is
+	 * not null, the border length of each masking step is also computed. The
+	 * partial counts of the two halves of a split band are added in a fixed
+	 * order; since they are integers, the result is exact.
+	 */
+	private static class BorderLengthTask extends RecursiveTask<long[]>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Chip chip;
+		
+		private RectangularRegion region;
+		
+		private long mask_border[];
+		
+		private int first_row;
+		
+		private int last_row;
+		
+		private int band;
+		
+		BorderLengthTask (Chip chip, RectangularRegion region,
+				long mask_border[], int first_row, int last_row, int band)
+		{
+			this.chip = chip;
+			this.region = region;
+			this.mask_border = mask_border;
+			this.first_row = first_row;
+			this.last_row = last_row;
+			this.band = band;
+		}
+		
+		@Override
+		protected long[] compute ()
+		{
+			BorderLengthTask top, bottom;
+			long res_top[], res_bottom[];
+			int mid;
+			
+			if (last_row - first_row + 1 <= band)
+				return computeBand();
+			
+			mid = (first_row + last_row) >>> 1;
+			
+			// the bottom half counts its masks in a separate array
+			top = new BorderLengthTask (chip, region, mask_border,
+								first_row, mid, band);
+			bottom = new BorderLengthTask (chip, region, mask_border == null ?
+					null : new long [mask_border.length], mid + 1, last_row,
+					band);
+			
+			bottom.fork();
+			res_top = top.compute();
+			res_bottom = bottom.join();
+			
+			if (mask_border == null)
 			{
-				for (c = min_col; c <= max_col; c++)
+				res_top[0] += res_bottom[0];
+				return res_top;
+			}
+			
+			for (int step = 0; step < mask_border.length; step++)
+				mask_border[step] += res_bottom[step];
+			
+			return mask_border;
+		}
+		
+		private long[] computeBand ()
+		{
+			long border = 0;
+			int r, c, id1, id2;
+			
+			for (r = first_row; r <= last_row; r++)
+				for (c = region.first_col; c <= region.last_col; c++)
 				{
-					// skip if neighbor is empty
-					if (chip.spot[r][c] == Chip.EMPTY_SPOT)
-						continue;
-
-					// conflict only when neighbor is unmasked
-					if ((chip.embed[chip.spot[r][c]][word] & bitmask) == 0)
+					if ((id1 = chip.spot[r][c]) == Chip.EMPTY_SPOT)
 						continue;
-
-					conf += posw * ConflictIndex.distanceWeight(r,c, row, col);
+					
+					// right neighbor
+					if (c < region.last_col)
+						if ((id2 = chip.spot[r][c + 1]) != Chip.EMPTY_SPOT)
+							border += count(id1, id2);
+					
+					// bottom neighbor
+					if (r < region.last_row)
+						if ((id2 = chip.spot[r + 1][c]) != Chip.EMPTY_SPOT)
+							border += count(id1, id2);
 				}
+			
+			if (mask_border != null)
+				return mask_border;
+			
+			return new long [] {border};
+		}
+		
+		private int count (int id1, int id2)
+		{
+			if (mask_border == null)
+				return hammingDistanceSpots(chip, id1, id2);
+			
+			return maskConflicts(chip, id1, id2, mask_border, 1);
+		}
+	}
+	
+	/**
+	 * Computes the conflict index of every spot of a band of rows.
+	 */
+	private static class ConflictIndexTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Chip chip;
+		
+		private RectangularRegion region;
+		
+		private double ci[][];
+		
+		private int first_row;
+		
+		private int last_row;
+		
+		private int band;
+		
+		ConflictIndexTask (Chip chip, RectangularRegion region, double ci[][],
+				int first_row, int last_row, int band)
+		{
+			this.chip = chip;
+			this.region = region;
+			this.ci = ci;
+			this.first_row = first_row;
+			this.last_row = last_row;
+			this.band = band;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			int mid, id;
+			
+			if (last_row - first_row + 1 > band)
+			{
+				mid = (first_row + last_row) >>> 1;
+				
+				invokeAll (new ConflictIndexTask(chip, region, ci,
+									first_row, mid, band),
+						   new ConflictIndexTask(chip, region, ci,
+									mid + 1, last_row, band));
+				return;
 			}
+			
+			for (int r = first_row; r <= last_row; r++)
+				for (int c = region.first_col; c <= region.last_col; c++)
+					if ((id = chip.spot[r][c]) != Chip.EMPTY_SPOT)
+						ci[r - region.first_row][c - region.first_col] =
+							conflictIndex(chip, r, c, id);
 		}
-
-		return conf;
 	}
 }
+
@@ -111,32 +111,33 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	 */
 	void reembedProbe (SimpleChip chip, int probe_id, int shift)
 	{
-	int oldmask = 0, newmask, oldint, oldpos, newint, newpos = shift - 1;
-	int[] newembedding = new int[chip.embed[probe_id].length];
+	int oldint, oldpos, newint, newpos = shift - 1;
+	long oldmask = 0, newmask;
+	long[] newembedding = new long[chip.embed_words];
 		
-    for (newint = 0; newint < chip.embed[probe_id].length; newint++)
+    for (newint = 0; newint < chip.embed_words; newint++)
                        newembedding[newint] = 0;
 
-	newmask = 0x01 << ((Integer.SIZE)-(shift % Integer.SIZE));
-	newint = (int) Math.floor((double) newpos/Integer.SIZE);
+	newmask = 0x01L << ((Long.SIZE)-(shift % Long.SIZE));
+	newint = (int) Math.floor((double) newpos/Long.SIZE);
 	
 	for (oldint = -1, oldpos =0; oldpos < chip.embed_len; oldpos++)
 	{	
-		if (oldpos % Integer.SIZE == 0)
+		if (oldpos % Long.SIZE == 0)
 		{	
 			oldint ++;
-			oldmask=0x01 << (Integer.SIZE-1);
+			oldmask=0x01L << (Long.SIZE-1);
 		}
 
-		if (((chip.embed[probe_id][oldint]) &  oldmask) != 0)
+		if (((chip.embed[chip.embeddingOffset(probe_id) + oldint]) &  oldmask) != 0)
 		{
 			
 			while (++newpos < chip.dep_seq.length)
 			{
-				if (newpos % Integer.SIZE == 0)
+				if (newpos % Long.SIZE == 0)
 				{
 					newint++;
-					newmask = 0x01 << (Integer.SIZE-1);
+					newmask = 0x01L << (Long.SIZE-1);
 				}
 				else
 					newmask >>>=1;
@@ -156,8 +157,8 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		oldmask >>>=1;
 	}
 
-	// overwrite old with new values - newembedding.length == embed.[probe_id].length
-	System.arraycopy(newembedding,0,chip.embed[probe_id],0,chip.embed[probe_id].length);
+	// overwrite old with new values - newembedding.length == chip.embed_words
+	System.arraycopy(newembedding,0,chip.embed,chip.embeddingOffset(probe_id),chip.embed_words);
 	
 		// to do:
 
@@ -185,38 +186,39 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	 */
 	void reembedProbe (AffymetrixChip chip, int probe_id, int shift)
 	{
-	int oldmask = 0, newmask = 0x01 << (Integer.SIZE-shift%Integer.SIZE), oldint = -1, oldpos = 0, newint, newpos = shift - 1;
+	int oldint = -1, oldpos = 0, newint, newpos = shift - 1;
+	long oldmask = 0, newmask = 0x01L << (Long.SIZE-shift%Long.SIZE);
 	int basenumber = 0;
-	int[] newembedding = new int[chip.embed[probe_id].length];
+	long[] newembedding = new long[chip.embed_words];
 	boolean middle_synthesized = false, compl_synthesized = false;
 	char compl = 'A'; //can be replaced if an appropriate method for returning the complement of a given base in class Chip exists
 
     //turn all bits off
-	for (newint = 0; newint < chip.embed[probe_id].length; newint++)
+	for (newint = 0; newint < chip.embed_words; newint++)
                        newembedding[newint] = 0;
 	
-	newmask = 0x01 << ((Integer.SIZE-1)-(newpos % Integer.SIZE));
-	newint = (int) Math.floor((double) newpos/Integer.SIZE);
+	newmask = 0x01L << ((Long.SIZE-1)-(newpos % Long.SIZE));
+	newint = (int) Math.floor((double) newpos/Long.SIZE);
 		
 	// synthesize up to 12th base
 	while (basenumber < AffymetrixChip.AFFY_MIDDLE_BASE - 1)
 	{
 
-        if (oldpos % Integer.SIZE == 0)
+        if (oldpos % Long.SIZE == 0)
 		{	
 			oldint++;
-			oldmask=0x01 << (Integer.SIZE-1);
+			oldmask=0x01L << (Long.SIZE-1);
 		}
 		
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (++newpos < chip.dep_seq.length)
 			{
-				if (newpos % Integer.SIZE == 0)
+				if (newpos % Long.SIZE == 0)
 				{
 					newint++;
-					newmask = 0x01 << (Integer.SIZE-1);
+					newmask = 0x01L << (Long.SIZE-1);
 				}
 				else
 					newmask >>>=1;
@@ -241,21 +243,21 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 
 	while (!middle_synthesized)
 	{
-        if (oldpos % Integer.SIZE == 0)
+        if (oldpos % Long.SIZE == 0)
 		{	
 			oldint++;
-			oldmask=0x01 << (Integer.SIZE-1);
+			oldmask=0x01L << (Long.SIZE-1);
 		}
 
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (++newpos < chip.dep_seq.length)
 			{
-				if (newpos % Integer.SIZE == 0)
+				if (newpos % Long.SIZE == 0)
 				{
 					newint++;
-					newmask = 0x01 << (Integer.SIZE-1);
+					newmask = 0x01L << (Long.SIZE-1);
 				}
 				else
 					newmask >>>=1;
@@ -304,10 +306,10 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		{
            			throw new IllegalArgumentException ("Unable to reembed probe.");
 		}
-		if (newpos % Integer.SIZE == 0)
+		if (newpos % Long.SIZE == 0)
 		{
 			newint++;
-			newmask = 0x01 << (Integer.SIZE-1);
+			newmask = 0x01L << (Long.SIZE-1);
 		}
 		else
 			newmask >>>=1;
@@ -319,21 +321,21 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	
 	while (basenumber < AffymetrixChip.AFFY_PROBE_LENGTH)
 	{
-	    if (oldpos % Integer.SIZE == 0)
+	    if (oldpos % Long.SIZE == 0)
 		{	
 			oldint++;
-			oldmask=0x01 << (Integer.SIZE-1);
+			oldmask=0x01L << (Long.SIZE-1);
 		}
 		
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (++newpos < chip.dep_seq.length)
 			{
-				if (newpos % Integer.SIZE == 0)
+				if (newpos % Long.SIZE == 0)
 				{
 					newint++;
-					newmask = 0x01 << (Integer.SIZE-1);
+					newmask = 0x01L << (Long.SIZE-1);
 				}
 				else
 					newmask >>>=1;
@@ -354,7 +356,7 @@ public class LeftMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		oldpos++;
 		oldmask >>>= 1;
 	}
-	System.arraycopy(newembedding,0,chip.embed[probe_id],0,chip.embed[probe_id].length);
+	System.arraycopy(newembedding,0,chip.embed,chip.embeddingOffset(probe_id),chip.embed_words);
 	
 	
 
@@ -0,0 +1,468 @@
+/*
+ * MaskBitplanes.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+import arrayopt.util.BMPFile;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * This class provides a transposed (bit-sliced) view of a chip's layout. While
+ * the chip stores, for each probe, one bit per masking step (see
+ * {@link Chip#embed}), this view stores, for each masking step, one bit per
+ * spot of the chip. In other words, each masking step is represented by a
+ * bitplane (a bitmap of the chip's grid) indicating which spots are unmasked
+ * in that step.
+ * 
+ * <P>Each bitplane is stored in row-major order: each row of the grid occupies
+ * {@link #getRowWords()} consecutive long words, the first column being the
+ * most significant bit of the first word. Unused bits at the end of each row
+ * are always zero. All bitplanes are stored contiguously in a single array.
+ * An extra bitplane marks the spots that are occupied by a probe, i.e. that
+ * are not empty.</P>
+ * 
+ * <P>The view is a snapshot of the chip at the time it was created; later
+ * changes to the chip are not reflected. It makes computations that are
+ * naturally done per masking step much faster. For instance, the border
+ * length of a mask is obtained by XOR-ing each row with itself shifted by one
+ * column (horizontal borders) and with the next row (vertical borders), and
+ * then counting the bits that are set.</P>
+ * 
+ * <P>Both the creation of the bitplanes and the computation of the border
+ * length of every mask can be executed on a fork-join pool. The bitplanes
+ * are then filled in bands of rows (each band writes only its own words), and
+ * the masks are evaluated independently of each other.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class MaskBitplanes
+{
+	/**
+	 * Number of rows of the chip.
+	 */
+	private int num_rows;
+	
+	/**
+	 * Number of columns of the chip.
+	 */
+	private int num_cols;
+	
+	/**
+	 * Number of masking steps.
+	 */
+	private int embed_len;
+	
+	/**
+	 * Number of long words used to store one row of a bitplane.
+	 */
+	private int row_words;
+	
+	/**
+	 * Number of long words used to store one bitplane.
+	 */
+	private int plane_words;
+	
+	/**
+	 * Bitplanes of all masking steps, stored contiguously.
+	 */
+	private long plane[];
+	
+	/**
+	 * Bitplane of the occupied (non-empty) spots.
+	 */
+	private long occupied[];
+	
+	/**
+	 * Minimum number of rows filled by a task when the bitplanes are created
+	 * in parallel.
+	 */
+	private static final int MIN_BAND_ROWS = 4;
+	
+	/**
+	 * Creates the bitplanes of all masking steps of a chip.
+	 * 
+	 * @param chip chip instance
+	 */
+	public MaskBitplanes (Chip chip)
+	{
+		init (chip);
+		
+		fillRows (chip, 0, num_rows - 1);
+	}
+	
+	/**
+	 * Creates the bitplanes of all masking steps of a chip using a fork-join
+	 * pool. The rows of the chip are split into bands that are filled as
+	 * separate tasks. The result is identical to the one obtained with
+	 * {@link #MaskBitplanes(Chip)}.
+	 * 
+	 * @param chip chip instance
+	 * @param pool fork-join pool used to fill the bands
+	 */
+	public MaskBitplanes (Chip chip, ForkJoinPool pool)
+	{
+		int band;
+		
+		init (chip);
+		
+		band = Math.max(num_rows / (4 * pool.getParallelism()), MIN_BAND_ROWS);
+		
+		if (num_rows > 0)
+			pool.invoke(new FillTask (chip, 0, num_rows - 1, band));
+	}
+	
+	private void init (Chip chip)
+	{
+		this.num_rows = chip.getNumberOfRows();
+		this.num_cols = chip.getNumberOfColumns();
+		this.embed_len = chip.getEmbeddingLength();
+		this.row_words = (num_cols + Long.SIZE - 1) / Long.SIZE;
+		this.plane_words = num_rows * row_words;
+		this.plane = new long [embed_len * plane_words];
+		this.occupied = new long [plane_words];
+	}
+	
+	/**
+	 * Copies the embeddings of the spots of a range of rows to the bitplanes.
+	 */
+	private void fillRows (Chip chip, int first_row, int last_row)
+	{
+		int r, c, id, o, w, z, step, pos;
+		long bits, colmask;
+		
+		for (r = first_row; r <= last_row; r++)
+			for (c = 0; c < num_cols; c++)
+			{
+				if ((id = chip.spot[r][c]) == Chip.EMPTY_SPOT)
+					continue;
+				
+				// position of the spot in a bitplane
+				pos = r * row_words + c / Long.SIZE;
+				colmask = 0x01L << (Long.SIZE - 1 - (c % Long.SIZE));
+				
+				occupied[pos] |= colmask;
+				
+				o = chip.embeddingOffset(id);
+				
+				// copy the unmasked steps of the embedding to the bitplanes
+				for (w = 0; w < chip.embed_words; w++)
+				{
+					bits = chip.embed[o + w];
+					
+					while (bits != 0)
+					{
+						z = Long.numberOfLeadingZeros(bits);
+						step = w * Long.SIZE + z;
+						plane[step * plane_words + pos] |= colmask;
+						bits &= ~(0x01L << (Long.SIZE - 1 - z));
+					}
+				}
+			}
+	}
+	
+	/**
+	 * Returns the number of masking steps (bitplanes).
+	 * 
+	 * @return number of masking steps
+	 */
+	public int getNumberOfSteps ()
+	{
+		return embed_len;
+	}
+	
+	/**
+	 * Returns the number of long words used to store each row of a bitplane.
+	 * 
+	 * @return number of words per row
+	 */
+	public int getRowWords ()
+	{
+		return row_words;
+	}
+	
+	/**
+	 * Returns true if the spot is empty.
+	 * 
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @return true if the spot is empty, false otherwise
+	 */
+	public boolean isEmpty (int row, int col)
+	{
+		return (occupied[row * row_words + col / Long.SIZE] &
+				(0x01L << (Long.SIZE - 1 - (col % Long.SIZE)))) == 0;
+	}
+	
+	/**
+	 * Returns true if the spot is unmasked at the given masking step. Empty
+	 * spots are never unmasked.
+	 * 
+	 * @param step masking step
+	 * @param row row of the spot
+	 * @param col column of the spot
+	 * @return true if the spot is unmasked, false otherwise
+	 */
+	public boolean isUnmasked (int step, int row, int col)
+	{
+		return (plane[step * plane_words + row * row_words + col / Long.SIZE]
+				& (0x01L << (Long.SIZE - 1 - (col % Long.SIZE)))) != 0;
+	}
+	
+	/**
+	 * Computes the border length of a mask, i.e. the number of borders between
+	 * two non-empty neighboring spots where one spot is masked and the other is
+	 * unmasked.
+	 * 
+	 * @param step masking step
+	 * @return border length of the mask
+	 */
+	public long borderLength (int step)
+	{
+		long border = 0, bits, next, occ, occ_next;
+		int r, w, p, o;
+		
+		p = step * plane_words;
+		
+		for (r = 0; r < num_rows; r++)
+		{
+			for (w = 0; w < row_words; w++)
+			{
+				o = r * row_words + w;
+				bits = plane[p + o];
+				occ = occupied[o];
+				
+				// horizontal borders: compare each column with the next one
+				// (the first bit of the next word becomes the last bit)
+				if (w + 1 < row_words)
+				{
+					next = (bits << 1) | (plane[p + o + 1] >>> (Long.SIZE - 1));
+					occ_next = (occ << 1) | (occupied[o + 1] >>> (Long.SIZE - 1));
+				}
+				else
+				{
+					next = bits << 1;
+					occ_next = occ << 1;
+				}
+				
+				border += Long.bitCount((bits ^ next) & occ & occ_next);
+				
+				// vertical borders: compare with the same word of the next row
+				if (r + 1 < num_rows)
+				{
+					next = plane[p + o + row_words];
+					occ_next = occupied[o + row_words];
+					
+					border += Long.bitCount((bits ^ next) & occ & occ_next);
+				}
+			}
+		}
+		
+		return border;
+	}
+	
+	/**
+	 * Computes the border length of every mask.
+	 * 
+	 * @return the border length of each masking step
+	 */
+	public long[] borderLength ()
+	{
+		long border[] = new long [embed_len];
+		
+		for (int step = 0; step < embed_len; step++)
+			border[step] = borderLength(step);
+		
+		return border;
+	}
+	
+	/**
+	 * Computes the border length of every mask using a fork-join pool. The
+	 * masking steps are split into ranges evaluated as separate tasks.
+	 * 
+	 * @param pool fork-join pool used to evaluate the masks
+	 * @return the border length of each masking step
+	 */
+	public long[] borderLength (ForkJoinPool pool)
+	{
+		long border[] = new long [embed_len];
+		
+		if (embed_len > 0)
+			pool.invoke(new BorderLengthTask (border, 0, embed_len - 1));
+		
+		return border;
+	}
+	
+	/**
+	 * Generates a Bitmap representation of a mask. The output is identical to
+	 * the one produced by {@link Chip#writeMaskBMP(int, OutputStream)}, but
+	 * each row is written at once from the bitplane. 
+	 * 
+	 * @param step synthesis step 
+	 * @param out output stream (which is closed at the end)
+	 * @throws IOException if an error occurs while writing on the stream
+	 */
+	public void writeMaskBMP (int step, OutputStream out) throws IOException
+	{
+		BMPFile bmp;
+		byte[]	empty, masked, unmasked, color, line;
+		int		r, c, i, o, p;
+		long	colmask;
+		
+		p = step * plane_words;
+		
+		// start BMP file
+		bmp = new BMPFile (num_rows, num_cols, out);
+		bmp.writeHeader();
+		
+		// get colors
+		masked   = BMPFile.getRGBColor (0x606060);
+		unmasked = BMPFile.getRGBColor (0xC0C0C0);
+		empty    = BMPFile.getRGBColor (0xFFFFFF);
+		
+		line = new byte [3 * num_cols];
+		
+		// note that lines are printed from last to first
+		for (r = num_rows - 1; r >= 0; r--)
+		{
+			for (c = 0, i = 0; c < num_cols; c++)
+			{
+				o = r * row_words + c / Long.SIZE;
+				colmask = 0x01L << (Long.SIZE - 1 - (c % Long.SIZE));
+				
+				if ((occupied[o] & colmask) == 0)
+					color = empty;
+				else if ((plane[p + o] & colmask) == 0)
+					color = masked;
+				else
+					color = unmasked;
+				
+				line[i++] = color[0];
+				line[i++] = color[1];
+				line[i++] = color[2];
+			}
+			
+			out.write(line);
+			bmp.finishRow();
+		}
+		
+		out.flush();
+		out.close();
+	}
+	
+	/**
+	 * Fills the bitplanes of a band of rows. Since each row occupies its own
+	 * words in every bitplane, bands can be filled concurrently.
+	 */
+	private class FillTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Chip chip;
+		
+		private int first_row;
+		
+		private int last_row;
+		
+		private int band;
+		
+		FillTask (Chip chip, int first_row, int last_row, int band)
+		{
+			this.chip = chip;
+			this.first_row = first_row;
+			this.last_row = last_row;
+			this.band = band;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			int mid;
+			
+			if (last_row - first_row + 1 <= band)
+			{
+				fillRows (chip, first_row, last_row);
+				return;
+			}
+			
+			mid = (first_row + last_row) >>> 1;
+			
+			invokeAll (new FillTask (chip, first_row, mid, band),
+					   new FillTask (chip, mid + 1, last_row, band));
+		}
+	}
+	
+	/**
+	 * Computes the border length of a range of masking steps.
+	 */
+	private class BorderLengthTask extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private long border[];
+		
+		private int first_step;
+		
+		private int last_step;
+		
+		BorderLengthTask (long border[], int first_step, int last_step)
+		{
+			this.border = border;
+			this.first_step = first_step;
+			this.last_step = last_step;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			int mid;
+			
+			if (first_step == last_step)
+			{
+				border[first_step] = borderLength(first_step);
+				return;
+			}
+			
+			mid = (first_step + last_step) >>> 1;
+			
+			invokeAll (new BorderLengthTask (border, first_step, mid),
+					   new BorderLengthTask (border, mid + 1, last_step));
+		}
+	}
+}
@@ -68,6 +68,12 @@ import arrayopt.util.QuickSort;
  * exceed a percentage of the total number of probes defined by the
  * {@link #MIN_PERCENTAGE_PIVOTS} constant.</P>
  * 
+ * <P><B>Parallel mode</B>. The partitioning does not depend on how the final
+ * sub-regions are filled, since each sub-region is filled with its own set of
+ * probes. In parallel mode, the whole partitioning is done first, and the
+ * final sub-regions are then filled in parallel by {@link ParallelFilling},
+ * each worker using its own copy of the filling algorithm.</P>
+ * 
  * @author Anna Domanski
  * @author Ronny Gaertner
  * @author Sergio A. de Carvalho Jr.
@@ -104,13 +110,6 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 
 	private int pid[];
 
-	/**
-	 * TODO use this to speed up the selection of pivots by computing the
-	 * number of embedding of every probe at once, storing the results on this
-	 * array sorting the probes by the number of embeddings
-	 */
-	// private long num_embed[];
-
 	private double dist[];
 
 	private int offset;
@@ -119,6 +118,16 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 
 	private int rows_per_probe;
 	
+	/**
+	 * Whether the final sub-regions are filled in parallel.
+	 */
+	private boolean parallel;
+	
+	/**
+	 * Final sub-regions waiting to be filled (parallel mode only).
+	 */
+	private ParallelFilling<FillingAlgorithm> leaves;
+	
 	/**
 	 * Creates an instance of the Pivot Partitioning algorithm with the
 	 * specified filling algorithm, minimization mode and maximum partitioning
@@ -129,6 +138,22 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	 * @param max_depth maximum partitioning depth
 	 */
 	public NewPivotPartitioning (FillingAlgorithm filler, int mode, int max_depth)
+	{
+		this(filler, mode, max_depth, false);
+	}
+
+	/**
+	 * Creates an instance of the Pivot Partitioning algorithm with the
+	 * specified filling algorithm, minimization mode and maximum partitioning
+	 * depth, optionally filling the final sub-regions in parallel.
+	 * 
+	 * @param filler filling algorithm used in the final sub-regions
+	 * @param mode minimization mode
+	 * @param max_depth maximum partitioning depth
+	 * @param parallel whether to fill the final sub-regions in parallel
+	 */
+	public NewPivotPartitioning (FillingAlgorithm filler, int mode,
+			int max_depth, boolean parallel)
 	{
 		switch (mode)
 		{
@@ -148,6 +173,7 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 		
 		this.filler = filler;
 		this.max_depth = max_depth;
+		this.parallel = parallel;
 	}
 
 	/**
@@ -193,8 +219,34 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 		pivot1 = new float[probe_len];
 		pivot2 = new float[probe_len];
 		
+		if (!parallel)
+		{
+			horizontalDivide (1, chip.getChipRegion(), 0, pivots - 1, pivots,
+				pid.length - 1);
+			return;
+		}
+		
+		// partition the chip, collecting the final sub-regions
+		this.leaves = new ParallelFilling<FillingAlgorithm> (chip, filler)
+		{
+			FillingAlgorithm newWorker ()
+			{
+				return filler.clone();
+			}
+			
+			int fillLeaf (FillingAlgorithm f, RectangularRegion r, int range[])
+			{
+				return fillRegion (f, r, range[0], range[1], range[2],
+						range[3]);
+			}
+		};
+		
 		horizontalDivide (1, chip.getChipRegion(), 0, pivots - 1, pivots,
 			pid.length - 1);
+		
+		leaves.fillLeaves ();
+		
+		this.leaves = null;
 	}
 	
 	private int selectPivots ()
@@ -212,13 +264,13 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 		// (or 2 in case of Affymetrix chips since the middle bases of PM/MM
 		// pairs usually have some degree of freedom); pivots with more than 2
 		// possible embeddings are considered 'fake' pivots
-		if (ospe.numberOfEmbeddings(pid[0]) > 2)
+		if (chip.numberOfEmbeddings(pid[0]) > 2)
 		{
 			// yes: we call these probes as 'fake' pivots
 			start_fake = 0;
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[0]);
+			long noe = chip.numberOfEmbeddings(pid[0]);
 			System.err.println(num_pivots + " fake pivots selected => noe: " + noe);
 		}
 		else
@@ -228,7 +280,7 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 			start_fake = num_pivots;
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[0]);
+			long noe = chip.numberOfEmbeddings(pid[0]);
 			System.err.println(num_pivots + " true pivots selected => noe: " + noe);
 		}
 		
@@ -245,7 +297,7 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 			num_pivots = findPivots (num_pivots, end);
 			
 			// TODO remove this
-			long noe = ospe.numberOfEmbeddings(pid[num_pivots - 1]);
+			long noe = chip.numberOfEmbeddings(pid[num_pivots - 1]);
 			System.err.println("Pivot list extended to " + num_pivots + " => noe: " + noe);
 		}
 		
@@ -281,12 +333,12 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 		int i, border, tmp;
 		long noe, min;
 		
-		min = ospe.numberOfEmbeddings(pid[start]);
+		min = chip.numberOfEmbeddings(pid[start]);
 		
 		// select probes with the lowest number of embeddings as pivots
 		for (border = start + 1, i = border; i <= end; i++)
 		{
-			if ((noe = ospe.numberOfEmbeddings(pid[i])) == min)
+			if ((noe = chip.numberOfEmbeddings(pid[i])) == min)
 			{
 				tmp = pid[border];
 				pid[border] = pid[i];
@@ -1040,17 +1092,18 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	
 	private void makePseudoPivots (int f_pivot, int p_pivot, int l_pivot)
 	{
-		int i, pos, w, bitmask = 0;
+		int i, pos, w;
+		long bitmask = 0;
 		
 		p1_count = p_pivot - f_pivot;
 		p2_count = l_pivot - p_pivot + 1;
 		
 		for (w = -1, pos = 0; pos < probe_len; pos++)
 		{
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
 				w++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 				bitmask >>>= 1;
@@ -1058,11 +1111,11 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 			pivot1[pos] = pivot1[pos] = 0;
 			
 			for (i = f_pivot; i < p_pivot; i++)
-				if ((chip.embed[pid[i]][w] & bitmask) != 0)
+				if ((chip.embed[chip.embeddingOffset(pid[i]) + w] & bitmask) != 0)
 					pivot1[pos]++;
 			
 			for (; i <= l_pivot; i++)
-				if ((chip.embed[pid[i]][w] & bitmask) != 0)
+				if ((chip.embed[chip.embeddingOffset(pid[i]) + w] & bitmask) != 0)
 					pivot2[pos]++;
 		}
 		
@@ -1080,27 +1133,28 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	
 	private void startPseudoPivots (int p1, int p2)
 	{
-		int pos, w, bitmask = 0;
+		int pos, w;
+		long bitmask = 0;
 		
 		p1_count = 1;
 		p2_count = 1;
 		
 		for (w = -1, pos = 0; pos < probe_len; pos++)
 		{
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
 				w++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 				bitmask >>>= 1;
 			
 			pivot1[pos] = pivot2[pos] = 0;
 			
-			if ((chip.embed[p1][w] & bitmask) != 0)
+			if ((chip.embed[chip.embeddingOffset(p1) + w] & bitmask) != 0)
 				pivot1[pos]++;
 			
-			if ((chip.embed[p2][w] & bitmask) != 0)
+			if ((chip.embed[chip.embeddingOffset(p2) + w] & bitmask) != 0)
 				pivot2[pos]++;
 		}
 		
@@ -1118,19 +1172,20 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	
 	private void updatePseudoPivot (int id, float pseudo[])
 	{
-		int pos, w, bitmask = 0;
+		int pos, w;
+		long bitmask = 0;
 		
 		for (w = -1, pos = 0; pos < probe_len; pos++)
 		{
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
 				w++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 				bitmask >>>= 1;
 			
-			if ((chip.embed[id][w] & bitmask) != 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & bitmask) != 0)
 				pseudo[pos]++;
 		}
 		
@@ -1159,20 +1214,21 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	
 	private float distanceToPivots (int id)
 	{
-		int pos, w, bitmask = 0;
+		int pos, w;
+		long bitmask = 0;
 		float d = 0;
 		
 		for (w = -1, pos = 0; pos < probe_len; pos++)
 		{
-			if ((pos % Integer.SIZE) == 0)
+			if ((pos % Long.SIZE) == 0)
 			{
 				w++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 			}
 			else
 				bitmask >>>= 1;
 			
-			if ((chip.embed[id][w] & bitmask) == 0)
+			if ((chip.embed[chip.embeddingOffset(id) + w] & bitmask) == 0)
 				d += (pivot1[pos] / p1_count - pivot2[pos] / p2_count);
 			else
 				// d += (1 - pivot1[pos]/p1_count) - (1 - pivot2[pos]/p2_count);
@@ -1298,6 +1354,19 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 	
 	private int fillRegion (RectangularRegion region, int f_pivot, int l_pivot,
 			int f_probe, int l_probe)
+	{
+		if (parallel)
+		{
+			// region will be filled later
+			leaves.addLeaf (region, f_pivot, l_pivot, f_probe, l_probe);
+			return 0;
+		}
+		
+		return fillRegion (filler, region, f_pivot, l_pivot, f_probe, l_probe);
+	}
+	
+	private int fillRegion (FillingAlgorithm filler, RectangularRegion region,
+			int f_pivot, int l_pivot, int f_probe, int l_probe)
 	{
 		int num_pivots, num_probes, all[];
 		
@@ -1404,6 +1473,7 @@ public class NewPivotPartitioning implements LayoutAlgorithm
 				break;
 		}
 		
-		return this.getClass().getSimpleName() + m + max_depth + "-" + filler;
+		return this.getClass().getSimpleName() + m + max_depth +
+				(parallel ? "-Parallel" : "") + "-" + filler;
 	}
 }
\ No newline at end of file
@@ -255,19 +255,20 @@ public class OneDimensionalPartitioning implements LayoutAlgorithm
 
 	private int divideProbes (int step, int start, int end)
 	{
-		int	p_id, w, mask;
+		int	p_id, w;
+		long mask;
 
-		// which 4-byte word will be interrogated?
-		w = (int) Math.floor((double) step / Integer.SIZE);
+		// which 8-byte word will be interrogated?
+		w = (int) Math.floor((double) step / Long.SIZE);
 
 		// prepare mask to interrogate corresponding bit
-		mask = 0x01 << (Integer.SIZE - 1 - (step - w * Integer.SIZE));
+		mask = 0x01L << (Long.SIZE - 1 - (step - w * Long.SIZE));
 
 		while (start <= end)
 		{
 			p_id = probe_id[start];
 
-			if ((chip.embed[p_id][w] & mask) == 0)
+			if ((chip.embed[chip.embeddingOffset(p_id) + w] & mask) == 0)
 			{
 				// probe is masked at this step:
 				// proceed to next embedding on the list
@@ -15,7 +15,7 @@
  * Software Foundation; either version 2 of the License, or (at your option)
  * any later version.
  *
- * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * �rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
  * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
  * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
  * details.
@@ -45,7 +45,7 @@ package arrayopt.layout;
  * <P><UL>
  * <LI>"Border Length Minimization in DNA Array Design", A. Kahng, I. Mandoiu,
  * P. Pevzner, S. Reda, and A. Zelikovsky, Proc. 2nd Int. Workshop on Algorithms
- * in Bioinformatics (WABI 2002), pp. 435448.
+ * in Bioinformatics (WABI 2002), pp. 435�448.
  * <LI>"Engineering a scalable placement heuristic for DNA probe arrays",
  * A.B. Kahng, I. Mandoiu, P. Pevzner, S. Reda, and A. Zelikovsky, Proc. 7th
  * Annual Int. Conference on Research in Computational Molecular Biology
@@ -104,6 +104,28 @@ package arrayopt.layout;
  * a better distribution of the unmasked steps. The left-most and right-most
  * cases might give better results depending on the layout of the chip.</B></P>   
  *
+ * <P>On a {@link SimpleChip}, the dynamic programming matrix can be computed
+ * by different kernels, selected with
+ * {@link #createEmbedder(Chip, int, int)}. The default kernel
+ * ({@link #DEFAULT_KERNEL}) computes each cell at once. The split kernel
+ * ({@link #SPLIT_KERNEL}) computes each row in two passes: the first computes
+ * the cost of reaching every cell diagonally (unmasked step), which only
+ * depends on the previous row and can be done for all cells independently
+ * and without branches (allowing the JIT compiler to use SIMD instructions);
+ * the second pass propagates the cost of masked steps along the row. The
+ * single-precision kernel ({@link #SINGLE_PRECISION_KERNEL}) is a split
+ * kernel working on <CODE>float</CODE> values, which halves the memory
+ * traffic and doubles the SIMD width. It is only used for border length
+ * minimization, where all costs are small integers that are represented
+ * exactly; conflict index embedders use the split kernel instead. All kernels
+ * produce exactly the same distances and embeddings. Bounded distance
+ * queries (with a maximum distance) are always computed in double precision
+ * on a narrowing band of the matrix, which discards cells that cannot lead to
+ * a distance within the bound; only the split kernel computes the band rows
+ * with two passes. When no kernel is specified, border length embedders use
+ * the single-precision kernel, which is the fastest one, while conflict index
+ * embedders use the default kernel.</P>
+ *
  * @author Sergio A. de Carvalho Jr.
  */
 public abstract class OptimumSingleProbeEmbedding
@@ -154,6 +176,25 @@ public abstract class OptimumSingleProbeEmbedding
 	 */
 	public static final int CONFLICT_INDEX_MIN = 1;
 	
+	/**
+	 * Constant to indicate that the dynamic programming matrix is computed
+	 * cell by cell.
+	 */
+	public static final int DEFAULT_KERNEL = 0;
+	
+	/**
+	 * Constant to indicate that each row of the dynamic programming matrix is
+	 * computed in two passes, the first without branches and independently
+	 * for each cell.
+	 */
+	public static final int SPLIT_KERNEL = 1;
+	
+	/**
+	 * Constant to indicate that the split kernel works with single precision
+	 * (border length minimization only).
+	 */
+	public static final int SINGLE_PRECISION_KERNEL = 2;
+	
 	/**
 	 * Internal bit mask for configuring the constants and querying the
 	 * variables that restrict the selection of neighborg spots.
@@ -295,7 +336,11 @@ public abstract class OptimumSingleProbeEmbedding
 	/**
 	 * Create an instance of the Optimum Single-Probe Embedding (OSPE) algorithm
 	 * with the desired type of minimization function
-	 * ({@link #BORDER_LENGTH_MIN} or {@link #CONFLICT_INDEX_MIN}).
+	 * ({@link #BORDER_LENGTH_MIN} or {@link #CONFLICT_INDEX_MIN}). Border
+	 * length embedders use the {@link #SINGLE_PRECISION_KERNEL} for full
+	 * computations and the banded per-cell loop for bounded queries; conflict
+	 * index embedders use the {@link #DEFAULT_KERNEL} since the split kernels
+	 * do not pay off with the more expensive conflict index costs.
 	 * 
 	 * @param c a chip instance  
 	 * @param mode desired conflict minimization function
@@ -303,18 +348,48 @@ public abstract class OptimumSingleProbeEmbedding
 	 * chip and the selected mode 
 	 */
 	static OptimumSingleProbeEmbedding createEmbedder (Chip c, int mode)
+	{
+		return createEmbedder (c, mode, mode == BORDER_LENGTH_MIN ?
+				SINGLE_PRECISION_KERNEL : DEFAULT_KERNEL);
+	}
+
+	/**
+	 * Create an instance of the Optimum Single-Probe Embedding (OSPE) algorithm
+	 * with the desired type of minimization function
+	 * ({@link #BORDER_LENGTH_MIN} or {@link #CONFLICT_INDEX_MIN}) and kernel
+	 * for computing the dynamic programming matrix ({@link #DEFAULT_KERNEL},
+	 * {@link #SPLIT_KERNEL} or {@link #SINGLE_PRECISION_KERNEL}). The kernel
+	 * is only used with a {@link SimpleChip}.
+	 * 
+	 * @param c a chip instance  
+	 * @param mode desired conflict minimization function
+	 * @param kernel desired kernel
+	 * @return an instance of an OptimumSingleProbeEmbedding for the type of
+	 * chip and the selected mode 
+	 */
+	static OptimumSingleProbeEmbedding createEmbedder (Chip c, int mode,
+			int kernel)
 	{
 		if (mode != BORDER_LENGTH_MIN && mode != CONFLICT_INDEX_MIN)
 			throw new IllegalArgumentException
 				("Unknown distance mode: " + mode);
+		
+		if (kernel != DEFAULT_KERNEL && kernel != SPLIT_KERNEL &&
+			kernel != SINGLE_PRECISION_KERNEL)
+			throw new IllegalArgumentException
+				("Unknown kernel: " + kernel);
 			
 		if (c instanceof SimpleChip)
 		{
 			if (mode == BORDER_LENGTH_MIN)
-				return new Simple.BorderLengthMin ((SimpleChip) c);
+				return new Simple.BorderLengthMin ((SimpleChip) c, kernel);
 			
 			// else: CONFLICT_INDEX_MIN
-				return new Simple.ConflictIndexMin ((SimpleChip) c);
+			// (costs are not exact in single precision)
+			if (kernel == SINGLE_PRECISION_KERNEL)
+				kernel = SPLIT_KERNEL;
+			
+				return new Simple.ConflictIndexMin ((SimpleChip) c, kernel);
 		}
 		
 		if (c instanceof AffymetrixChip)
@@ -400,6 +475,34 @@ public abstract class OptimumSingleProbeEmbedding
 		return computeMinDistance(id_1);
 	}
 
+	/**
+	 * Computes the minimum distance between any valid embedding of each probe
+	 * of a list and the current embedding of probe <CODE>id_2</CODE>.
+	 *
+	 * <P>The cost profile of <CODE>id_2</CODE> is computed only once for the
+	 * whole list. Moreover, consecutive probes sharing a common prefix re-use
+	 * the rows of the dynamic programming matrix computed for the previous
+	 * probe, so the list should preferably be sorted lexicographically.</P>
+	 *
+	 * <P>The distance of probe <CODE>id_1[i]</CODE> is stored on position
+	 * <CODE>dist[i - dist_offset]</CODE>.</P>
+	 *
+	 * @param id_1 list of probe IDs
+	 * @param start the index of the first element on the list
+	 * @param end the index of the last element on the list
+	 * @param id_2 the ID of the probe with a fixed embedding
+	 * @param dist array where the distances are stored
+	 * @param dist_offset offset of the first distance on the array
+	 */
+	void minDistanceProbe (int id_1[], int start, int end, int id_2,
+		double dist[], int dist_offset)
+	{
+		resetCosts();
+		addProbeCost (id_2);
+		for (int i = start; i <= end; i++)
+			dist[i - dist_offset] = computeMinDistance(id_1[i]);
+	}
+
 	/**
 	 * Computes the minimum distance between any valid embedding of the current
 	 * probe of a spot and the embeddings of the neighboring probes.
@@ -455,6 +558,64 @@ public abstract class OptimumSingleProbeEmbedding
 		return computeMinDistance(id);
 	}
 
+	/**
+	 * Finds, among a list of candidate probes, the one with minimum distance
+	 * to the current embeddings of the neighbors of a spot.
+	 *
+	 * <P>The cost profile of the spot is computed only once for the whole
+	 * list, and the minimum distance found so far is used as a bound for the
+	 * remaining candidates, whose computation is aborted as soon as they
+	 * cannot improve on it. The search also stops when a candidate with
+	 * zero distance is found.</P>
+	 *
+	 * <P>The distance of probe <CODE>id[i]</CODE> is stored on position
+	 * <CODE>dist[i - dist_offset]</CODE>. Only the distance of the returned
+	 * candidate is guaranteed to be exact; candidates that were pruned
+	 * receive some value not less than the minimum distance, and those not
+	 * examined receive positive infinity. In case of ties, the first
+	 * candidate on the list is returned. After this method returns, the
+	 * returned probe can be optimally embedded with {@link #reembedProbe}
+	 * as long as its distance is greater than zero.</P>
+	 *
+	 * @param row spot's row coordinate
+	 * @param col spot's column coordinate
+	 * @param id list of candidate probe IDs
+	 * @param start the index of the first element on the list
+	 * @param end the index of the last element on the list
+	 * @param dist array where the distances are stored
+	 * @param dist_offset offset of the first distance on the array
+	 * @return the index of the candidate with minimum distance, or -1 if the
+	 * list is empty
+	 */
+	int minDistanceSpot (int row, int col, int id[], int start, int end,
+		double dist[], int dist_offset)
+	{
+		double min = Double.POSITIVE_INFINITY;
+		int i, best = -1;
+
+		resetCosts();
+		addSpotCost (row, col);
+
+		for (i = start; i <= end; i++)
+		{
+			// no candidate can have a distance less than zero
+			if (min == 0)
+			{
+				dist[i - dist_offset] = Double.POSITIVE_INFINITY;
+				continue;
+			}
+
+			dist[i - dist_offset] = computeMinDistance(id[i], min);
+			if (dist[i - dist_offset] < min)
+			{
+				min = dist[i - dist_offset];
+				best = i;
+			}
+		}
+
+		return best;
+	}
+
 	/**
 	 * Reembeds a probe (<CODE>id_1</CODE>) so that its distance to the current
 	 * embedding of the last probe or set of probes for which a distance has
@@ -564,10 +725,9 @@ public abstract class OptimumSingleProbeEmbedding
 		return reembedOptimally (id);
 	}
 
-	// TODO move this function to another class?
 	/**
-	 * Computes the number of ways in which a probe can be embedded into the
-	 * deposition sequence. 
+	 * Returns the number of ways in which a probe can be embedded into the
+	 * deposition sequence (as memoized by {@link Chip#numberOfEmbeddings}).
 	 * @param id probe ID
 	 * @return the number of different embeddings the probe can have
 	 */
@@ -594,43 +754,6 @@ public abstract class OptimumSingleProbeEmbedding
 	
 	protected abstract double reembedOptimally (int id);
 
-	protected long numberOfEmbeddings (char probe[], char dep_seq[], long m[])
-	{
-		int	r, c, last_row;
-		long top, tmp;
-		
-		for (r = 0; r < probe.length; r++)
-			m[r] = 0;
-		
-		last_row = 0;
-		
-		for (c = 0; c < dep_seq.length; c++)
-		{
-			top = 1;
-			
-			for (r = 0; r <= last_row; r++)
-			{
-				if (probe[r] == dep_seq[c])
-				{
-					tmp = m[r];
-					m[r] += top;
-					top = tmp;
-				}
-				else
-					top = m[r];
-			}
-			
-			if (m[last_row] > 0)
-				if (last_row < probe.length - 1)
-					last_row++;
-		}
-		
-		if (m[probe.length - 1] < 0)
-			throw new IllegalStateException ("Integer overflow.");
-		
-		return m[probe.length - 1];
-	}
-
 	protected static abstract class Simple extends OptimumSingleProbeEmbedding
 	{
 		protected SimpleChip chip;
@@ -649,13 +772,89 @@ public abstract class OptimumSingleProbeEmbedding
 		
 		protected double unmask_cost[];
 		
-		protected long num_embed[];
+		/**
+		 * Kernel used to compute the matrix.
+		 */
+		protected int kernel;
+		
+		/**
+		 * Distinct bases of the deposition sequence.
+		 */
+		protected char base[];
+		
+		/**
+		 * Number of distinct bases of the deposition sequence.
+		 */
+		protected int num_bases;
+		
+		/**
+		 * Index (in {@link #base}) of each base of the probe.
+		 */
+		protected int probe_base[];
+		
+		/**
+		 * Index (in {@link #base}) of the base synthesized at each step of the
+		 * deposition sequence.
+		 */
+		protected int step_base[];
+		
+		/**
+		 * Weight of the mask costs on each row of the matrix.
+		 */
+		protected double mask_weight[];
+		
+		/**
+		 * Minimum weight of the mask costs on any row of the matrix.
+		 */
+		protected double min_mask_weight;
+		
+		/**
+		 * Lower bound on the cost of the steps from each column of the matrix
+		 * to the end of the deposition sequence. Every step costs at least the
+		 * minimum between its (weighted) mask cost and its unmask cost.
+		 */
+		protected double rest_bound[];
+		
+		/**
+		 * Lower bound on the extra cost of synthesizing the bases of the probe
+		 * from each row of the matrix to the end of the probe. A base must be
+		 * unmasked at some step synthesizing it, and this costs at least the
+		 * minimum excess (see {@link #base_excess}) of such steps.
+		 */
+		protected double probe_bound[];
+		
+		/**
+		 * Minimum excess of the unmask cost of a step over its contribution to
+		 * {@link #rest_bound} among all steps synthesizing each base.
+		 */
+		protected double base_excess[];
 		
-		protected Simple (SimpleChip chip)
+		/**
+		 * Whether the costs have changed since {@link #rest_bound} and
+		 * {@link #base_excess} were last computed.
+		 */
+		protected boolean bound_stale;
+		
+		/**
+		 * Relative tolerance added to the maximum distance when pruning cells
+		 * with the lower bounds, so that rounding errors in the bounds never
+		 * prune an embedding whose distance is exactly the maximum.
+		 */
+		private static final double BOUND_TOLERANCE = 1e-9;
+		
+		/**
+		 * For each base, the cost added to the unmasked step at each position
+		 * of the deposition sequence: zero if the base is synthesized at that
+		 * step, or positive infinity otherwise (split kernels only).
+		 */
+		protected double mismatch[][];
+		
+		protected Simple (SimpleChip chip, int kernel)
 		{
 			super (chip);
 
 			this.chip = chip;
+			this.kernel = kernel;
 			this.matrix = new double [probe_len + 1][embed_len + 1];
 			
 			this.start_col = new int [probe_len + 1];
@@ -665,10 +864,105 @@ public abstract class OptimumSingleProbeEmbedding
 			this.last_col[probe_len] = embed_len;
 
 			this.probe = new char [probe_len];
-			this.num_embed = new long [probe_len];
 			
 			this.mask_cost = new double [embed_len];
 			this.unmask_cost = new double [embed_len];
+			
+			this.mask_weight = new double [probe_len + 1];
+			for (int r = 0; r <= probe_len; r++)
+				mask_weight[r] = 1;
+			this.min_mask_weight = 1;
+			
+			this.rest_bound = new double [embed_len + 1];
+			this.probe_bound = new double [probe_len + 1];
+			
+			setupBases ();
+			
+			if (kernel != DEFAULT_KERNEL)
+				setupMismatch ();
+		}
+		
+		private void setupBases ()
+		{
+			int b, c;
+			
+			base = new char [embed_len];
+			step_base = new int [embed_len];
+			num_bases = 0;
+			
+			// find the distinct bases of the deposition sequence
+			for (c = 0; c < embed_len; c++)
+			{
+				for (b = 0; b < num_bases; b++)
+					if (base[b] == chip.dep_seq[c])
+						break;
+				
+				if (b == num_bases)
+					base[num_bases++] = chip.dep_seq[c];
+				
+				step_base[c] = b;
+			}
+			
+			probe_base = new int [probe_len];
+			base_excess = new double [num_bases];
+		}
+		
+		private void setupMismatch ()
+		{
+			int b, c;
+			
+			mismatch = new double [num_bases][embed_len];
+			
+			for (b = 0; b < num_bases; b++)
+				for (c = 0; c < embed_len; c++)
+					mismatch[b][c] = (chip.dep_seq[c] == base[b]) ? 0 :
+										Double.POSITIVE_INFINITY;
+		}
+		
+		/**
+		 * Computes a row of the matrix with the split kernel, given the weight
+		 * of the masked steps (the cost of masking a step is its mask cost
+		 * multiplied by the weight), and returns its minimum value.
+		 */
+		protected double computeRow (int r, double mask_weight)
+		{
+			return computeRow (r, mask_weight, start_col[r], last_col[r]);
+		}
+		
+		/**
+		 * Computes the columns <CODE>first</CODE> to <CODE>last</CODE> of a
+		 * row of the matrix with the split kernel and returns their minimum
+		 * value.
+		 */
+		protected double computeRow (int r, double mask_weight, int first,
+				int last)
+		{
+			double	curr[], prev[], pen[], mask, min;
+			int		c;
+			
+			curr = matrix[r];
+			prev = matrix[r - 1];
+			pen = mismatch[probe_base[r - 1]];
+			
+			// unmasked steps (the penalty is infinite if the step
+			// does not synthesize the base of the row)
+			for (c = first; c <= last; c++)
+				curr[c] = prev[c - 1] + unmask_cost[c - 1] + pen[c - 1];
+			
+			// masked steps
+			curr[first - 1] = min = Double.POSITIVE_INFINITY;
+			for (c = first; c <= last; c++)
+			{
+				mask = curr[c - 1] + mask_weight * mask_cost[c - 1];
+				
+				if (mask < curr[c])
+					curr[c] = mask;
+				
+				if (curr[c] < min)
+					min = curr[c];
+			}
+			
+			return min;
 		}
 		
 		@Override
@@ -713,14 +1007,13 @@ public abstract class OptimumSingleProbeEmbedding
 		@Override
 		long numberOfEmbeddings (int id)
 		{
-			decodeEmbedding (id);
-			
-			return numberOfEmbeddings (probe, chip.dep_seq, num_embed);
+			return chip.numberOfEmbeddings(id);
 		}
 
 		protected void decodeEmbedding (int id)
 		{
-			int i, c, pos, word, bitmask = 0;
+			int i, c, pos, word;
+			long bitmask = 0;
 			boolean update_start_col = false;
 			
 			// decode probe sequence, checking which rows from the previous
@@ -728,19 +1021,20 @@ public abstract class OptimumSingleProbeEmbedding
 			// computations need to start
 			for (i = 0, word = - 1, pos = 0; pos < embed_len; pos++)
 			{
-				if (pos % Integer.SIZE == 0)
+				if (pos % Long.SIZE == 0)
 				{
 					word++;
-					bitmask = 0x01 << (Integer.SIZE - 1);
+					bitmask = 0x01L << (Long.SIZE - 1);
 				}
 				else
 					bitmask >>>= 1;
 				
-				if ((chip.embed[id][word] & bitmask) != 0)
+				if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) != 0)
 				{
 					if (probe[i] != chip.dep_seq[pos])
 					{
 						probe[i] = chip.dep_seq[pos];
+						probe_base[i] = step_base[pos];
 						
 						update_start_col = true;
 						
@@ -780,32 +1074,213 @@ public abstract class OptimumSingleProbeEmbedding
 		protected abstract double computeMatrix (double max_dist);
 		
 		protected abstract void encodeEmbedding (int id);
+		
+		/**
+		 * Computes the matrix when only distances up to a given maximum are
+		 * wanted, pruning the cells that cannot lead to such a distance.
+		 *
+		 * <P>A cell is pruned when its value plus the lower bounds on the cost
+		 * of the remaining steps ({@link #rest_bound}) and of the remaining
+		 * bases of the probe ({@link #probe_bound}) exceeds the maximum. Only
+		 * the band of columns right after the cells of the previous row that
+		 * were not pruned are computed on each row, extended to the right with
+		 * masked steps while the cells are not pruned. The computation stops
+		 * as soon as a whole row is pruned.</P>
+		 *
+		 * <P>The returned distance is exact if it does not exceed the maximum.
+		 * Otherwise, some value greater than the maximum (possibly positive
+		 * infinity) is returned. Rows computed on a narrowed band are not
+		 * reused by later calls. The first row of the matrix must have been
+		 * computed.</P>
+		 */
+		protected double computeBanded (double max_dist)
+		{
+			double	curr[], prev[], limit, lb, d, mask, unmask, w;
+			int		r, c, lo, hi, first, last, exact_rows;
+			
+			if (bound_stale)
+			{
+				updateCostBound ();
+				bound_stale = false;
+			}
+			
+			// lower bound on the cost of the remaining bases of the probe
+			probe_bound[probe_len] = 0;
+			for (r = probe_len - 1; r >= 0; r--)
+				probe_bound[r] = probe_bound[r + 1] +
+									base_excess[probe_base[r]];
+			
+			limit = max_dist + BOUND_TOLERANCE * (1 + Math.abs(max_dist));
+			
+			// rows before exact_rows can be reused in the next call
+			exact_rows = start_row;
+			
+			first = start_col[start_row - 1];
+			last = last_col[start_row - 1];
+			
+			for (r = start_row; r <= probe_len; r++)
+			{
+				prev = matrix[r - 1];
+				curr = matrix[r];
+				
+				// find the band of cells of the previous row that may still
+				// lead to a distance within the limit
+				lo = -1; hi = -1; lb = Double.POSITIVE_INFINITY;
+				for (c = first; c <= last; c++)
+				{
+					d = prev[c] + rest_bound[c] + probe_bound[r - 1];
+					
+					if (d <= limit)
+					{
+						if (lo < 0) lo = c;
+						hi = c;
+					}
+					else if (d < lb)
+						lb = d;
+				}
+				
+				if (lo < 0)
+				{
+					// the whole row was pruned
+					start_row = exact_rows;
+					return lb;
+				}
+				
+				first = Math.max(start_col[r], lo + 1);
+				last = Math.min(last_col[r], hi + 1);
+				
+				if (first > last)
+				{
+					// no base can be synthesized after the band
+					start_row = exact_rows;
+					return Double.POSITIVE_INFINITY;
+				}
+				
+				w = mask_weight[r];
+				
+				// bands are usually too narrow for the split kernel to pay
+				// off; only an explicitly requested split kernel is used
+				if (kernel != SPLIT_KERNEL)
+				{
+					curr[first - 1] = Double.POSITIVE_INFINITY;
+					
+					for (c = first; c <= last; c++)
+					{
+						mask = curr[c - 1] + w * mask_cost[c - 1];
+						
+						if (probe[r - 1] == chip.dep_seq[c - 1])
+							unmask = prev[c - 1] + unmask_cost[c - 1];
+						else
+							unmask = Double.POSITIVE_INFINITY;
+						
+						curr[c] = Math.min(mask, unmask);
+					}
+				}
+				else
+					computeRow (r, w, first, last);
+				
+				// extend the band with masked steps
+				while (last < last_col[r] &&
+						curr[last] + rest_bound[last] + probe_bound[r] <= limit)
+				{
+					curr[last + 1] = curr[last] + w * mask_cost[last];
+					last++;
+				}
+				
+				if (exact_rows == r && first == start_col[r] &&
+						last == last_col[r])
+					exact_rows = r + 1;
+			}
+			
+			start_row = exact_rows;
+			
+			if (last < embed_len)
+				// the band was not extended to the last column
+				return matrix[probe_len][last] + rest_bound[last];
+			
+			return matrix[probe_len][embed_len];
+		}
+		
+		/**
+		 * Computes {@link #rest_bound} and {@link #base_excess} for the
+		 * current costs.
+		 */
+		protected void updateCostBound ()
+		{
+			double	step;
+			int		b, c;
+			
+			for (b = 0; b < num_bases; b++)
+				base_excess[b] = Double.POSITIVE_INFINITY;
+			
+			rest_bound[embed_len] = 0;
+			for (c = embed_len - 1; c >= 0; c--)
+			{
+				step = Math.min(min_mask_weight * mask_cost[c], unmask_cost[c]);
+				rest_bound[c] = rest_bound[c + 1] + step;
+				
+				b = step_base[c];
+				if (unmask_cost[c] - step < base_excess[b])
+					base_excess[b] = unmask_cost[c] - step;
+			}
+		}
 
 		private static class BorderLengthMin extends Simple
 		{
-			public BorderLengthMin (SimpleChip chip)
+			/**
+			 * Matrix in single precision (single-precision kernel only).
+			 */
+			private float fmatrix[][];
+			
+			/**
+			 * Whether the rows that can be reused (see {@link #start_row}) are
+			 * stored in the single-precision matrix (single-precision kernel
+			 * only).
+			 */
+			private boolean single_rows;
+			
+			private float fmask_cost[];
+			
+			private float funmask_cost[];
+			
+			private float fmismatch[][];
+			
+			public BorderLengthMin (SimpleChip chip, int kernel)
 			{
-				super (chip);
+				super (chip, kernel);
+				
+				if (kernel == SINGLE_PRECISION_KERNEL)
+				{
+					fmatrix = new float [probe_len + 1][embed_len + 1];
+					fmask_cost = new float [embed_len];
+					funmask_cost = new float [embed_len];
+					fmismatch = new float [mismatch.length][embed_len];
+					
+					for (int b = 0; b < mismatch.length; b++)
+						for (int c = 0; c < embed_len; c++)
+							fmismatch[b][c] = (float) mismatch[b][c];
+				}
 			}
 
 			@Override
 			protected void addProbeCost (int id)
 			{
-				int word, pos, bitmask = 0;
+				int word, pos;
+				long bitmask = 0;
 				
 				start_row = 0;
 				
 				for (word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id][word] & bitmask) != 0)
+					if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) != 0)
 						mask_cost[pos] += 1;
 					else
 						unmask_cost[pos] += 1;
@@ -815,23 +1290,24 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void addProbeCost (int id[], int start, int end)
 			{
-				int i, word, pos, bitmask = 0;
+				int i, word, pos;
+				long bitmask = 0;
 				
 				start_row = 0;
 				
 				for (word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
 					for (i = start; i <= end; i++)
 					{
-						if ((chip.embed[id[i]][word] & bitmask) != 0)
+						if ((chip.embed[chip.embeddingOffset(id[i]) + word] & bitmask) != 0)
 							mask_cost[pos] += 1;
 						else
 							unmask_cost[pos] += 1;
@@ -938,6 +1414,21 @@ public abstract class OptimumSingleProbeEmbedding
 				double	mask, unmask, min = 0;
 				int 	r, c;
 				
+				if (kernel == SINGLE_PRECISION_KERNEL)
+				{
+					// bounded queries use the banded double-precision
+					// matrix; only full computations use single precision
+					if (max_dist == Double.POSITIVE_INFINITY)
+					{
+						if (!single_rows) start_row = 0;
+						single_rows = true;
+						return computeMatrixSingle (max_dist);
+					}
+					
+					if (single_rows) start_row = 0;
+					single_rows = false;
+				}
+				
 				if (start_row == 0)
 				{
 					matrix[0][0] = 0;
@@ -945,6 +1436,28 @@ public abstract class OptimumSingleProbeEmbedding
 						matrix[0][c] = matrix[0][c - 1] + mask_cost[c -1];
 					
 					start_row = 1;
+					bound_stale = true;
+				}
+				
+				if (max_dist < Double.POSITIVE_INFINITY)
+					return computeBanded (max_dist);
+				
+				if (kernel == SPLIT_KERNEL)
+				{
+					for (r = start_row; r <= probe_len; r++)
+					{
+						// stop as soon as the minimum distance
+						// gets over the maximum wanted
+						if ((min = computeRow (r, 1)) > max_dist)
+						{
+							start_row = r;
+							return min;
+						}
+					}
+					
+					start_row = r;
+					
+					return matrix[probe_len][embed_len];
 				}
 				
 				for (r = start_row; r <= probe_len; r++)
@@ -977,34 +1490,108 @@ public abstract class OptimumSingleProbeEmbedding
 				
 				return matrix[probe_len][embed_len];
 			}
+			
+			/**
+			 * Computes the matrix with the split kernel in single precision.
+			 * Border length costs are integers much smaller than 2^24 and are,
+			 * therefore, represented exactly. This method is only used for
+			 * full (unbounded) computations; bounded queries are answered by
+			 * {@link #computeBanded} on the double-precision matrix, which
+			 * prunes the cells that cannot lead to a distance under the bound.
+			 */
+			private double computeMatrixSingle (double max_dist)
+			{
+				float	curr[], prev[], pen[], mask, min;
+				int 	r, c, first, last;
+				
+				// the costs may have changed since the last call
+				for (c = 0; c < embed_len; c++)
+				{
+					fmask_cost[c] = (float) mask_cost[c];
+					funmask_cost[c] = (float) unmask_cost[c];
+				}
+				
+				if (start_row == 0)
+				{
+					fmatrix[0][0] = 0;
+					for (c = 1; c <= last_col[0]; c++)
+						fmatrix[0][c] = fmatrix[0][c - 1] + fmask_cost[c -1];
+					
+					start_row = 1;
+				}
+				
+				for (r = start_row; r <= probe_len; r++)
+				{
+					curr = fmatrix[r];
+					prev = fmatrix[r - 1];
+					pen = fmismatch[probe_base[r - 1]];
+					first = start_col[r];
+					last = last_col[r];
+					
+					// unmasked steps
+					for (c = first; c <= last; c++)
+						curr[c] = prev[c - 1] + funmask_cost[c - 1] + pen[c - 1];
+					
+					// masked steps
+					curr[first - 1] = min = Float.POSITIVE_INFINITY;
+					for (c = first; c <= last; c++)
+					{
+						mask = curr[c - 1] + fmask_cost[c - 1];
+						
+						if (mask < curr[c])
+							curr[c] = mask;
+						
+						if (curr[c] < min)
+							min = curr[c];
+					}
+					
+					// stop as soon as the minimum distance
+					// gets over the maximum wanted
+					if (min > max_dist)
+					{
+						start_row = r;
+						return min;
+					}
+				}
+				
+				start_row = r;
+				
+				return fmatrix[probe_len][embed_len];
+			}
 
 			@Override
 			protected void encodeEmbedding (int id)
 			{
-				int r, c, pos, word, bitmask;
+				int r, c, pos, word;
+				long bitmask;
 				
 				pos = embed_len;
-				word = pos / Integer.SIZE;
-				bitmask = 0x01 << (Integer.SIZE - 1 - (pos % Integer.SIZE));
+				word = pos / Long.SIZE;
+				bitmask = 0x01L << (Long.SIZE - 1 - (pos % Long.SIZE));
 				
 				for (r = probe_len, c = embed_len; pos > 0; c--)
 				{
-					if ((pos-- % Integer.SIZE) == 0)
+					if ((pos-- % Long.SIZE) == 0)
 					{
 						word--;
-						bitmask = 0x01;
+						bitmask = 0x01L;
 					}
 					else
 						bitmask <<= 1;
 					
-					chip.embed[id][word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id) + word] &= ~bitmask;
 					
 					if (r == 0) continue;
 
-					if (matrix[r][c] == matrix[r][c - 1] + mask_cost[c -1])
+					if (kernel == SINGLE_PRECISION_KERNEL)
+					{
+						if (fmatrix[r][c] == fmatrix[r][c - 1] + fmask_cost[c -1])
+							continue;
+					}
+					else if (matrix[r][c] == matrix[r][c - 1] + mask_cost[c -1])
 						continue;
 					
-					chip.embed[id][word] |= bitmask;
+					chip.embed[chip.embeddingOffset(id) + word] |= bitmask;
 					r--;
 				}
 			}
@@ -1014,14 +1601,22 @@ public abstract class OptimumSingleProbeEmbedding
 		{
 			private double pos_mult[];
 			
-			protected ConflictIndexMin (SimpleChip chip)
+			protected ConflictIndexMin (SimpleChip chip, int kernel)
 			{
-				super (chip);
+				super (chip, kernel);
 				
 				this.pos_mult = new double [probe_len + 1];
 				
 				for (int b = 0; b <= probe_len; b++)
 					pos_mult[b] = ConflictIndex.positionWeight(b, probe_len);
+				
+				// masked steps are weighted by the position multipliers
+				this.mask_weight = pos_mult;
+				
+				min_mask_weight = pos_mult[0];
+				for (int b = 1; b <= probe_len; b++)
+					if (pos_mult[b] < min_mask_weight)
+						min_mask_weight = pos_mult[b];
 			}
 			
 			@Override
@@ -1170,26 +1765,26 @@ public abstract class OptimumSingleProbeEmbedding
 			private void addSingleProbeCost (int id, double mask_weight,
 					double unmask_weight)
 			{
-				int		b, pos, word, bitmask = 0;
+				int		b, pos, word;
+				long	bitmask = 0;
 				
 				for (b = 0, word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id][word] & bitmask) != 0)
+					if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) != 0)
 					{
 						mask_cost[pos] += mask_weight;
 						b++;
 					}
 					else
-						unmask_cost[pos] += unmask_weight *
-									ConflictIndex.positionWeight(b, probe_len);
+						unmask_cost[pos] += unmask_weight * pos_mult[b];
 				}
 			}
 			
@@ -1207,6 +1802,28 @@ public abstract class OptimumSingleProbeEmbedding
 										pos_mult[0] * mask_cost[c -1];
 					
 					start_row = 1;
+					bound_stale = true;
+				}
+				
+				if (max_dist < Double.POSITIVE_INFINITY)
+					return computeBanded (max_dist);
+				
+				if (kernel == SPLIT_KERNEL)
+				{
+					for (r = start_row; r <= probe_len; r++)
+					{
+						// stop as soon as the minimum distance
+						// gets over the maximum wanted
+						if ((min = computeRow (r, pos_mult[r])) > max_dist)
+						{
+							start_row = r;
+							return min;
+						}
+					}
+					
+					start_row = r;
+					
+					return matrix[probe_len][embed_len];
 				}
 				
 				for (r = start_row; r <= probe_len; r++)
@@ -1243,23 +1860,24 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void encodeEmbedding (int id)
 			{
-				int r, c, pos, word, bitmask;
+				int r, c, pos, word;
+				long bitmask;
 				
 				pos = embed_len;
-				word = pos / Integer.SIZE;
-				bitmask = 0x01 << (Integer.SIZE - 1 - (pos % Integer.SIZE));
+				word = pos / Long.SIZE;
+				bitmask = 0x01L << (Long.SIZE - 1 - (pos % Long.SIZE));
 				
 				for (r = probe_len, c = embed_len; pos > 0; c--)
 				{
-					if ((pos-- % Integer.SIZE) == 0)
+					if ((pos-- % Long.SIZE) == 0)
 					{
 						word--;
-						bitmask = 0x01;
+						bitmask = 0x01L;
 					}
 					else
 						bitmask <<= 1;
 					
-					chip.embed[id][word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id) + word] &= ~bitmask;
 					
 					if (r == 0) continue;
 
@@ -1267,7 +1885,7 @@ public abstract class OptimumSingleProbeEmbedding
 						matrix[r][c - 1] + pos_mult[r] * mask_cost[c -1])
 						continue;
 					
-					chip.embed[id][word] |= bitmask;
+					chip.embed[chip.embeddingOffset(id) + word] |= bitmask;
 					r--;
 				}
 			}
@@ -1294,8 +1912,6 @@ public abstract class OptimumSingleProbeEmbedding
 		
 		protected double unmask_cost_mm[];
 		
-		private long num_embed[];
-		
 		protected Affymetrix (AffymetrixChip chip)
 		{
 			super (chip);
@@ -1318,8 +1934,6 @@ public abstract class OptimumSingleProbeEmbedding
 			this.mask_cost_mm = new double [embed_len];
 			this.unmask_cost_pm = new double [embed_len];
 			this.unmask_cost_mm = new double [embed_len];
-
-			this.num_embed = new long [probe_len + 1];
 		}
 		
 		@Override
@@ -1384,28 +1998,26 @@ public abstract class OptimumSingleProbeEmbedding
 		@Override
 		long numberOfEmbeddings (int id)
 		{
-			decodeEmbedding (id);
-			
-			return numberOfEmbeddings (probe_1, chip.dep_seq, num_embed) +
-				numberOfEmbeddings (probe_2, chip.dep_seq, num_embed);
+			return chip.numberOfEmbeddings(id);
 		}
 		
 		protected void decodeEmbedding (int id)
 		{	
-			int		i, pos, word, bitmask = 0;
+			int		i, pos, word;
+			long	bitmask = 0;
 			char	base, comp;
 
 			for (i = 0, word = - 1, pos = 0; pos < embed_len; pos++)
 			{
-				if (pos % Integer.SIZE == 0)
+				if (pos % Long.SIZE == 0)
 				{
 					word++;
-					bitmask = 0x01 << (Integer.SIZE - 1);
+					bitmask = 0x01L << (Long.SIZE - 1);
 				}
 				else
 					bitmask >>>= 1;
 
-				if ((chip.embed[id][word] & bitmask) == 0)
+				if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) == 0)
 					continue;
 				
 				if (i != AffymetrixChip.AFFY_MIDDLE_BASE - 1)
@@ -1442,7 +2054,8 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void addProbeCost (int id_1)
 			{
-				int id_2, word, pos, bitmask = 0;
+				int id_2, word, pos;
+				long bitmask = 0;
 				
 				if (chip.isPMProbe(id_1))
 					id_2 = id_1 + 1;
@@ -1451,16 +2064,16 @@ public abstract class OptimumSingleProbeEmbedding
 				
 				for (word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id_1][word] & bitmask) != 0 ||
-						(chip.embed[id_2][word] & bitmask) != 0)
+					if ((chip.embed[chip.embeddingOffset(id_1) + word] & bitmask) != 0 ||
+						(chip.embed[chip.embeddingOffset(id_2) + word] & bitmask) != 0)
 					{
 						mask_cost_pm[pos] += 1;
 						mask_cost_mm[pos] += 1;
@@ -1476,14 +2089,15 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void addProbeCost (int id[], int start, int end)
 			{
-				int i, id_1, id_2, word, pos, bitmask = 0;
+				int i, id_1, id_2, word, pos;
+				long bitmask = 0;
 				
 				for (word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
@@ -1497,8 +2111,8 @@ public abstract class OptimumSingleProbeEmbedding
 						else
 							id_2 = id_1 - 1;
 
-						if ((chip.embed[id_1][word] & bitmask) != 0 ||
-							(chip.embed[id_2][word] & bitmask) != 0)
+						if ((chip.embed[chip.embeddingOffset(id_1) + word] & bitmask) != 0 ||
+							(chip.embed[chip.embeddingOffset(id_2) + word] & bitmask) != 0)
 						{
 							mask_cost_pm[pos] += 1;
 							mask_cost_mm[pos] += 1;
@@ -1573,19 +2187,20 @@ public abstract class OptimumSingleProbeEmbedding
 
 			private void addSingleProbeCost (int id, int pm_mult, int mm_mult)
 			{
-				int word, pos, bitmask = 0;
+				int word, pos;
+				long bitmask = 0;
 				
 				for (word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id][word] & bitmask) != 0)
+					if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) != 0)
 					{
 						mask_cost_pm[pos] += 1 * pm_mult;
 						mask_cost_mm[pos] += 1 * mm_mult;
@@ -1650,25 +2265,26 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void encodeEmbedding (int id_1, int id_2, double matrix[][])
 			{
-				int		r, c, pos, word, bitmask;
+				int		r, c, pos, word;
+				long	bitmask;
 				double	mask_cost;
 				
 				pos = embed_len;
-				word = pos / Integer.SIZE;
-				bitmask = 0x01 << (Integer.SIZE - 1 - (pos % Integer.SIZE));
+				word = pos / Long.SIZE;
+				bitmask = 0x01L << (Long.SIZE - 1 - (pos % Long.SIZE));
 				
 				for (r = probe_len + 1, c = embed_len; pos > 0; c--)
 				{
-					if ((pos-- % Integer.SIZE) == 0)
+					if ((pos-- % Long.SIZE) == 0)
 					{
 						word--;
-						bitmask = 0x01;
+						bitmask = 0x01L;
 					}
 					else
 						bitmask <<= 1;
 					
-					chip.embed[id_1][word] &= ~bitmask;
-					chip.embed[id_2][word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id_1) + word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id_2) + word] &= ~bitmask;
 					
 					if (r == 0) continue;
 					
@@ -1678,10 +2294,10 @@ public abstract class OptimumSingleProbeEmbedding
 						continue;
 					
 					if (r != AffymetrixChip.AFFY_MIDDLE_BASE)
-						chip.embed[id_2][word] |= bitmask;
+						chip.embed[chip.embeddingOffset(id_2) + word] |= bitmask;
 					
 					if (r != AffymetrixChip.AFFY_MIDDLE_BASE + 1)
-						chip.embed[id_1][word] |= bitmask;
+						chip.embed[chip.embeddingOffset(id_1) + word] |= bitmask;
 
 					r--;
 				}
@@ -1716,7 +2332,8 @@ public abstract class OptimumSingleProbeEmbedding
 			@Override
 			protected void addProbeCost (int id_1)
 			{
-				int		id_2, base, pos, word, bitmask = 0;
+				int		id_2, base, pos, word;
+				long	bitmask = 0;
 				boolean	p_1, p_2, middle_base = false;
 				double	pos_mul;
 				
@@ -1727,16 +2344,16 @@ public abstract class OptimumSingleProbeEmbedding
 				
 				for (base = 0, word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					p_1 = (chip.embed[id_1][word] & bitmask) != 0;
-					p_2 = (chip.embed[id_2][word] & bitmask) != 0;
+					p_1 = (chip.embed[chip.embeddingOffset(id_1) + word] & bitmask) != 0;
+					p_2 = (chip.embed[chip.embeddingOffset(id_2) + word] & bitmask) != 0;
 					
 					if (p_1 || p_2)
 					{
@@ -1848,20 +2465,21 @@ public abstract class OptimumSingleProbeEmbedding
 			private void addSingleProbeCost (int id, double mask_pm,
 					double unmask_pm, double mask_mm, double unmask_mm)
 			{
-				int		b, pos, word, bitmask = 0;
+				int		b, pos, word;
+				long	bitmask = 0;
 				double	m;
 				
 				for (b = 0, word = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
 						word++;
-						bitmask = 0x01 << (Integer.SIZE-1);
+						bitmask = 0x01L << (Long.SIZE-1);
 					}
 					else
 						bitmask >>>= 1;
 					
-					if ((chip.embed[id][word] & bitmask) != 0)
+					if ((chip.embed[chip.embeddingOffset(id) + word] & bitmask) != 0)
 					{
 						mask_cost_pm[pos] += mask_pm;
 						mask_cost_mm[pos] += mask_mm;
@@ -1929,25 +2547,26 @@ public abstract class OptimumSingleProbeEmbedding
 			protected void encodeEmbedding (int id_1, int id_2,
 					double matrix[][])
 			{
-				int		r, c, pos, word, bitmask;
+				int		r, c, pos, word;
+				long	bitmask;
 				double	mask_cost;
 				
 				pos = embed_len;
-				word = pos / Integer.SIZE;
-				bitmask = 0x01 << (Integer.SIZE - 1 - (pos % Integer.SIZE));
+				word = pos / Long.SIZE;
+				bitmask = 0x01L << (Long.SIZE - 1 - (pos % Long.SIZE));
 				
 				for (r = probe_len + 1, c = embed_len; pos > 0; c--)
 				{
-					if ((pos-- % Integer.SIZE) == 0)
+					if ((pos-- % Long.SIZE) == 0)
 					{
 						word--;
-						bitmask = 0x01;
+						bitmask = 0x01L;
 					}
 					else
 						bitmask <<= 1;
 
-					chip.embed[id_1][word] &= ~bitmask;
-					chip.embed[id_2][word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id_1) + word] &= ~bitmask;
+					chip.embed[chip.embeddingOffset(id_2) + word] &= ~bitmask;
 					
 					if (r == 0) continue;
 					
@@ -1958,10 +2577,10 @@ public abstract class OptimumSingleProbeEmbedding
 						continue;
 					
 					if (r != AffymetrixChip.AFFY_MIDDLE_BASE)
-						chip.embed[id_2][word] |= bitmask;
+						chip.embed[chip.embeddingOffset(id_2) + word] |= bitmask;
 					
 					if (r != AffymetrixChip.AFFY_MIDDLE_BASE + 1)
-						chip.embed[id_1][word] |= bitmask;
+						chip.embed[chip.embeddingOffset(id_1) + word] |= bitmask;
 					
 					r--;
 				}
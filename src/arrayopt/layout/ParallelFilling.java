@@ -0,0 +1,295 @@
+/*
+ * ParallelFilling.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.layout;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * This class fills the final sub-regions produced by a partitioning algorithm
+ * in parallel. Partitioning algorithms first collect their final sub-regions
+ * (called leaves) with {@link #addLeaf}, and then call {@link #fillLeaves} to
+ * fill them all.
+ * 
+ * <P>Filling algorithms examine the spots around the region they fill, so two
+ * leaves can only be filled at the same time if they are far enough from each
+ * other. For this reason, the leaves are colored so that leaves of the same
+ * color are farther apart than the dimension of the conflict region (see
+ * {@link ConflictIndex#dimConflictRegion()}), and are filled in rounds, one
+ * color at a time. The leaves are colored in row-major order of their top-left
+ * corners, so the resulting layout does not depend on the number of threads
+ * nor on the order in which the leaves were collected.</P>
+ * 
+ * <P>Every leaf is filled by a worker that is not in use by any other task.
+ * Workers hold whatever working data the leaves need (typically, a copy of the
+ * filling algorithm); they are created on demand by {@link #newWorker} and
+ * reused afterwards.</P>
+ * 
+ * @param <W> type of worker
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+abstract class ParallelFilling<W>
+{
+	/**
+	 * The chip being filled.
+	 */
+	private Chip chip;
+	
+	/**
+	 * Leaves waiting to be filled.
+	 */
+	private ArrayList<Leaf> leaves;
+	
+	/**
+	 * Workers not in use.
+	 */
+	private ConcurrentLinkedQueue<W> idle;
+	
+	/**
+	 * Creates a new instance to fill the leaves of the given chip.
+	 * 
+	 * @param chip chip instance
+	 * @param worker first worker, used before any other is created
+	 */
+	ParallelFilling (Chip chip, W worker)
+	{
+		this.chip = chip;
+		this.leaves = new ArrayList<Leaf> ();
+		this.idle = new ConcurrentLinkedQueue<W> ();
+		this.idle.add (worker);
+	}
+	
+	/**
+	 * Creates a new worker. This method is called when a leaf has to be
+	 * filled but all existing workers are in use.
+	 * 
+	 * @return a new worker
+	 */
+	abstract W newWorker ();
+	
+	/**
+	 * Fills a leaf with the given worker.
+	 * 
+	 * @param worker a worker not in use by any other task
+	 * @param region the leaf's region
+	 * @param range the leaf's data (usually, ranges of a probe ID array)
+	 * @return number of unplaced probes
+	 */
+	abstract int fillLeaf (W worker, RectangularRegion region, int range[]);
+	
+	/**
+	 * Adds a leaf to be filled later. This method can be called concurrently.
+	 * 
+	 * @param region the leaf's region
+	 * @param range the leaf's data (usually, ranges of a probe ID array)
+	 */
+	synchronized void addLeaf (RectangularRegion region, int... range)
+	{
+		leaves.add (new Leaf (region, range));
+	}
+	
+	/**
+	 * Fills all the leaves added so far, one color at a time, and returns the
+	 * number of unplaced probes.
+	 * 
+	 * @return number of unplaced probes
+	 */
+	int fillLeaves ()
+	{
+		ArrayList<Leaf> same_color;
+		Leaf leaf[];
+		int i, color, num_colors, unplaced = 0;
+		
+		// sort the leaves by position
+		Collections.sort (leaves, new Comparator<Leaf> () {
+			public int compare (Leaf a, Leaf b)
+			{
+				if (a.region.first_row != b.region.first_row)
+					return a.region.first_row < b.region.first_row ? -1 : +1;
+				return a.region.first_col < b.region.first_col ? -1 :
+						a.region.first_col == b.region.first_col ? 0 : +1;
+			}
+		});
+		
+		num_colors = colorLeaves ();
+		
+		same_color = new ArrayList<Leaf> ();
+		
+		for (color = 0; color < num_colors; color++)
+		{
+			same_color.clear();
+			for (i = 0; i < leaves.size(); i++)
+				if (leaves.get(i).color == color)
+					same_color.add (leaves.get(i));
+			
+			leaf = same_color.toArray(new Leaf [same_color.size()]);
+			
+			unplaced += ForkJoinPool.commonPool().invoke(
+					new FillingTask (leaf, 0, leaf.length - 1));
+		}
+		
+		leaves.clear();
+		
+		return unplaced;
+	}
+	
+	/**
+	 * Colors the leaves so that any two leaves of the same color are farther
+	 * apart than the dimension of the conflict region, and returns the number
+	 * of colors used.
+	 */
+	private int colorLeaves ()
+	{
+		RectangularRegion r;
+		int owner[][], used[], i, j, row, col, dist, num_colors = 0;
+		int min_row, max_row, min_col, max_col;
+		
+		dist = Math.max(1, ConflictIndex.dimConflictRegion());
+		
+		// map each spot to its leaf (-1 if none)
+		owner = new int [chip.getNumberOfRows()][chip.getNumberOfColumns()];
+		for (row = 0; row < owner.length; row++)
+			Arrays.fill (owner[row], -1);
+		for (i = 0; i < leaves.size(); i++)
+		{
+			r = leaves.get(i).region;
+			for (row = r.first_row; row <= r.last_row; row++)
+				for (col = r.first_col; col <= r.last_col; col++)
+					owner[row][col] = i;
+		}
+		
+		// greedy coloring (used[c] == i + 1 marks that
+		// color c is taken by a neighbor of leaf i)
+		used = new int [leaves.size() + 1];
+		
+		for (i = 0; i < leaves.size(); i++)
+		{
+			r = leaves.get(i).region;
+			min_row = Math.max(r.first_row - dist, 0);
+			max_row = Math.min(r.last_row + dist, owner.length - 1);
+			min_col = Math.max(r.first_col - dist, 0);
+			max_col = Math.min(r.last_col + dist, owner[0].length - 1);
+			
+			for (row = min_row; row <= max_row; row++)
+				for (col = min_col; col <= max_col; col++)
+				{
+					// only leaves already colored
+					if ((j = owner[row][col]) >= 0 && j < i)
+						used[leaves.get(j).color] = i + 1;
+				}
+			
+			for (j = 0; used[j] == i + 1; j++);
+			
+			leaves.get(i).color = j;
+			if (j >= num_colors) num_colors = j + 1;
+		}
+		
+		return num_colors;
+	}
+	
+	/**
+	 * A final sub-region and its data.
+	 */
+	private static class Leaf
+	{
+		RectangularRegion region;
+		
+		int range[];
+		
+		int color;
+		
+		Leaf (RectangularRegion region, int range[])
+		{
+			this.region = region;
+			this.range = range;
+		}
+	}
+	
+	/**
+	 * Fills a range of leaves of the same color as a fork-join task, splitting
+	 * the range in halves.
+	 */
+	private class FillingTask extends RecursiveTask<Integer>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Leaf leaf[];
+		
+		private int first;
+		
+		private int last;
+		
+		FillingTask (Leaf leaf[], int first, int last)
+		{
+			this.leaf = leaf;
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected Integer compute ()
+		{
+			FillingTask left, right;
+			W worker;
+			int unplaced;
+			
+			if (first > last) return 0;
+			
+			if (first < last)
+			{
+				int mid = (first + last) >>> 1;
+				
+				left = new FillingTask (leaf, first, mid);
+				right = new FillingTask (leaf, mid + 1, last);
+				invokeAll (left, right);
+				
+				return left.join() + right.join();
+			}
+			
+			if ((worker = idle.poll()) == null)
+				worker = newWorker ();
+			
+			unplaced = fillLeaf (worker, leaf[first].region, leaf[first].range);
+			
+			idle.offer(worker);
+			
+			return unplaced;
+		}
+	}
+}
@@ -68,6 +68,14 @@ import arrayopt.util.QuickSort;
  * exceed a percentage of the total number of probes defined by the
  * {@link #MIN_PERCENTAGE_PIVOTS} constant.</P>
  * 
+ * <P><B>Parallel mode</B>. The partitioning does not depend on how the final
+ * sub-regions are filled, since each sub-region is filled with its own set of
+ * probes. In parallel mode, the whole partitioning is done first, and the
+ * final sub-regions are then re-embedded and filled in parallel by
+ * {@link ParallelFilling}, each worker using its own
+ * {@link OptimumSingleProbeEmbedding} instance and copy of the filling
+ * algorithm.</P>
+ * 
  * @author Anna Domanski
  * @author Ronny Gaertner
  * @author Sergio A. de Carvalho Jr.
@@ -128,16 +136,14 @@ public class PivotPartitioning implements LayoutAlgorithm
 	private long rank[];
 
 	/**
-	 * TODO use this to speed up the selection of pivots by computing the
-	 * number of embedding of every probe at once, storing the results on this
-	 * array sorting the probes by the number of embeddings
+	 * TODO document this
 	 */
-	private long num_embed[];
+	private double dist[];
 
 	/**
-	 * TODO document this
+	 * Minimum distance of the non-pivot probes to the second pivot.
 	 */
-	private double dist[];
+	private double dist_2[];
 
 	/**
 	 * TODO document this
@@ -159,6 +165,16 @@ public class PivotPartitioning implements LayoutAlgorithm
 	 */
 	private int rows_per_probe;
 	
+	/**
+	 * Whether the final sub-regions are filled in parallel.
+	 */
+	private boolean parallel;
+	
+	/**
+	 * Final sub-regions waiting to be filled (parallel mode only).
+	 */
+	private ParallelFilling<Worker> leaves;
+	
 	/**
 	 * TODO document this
 	 */
@@ -179,6 +195,22 @@ public class PivotPartitioning implements LayoutAlgorithm
 	 * TODO document this
 	 */
 	public PivotPartitioning (FillingAlgorithm filler, int mode, int max_depth)
+	{
+		this(filler, mode, max_depth, false);
+	}
+
+	/**
+	 * Creates an instance of the Pivot Partitioning algorithm with the
+	 * specified filling algorithm, minimization mode and maximum partitioning
+	 * depth, optionally filling the final sub-regions in parallel.
+	 * 
+	 * @param filler filling algorithm used in the final sub-regions
+	 * @param mode minimization mode
+	 * @param max_depth maximum partitioning depth
+	 * @param parallel whether to fill the final sub-regions in parallel
+	 */
+	public PivotPartitioning (FillingAlgorithm filler, int mode, int max_depth,
+			boolean parallel)
 	{
 		switch (mode)
 		{
@@ -194,6 +226,7 @@ public class PivotPartitioning implements LayoutAlgorithm
 		
 		this.filler = filler;
 		this.max_depth = (max_depth < 1) ? 1 : max_depth;
+		this.parallel = parallel;
 	}
 
 	/**
@@ -229,16 +262,45 @@ public class PivotPartitioning implements LayoutAlgorithm
 		this.offset = pivots;
 		
 		// create probe ranking array
-		rank = new long[nonpivots];
+		rank = chip.computeProbeRanks (pid, pivots, pid.length - 1);
 		rank_sort = new RankSorting (pid, rank, pivots);
-		computeProbeRanks (pivots, pid.length - 1);
 		
 		// create probe distance array
 		dist = new double[nonpivots];
+		dist_2 = new double[nonpivots];
 		dist_sort = new DistanceSorting (pid, rank, dist, offset);
 		
+		if (!parallel)
+		{
+			horizontalDivide (1, chip.getChipRegion(), 0, pivots - 1, pivots,
+				pid.length - 1);
+			return;
+		}
+		
+		// partition the chip, collecting the final sub-regions
+		this.leaves = new ParallelFilling<Worker> (chip,
+				new Worker (ospe, rank_sort, filler))
+		{
+			Worker newWorker ()
+			{
+				return new Worker (
+						OptimumSingleProbeEmbedding.createEmbedder(chip, mode),
+						new RankSorting (pid, rank, offset), filler.clone());
+			}
+			
+			int fillLeaf (Worker w, RectangularRegion r, int range[])
+			{
+				return fillRegion (w.ospe, w.rank_sort, w.filler, r,
+						range[0], range[1], range[2], range[3]);
+			}
+		};
+		
 		horizontalDivide (1, chip.getChipRegion(), 0, pivots - 1, pivots,
 			pid.length - 1);
+		
+		leaves.fillLeaves ();
+		
+		this.leaves = null;
 	}
 	
 	private int selectPivots ()
@@ -253,13 +315,13 @@ public class PivotPartitioning implements LayoutAlgorithm
 		// (or 2 in case of Affymetrix chips since the middle bases of PM/MM
 		// pairs usually have some degree of freedom); pivots with more than 2
 		// possible embeddings are considered 'fake' pivots
-		if (ospe.numberOfEmbeddings(pid[0]) > 2)
+		if (chip.numberOfEmbeddings(pid[0]) > 2)
 		{
 			// yes: we call these probes as 'fake' pivots
 			start_fake = 0;
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[0]);
+			// long noe = chip.numberOfEmbeddings(pid[0]);
 			// System.err.println(num_pivots + " fake pivots selected => noe: " + noe);
 		}
 		else
@@ -269,7 +331,7 @@ public class PivotPartitioning implements LayoutAlgorithm
 			start_fake = num_pivots;
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[0]);
+			// long noe = chip.numberOfEmbeddings(pid[0]);
 			// System.err.println(num_pivots + " true pivots selected => noe: " + noe);
 		}
 		
@@ -286,7 +348,7 @@ public class PivotPartitioning implements LayoutAlgorithm
 			num_pivots = findPivots (num_pivots, end);
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[num_pivots - 1]);
+			// long noe = chip.numberOfEmbeddings(pid[num_pivots - 1]);
 			// System.err.println("Pivot list extended to " + num_pivots + " => noe: " + noe);
 		}
 		
@@ -320,12 +382,12 @@ public class PivotPartitioning implements LayoutAlgorithm
 		int i, border, tmp;
 		long noe, min;
 		
-		min = ospe.numberOfEmbeddings(pid[start]);
+		min = chip.numberOfEmbeddings(pid[start]);
 		
 		// select probes with the lowest number of embeddings as pivots
 		for (border = start + 1, i = border; i <= end; i++)
 		{
-			if ((noe = ospe.numberOfEmbeddings(pid[i])) == min)
+			if ((noe = chip.numberOfEmbeddings(pid[i])) == min)
 			{
 				tmp = pid[border];
 				pid[border] = pid[i];
@@ -652,16 +714,15 @@ public class PivotPartitioning implements LayoutAlgorithm
 		QuickSort.sort(rank_sort, first, total);
 		
 		// compute and save the minimum distance of every probe to pivot p1
-		dist[first - offset] = ospe.minDistanceProbe(pid[first], p1);
-		for (i = first + 1; i <= last; i++)
-			dist[i - offset] = ospe.minDistanceProbe(pid[i]);
+		ospe.minDistanceProbe(pid, first, last, p1, dist, offset);
+		
+		// compute the minimum distance of every probe to pivot p2
+		ospe.minDistanceProbe(pid, first, last, p2, dist_2, offset);
 		
 		// subtract the the min distance to p1 by the min distance to p2
-		d = dist[first - offset] -= ospe.minDistanceProbe(pid[first], p2);
-		if (d < 0) count1++; else if (d > 0) count2++;
-		for (i = first + 1; i <= last; i++)
+		for (i = first; i <= last; i++)
 		{
-			d = dist[i - offset] -= ospe.minDistanceProbe(pid[i]);
+			d = dist[i - offset] -= dist_2[i - offset];
 			if (d < 0) count1++; else if (d > 0) count2++;
 		}
 		
@@ -698,58 +759,24 @@ public class PivotPartitioning implements LayoutAlgorithm
 		return first + count1;
 	}
 	
-	private void computeProbeRanks (int start, int end)
+	private int fillRegion (RectangularRegion region, int f_pivot, int l_pivot,
+			int f_probe, int l_probe)
 	{
-		int  i, word, step, bitmask = 0;
-		long base_mask;
-		
-		for (i = start; i <= end; i++)
-			rank[i - offset] = 0;
-		
-		for (word = -1, step = 0; step < chip.embed_len; step++)
+		if (parallel)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
-				word++;
-			}
-			else
-				bitmask >>>= 1;
-
-			switch (chip.dep_seq[step])
-			{
-				case 'A':
-					base_mask = 0x00;
-					break;
-					
-				case 'C':
-					base_mask = 0x01;
-					break;
-
-				case 'G':
-					base_mask = 0x02;
-					break;
-					
-				case 'T':
-					base_mask = 0x03;
-					break;
-				
-				default:
-					throw new IllegalArgumentException
-						("Illegal deposition sequence.");
-			}
-			
-			for (i = start; i <= end; i++)
-				if ((bitmask & chip.embed[pid[i]][word]) != 0)
-				{
-					rank[i - offset] <<= 2;
-					rank[i - offset] |= base_mask;
-				}
+			// region will be filled later
+			leaves.addLeaf (region, f_pivot, l_pivot, f_probe, l_probe);
+			return 0;
 		}
+		
+		return fillRegion (ospe, rank_sort, filler, region, f_pivot, l_pivot,
+				f_probe, l_probe);
 	}
-
-	private int fillRegion (RectangularRegion region, int f_pivot, int l_pivot,
-			int f_probe, int l_probe)
+	
+	private int fillRegion (OptimumSingleProbeEmbedding ospe,
+			RankSorting rank_sort, FillingAlgorithm filler,
+			RectangularRegion region, int f_pivot, int l_pivot, int f_probe,
+			int l_probe)
 	{
 		int i, num_pivots, num_probes, all[];
 		
@@ -782,6 +809,26 @@ public class PivotPartitioning implements LayoutAlgorithm
 		return filler.fillRegion(chip, region, all);
 	}
 
+	/**
+	 * Working data used to fill a final sub-region (parallel mode only).
+	 */
+	private static class Worker
+	{
+		OptimumSingleProbeEmbedding ospe;
+		
+		RankSorting rank_sort;
+		
+		FillingAlgorithm filler;
+		
+		Worker (OptimumSingleProbeEmbedding ospe, RankSorting rank_sort,
+				FillingAlgorithm filler)
+		{
+			this.ospe = ospe;
+			this.rank_sort = rank_sort;
+			this.filler = filler;
+		}
+	}
+
 	private class RankSorting implements ArrayIndexedCollection
 	{
 		private int probe_id[];
@@ -950,6 +997,7 @@ public class PivotPartitioning implements LayoutAlgorithm
 				break;
 		}
 		
-		return this.getClass().getSimpleName() + m + max_depth + "-" + filler;
+		return this.getClass().getSimpleName() + m + max_depth +
+				(parallel ? "-Parallel" : "") + "-" + filler;
 	}
 }
\ No newline at end of file
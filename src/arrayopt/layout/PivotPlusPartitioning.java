@@ -106,15 +106,10 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 
 	private long rank[];
 
-	/**
-	 * TODO use this to speed up the selection of pivots by computing the
-	 * number of embedding of every probe at once, storing the results on this
-	 * array sorting the probes by the number of embeddings
-	 */
-	private long num_embed[];
-
 	private double dist[];
 
+	private double dist_2[];
+
 	private int offset;
 
 	private RankSorting rank_sort;
@@ -190,12 +185,12 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 		this.offset = pivots;
 		
 		// create probe ranking array
-		rank = new long[nonpivots];
+		rank = chip.computeProbeRanks (pid, pivots, pid.length - 1);
 		rank_sort = new RankSorting (pid, rank, pivots);
-		computeProbeRanks (pivots, pid.length - 1);
 		
 		// create probe distance array
 		dist = new double[nonpivots];
+		dist_2 = new double[nonpivots];
 		dist_sort = new DistanceSorting (pid, rank, dist, offset);
 		
 		horizontalDivide (1, chip.getChipRegion(), 0, pivots - 1, pivots,
@@ -214,13 +209,13 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 		// (or 2 in case of Affymetrix chips since the middle bases of PM/MM
 		// pairs usually have some degree of freedom); pivots with more than 2
 		// possible embeddings are considered 'fake' pivots
-		if (ospe.numberOfEmbeddings(pid[0]) > 2)
+		if (chip.numberOfEmbeddings(pid[0]) > 2)
 		{
 			// yes: we call these probes as 'fake' pivots
 			start_fake = 0;
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[0]);
+			// long noe = chip.numberOfEmbeddings(pid[0]);
 			// System.err.println(num_pivots + " fake pivots selected => noe: " + noe);
 		}
 		else
@@ -230,7 +225,7 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 			start_fake = num_pivots;
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[0]);
+			// long noe = chip.numberOfEmbeddings(pid[0]);
 			// System.err.println(num_pivots + " true pivots selected => noe: " + noe);
 		}
 		
@@ -247,7 +242,7 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 			num_pivots = findPivots (num_pivots, end);
 			
 			// TODO remove this
-			// long noe = ospe.numberOfEmbeddings(pid[num_pivots - 1]);
+			// long noe = chip.numberOfEmbeddings(pid[num_pivots - 1]);
 			// System.err.println("Pivot list extended to " + num_pivots + " => noe: " + noe);
 		}
 		
@@ -281,12 +276,12 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 		int i, border, tmp;
 		long noe, min;
 		
-		min = ospe.numberOfEmbeddings(pid[start]);
+		min = chip.numberOfEmbeddings(pid[start]);
 		
 		// select probes with the lowest number of embeddings as pivots
 		for (border = start + 1, i = border; i <= end; i++)
 		{
-			if ((noe = ospe.numberOfEmbeddings(pid[i])) == min)
+			if ((noe = chip.numberOfEmbeddings(pid[i])) == min)
 			{
 				tmp = pid[border];
 				pid[border] = pid[i];
@@ -687,16 +682,15 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 		QuickSort.sort(rank_sort, first, total);
 		
 		// compute and save the minimum distance of every probe to pivot p1
-		dist[first - offset] = ospe.minDistanceProbe(pid[first], p1);
-		for (i = first + 1; i <= last; i++)
-			dist[i - offset] = ospe.minDistanceProbe(pid[i]);
+		ospe.minDistanceProbe(pid, first, last, p1, dist, offset);
+		
+		// compute the minimum distance of every probe to pivot p2
+		ospe.minDistanceProbe(pid, first, last, p2, dist_2, offset);
 		
 		// subtract the the min distance to p1 by the min distance to p2
-		d = dist[first - offset] -= ospe.minDistanceProbe(pid[first], p2);
-		if (d < 0) count1++; else if (d > 0) count2++;
-		for (i = first + 1; i <= last; i++)
+		for (i = first; i <= last; i++)
 		{
-			d = dist[i - offset] -= ospe.minDistanceProbe(pid[i]);
+			d = dist[i - offset] -= dist_2[i - offset];
 			if (d < 0) count1++; else if (d > 0) count2++;
 		}
 		
@@ -733,56 +727,6 @@ public class PivotPlusPartitioning implements LayoutAlgorithm
 		return first + count1;
 	}
 	
-	private void computeProbeRanks (int start, int end)
-	{
-		int  i, word, step, bitmask = 0;
-		long base_mask;
-		
-		for (i = start; i <= end; i++)
-			rank[i - offset] = 0;
-		
-		for (word = -1, step = 0; step < chip.embed_len; step++)
-		{
-			if (step % Integer.SIZE == 0)
-			{
-				bitmask = 0x01 << (Integer.SIZE - 1);
-				word++;
-			}
-			else
-				bitmask >>>= 1;
-
-			switch (chip.dep_seq[step])
-			{
-				case 'A':
-					base_mask = 0x00;
-					break;
-					
-				case 'C':
-					base_mask = 0x01;
-					break;
-
-				case 'G':
-					base_mask = 0x02;
-					break;
-					
-				case 'T':
-					base_mask = 0x03;
-					break;
-				
-				default:
-					throw new IllegalArgumentException
-						("Illegal deposition sequence.");
-			}
-			
-			for (i = start; i <= end; i++)
-				if ((bitmask & chip.embed[pid[i]][word]) != 0)
-				{
-					rank[i - offset] <<= 2;
-					rank[i - offset] |= base_mask;
-				}
-		}
-	}
-
 	private int fillRegion (RectangularRegion region, int f_pivot, int l_pivot,
 			int f_probe, int l_probe)
 	{
@@ -76,6 +76,21 @@ import java.util.*;
  * brought to a similar scale with the log function)
  * </UL>
  * 
+ * <P>The pending spots are kept in an indexed binary heap (see
+ * {@link SpotQueue}) that knows the position of every spot in the heap. When a
+ * spot is re-embedded, only the pending spots around it (whose number of
+ * re-embedded neighbors can change) are looked up and moved up in the heap,
+ * rather than scanning the whole queue. Ties between spots of equal priority
+ * are broken by their position on the chip (top to bottom, left to right), so
+ * that the order in which the spots are processed is fully determined by
+ * their priorities. Since updates are cheap, the queue is not limited in size,
+ * and the priority order can extend over the whole chip.</P>
+ * 
+ * <P>The state of the pending spots (number of embeddings and of re-embedded
+ * neighbors) is stored in arrays indexed by spot (row-major), and the queue
+ * only holds spot indices, so that no objects are allocated while the queue
+ * is processed.</P>
+ * 
  * <P>Like the {@link SequentialReembedding}, this algorithm actually scans
  * the chip several times and, since the OSPE never increases the amount of
  * conflicts (sum of border lengths or conflict indices), it is guaranteed to
@@ -104,9 +119,9 @@ public class PriorityReembedding implements LayoutAlgorithm
 	
 	public static final int PRIORITY_BALANCED = 2;
 	
-	private PriorityQueue<PendingSpot> queue;
+	private SpotQueue queue;
 	
-	private Comparator<PendingSpot> comparator;
+	private SpotPriority comparator;
 	
 	private OptimumSingleProbeEmbedding embedder;
 	
@@ -134,11 +149,29 @@ public class PriorityReembedding implements LayoutAlgorithm
 	
 	private int num_probes;
 	
-	private long num_embed[];
+	/**
+	 * Keeps track of the border length between passes (border length
+	 * minimization with a threshold only).
+	 */
+	private BorderLengthTracker tracker;
 	
-	private final int ADD_REGION_DIM = 1;
+	private ConflictIndexField ci_field;
 	
-	private final int MAX_QUEUE_SIZE = 6000;
+	/**
+	 * Number of embeddings of the probe of each pending spot (in a log scale,
+	 * indexed by spot).
+	 */
+	private double spot_embeds[];
+	
+	/**
+	 * Weighted number of re-embedded neighbors of each pending spot (indexed
+	 * by spot).
+	 */
+	private double spot_neighbors[];
+	
+	private int ci_dim;
+	
+	private final int ADD_REGION_DIM = 1;
 	
 	private final int MAX_INITIAL_PIVOTS = 2000;
 	
@@ -267,17 +300,20 @@ public class PriorityReembedding implements LayoutAlgorithm
 		this.spot_ready = new BitSet (num_rows * num_cols);
 		this.spot_added = new BitSet (num_rows * num_cols);
 		
+		this.tracker = null;
+		this.ci_field = null;
+		
 		if (reset_first)
 			this.spot_copy = new int [num_rows][num_cols];
 		else
 			this.spot_copy = null;
 		
-		this.num_embed = new long [chip.getNumberOfProbes()];
+		this.spot_embeds = new double [num_rows * num_cols];
+		this.spot_neighbors = new double [num_rows * num_cols];
+		this.ci_dim = ConflictIndex.dimConflictRegion();
 		
-		// create the priority queue with an initial
-		// capacity of 20% of the number of probes
-		int capacity = (int) (.2d * this.num_probes);
-		this.queue = new PriorityQueue<PendingSpot> (capacity, comparator);
+		// create the priority queue (indexed by spot)
+		this.queue = new SpotQueue (num_rows * num_cols);
 		
 		if (chip instanceof SimpleChip)
 		{
@@ -303,12 +339,19 @@ public class PriorityReembedding implements LayoutAlgorithm
 		if (threshold > 0)
 		{
 			if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-				last_conf = LayoutEvaluation.borderLength(chip);
+			{
+				// the border length is updated as the spots are re-embedded
+				tracker = new BorderLengthTracker (chip, false);
+				last_conf = tracker.getBorderLength();
+			}
 			else // CONFLICT_INDEX_MIN
-				last_conf = LayoutEvaluation.averageConflictIndex(chip);
+			{
+				ci_field = new ConflictIndexField (chip);
+				last_conf = ci_field.getAverageConflictIndex();
+			}
 		}
 		
-		pivot_threshold = analyzeProbes();
+		pivot_threshold = analyzeProbes(chip);
 		
 		reset = this.reset_first;
 		
@@ -330,9 +373,14 @@ public class PriorityReembedding implements LayoutAlgorithm
 			if (threshold > 0)
 			{
 				if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-					curr_conf = LayoutEvaluation.borderLength(chip);
+					curr_conf = tracker.getBorderLength();
 				else // CONFLICT_INDEX_MIN
-					curr_conf = LayoutEvaluation.averageConflictIndex(chip);
+				{
+					// only re-compute the spots affected by this pass
+					// (the field is notified as the spots are re-embedded)
+					ci_field.refresh();
+					curr_conf = ci_field.getAverageConflictIndex();
+				}
 				
 				impr = (last_conf - curr_conf) / last_conf;
 				
@@ -359,9 +407,16 @@ public class PriorityReembedding implements LayoutAlgorithm
 		if (threshold > 0)
 		{
 			if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-				last_conf = LayoutEvaluation.borderLength(chip);
+			{
+				// the border length is updated as the spots are re-embedded
+				tracker = new BorderLengthTracker (chip, false);
+				last_conf = tracker.getBorderLength();
+			}
 			else // CONFLICT_INDEX_MIN
-				last_conf = LayoutEvaluation.averageConflictIndex(chip);
+			{
+				ci_field = new ConflictIndexField (chip);
+				last_conf = ci_field.getAverageConflictIndex();
+			}
 		}
 		
 		pivot_threshold = analyzeProbes(chip);
@@ -386,9 +441,14 @@ public class PriorityReembedding implements LayoutAlgorithm
 			if (threshold > 0)
 			{
 				if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-					curr_conf = LayoutEvaluation.borderLength(chip);
+					curr_conf = tracker.getBorderLength();
 				else // CONFLICT_INDEX_MIN
-					curr_conf = LayoutEvaluation.averageConflictIndex(chip);
+				{
+					// only re-compute the spots affected by this pass
+					// (the field is notified as the spots are re-embedded)
+					ci_field.refresh();
+					curr_conf = ci_field.getAverageConflictIndex();
+				}
 				
 				impr = (last_conf - curr_conf) / last_conf;
 				
@@ -419,17 +479,26 @@ public class PriorityReembedding implements LayoutAlgorithm
 					continue;
 				}
 				
-				if (num_embed[id] <= limit)
+				if (chip.numberOfEmbeddings(id) <= limit)
 				{
-					if (!reset && num_embed[id] > 1)
+					if (!reset && chip.numberOfEmbeddings(id) > 1)
+					{
+						if (tracker != null) tracker.removeSpot(r, c);
 						embedder.reembedSpot(r, c, id);
+						if (tracker != null) tracker.addSpot(r, c);
+						if (ci_field != null) ci_field.update(r, c);
+					}
 					
 					setReadySpot(r, c);
 				}
 				else if (reset)
 				{
 					spot_copy[r][c] = id;
-					chip.spot[r][c] = Chip.EMPTY_SPOT;
+					
+					if (tracker != null)
+						tracker.setSpot(r, c, Chip.EMPTY_SPOT);
+					else
+						chip.spot[r][c] = Chip.EMPTY_SPOT;
 				}
 			}
 		
@@ -465,10 +534,15 @@ public class PriorityReembedding implements LayoutAlgorithm
 				
 				if (!chip.isPMProbe(id)) continue;
 				
-				if (num_embed[id] <= limit)
+				if (chip.numberOfEmbeddings(id) <= limit)
 				{
-					if (!reset && num_embed[id] > 1)
+					if (!reset && chip.numberOfEmbeddings(id) > 1)
+					{
+						if (tracker != null) removePair (r, c);
 						embedder.reembedSpot(r, c, id);
+						if (tracker != null) addPair (r, c);
+						if (ci_field != null) updatePair (r, c);
+					}
 					
 					setReadySpot(r, c);
 					setReadySpot(r + 1, c);
@@ -477,8 +551,11 @@ public class PriorityReembedding implements LayoutAlgorithm
 				{
 					spot_copy[r][c] = id;
 					spot_copy[r + 1][c] = chip.spot[r + 1][c];
+					
+					if (tracker != null) removePair (r, c);
 					chip.spot[r][c] = Chip.EMPTY_SPOT;
 					chip.spot[r + 1][c] = Chip.EMPTY_SPOT;
+					if (tracker != null) addPair (r, c);
 				}
 			}
 		
@@ -499,17 +576,17 @@ public class PriorityReembedding implements LayoutAlgorithm
 					}
 	}
 
-	private long analyzeProbes ()
+	private long analyzeProbes (SimpleChip chip)
 	{
-		long min = Long.MAX_VALUE;
+		long noe, min = Long.MAX_VALUE;
 		
 		for (int p = 0; p < num_probes; p++)
-			if ((num_embed[p] = embedder.numberOfEmbeddings(p)) < min)
+			if ((noe = chip.numberOfEmbeddings(p)) < min)
 			{
-				min = num_embed[p];
+				min = noe;
 				num_pivot_candidates = 1;
 			}
-			else if (num_embed[p] == min)
+			else if (noe == min)
 			{
 				num_pivot_candidates++;
 			}
@@ -519,16 +596,16 @@ public class PriorityReembedding implements LayoutAlgorithm
 
 	private long analyzeProbes (AffymetrixChip chip)
 	{
-		long min = Long.MAX_VALUE;
+		long noe, min = Long.MAX_VALUE;
 		
 		for (int p = 0; p < num_probes; p++)
 			if (chip.isPMProbe(p))
-				if ((num_embed[p] = embedder.numberOfEmbeddings(p)) < min)
+				if ((noe = chip.numberOfEmbeddings(p)) < min)
 				{
-					min = num_embed[p];
+					min = noe;
 					num_pivot_candidates = 1;
 				}
-				else if (num_embed[p] == min)
+				else if (noe == min)
 				{
 					num_pivot_candidates++;
 				}
@@ -538,19 +615,12 @@ public class PriorityReembedding implements LayoutAlgorithm
 	
 	private void processQueue (Chip chip, boolean reset)
 	{
-		ArrayList<PendingSpot> updated;
-		Iterator<PendingSpot> iter;
-		PendingSpot s;
-		int row, col;
-
-		// list of spots that were updated and need
-		// to be re-inserted into the queue
-		updated = new ArrayList<PendingSpot> ();
+		int s, row, col;
 		
-		while((s = queue.poll()) != null)
+		while((s = queue.poll()) >= 0)
 		{
-			row = s.row;
-			col = s.col;
+			row = s / num_cols;
+			col = s % num_cols;
 			
 			if (chip instanceof SimpleChip)
 				restoreSpot ((SimpleChip) chip, row, col, reset);
@@ -558,35 +628,63 @@ public class PriorityReembedding implements LayoutAlgorithm
 				restoreSpot ((AffymetrixChip) chip, row, col, reset);
 			
 			if (priority != PRIORITY_NUM_OF_EMBEDDINGS)
-			{
-				// check spots that need to be updated due to
-				// the restoration of the last spot
-				for (iter = queue.iterator(); iter.hasNext(); )
-				{
-					s = iter.next();
-					
-					if (s.addNeighbor(row, col))
-			        {
-						// remove spots that were updated (they need to be
-						// re-inserted in order to restore the queue's ordering)
-			        	iter.remove();
-			        	updated.add(s);
-			        }
-				}
-				
-				// re-insert updated spots
-				queue.addAll(updated);
-				updated.clear();
-			}
+				// update spots affected by the restoration of the last spot
+				updateNeighbors (chip, row, col);
 			
-			if (queue.size() < MAX_QUEUE_SIZE)
+			if (chip instanceof SimpleChip)
+				addNeighbors ((SimpleChip) chip, row, col);
+			else
+				addNeighbors ((AffymetrixChip) chip, row, col);
+		}
+	}
+	
+	private void updateNeighbors (Chip chip, int row, int col)
+	{
+		boolean affy, updated;
+		int s, dim, row_dim, col_dim;
+		
+		// define the region around the spot where pending
+		// spots may count the spot as a neighbor
+		if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
+			dim = 1;
+		else // CONFLICT_INDEX_MIN
+			dim = ConflictIndex.dimConflictRegion();
+		
+		if (affy = chip instanceof AffymetrixChip)
+		{
+			// pairs span two rows
+			row_dim = dim + 1;
+			col_dim = dim;
+		}
+		else
+		{
+			row_dim = col_dim = dim;
+		}
+		
+		int min_row = Math.max(row - row_dim, 0);
+		int min_col = Math.max(col - col_dim, 0);
+		int max_row = Math.min(row + row_dim, num_rows - 1);
+		int max_col = Math.min(col + col_dim, num_cols - 1);
+		
+		for (int r = min_row; r <= max_row; r++)
+			for (int c = min_col; c <= max_col; c++)
 			{
-				if (chip instanceof SimpleChip)
-					addNeighbors ((SimpleChip) chip, row, col);
-				else
-					addNeighbors ((AffymetrixChip) chip, row, col);
+				s = r * num_cols + c;
+				
+				if (!queue.contains(s))
+					continue;
+				
+				if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
+					updated = affy ? addNeighborAffyBL (s, row, col) :
+									 addNeighborSimpleBL (s, row, col);
+				else // CONFLICT_INDEX_MIN
+					updated = affy ? addNeighborAffyCI (s, row, col) :
+									 addNeighborSimpleCI (s, row, col);
+				
+				if (updated)
+					// restore the queue's ordering
+					queue.update(s);
 			}
-		}
 	}
 
 	private void addNeighbors (SimpleChip chip, int row, int col)
@@ -706,6 +804,9 @@ public class PriorityReembedding implements LayoutAlgorithm
 	{
 		int id;
 
+		if (tracker != null)
+			tracker.removeSpot(row, col);
+		
 		if (reset)
 			chip.spot[row][col] = spot_copy[row][col];
 		
@@ -714,6 +815,12 @@ public class PriorityReembedding implements LayoutAlgorithm
 		setReadySpot (row, col);
 		
 		embedder.reembedSpot(row, col, id);
+		
+		if (tracker != null)
+			tracker.addSpot(row, col);
+		
+		if (ci_field != null)
+			ci_field.update(row, col);
 	}
 
 	private void restoreSpot (AffymetrixChip chip, int row, int col,
@@ -721,6 +828,9 @@ public class PriorityReembedding implements LayoutAlgorithm
 	{
 		int id;
 		
+		if (tracker != null)
+			removePair (row, col);
+		
 		if (reset)
 		{
 			chip.spot[row][col] = spot_copy[row][col];
@@ -733,12 +843,45 @@ public class PriorityReembedding implements LayoutAlgorithm
 		setReadySpot (row + 1, col);
 		
 		embedder.reembedSpot(row, col, id);
+		
+		if (tracker != null)
+			addPair (row, col);
+		
+		if (ci_field != null)
+			updatePair (row, col);
+	}
+	
+	/**
+	 * Removes a pair of PM/MM probes from the border length tracker.
+	 */
+	private void removePair (int row, int col)
+	{
+		tracker.removeSpot(row, col);
+		tracker.removeSpot(row + 1, col);
+	}
+	
+	/**
+	 * Adds a pair of PM/MM probes back to the border length tracker.
+	 */
+	private void addPair (int row, int col)
+	{
+		tracker.addSpot(row, col);
+		tracker.addSpot(row + 1, col);
+	}
+	
+	/**
+	 * Notifies the conflict index field that a pair of PM/MM probes may have
+	 * changed.
+	 */
+	private void updatePair (int row, int col)
+	{
+		ci_field.update(row, col);
+		ci_field.update(row + 1, col);
 	}
 	
 	private void addSpot (SimpleChip chip, int row, int col)
 	{
-		PendingSpot s;
-		int id;
+		int s, id;
 		
 		if (isReadySpot(row, col) || isAddedSpot(row, col))
 			return;
@@ -757,7 +900,8 @@ public class PriorityReembedding implements LayoutAlgorithm
 			else
 				neighbors = 0;
 			
-			s = new SimpleBL (row, col, num_embed[id], neighbors);
+			s = setPendingSpot (row, col,
+					Math.log10(chip.numberOfEmbeddings(id)), neighbors);
 		}
 		else // CONFLICT_INDEX_MIN
 		{
@@ -768,7 +912,8 @@ public class PriorityReembedding implements LayoutAlgorithm
 			else
 				neighbors = 0;
 			
-			s = new SimpleCI (row, col, num_embed[id], neighbors);
+			s = setPendingSpot (row, col,
+					Math.log(chip.numberOfEmbeddings(id)), neighbors);
 		}
 		
 		queue.offer(s);
@@ -778,8 +923,7 @@ public class PriorityReembedding implements LayoutAlgorithm
 
 	private void addSpot (AffymetrixChip chip, int row, int col)
 	{
-		PendingSpot s;
-		int id;
+		int s, id;
 		
 		if (isReadySpot(row, col) || isAddedSpot(row, col))
 			return;
@@ -802,7 +946,8 @@ public class PriorityReembedding implements LayoutAlgorithm
 			else
 				neighbors = 0;
 			
-			s = new AffyBL (row, col, num_embed[id], neighbors);
+			s = setPendingSpot (row, col,
+					Math.log10(chip.numberOfEmbeddings(id)), neighbors);
 		}
 		else // CONFLICT_INDEX_MIN
 		{
@@ -813,7 +958,8 @@ public class PriorityReembedding implements LayoutAlgorithm
 			else
 				neighbors = 0;
 			
-			s = new AffyCI (row, col, num_embed[id], neighbors);
+			s = setPendingSpot (row, col,
+					Math.log(chip.numberOfEmbeddings(id)), neighbors);
 		}
 		
 		queue.offer(s);
@@ -956,6 +1102,25 @@ public class PriorityReembedding implements LayoutAlgorithm
 		return n;
 	}
 
+	/**
+	 * Stores the state of a pending spot and returns its index. The number of
+	 * embeddings is scaled down with the log function (base 10 in border
+	 * length mode, base e in conflict index mode, where the number of
+	 * neighbors is greater) to a number closer to the number of neighbors, so
+	 * that they can be better combined in case of
+	 * {@link #PRIORITY_BALANCED}.
+	 */
+	private int setPendingSpot (int row, int col, double embeds,
+			double neighbors)
+	{
+		int s = row * num_cols + col;
+		
+		spot_embeds[s] = embeds;
+		spot_neighbors[s] = neighbors;
+		
+		return s;
+	}
+	
 	private void setReadySpot (int row, int col)
 	{
 		spot_ready.set(row * num_cols + col);
@@ -1021,296 +1186,208 @@ public class PriorityReembedding implements LayoutAlgorithm
 	}
 
 	/**
-	 * Abstract class representing a pending spot, i.e. a spot whose probe still
-	 * needs to be re-embedded. This class implements the Comparable interface
-	 * so that its instances can be added to a priority queue. The order imposed
-	 * allows the priority queue to return spots with probes that have the least
-	 * degree of freedom in their embeddings. In order to achieve that, a spot
-	 * <CODE>a</CODE> is considered less than spot <CODE>b</CODE> if and only
-	 * if the probe of <CODE>a</CODE> has less valid of embeddings than the
-	 * probe of <CODE>b</CODE>. In case of ties, <CODE>a</CODE> is considered
-	 * less than <CODE>b</CODE> if <CODE>a</CODE> has less ready immediate
-	 * neighbors (called borders). In case of ties...  
-	 * 
-	 * <P/>Note: this class has a natural ordering that is inconsistent with
-	 * equals.</P> 
+	 * Updates the number of re-embedded neighbors of a pending spot of a
+	 * {@link SimpleChip} in border length mode if the given spot is one of its
+	 * immediate neighbors.
 	 */
-	private static abstract class PendingSpot
+	private boolean addNeighborSimpleBL (int s, int r, int c)
 	{
-		protected int row;
-		protected int col;
-		protected double neighbors;
-		double embeds;
+		int row = s / num_cols, col = s % num_cols;
+		int	add = 0;
 		
-		private PendingSpot (int row, int col, double embeds, double neighbors)
+		if (r == row)
 		{
-			this.row = row;
-			this.col = col;
-			this.embeds = embeds;
-			this.neighbors = neighbors;
+			if (c == col - 1)
+				add = 1;
+			else if (c == col + 1)
+				add = 1;
 		}
-		
-		@Override
-		public String toString ()
+		else if (c == col)
 		{
-			return "Spot " + row + "," + col + " (" + embeds + " embeddings, " +
-						neighbors +	" finished neighbors)";
+			if (r == row - 1)
+				add = 1;
+			else if (r == row + 1)
+				add = 1;
 		}
 		
-		abstract boolean addNeighbor (int r, int c);
-	}
-	
-	private static abstract class BorderLengthSpot extends PendingSpot
-	{
-		private BorderLengthSpot (int row, int col, long embeds,
-				double neighbors)
+		if (add > 0)
 		{
-			super (row, col, Math.log10(embeds), neighbors);
-			
-			// the number of embeddings is scaled down to a number closer
-			// to the number of embeddings so that they can be better
-			// combined in case of PRIORITY_BALANCED
+			spot_neighbors[s] += add;
+			return true;
 		}
+		// else
+			return false;
 	}
 
-	private static abstract class ConflictIndexSpot extends PendingSpot
+	/**
+	 * Updates the weighted number of re-embedded neighbors of a pending spot
+	 * of a {@link SimpleChip} in conflict index mode if the given spot is in
+	 * its conflict region.
+	 */
+	private boolean addNeighborSimpleCI (int s, int r, int c)
 	{
-		protected int ci_dim;
+		int row = s / num_cols, col = s % num_cols;
+		double	add = 0;
 		
-		private ConflictIndexSpot (int row, int col, long embeds,
-				double neighbors)
-		{
-			// the number of embeddings is scaled down to a number closer
-			// to the number of embeddings so that they can be better
-			// combined in case of PRIORITY_BALANCED; log (base e) is used
-			// since the number of neighbors here is greater than in the
-			// case of BorderLengthSpot
-			super (row, col, Math.log(embeds), neighbors);			
-			
-			ci_dim = ConflictIndex.dimConflictRegion();
-		}		
-	}
-	
-	private static class SimpleBL extends BorderLengthSpot
-	{
-		SimpleBL (int row, int col, long embeds, int neighbors)
-		{
-			super (row, col, embeds, neighbors);
-		}
+		if (row  < r - ci_dim || row > r + ci_dim)
+			return false;
+		
+		if (col < c - ci_dim || col > c + ci_dim)
+			return false;
 		
-		@Override
-		boolean addNeighbor (int r, int c)
+		add += ConflictIndex.distanceWeight(row, col, r, c);
+		add += ConflictIndex.distanceWeight(r, c, row, col);
+		
+		if (add > 0)
 		{
-			int	add = 0;
-			
-			if (r == this.row)
-			{
-				if (c == this.col - 1)
-					add = 1;
-				else if (c == this.col + 1)
-					add = 1;
-			}
-			else if (c == this.col)
-			{
-				if (r == this.row - 1)
-					add = 1;
-				else if (r == this.row + 1)
-					add = 1;
-			}
-			
-			if (add > 0)
-			{
-				this.neighbors += add;
-				return true;
-			}
-			// else
-				return false;
+			spot_neighbors[s] += add;
+			return true;
 		}
+		// else
+			return false;
 	}
 
-	private static class SimpleCI extends ConflictIndexSpot
+	/**
+	 * Updates the number of re-embedded neighbors of a pending spot (with a
+	 * PM probe) of an {@link AffymetrixChip} in border length mode if the
+	 * given spot is one of its immediate neighbors.
+	 */
+	private boolean addNeighborAffyBL (int s, int r, int c)
 	{
-		SimpleCI (int row, int col, long embeds, double neighbors)
-		{
-			super (row, col, embeds, neighbors);
-		}
+		int	pm_row, mm_row, col, add = 0;
+		
+		pm_row = s / num_cols;
+		mm_row = pm_row + 1;
+		col = s % num_cols;
 		
-		@Override
-		boolean addNeighbor (int r, int c)
+		if (r == pm_row || r == mm_row)
 		{
-			double	add = 0;
-			
-			if (this.row  < r - ci_dim || this.row > r + ci_dim)
-				return false;
-			
-			if (this.col < c - ci_dim || this.col > c + ci_dim)
-				return false;
-			
-			add += ConflictIndex.distanceWeight(this.row, this.col, r, c);
-			add += ConflictIndex.distanceWeight(r, c, this.row, this.col);
-			
-			if (add > 0)
-			{
-				this.neighbors += add;
-				return true;
-			}
-			// else
-				return false;
+			if (c == col - 1)
+				add = 1;
+			else if (c == col + 1)
+				add = 1;
 		}
-	}
-
-	private static class AffyBL extends BorderLengthSpot
-	{
-		AffyBL (int row, int col, long embeds, int neighbors)
+		else if (c == col)
 		{
-			super (row, col, embeds, neighbors);
+			if (r == pm_row - 2 || r == pm_row + 2)
+				add = 1;
 		}
 		
-		@Override
-		boolean addNeighbor (int r, int c)
+		if (add > 0)
 		{
-			int	pm_row, mm_row, add = 0;
-			
-			// this class is intended to hold spots with PM probes only
-			pm_row = this.row;
-			mm_row = this.row + 1;
-						
-			if (r == pm_row || r == mm_row)
-			{
-				if (c == this.col - 1)
-					add = 1;
-				else if (c == this.col + 1)
-					add = 1;
-			}
-			else if (c == this.col)
-			{
-				if (r == pm_row - 2 || r == pm_row + 2)
-					add = 1;
-			}
-			
-			if (add > 0)
-			{
-				this.neighbors += add;
-				return true;
-			}
-			// else
-				return false;
-		}		
+			spot_neighbors[s] += add;
+			return true;
+		}
+		// else
+			return false;
 	}
 
-	private static class AffyCI extends ConflictIndexSpot
+	/**
+	 * Updates the weighted number of re-embedded neighbors of a pending spot
+	 * (with a PM probe) of an {@link AffymetrixChip} in conflict index mode if
+	 * the given pair of spots is in its conflict region.
+	 */
+	private boolean addNeighborAffyCI (int s, int r, int c)
+	{
+		return addNeighborSingleProbe (s, r, c) ||
+				addNeighborSingleProbe (s, r + 1, c);
+	}
+	
+	private boolean addNeighborSingleProbe (int s, int r, int c)
 	{
-		AffyCI (int row, int col, long embeds, double neighbors)
+		int		r_pm, r_mm, col;
+		double	add = 0;
+		
+		r_pm = s / num_cols;
+		r_mm = r_pm + 1;
+		col = s % num_cols;
+		
+		if (col < c - ci_dim || col > c + ci_dim)
+			return false;
+		
+		if (r_pm >= r - ci_dim && r_pm <= r + ci_dim)
 		{
-			super (row, col, embeds, neighbors);						
+			add += ConflictIndex.distanceWeight(r_pm, col, r, c);
+			add += ConflictIndex.distanceWeight(r, c, r_pm, col);
 		}
 		
-		@Override
-		boolean addNeighbor (int r, int c)
+		if (r_mm >= r - ci_dim && r_mm <= r + ci_dim)
 		{
-			return addNeighborSingleProbe (r, c) ||
-					addNeighborSingleProbe (r + 1, c);
+			add += ConflictIndex.distanceWeight(r_mm, col, r, c);
+			add += ConflictIndex.distanceWeight(r, c, r_mm, col);
 		}
 		
-		private boolean addNeighborSingleProbe (int r, int c)
+		if (add > 0)
 		{
-
-			int		r_pm, r_mm;
-			double	add = 0;
-			
-			r_pm = this.row;
-			r_mm = r_pm + 1;
-			
-			if (this.col < c - ci_dim || this.col > c + ci_dim)
-				return false;
-			
-			if (r_pm >= r - ci_dim && r_pm <= r + ci_dim)
-			{
-				add += ConflictIndex.distanceWeight(r_pm, this.col, r, c);
-				add += ConflictIndex.distanceWeight(r, c, r_pm, this.col);
-			}
-			
-			if (r_mm >= r - ci_dim && r_mm <= r + ci_dim)
-			{
-				add += ConflictIndex.distanceWeight(r_mm, this.col, r, c);
-				add += ConflictIndex.distanceWeight(r, c, r_mm, this.col);
-			}
-			
-			if (add > 0)
-			{
-				this.neighbors += add;
-				return true;
-			}
-			// else
-				return false;			
-		}		
+			spot_neighbors[s] += add;
+			return true;
+		}
+		// else
+			return false;			
 	}
 	
-	private static class EmbeddingsPriority implements Comparator<PendingSpot>
+	/**
+	 * Order imposed on the pending spots. A spot <CODE>s1</CODE> comes before
+	 * spot <CODE>s2</CODE> if the result is negative. The spots are given by
+	 * their indices, and their state is read from {@link #spot_embeds} and
+	 * {@link #spot_neighbors}.
+	 */
+	private interface SpotPriority
 	{
-		public int compare (PendingSpot s1, PendingSpot s2)
+		int compare (int s1, int s2);
+	}
+	
+	private class EmbeddingsPriority implements SpotPriority
+	{
+		public int compare (int s1, int s2)
 		{
-			if (s1.equals(s2)) return 0;
-			
 			// a spot whose probe has less number of embeddings
 			// has less flexibility and should come first
-			if (s1.embeds < s2.embeds)
+			if (spot_embeds[s1] < spot_embeds[s2])
 				return -1;
 			
-			if (s1.embeds > s2.embeds)
+			if (spot_embeds[s1] > spot_embeds[s2])
 				return +1;
 			
-			// ideally, ties would not need to be broken since the priority
-			// queue should be able to handle objects of equal order; however,
-			// the PriorityQueue.remove(Object) is currently removing an object
-			// based on its ordering and not based on Object.equals(Object),
-			// thus another object may be deleted just because it has the same
-			// ordering (compareTo returns zero) - this problem has been
-			// reported as a Java bug (bug ID 6268068); moreover, by returning
-			// a non-zero value, the comparator becomes consistent with equals
-			return -1;
+			// ties are broken by the queue (see SpotQueue)
+			return 0;
 		}
 	}
 
-	private static class NeighborsPriority implements Comparator<PendingSpot>
+	private class NeighborsPriority implements SpotPriority
 	{
-		public int compare (PendingSpot s1, PendingSpot s2)
+		public int compare (int s1, int s2)
 		{
-			if (s1.equals(s2)) return 0;
-
 			// a spot with greater number of ready neighbors
 			// has less flexibility and should come first
-			if (s1.neighbors > s2.neighbors)
+			if (spot_neighbors[s1] > spot_neighbors[s2])
 				return -1;
 			
-			if (s1.neighbors < s2.neighbors)
+			if (spot_neighbors[s1] < spot_neighbors[s2])
 				return +1;
 			
 			// in case of ties, we look at the number of embeddings:
 			// a spot whose probe has less number of embeddings
 			// has less flexibility and should come first
-			if (s1.embeds < s2.embeds)
+			if (spot_embeds[s1] < spot_embeds[s2])
 				return -1;
 			
-			if (s1.embeds > s2.embeds)
+			if (spot_embeds[s1] > spot_embeds[s2])
 				return +1;
 
-			// CAUTION: see note on the return statement of the
-			// EmbeddingsPriority.compare method
-			return -1;
+			// ties are broken by the queue (see SpotQueue)
+			return 0;
 		}
 	}
 
-	private static class BalancedPriority implements Comparator<PendingSpot>
+	private class BalancedPriority implements SpotPriority
 	{
-		public int compare (PendingSpot s1, PendingSpot s2)
+		public int compare (int s1, int s2)
 		{
 			double cmp;
 			
-			if (s1.equals(s2)) return 0;
-			
-			cmp = (s1.embeds - s2.embeds);
-			cmp += (s2.neighbors - s1.neighbors);
+			cmp = (spot_embeds[s1] - spot_embeds[s2]);
+			cmp += (spot_neighbors[s2] - spot_neighbors[s1]);
 			
 			if (cmp < 0)
 				return -1;
@@ -1318,9 +1395,129 @@ public class PriorityReembedding implements LayoutAlgorithm
 			if (cmp > 0)
 				return +1;
 			
-			// CAUTION: see note on the return statement of the
-			// EmbeddingsPriority.compare method
-			return -1;
+			// ties are broken by the queue (see SpotQueue)
+			return 0;
+		}
+	}
+	
+	/**
+	 * Indexed binary heap of pending spots (given by their indices). Besides
+	 * the heap, it keeps the position of every spot of the chip in the heap (or
+	 * -1 if the spot is not in the queue), so that a pending spot can be found
+	 * in constant time, and its position restored in logarithmic time after
+	 * its priority changes. Spots are ordered by the selected priority and, in
+	 * case of ties, by their position on the chip.
+	 */
+	private class SpotQueue
+	{
+		private int heap[];
+		
+		private int heap_pos[];
+		
+		private int size;
+		
+		SpotQueue (int num_spots)
+		{
+			heap = new int [num_spots];
+			heap_pos = new int [num_spots];
+			
+			for (int i = 0; i < num_spots; i++)
+				heap_pos[i] = -1;
+		}
+		
+		boolean contains (int s)
+		{
+			return heap_pos[s] >= 0;
+		}
+		
+		void offer (int s)
+		{
+			heap[size] = s;
+			heap_pos[s] = size;
+			siftUp (size++);
+		}
+		
+		/**
+		 * Removes and returns the spot with highest priority, or -1 if the
+		 * queue is empty.
+		 */
+		int poll ()
+		{
+			int s;
+			
+			if (size == 0) return -1;
+			
+			s = heap[0];
+			heap_pos[s] = -1;
+			
+			if (--size > 0)
+			{
+				heap[0] = heap[size];
+				heap_pos[heap[0]] = 0;
+				siftDown (0);
+			}
+			
+			return s;
+		}
+		
+		/**
+		 * Restores the ordering after the priority of a spot has changed.
+		 */
+		void update (int s)
+		{
+			siftUp (heap_pos[s]);
+			siftDown (heap_pos[s]);
+		}
+		
+		private boolean precedes (int s1, int s2)
+		{
+			int cmp = comparator.compare(s1, s2);
+			
+			if (cmp != 0)
+				return cmp < 0;
+			
+			return s1 < s2;
+		}
+		
+		private void siftUp (int pos)
+		{
+			int s = heap[pos], parent;
+			
+			while (pos > 0)
+			{
+				parent = (pos - 1) >>> 1;
+				
+				if (!precedes(s, heap[parent]))
+					break;
+				
+				heap[pos] = heap[parent];
+				heap_pos[heap[pos]] = pos;
+				pos = parent;
+			}
+			
+			heap[pos] = s;
+			heap_pos[s] = pos;
+		}
+		
+		private void siftDown (int pos)
+		{
+			int s = heap[pos], child;
+			
+			while ((child = 2 * pos + 1) < size)
+			{
+				if (child + 1 < size && precedes(heap[child + 1], heap[child]))
+					child++;
+				
+				if (!precedes(heap[child], s))
+					break;
+				
+				heap[pos] = heap[child];
+				heap_pos[heap[pos]] = pos;
+				pos = child;
+			}
+			
+			heap[pos] = s;
+			heap_pos[s] = pos;
 		}
 	}
 }
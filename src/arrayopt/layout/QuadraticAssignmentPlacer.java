@@ -38,6 +38,7 @@
 package arrayopt.layout;
 
 import arrayopt.qap.*;
+import java.util.*;
 
 /**
  * This class models and solves the placement problem as an instance of a
@@ -74,6 +75,17 @@ import arrayopt.qap.*;
  * map the decimal numbers returned by {@link ConflictIndex} to integer numbers.
  * This is done by multiplying the values by a constant and rounding to the
  * nearest integer, which may impair the results.</P>
+ * 
+ * <P>The spot distance matrix is passed to the solvers in sparse format (see
+ * {@link SparseMatrix}). In border length mode, each spot is only adjacent to
+ * its (at most) four neighbors, and the matrix is built directly in sparse
+ * format. Solvers that exploit the sparsity, such as the
+ * {@link SimulatedAnnealing}, can thus handle large regions; the others work
+ * with its dense representation.</P>
+ * 
+ * <P>If no solver is given to the constructor, a pure-Java solver is chosen
+ * automatically according to the dimension of each QAP instance (see
+ * {@link #selectSolver}).</P>
  *
  */
 public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
@@ -102,6 +114,20 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	 */
 	private QAPSolverAlgorithm solver;
 
+	/**
+	 * Indicates whether the solver is chosen according to the dimension of the
+	 * QAP instances.
+	 */
+	private boolean auto_solver;
+
+	/**
+	 * Maximum dimension of QAP instances solved with the
+	 * {@link RobustTabuSearch} when the solver is chosen automatically. Larger
+	 * instances are solved with the {@link SimulatedAnnealing}, whose
+	 * iterations take constant time.
+	 */
+	public static final int MAX_TABU_SEARCH_DIM = 64;
+
 	/**
 	 * Indicates whether the goal is to minimize the sum of border lengths or
 	 * conflict indices.
@@ -114,9 +140,44 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	private static final int DOUBLE2INT_MULT = 100;
 
 	/**
-	 * Distance between the spots (flow matrix of QAP).
+	 * Distance between the spots (flow matrix of QAP). This matrix is shared
+	 * through the {@link #spot_dist_cache}.
 	 */
-	private int[] spot_dist;
+	private SparseMatrix spot_dist;
+
+	/**
+	 * Key of the current spot distance matrix in the cache.
+	 */
+	private String spot_key;
+
+	/**
+	 * Maximum number of spot distance matrices kept in the cache.
+	 */
+	private static final int SPOT_DIST_CACHE_SIZE = 16;
+
+	/**
+	 * Cache of spot distance matrices shared by all instances. A spot distance
+	 * matrix only depends on the shape of the region, on the number of rows
+	 * per probe and on the minimization goal (see {@link #spotKey}), so that
+	 * optimizing many regions of the same size (with the
+	 * {@link SlidingWindowOptimization}, for instance) requires a single
+	 * matrix.
+	 */
+	private static final Map<String,SparseMatrix> spot_dist_cache =
+		Collections.synchronizedMap(
+			new LRUMap<String,SparseMatrix> (SPOT_DIST_CACHE_SIZE));
+
+	/**
+	 * Maximum number of problem dimensions whose working buffers are kept.
+	 */
+	private static final int BUFFER_POOL_SIZE = 4;
+
+	/**
+	 * Working buffers of the last solved problem dimensions. Regions at the
+	 * borders of the chip are usually smaller than the others, and this pool
+	 * avoids reallocating the buffers every time the dimension changes.
+	 */
+	private Map<Integer,Buffers> buffers;
 
 	/**
 	 * Distance between the probes (distance matrix of QAP).
@@ -145,18 +206,6 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	 */
 	private RectangularRegion region;
 
-	/**
-	 * Height (number of rows) of the (rectangular) region related to the
-	 * current or last QAP instance.
-	 */
-	private int last_height;
-
-	/**
-	 * Width (number of columns) of the (rectangular) region related to the
-	 * current or last QAP instance.
-	 */
-	private int last_width;
-
 	/**
 	 * Number of rows taken by each probe of the chip, i.e. 1 in case of a
 	 * {@link SimpleChip} or 2 in case of a {@link AffymetrixChip}.
@@ -173,9 +222,9 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	public QuadraticAssignmentPlacer (QAPSolverAlgorithm solver, int mode)
 	{
 		this.solver = solver;
+		this.auto_solver = (solver == null);
 		this.dim = -1;
-		this.last_height = -1;
-		this.last_width = -1;
+		this.buffers = new LRUMap<Integer,Buffers> (BUFFER_POOL_SIZE);
 		
 		switch (mode)
 		{
@@ -190,6 +239,38 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 		}
 	}
 
+	/**
+	 * Creates an QAP placer with the desired minimization goal that chooses a
+	 * pure-Java {@link QAPSolverAlgorithm} according to the dimension of each
+	 * QAP instance.
+	 *   
+	 * @param mode border length or conflict index minimization
+	 */
+	public QuadraticAssignmentPlacer (int mode)
+	{
+		this (null, mode);
+	}
+
+	/**
+	 * Returns a pure-Java {@link QAPSolverAlgorithm} suitable for QAP instances
+	 * of the given dimension. Small instances are solved with the
+	 * {@link RobustTabuSearch}, which finds the best solutions on instances
+	 * with up to {@link #MAX_TABU_SEARCH_DIM} spots in roughly the same time as
+	 * the {@link JavaGraspPathRelinking}. Larger instances are solved with the
+	 * {@link SimulatedAnnealing}, which is an order of magnitude faster than
+	 * both.
+	 * 
+	 * @param dim dimension of the QAP instances
+	 * @return a QAP solver algorithm
+	 */
+	public static QAPSolverAlgorithm selectSolver (int dim)
+	{
+		if (dim <= MAX_TABU_SEARCH_DIM)
+			return new RobustTabuSearch ();
+		
+		return new SimulatedAnnealing ();
+	}
+
 	/**
 	 * Returns the current minimization mode, i.e. border length
 	 * ({@link #MODE_BORDER_LENGTH}) or conflict index
@@ -306,6 +387,43 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 		return fillRegion (chip, r, probe_id, 0, probe_id.length - 1);
 	}
 
+	/**
+	 * Creates and returns a copy of this QuadraticAssignmentPlacer object with
+	 * the same options. Working data is not shared between the instances, and
+	 * the {@link QAPSolverAlgorithm} is also copied.
+	 *
+	 * @return a clone of this instance
+	 */
+	@Override
+	public QuadraticAssignmentPlacer clone ()
+	{
+		QuadraticAssignmentPlacer c;
+		
+		try
+		{
+			c = (QuadraticAssignmentPlacer) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+		
+		if (solver != null)
+			c.solver = solver.clone();
+		
+		// working data is created on demand
+		c.spot_dist = null;
+		c.spot_key = null;
+		c.buffers = new LRUMap<Integer,Buffers> (BUFFER_POOL_SIZE);
+		c.probe_dist = null;
+		c.perm = null;
+		c.p_id = null;
+		c.dim = -1;
+		
+		return c;
+	}
+
 	/**
 	 * Fills a given region of a chip with a set of probes using the
 	 * {@link QAPSolverAlgorithm} with the aim of minimizing the sum of border
@@ -371,6 +489,7 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	private void configure (Chip chip, Region r)
 	{
 		int		curr_height, curr_width, curr_dim;
+		String	key;
 		
 		if (!(r instanceof RectangularRegion))
 			throw new IllegalArgumentException
@@ -396,28 +515,66 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 		curr_height = (region.last_row - region.first_row + 1) / rows_per_probe;
 		curr_width = region.last_col - region.first_col + 1;
 
-		if (curr_height == this.last_height && curr_width == this.last_width)
-			// region dimensions are the same as last time
+		key = spotKey (curr_height, curr_width);
+		
+		if (key.equals(this.spot_key))
+			// spot distance matrix is the same as last time
 			return;
 		
-		// alocate new arrays if current problem's dimension
+		// get new buffers if current problem's dimension
 		// is not equal to the last solved problem
 		if ((curr_dim = curr_height * curr_width) != this.dim)
 		{
+			Buffers b;
+			
 			this.dim = curr_dim;
-			this.spot_dist = new int [dim * dim];
-			this.probe_dist = new int [dim * dim];
-			this.perm = new int [dim];
-			this.p_id = new int [dim];
+			
+			if ((b = buffers.get(dim)) == null)
+			{
+				b = new Buffers (dim);
+				buffers.put(dim, b);
+			}
+			
+			this.probe_dist = b.probe_dist;
+			this.perm = b.perm;
+			this.p_id = b.p_id;
+			
+			if (auto_solver)
+			{
+				if (b.solver == null)
+					b.solver = selectSolver (dim);
+				this.solver = b.solver;
+			}
 		}
 		
-		// recompute spot distance matrix
-		computeSpotDistance ();
+		// reuse or compute spot distance matrix
+		if ((this.spot_dist = spot_dist_cache.get(key)) == null)
+		{
+			if (mode == MODE_BORDER_LENGTH)
+				this.spot_dist = computeSpotAdjacency (curr_height, curr_width);
+			else
+				this.spot_dist = new SparseMatrix (dim, computeSpotDistance ());
 			
-		// save dimensions to allow future
-		// reuse of the spot distance matrix
-		this.last_height = curr_height;
-		this.last_width = curr_width;
+			spot_dist_cache.put(key, this.spot_dist);
+		}
+		
+		this.spot_key = key;
+	}
+
+	/**
+	 * Returns the key of the spot distance matrix of a region with the given
+	 * dimensions (in number of probes) under the current configuration. In
+	 * conflict index mode, the key also depends on the conflict index
+	 * definition currently loaded.
+	 */
+	private String spotKey (int height, int width)
+	{
+		int def;
+		
+		def = (mode == MODE_CONFLICT_INDEX) ? ConflictIndex.getDefinition() : -1;
+		
+		return height + "x" + width + ":" + rows_per_probe + ":" + mode + ":"
+				+ def;
 	}
 	
 	/**
@@ -464,10 +621,58 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 	}
 
 	/**
-	 * Compute the distance between the spots (the flow matrix).
+	 * Compute the distance between the spots (the flow matrix) in sparse
+	 * format for the border length mode, where only neighboring spots have a
+	 * non-zero distance. The result is the same as the one of
+	 * {@link #computeSpotDistance}, without the O(dim^2) dense matrix.
+	 */
+	private SparseMatrix computeSpotAdjacency (int height, int width)
+	{
+		int	ptr[], idx[], val[], s, row, col, k;
+		
+		ptr = new int [dim + 1];
+		idx = new int [4 * dim];
+		
+		// spots are numbered column by column (as in computeSpotDistance)
+		for (k = 0, s = 0, col = 0; col < width; col++)
+		{
+			for (row = 0; row < height; row++, s++)
+			{
+				ptr[s] = k;
+				
+				if (col > 0)
+					idx[k++] = s - height;
+				
+				// vertical neighbors on affymetrix chips are two rows
+				// apart and, as in computeSpotDistance, are not adjacent
+				if (rows_per_probe == 1)
+				{
+					if (row > 0)
+						idx[k++] = s - 1;
+					
+					if (row < height - 1)
+						idx[k++] = s + 1;
+				}
+				
+				if (col < width - 1)
+					idx[k++] = s + height;
+			}
+		}
+		ptr[dim] = k;
+		
+		val = new int [k];
+		Arrays.fill(val, 1);
+		
+		return new SparseMatrix (dim, ptr, idx, val);
+	}
+
+	/**
+	 * Compute the distance between the spots (the flow matrix). The distances
+	 * only depend on the relative positions of the spots in the region.
 	 */
-	private void computeSpotDistance ()
+	private int[] computeSpotDistance ()
 	{
+		int spot_dist[] = new int [dim * dim];
 		int	ci_dim, s1, s1_row, s1_col, s2, s2_row, s2_col, v_dist, h_dist, d;
 		
 		ci_dim = ConflictIndex.dimConflictRegion();
@@ -526,6 +731,8 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 			}
 			s1++;
 		}
+		
+		return spot_dist;
 	}
 	
 	/**
@@ -713,4 +920,48 @@ public class QuadraticAssignmentPlacer implements LayoutAlgorithm,
 
 		return unplaced;
 	}
+
+	/**
+	 * Working buffers for QAP instances of a given dimension.
+	 */
+	private static class Buffers
+	{
+		int probe_dist[];
+
+		int perm[];
+
+		int p_id[];
+
+		QAPSolverAlgorithm solver;
+
+		Buffers (int dim)
+		{
+			this.probe_dist = new int [dim * dim];
+			this.perm = new int [dim];
+			this.p_id = new int [dim];
+		}
+	}
+
+	/**
+	 * A map that keeps at most a given number of entries, discarding the least
+	 * recently used one when the limit is exceeded.
+	 */
+	private static class LRUMap<K,V> extends LinkedHashMap<K,V>
+	{
+		private static final long serialVersionUID = 1L;
+
+		private int max_size;
+
+		LRUMap (int max_size)
+		{
+			super (max_size + 1, 1, true);
+			this.max_size = max_size;
+		}
+
+		@Override
+		protected boolean removeEldestEntry (Map.Entry<K,V> eldest)
+		{
+			return size() > max_size;
+		}
+	}
 }
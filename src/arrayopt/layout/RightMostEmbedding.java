@@ -109,37 +109,38 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	 */
 	void reembedProbe (SimpleChip chip, int probe_id, int shift)
 	{
-	 	int oldmask, newmask, oldint, oldpos, newint, newpos;
-		int[] newembedding = new int[chip.embed[probe_id].length];
+	 	int oldint, oldpos, newint, newpos;
+	 	long oldmask, newmask;
+		long[] newembedding = new long[chip.embed_words];
 
-		for (newint = 0; newint < chip.embed[probe_id].length; newint++)
+		for (newint = 0; newint < chip.embed_words; newint++)
 			newembedding[newint] = 0;
 
         oldpos = chip.dep_seq.length - 1;
 		newpos = oldpos - shift + 1;
-		oldmask = 0x01 << ((Integer.SIZE - 1) - (oldpos % Integer.SIZE));
-		newmask = 0x01 << ((Integer.SIZE - 1) - (newpos % Integer.SIZE));
-		newint =(int) Math.floor((double) newpos/Integer.SIZE);
-		oldint =(int) Math.floor((double) oldpos/Integer.SIZE);
+		oldmask = 0x01L << ((Long.SIZE - 1) - (oldpos % Long.SIZE));
+		newmask = 0x01L << ((Long.SIZE - 1) - (newpos % Long.SIZE));
+		newint =(int) Math.floor((double) newpos/Long.SIZE);
+		oldint =(int) Math.floor((double) oldpos/Long.SIZE);
 
 		while(oldpos > -1)
 		{	
-			if ((oldpos+1) % (Integer.SIZE) == 0)
+			if ((oldpos+1) % (Long.SIZE) == 0)
 			{	
 				oldint --;
-				oldmask=0x01;
+				oldmask=0x01L;
 			}
 
-			if (((chip.embed[probe_id][oldint]) &  oldmask) != 0)
+			if (((chip.embed[chip.embeddingOffset(probe_id) + oldint]) &  oldmask) != 0)
 			{
 			
 				while (--newpos > -1)
 				{
 				
-				    if ((newpos+1) % (Integer.SIZE) == 0)
+				    if ((newpos+1) % (Long.SIZE) == 0)
 				    {
 				        newint--;
-				        newmask = 0x01;
+				        newmask = 0x01L;
 				    }
 				    else
 				        newmask <<= 1;
@@ -160,7 +161,7 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		oldpos--;
 		oldmask <<= 1;
 	}
-        System.arraycopy(newembedding,0,chip.embed[probe_id],0,chip.embed[probe_id].length);
+        System.arraycopy(newembedding,0,chip.embed,chip.embeddingOffset(probe_id),chip.embed_words);
 		// similar to a left-most embedding, but everything goes
 		// from right to left
 	}
@@ -180,19 +181,20 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	void reembedProbe (AffymetrixChip chip, int probe_id, int shift)
 	{
 	
-		int oldmask, newmask, oldint, oldpos, newint, newpos, basenumber;
-		int[] newembedding = new int[chip.embed[probe_id].length];
+		int oldint, oldpos, newint, newpos, basenumber;
+		long oldmask, newmask;
+		long[] newembedding = new long[chip.embed_words];
 
-		for (newint = 0; newint < chip.embed[probe_id].length; newint++)
+		for (newint = 0; newint < chip.embed_words; newint++)
 			newembedding[newint] = 0;
 
 		
 		oldpos = chip.dep_seq.length - 1;
 		newpos = oldpos - shift + 1;
-		oldmask = 0x01 << ((Integer.SIZE - 1) - (oldpos % Integer.SIZE));
-		newmask = 0x01 << ((Integer.SIZE - 1) - (newpos % Integer.SIZE));
-		newint =(int) Math.floor((double) newpos/Integer.SIZE);
-		oldint =(int) Math.floor((double) oldpos/Integer.SIZE);
+		oldmask = 0x01L << ((Long.SIZE - 1) - (oldpos % Long.SIZE));
+		newmask = 0x01L << ((Long.SIZE - 1) - (newpos % Long.SIZE));
+		newint =(int) Math.floor((double) newpos/Long.SIZE);
+		oldint =(int) Math.floor((double) oldpos/Long.SIZE);
 		boolean middle_synthesized = false, compl_synthesized = false;
 		basenumber = AffymetrixChip.AFFY_PROBE_LENGTH - 1;
 		char compl = 'A';
@@ -200,21 +202,21 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	// synthesize till MIDDLE_BASE+1 
 	while (basenumber > AffymetrixChip.AFFY_MIDDLE_BASE - 1)
 	{
-		if ((oldpos+1) % (Integer.SIZE) == 0)
+		if ((oldpos+1) % (Long.SIZE) == 0)
 		{	
 			oldint--;
-			oldmask=0x01;
+			oldmask=0x01L;
 		}
 		
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (--newpos > -1)
 			{
-				if ((newpos+1) % (Integer.SIZE) == 0)
+				if ((newpos+1) % (Long.SIZE) == 0)
 				{
 					newint--;
-					newmask = 0x01;
+					newmask = 0x01L;
 				}
 				else
 					newmask <<= 1;
@@ -238,21 +240,21 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	
 	while (!middle_synthesized)
 	{	
-		if ((oldpos+1) % (Integer.SIZE) == 0)
+		if ((oldpos+1) % (Long.SIZE) == 0)
 		{	
 			oldint--;
-			oldmask=0x01;
+			oldmask=0x01L;
 		}
 		
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (--newpos > -1)
 			{
-				if ((newpos+1) % (Integer.SIZE) == 0)
+				if ((newpos+1) % (Long.SIZE) == 0)
 				{
 					newint--;
-					newmask = 0x01;
+					newmask = 0x01L;
 				}
 				else
 					newmask <<=1;
@@ -297,10 +299,10 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		{
 			throw new IllegalArgumentException ("Unable to reembed probe.");
 		}
-		if ((newpos+1) % (Integer.SIZE) == 0)
+		if ((newpos+1) % (Long.SIZE) == 0)
 		{
 			newint--;
-			newmask = 0x01;
+			newmask = 0x01L;
 		}
 		else
 			newmask <<=1;
@@ -312,21 +314,21 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 	// synthesize rest
 	while (basenumber > -1)
 	{
-		if ((oldpos+1) % (Integer.SIZE) == 0)
+		if ((oldpos+1) % (Long.SIZE) == 0)
 		{	
 			oldint--;
-			oldmask=0x01;
+			oldmask=0x01L;
 		}
 		
-		if ((chip.embed[probe_id][oldint] &  oldmask) != 0 )
+		if ((chip.embed[chip.embeddingOffset(probe_id) + oldint] &  oldmask) != 0 )
 		{
 			// set the right base character		
 			while (--newpos > -1)
 			{
-				if ((newpos+1) % (Integer.SIZE) == 0)
+				if ((newpos+1) % (Long.SIZE) == 0)
 				{
 					newint--;
-					newmask = 0x01;
+					newmask = 0x01L;
 				}
 				else
 					newmask <<=1;
@@ -346,7 +348,7 @@ public class RightMostEmbedding implements SingleProbeEmbeddingAlgorithm,
 		oldmask <<= 1;
 	}
 
-	System.arraycopy(newembedding,0,chip.embed[probe_id],0,chip.embed[probe_id].length);
+	System.arraycopy(newembedding,0,chip.embed,chip.embeddingOffset(probe_id),chip.embed_words);
 
 		// similar to a left-most embedding, but everything goes
 		// from right to left
@@ -339,7 +339,8 @@ public class RowEpitaxial implements LayoutAlgorithm
 	{
 		boolean empty = true;
 		double delta;
-		int r, c, id, base, step, word, bitmask = 0;
+		int r, c, id, off, base, step, word, last;
+		long bits;
 		
 		// reset costs
 		for (step = 0; step < embed_len; step++)
@@ -370,28 +371,29 @@ public class RowEpitaxial implements LayoutAlgorithm
 				
 				empty = false;
 				
-				for (base = 0, step = 0, word = - 1; step < embed_len; step++)
+				off = chip.embeddingOffset(id);
+				
+				for (base = 0, step = 0, word = 0; step < embed_len; word++)
 				{
-					if (step % Integer.SIZE == 0)
-					{
-						word++;
-						bitmask = 0x01 << (Integer.SIZE - 1);
-					}
-					else
-						bitmask >>>= 1;
-
-					// check state of embedding at current step
-					if ((chip.embed[id][word] & bitmask) != 0)
-					{
-						// spot is in an unmasked step
-						m_cost[step] += delta;
-						
-						base++;
-					}
-					else
+					// scan the bits of the current word from left to right
+					bits = chip.embed[off + word];
+					last = Math.min(step + Long.SIZE, embed_len);
+					
+					for (; step < last; step++, bits <<= 1)
 					{
-						// spot is in a masked step
-						u_cost[step] += pos_weight[base] * delta;
+						// check state of embedding at current step
+						if (bits < 0)
+						{
+							// spot is in an unmasked step
+							m_cost[step] += delta;
+							
+							base++;
+						}
+						else
+						{
+							// spot is in a masked step
+							u_cost[step] += pos_weight[base] * delta;
+						}
 					}
 				}
 			}
@@ -402,35 +404,37 @@ public class RowEpitaxial implements LayoutAlgorithm
 	
 	private double conflictIndex (SimpleChip chip, int id, double max)
 	{
-		int base, step, word, bitmask = 0;
+		int base, step, word, last, off;
+		long bits;
 		double ci = 0;
 		
-		for (base = 0, step = 0, word = - 1; step < embed_len; step++)
+		off = chip.embeddingOffset(id);
+		
+		for (base = 0, step = 0, word = 0; step < embed_len; word++)
 		{
-			if (step % Integer.SIZE == 0)
-			{
-				word++;
-				bitmask = 0x01 << (Integer.SIZE - 1);
-			}
-			else
-				bitmask >>>= 1;
+			// scan the bits of the current word from left to right
+			bits = chip.embed[off + word];
+			last = Math.min(step + Long.SIZE, embed_len);
 			
-			// check embedding state at current step 
-			if ((chip.embed[id][word] & bitmask) != 0)
+			for (; step < last; step++, bits <<= 1)
 			{
-				// spot is in an unmasked step
-				ci += u_cost[step];
+				// check embedding state at current step 
+				if (bits < 0)
+				{
+					// spot is in an unmasked step
+					ci += u_cost[step];
 
-				// increment the number of synthesized bases
-				base++;
-			}
-			else
-			{
-				// spot is in a masked step
-				ci += pos_weight[base] * m_cost[step];
-				
-				// stop if CI exceeds limit
-				if (ci > max) break;
+					// increment the number of synthesized bases
+					base++;
+				}
+				else
+				{
+					// spot is in a masked step
+					ci += pos_weight[base] * m_cost[step];
+					
+					// stop if CI exceeds limit
+					if (ci > max) return ci;
+				}
 			}
 		}
 
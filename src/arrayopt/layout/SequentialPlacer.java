@@ -276,6 +276,27 @@ public class SequentialPlacer implements LayoutAlgorithm, FillingAlgorithm
 		return 2 * (end - start + 1);
 	}
 	
+	/**
+	 * Creates and returns a copy of this SequentialPlacer object with the same
+	 * options.
+	 *
+	 * @return a clone of this instance
+	 */
+	@Override
+	public SequentialPlacer clone ()
+	{
+		try
+		{
+			// this class has no working data
+			return (SequentialPlacer) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+	}
+
 	/**
 	 * Returns the algorithm's name together with current options.
 	 * 
@@ -38,6 +38,8 @@
 package arrayopt.layout;
 
 import java.util.BitSet;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 
 /**
  * This class implements the Sequential re-embedding post-placement
@@ -72,6 +74,21 @@ import java.util.BitSet;
  * feature is called "reset first" and my lead to better solutions depending on
  * the current embeddings of the probes.<P>
  * 
+ * <P>The passes over the chip can also be executed in parallel. In this case,
+ * the spots are partitioned into color classes such that no two spots of the
+ * same class are neighbors, i.e. re-embedding one of them does not change the
+ * cost of the others. In border length minimization mode on a
+ * {@link SimpleChip}, a checkerboard coloring is used; in conflict index
+ * minimization mode (or on an {@link AffymetrixChip}, where a probe pair
+ * occupies two rows) the classes are blocks of spots repeating with the
+ * dimension of the conflict region. The classes are processed one after the
+ * other, and the spots of a class are split into slices re-embedded
+ * concurrently (each slice with its own instance of the OSPE algorithm) on
+ * the common fork-join pool. Since the spots of a class are independent, the
+ * result is deterministic, although it differs from the one obtained by the
+ * top to bottom, left to right scan. The first pass of the "reset first"
+ * feature is always sequential.</P>
+ * 
  * @author Sergio A. de Carvalho Jr.
  */
 public class SequentialReembedding implements LayoutAlgorithm
@@ -98,6 +115,44 @@ public class SequentialReembedding implements LayoutAlgorithm
 	
 	private BitSet pivot;
 	
+	private ConflictIndexField ci_field;
+	
+	/**
+	 * Keeps track of the border length between passes (border length
+	 * minimization with a threshold only).
+	 */
+	private BorderLengthTracker tracker;
+	
+	/**
+	 * Whether the passes over the chip are executed in parallel.
+	 */
+	private boolean parallel;
+	
+	/**
+	 * OSPE instance of each slice of a color class (parallel passes only).
+	 */
+	private OptimumSingleProbeEmbedding slice_embedder[];
+	
+	/**
+	 * Whether the color classes form a checkerboard (parallel passes only).
+	 */
+	private boolean checkerboard;
+	
+	/**
+	 * Row period of the color classes (parallel passes only).
+	 */
+	private int row_period;
+	
+	/**
+	 * Column period of the color classes (parallel passes only).
+	 */
+	private int col_period;
+	
+	/**
+	 * Number of color classes (parallel passes only).
+	 */
+	private int num_colors;
+	
 	/**
 	 * Creates a new instance of the Sequential Re-embedding algorithm with the
 	 * default threshold and without the "reset first" feature. 
@@ -157,6 +212,26 @@ public class SequentialReembedding implements LayoutAlgorithm
 	 */
 	public SequentialReembedding (int mode, boolean reset_first,
 			double limit)
+	{
+		this (mode, reset_first, limit, false);
+	}
+
+	/**
+	 * Creates a new instance of the Sequential Re-embedding algorithm with the
+	 * specified configuration, optionally executing the passes over the chip
+	 * in parallel (see the class description).
+	 * 
+	 * @param mode conflict minimization mode
+	 * @param reset_first whether to consider only re-embedded probes on the
+	 * first pass over the chip
+	 * @param limit the minimum improvement that must be gained in on pass
+	 * in order to continue the algorithm (if 0 <CODE>0 < limit < 1</CODE>) or
+	 * the number of passes (if 0 <CODE>limit >= 1</CODE>)
+	 * @param parallel whether to re-embed the spots of each color class in
+	 * parallel
+	 */
+	public SequentialReembedding (int mode, boolean reset_first,
+			double limit, boolean parallel)
 	{
 		if (mode != OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN &&
 			mode != OptimumSingleProbeEmbedding.CONFLICT_INDEX_MIN)
@@ -181,6 +256,7 @@ public class SequentialReembedding implements LayoutAlgorithm
 		
 		this.mode = mode;
 		this.reset_first = reset_first;
+		this.parallel = parallel;
 	}
 
 	/**
@@ -200,6 +276,12 @@ public class SequentialReembedding implements LayoutAlgorithm
 		this.pivot = new BitSet (num_probes);
 		this.pivot.clear();
 		
+		this.tracker = null;
+		this.ci_field = null;
+		
+		if (parallel)
+			parallelSetup (chip);
+		
 		if (chip instanceof SimpleChip)
 		{
 			optimize ((SimpleChip) chip);
@@ -223,9 +305,16 @@ public class SequentialReembedding implements LayoutAlgorithm
 		if (threshold > 0)
 		{
 			if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-				last_conf = LayoutEvaluation.borderLength(chip);
+			{
+				// the border length is updated as the spots are re-embedded
+				tracker = new BorderLengthTracker (chip, false);
+				last_conf = tracker.getBorderLength();
+			}
 			else // CONFLICT_INDEX_MIN
-				last_conf = LayoutEvaluation.averageConflictIndex(chip);
+			{
+				ci_field = new ConflictIndexField (chip);
+				last_conf = ci_field.getAverageConflictIndex();
+			}
 		}
 		
 		reset = this.reset_first;
@@ -251,9 +340,14 @@ public class SequentialReembedding implements LayoutAlgorithm
 			if (threshold > 0)
 			{
 				if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-					curr_conf = LayoutEvaluation.borderLength(chip);
+					curr_conf = tracker.getBorderLength();
 				else // CONFLICT_INDEX_MIN
-					curr_conf = LayoutEvaluation.averageConflictIndex(chip);
+				{
+					// only re-compute the spots affected by this pass
+					// (the field is notified as the spots are re-embedded)
+					ci_field.refresh();
+					curr_conf = ci_field.getAverageConflictIndex();
+				}
 				
 				impr = (last_conf - curr_conf) / last_conf;
 				
@@ -279,9 +373,16 @@ public class SequentialReembedding implements LayoutAlgorithm
 		if (threshold > 0)
 		{
 			if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-				last_conf = LayoutEvaluation.borderLength(chip);
+			{
+				// the border length is updated as the spots are re-embedded
+				tracker = new BorderLengthTracker (chip, false);
+				last_conf = tracker.getBorderLength();
+			}
 			else // CONFLICT_INDEX_MIN
-				last_conf = LayoutEvaluation.averageConflictIndex(chip);
+			{
+				ci_field = new ConflictIndexField (chip);
+				last_conf = ci_field.getAverageConflictIndex();
+			}
 		}
 		
 		reset = this.reset_first;
@@ -307,9 +408,14 @@ public class SequentialReembedding implements LayoutAlgorithm
 			if (threshold > 0)
 			{
 				if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
-					curr_conf = LayoutEvaluation.borderLength(chip);
+					curr_conf = tracker.getBorderLength();
 				else // CONFLICT_INDEX_MIN
-					curr_conf = LayoutEvaluation.averageConflictIndex(chip);
+				{
+					// only re-compute the spots affected by this pass
+					// (the field is notified as the spots are re-embedded)
+					ci_field.refresh();
+					curr_conf = ci_field.getAverageConflictIndex();
+				}
 				
 				impr = (last_conf - curr_conf) / last_conf;
 				
@@ -352,6 +458,9 @@ public class SequentialReembedding implements LayoutAlgorithm
 				this.spot_copy[r][c] = chip.spot[r][c];
 				chip.spot[r][c] = Chip.EMPTY_SPOT;
 			}
+		
+		if (tracker != null)
+			tracker.reset();
 	}
 	
 	private void incrementalOptimization (SimpleChip chip)
@@ -364,12 +473,19 @@ public class SequentialReembedding implements LayoutAlgorithm
 				if ((id = spot_copy[r][c]) == Chip.EMPTY_SPOT)
 					continue;
 				
+				if (tracker != null)
+					tracker.removeSpot(r, c);
+				
 				chip.spot[r][c] = id;
 				
-				if (pivot.get(id))
-					continue;
+				if (!pivot.get(id))
+					embedder.reembedSpot(r, c, id);
 				
-				embedder.reembedSpot(r, c, id);
+				if (tracker != null)
+					tracker.addSpot(r, c);
+				
+				if (ci_field != null)
+					ci_field.update(r, c);
 			}
 	}
 
@@ -386,13 +502,29 @@ public class SequentialReembedding implements LayoutAlgorithm
 				if (!chip.isPMProbe(id))
 					continue;
 
+				if (tracker != null)
+				{
+					tracker.removeSpot(r, c);
+					tracker.removeSpot(r + 1, c);
+				}
+				
 				chip.spot[r][c] = id;
 				chip.spot[r + 1][c] = spot_copy[r + 1][c];
 				
-				if (pivot.get(id))
-					continue;
+				if (!pivot.get(id))
+					embedder.reembedSpot(r, c, id);
 				
-				embedder.reembedSpot(r, c, id);
+				if (tracker != null)
+				{
+					tracker.addSpot(r, c);
+					tracker.addSpot(r + 1, c);
+				}
+				
+				if (ci_field != null)
+				{
+					ci_field.update(r, c);
+					ci_field.update(r + 1, c);
+				}
 			}
 	}
 	
@@ -400,6 +532,12 @@ public class SequentialReembedding implements LayoutAlgorithm
 	{
 		int id;
 		
+		if (parallel)
+		{
+			parallelOptimization (chip);
+			return;
+		}
+		
 		for (int r = 0; r < num_rows; r++)
 			for (int c = 0; c < num_cols; c++)
 			{
@@ -409,7 +547,7 @@ public class SequentialReembedding implements LayoutAlgorithm
 				if (pivot.get(id))
 					continue;
 				
-				embedder.reembedSpot(r, c, id);
+				reembedSpot (embedder, chip, r, c, id);
 			}
 	}
 
@@ -417,6 +555,12 @@ public class SequentialReembedding implements LayoutAlgorithm
 	{
 		int id;
 		
+		if (parallel)
+		{
+			parallelOptimization (chip);
+			return;
+		}
+		
 		for (int r = 0; r < num_rows; r++)
 			for (int c = 0; c < num_cols; c++)
 			{
@@ -429,8 +573,140 @@ public class SequentialReembedding implements LayoutAlgorithm
 				if (pivot.get(id))
 					continue;
 				
-				embedder.reembedSpot(r, c, id);
+				reembedSpot (embedder, chip, r, c, id);
+			}
+	}
+	
+	/**
+	 * Defines the color classes and creates one OSPE instance per slice.
+	 */
+	private void parallelSetup (Chip chip)
+	{
+		int dim, slices;
+		
+		dim = ConflictIndex.dimConflictRegion();
+		
+		checkerboard = false;
+		
+		if (mode == OptimumSingleProbeEmbedding.BORDER_LENGTH_MIN)
+		{
+			if (chip instanceof AffymetrixChip)
+			{
+				// a pair reads the spots above and below it
+				row_period = 4;
+				col_period = 2;
+			}
+			else
+			{
+				checkerboard = true;
+				row_period = 1;
+				col_period = 2;
+			}
+		}
+		else // CONFLICT_INDEX_MIN
+		{
+			// the conflict region of a pair has two rows more
+			row_period = dim + (chip instanceof AffymetrixChip ? 2 : 1);
+			col_period = dim + 1;
+		}
+		
+		num_colors = checkerboard ? 2 : row_period * col_period;
+		
+		slices = ForkJoinPool.commonPool().getParallelism();
+		slice_embedder = new OptimumSingleProbeEmbedding [slices];
+		slice_embedder[0] = embedder;
+		for (int i = 1; i < slices; i++)
+			slice_embedder[i] =
+				OptimumSingleProbeEmbedding.createEmbedder(chip, mode);
+	}
+	
+	private void parallelOptimization (Chip chip)
+	{
+		for (int color = 0; color < num_colors; color++)
+			ForkJoinPool.commonPool().invoke(
+					new ColorPass (chip, color, 0, slice_embedder.length - 1));
+	}
+	
+	/**
+	 * Re-embeds the spots of a slice of a color class. The rows of the class
+	 * are evenly split among the slices.
+	 */
+	private void reembedSlice (Chip chip, int color, int slice)
+	{
+		OptimumSingleProbeEmbedding ospe = slice_embedder[slice];
+		int row_phase, col_phase, rows, first, last, i, r, c, id;
+		
+		if (checkerboard)
+		{
+			row_phase = 0;
+			col_phase = color;
+		}
+		else
+		{
+			row_phase = color / col_period;
+			col_phase = color % col_period;
+		}
+		
+		// number of rows of the class
+		rows = (num_rows - row_phase + row_period - 1) / row_period;
+		
+		first = (int) ((long) slice * rows / slice_embedder.length);
+		last = (int) ((long) (slice + 1) * rows / slice_embedder.length);
+		
+		for (i = first; i < last; i++)
+		{
+			r = row_phase + i * row_period;
+			
+			c = checkerboard ? (r + col_phase) % 2 : col_phase;
+			
+			for (; c < num_cols; c += col_period)
+			{
+				if ((id = chip.spot[r][c]) == Chip.EMPTY_SPOT)
+					continue;
+				
+				if (chip instanceof AffymetrixChip)
+					if (!((AffymetrixChip) chip).isPMProbe(id))
+						continue;
+				
+				if (pivot.get(id))
+					continue;
+				
+				reembedSpot (ospe, chip, r, c, id);
 			}
+		}
+	}
+	
+	/**
+	 * Re-embeds the probe of a spot (or the pair of probes starting at the
+	 * spot in the case of an AffymetrixChip) and updates the border length
+	 * tracker or the conflict index field, if one is being used. Spots of the
+	 * same color class can be safely re-embedded in parallel since they are
+	 * never neighbors.
+	 */
+	private void reembedSpot (OptimumSingleProbeEmbedding ospe, Chip chip,
+			int row, int col, int id)
+	{
+		boolean pair = chip instanceof AffymetrixChip;
+		
+		if (tracker != null)
+		{
+			tracker.removeSpot(row, col);
+			if (pair) tracker.removeSpot(row + 1, col);
+		}
+		
+		ospe.reembedSpot(row, col, id);
+		
+		if (tracker != null)
+		{
+			tracker.addSpot(row, col);
+			if (pair) tracker.addSpot(row + 1, col);
+		}
+		
+		if (ci_field != null)
+		{
+			ci_field.update(row, col);
+			if (pair) ci_field.update(row + 1, col);
+		}
 	}
 	
 	/**
@@ -465,6 +741,49 @@ public class SequentialReembedding implements LayoutAlgorithm
 		else
 			l = (new Integer(num_passes)).toString();
 		
-		return this.getClass().getSimpleName() + m + r + l;
+		return this.getClass().getSimpleName() + m + r + l +
+					(parallel ? "-Parallel" : "");
+	}
+	
+	/**
+	 * Re-embeds a range of slices of a color class, splitting it in two halves
+	 * until a single slice remains.
+	 */
+	private class ColorPass extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Chip chip;
+		
+		private int color;
+		
+		private int first;
+		
+		private int last;
+		
+		ColorPass (Chip chip, int color, int first, int last)
+		{
+			this.chip = chip;
+			this.color = color;
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			int mid;
+			
+			if (first == last)
+			{
+				reembedSlice (chip, color, first);
+				return;
+			}
+			
+			mid = (first + last) >>> 1;
+			
+			invokeAll (new ColorPass (chip, color, first, mid),
+					   new ColorPass (chip, color, mid + 1, last));
+		}
 	}
 }
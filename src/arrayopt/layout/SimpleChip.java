@@ -287,11 +287,14 @@ public class SimpleChip extends Chip
 	 * from top to bottom, left to right). Thus, in case the number of probes is
 	 * less than the number of spots, empty spots will be  concentrated in the
 	 * lower part of the chip.</P>  
+	 * 
+	 * @param rnd random number generator
 	 */
 	@Override
-	public void createRandomLayout ()
+	public void createRandomLayout (Random rnd)
 	{
-		int	p, len, w, pos, bitmask = 0;
+		int	p, len, w, pos;
+		long bitmask = 0;
 		char b;
 		
 		if (input_done)
@@ -306,18 +309,18 @@ public class SimpleChip extends Chip
 		for (p = 0; p < num_probes;)
 		{
 			// turn all bits off
-			for (w = 0; w < embed[p].length; w++)
-				embed[p][w] = 0;
+			for (w = 0; w < embed_words; w++)
+				embed[embeddingOffset(p) + w] = 0;
 			
 			for (w = -1, pos = 0, len = 0; len < probe_len && pos < embed_len;)
 			{
-				b = dep_seq[(int) (dep_seq_cycle * Math.random())];
+				b = dep_seq[(int) (dep_seq_cycle * rnd.nextDouble())];
 				
 				while (pos < embed_len)
 				{
-					if ((pos % Integer.SIZE) == 0)
+					if ((pos % Long.SIZE) == 0)
 					{
-						bitmask = 0x01 << (Integer.SIZE - 1);
+						bitmask = 0x01L << (Long.SIZE - 1);
 						w++;
 					}
 					else
@@ -325,7 +328,7 @@ public class SimpleChip extends Chip
 					
 					if (dep_seq[pos++] == b)
 					{
-						embed[p][w] |= bitmask;
+						embed[embeddingOffset(p) + w] |= bitmask;
 						len++;
 						break;
 					}
@@ -405,7 +408,8 @@ public class SimpleChip extends Chip
 	@Override
 	public void writeLayout (PrintWriter out)
 	{
-		int		mask = 0, w, pos;
+		int		w, pos;
+		long	mask = 0;
 		char	fix;
 
 		for (int c = 0; c < num_cols; c++)
@@ -426,16 +430,16 @@ public class SimpleChip extends Chip
 				// print probe
 				for (w = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
-						// use next 4-byte word
+						// use next 8-byte word
 						w++;
 
 						// turn on very first bit of mask only
-						mask = 0x01 << (Integer.SIZE - 1);
+						mask = 0x01L << (Long.SIZE - 1);
 					}
 
-					if ((mask & embed[spot[r][c]][w]) != 0)
+					if ((mask & embed[embeddingOffset(spot[r][c]) + w]) != 0)
 						out.print (dep_seq[pos]);
 
 					mask >>>= 1;
@@ -446,16 +450,16 @@ public class SimpleChip extends Chip
 				// print embedding
 				for (w = -1, pos = 0; pos < embed_len; pos++)
 				{
-					if (pos % Integer.SIZE == 0)
+					if (pos % Long.SIZE == 0)
 					{
-						// use next 4-byte word
+						// use next 8-byte word
 						w++;
 
 						// turn on very first bit of mask only
-						mask = 0x01 << (Integer.SIZE - 1);
+						mask = 0x01L << (Long.SIZE - 1);
 					}
 
-					if ((mask & embed[spot[r][c]][w]) != 0)
+					if ((mask & embed[embeddingOffset(spot[r][c]) + w]) != 0)
 						out.print (dep_seq[pos]);
 					else
 						out.print (' ');
@@ -472,6 +476,23 @@ public class SimpleChip extends Chip
 		out.flush();
 	}
 
+	/**
+	 * Computes the number of ways in which a probe can be embedded into the
+	 * deposition sequence.
+	 *
+	 * @param probe_id probe ID
+	 * @return the number of different embeddings the probe can have
+	 */
+	@Override
+	protected long countEmbeddings (int probe_id)
+	{
+		char probe[] = new char [probe_len];
+		
+		decodeSequence (probe_id, probe);
+		
+		return countEmbeddings (probe);
+	}
+
 	/**
 	 * Creates and returns a copy of this SimpleChip object. The new object
 	 * will contain the same chip specification as the cloned object, i.e.
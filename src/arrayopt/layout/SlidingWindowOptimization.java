@@ -37,8 +37,21 @@
 
 package arrayopt.layout;
 
+import java.util.*;
+import java.util.concurrent.*;
+
 /**
- *
+ * <P><B>Parallel mode</B>. Windows that are farther apart than the dimension
+ * of the conflict region (see {@link ConflictIndex#dimConflictRegion()}) can
+ * be optimized at the same time. In parallel mode, the window positions of a
+ * pass are colored so that windows of the same color never overlap nor get
+ * too close, and each pass optimizes one color at a time, running the windows
+ * of the same color concurrently, each with its own copy of the optimization
+ * algorithm. The improvement of all windows is aggregated as in serial mode,
+ * and the same {@link #threshold} and {@link #max_iter} rules apply. The
+ * windows are visited in a different order than in serial mode, but the
+ * resulting layout does not depend on the number of threads as long as the
+ * optimization algorithm is deterministic.</P>
  */
 public class SlidingWindowOptimization implements LayoutAlgorithm
 {
@@ -93,6 +106,16 @@ public class SlidingWindowOptimization implements LayoutAlgorithm
 	 */
 	protected static final float DEFAULT_THRESHOLD = .03f;
 
+	/**
+	 * Whether windows are optimized in parallel.
+	 */
+	protected boolean parallel;
+
+	/**
+	 * Copies of the optimization algorithm not in use (parallel mode only).
+	 */
+	private ConcurrentLinkedQueue<IteractiveOptimizationAlgorithm> idle;
+
 	/**
 	 * document this
 	 *
@@ -119,6 +142,24 @@ public class SlidingWindowOptimization implements LayoutAlgorithm
 	 */
 	public SlidingWindowOptimization (IteractiveOptimizationAlgorithm alg,
 		 int window_dim, int shift, int max_iter, float threshold)
+	{
+		this (alg, window_dim, shift, max_iter, threshold, false);
+	}
+
+	/**
+	 * Creates a sliding window optimization that optionally optimizes
+	 * non-overlapping windows in parallel.
+	 * 
+	 * @param alg optimization algorithm applied to each window
+	 * @param window_dim dimension of the window
+	 * @param shift how many rows (or columns) the window is shifted
+	 * @param max_iter maximum number of passes over the chip surface
+	 * @param threshold minimum improvement of a pass to continue
+	 * @param parallel whether windows are optimized in parallel
+	 */
+	public SlidingWindowOptimization (IteractiveOptimizationAlgorithm alg,
+		 int window_dim, int shift, int max_iter, float threshold,
+		 boolean parallel)
 	{
 		if (window_dim < 2)
 			throw new IllegalArgumentException
@@ -137,6 +178,7 @@ public class SlidingWindowOptimization implements LayoutAlgorithm
 		this.shift = shift;
 		this.max_iter = max_iter;
 		this.threshold = threshold;
+		this.parallel = parallel;
 		
 		// instantiate the window as a rectangular region object
 		// (appropriate coordinates will be set when needed)
@@ -168,6 +210,12 @@ public class SlidingWindowOptimization implements LayoutAlgorithm
 		ncalls *= 1 + (int) Math.ceil((nrows - window_dim) / (float) shift);
 		
 		System.err.println("ncalls: " + ncalls);
+		
+		if (parallel)
+		{
+			optimizeParallel (chip, region, ncalls);
+			return;
+		}
 
 		// set window's position to top left corner
 		window.first_col = region.first_col;
@@ -243,4 +291,182 @@ public class SlidingWindowOptimization implements LayoutAlgorithm
 			}
 		}
 	}
+
+	/**
+	 * Performs the passes over the chip surface in parallel mode.
+	 */
+	private void optimizeParallel (Chip chip, RectangularRegion region,
+		int ncalls)
+	{
+		RectangularRegion	windows[][];
+		int					row_pos[], col_pos[];
+		float				total_impr;
+		
+		// positions visited by the window in a pass
+		row_pos = windowPositions (region.first_row, region.last_row);
+		col_pos = windowPositions (region.first_col, region.last_col);
+		
+		// windows that can be optimized at the same time
+		windows = colorWindows (row_pos, col_pos);
+		
+		idle = new ConcurrentLinkedQueue<IteractiveOptimizationAlgorithm> ();
+		idle.add (optimizer);
+		
+		try
+		{
+			for (int i = 0; i < max_iter; i++)
+			{
+				total_impr = 0;
+				
+				// optimize one color at a time
+				for (int c = 0; c < windows.length; c++)
+					total_impr += ForkJoinPool.commonPool().invoke(
+						new WindowTask (chip, windows[c], 0,
+							windows[c].length - 1)) / ncalls;
+				
+				System.err.println ("Total improvement: " + total_impr);
+				
+				// quit if total improvement is insufficient
+				if (total_impr < threshold) return;
+			}
+		}
+		finally
+		{
+			idle = null;
+		}
+	}
+	
+	/**
+	 * Returns the first row (or column) of every window position between the
+	 * given borders, in the same order that they are visited in serial mode.
+	 */
+	private int[] windowPositions (int first, int last)
+	{
+		int pos[], n;
+		
+		n = 1 + (int) Math.ceil((last - first + 1 - window_dim) / (float) shift);
+		pos = new int [n];
+		
+		for (int i = 0; i < n; i++)
+			pos[i] = Math.min(first + i * shift, last - window_dim + 1);
+		
+		return pos;
+	}
+	
+	/**
+	 * Colors the window positions so that any two windows of the same color
+	 * are farther apart than the dimension of the conflict region, and
+	 * returns the windows of each color. Windows are colored greedily in
+	 * row-major order, checking only the positions close enough to conflict.
+	 */
+	private RectangularRegion[][] colorWindows (int row_pos[], int col_pos[])
+	{
+		ArrayList<ArrayList<RectangularRegion>> by_color;
+		RectangularRegion	windows[][];
+		int					color[][], used[], stamp = 0, min_dist, reach;
+		int					r, c, i, j, k;
+		
+		// windows must be separated by more than the conflict region
+		min_dist = window_dim + ConflictIndex.dimConflictRegion();
+		
+		// how many positions away a conflicting window can be
+		// (one more because the last position may be moved backwards)
+		reach = (min_dist + shift - 1) / shift + 1;
+		
+		color = new int [row_pos.length][col_pos.length];
+		used = new int [(2 * reach + 1) * (2 * reach + 1) + 1];
+		by_color = new ArrayList<ArrayList<RectangularRegion>> ();
+		
+		for (r = 0; r < row_pos.length; r++)
+			for (c = 0; c < col_pos.length; c++)
+			{
+				stamp++;
+				
+				// mark colors of conflicting windows already colored
+				for (i = Math.max(r - reach, 0); i <= r; i++)
+					for (j = Math.max(c - reach, 0);
+						j <= Math.min(c + reach, col_pos.length - 1); j++)
+					{
+						if (i == r && j >= c) break;
+						
+						if (Math.abs(row_pos[i] - row_pos[r]) < min_dist &&
+							Math.abs(col_pos[j] - col_pos[c]) < min_dist)
+							used[color[i][j]] = stamp;
+					}
+				
+				for (k = 0; used[k] == stamp; k++);
+				
+				color[r][c] = k;
+				
+				if (k == by_color.size())
+					by_color.add (new ArrayList<RectangularRegion> ());
+				
+				by_color.get(k).add (new RectangularRegion (row_pos[r],
+					row_pos[r] + window_dim - 1, col_pos[c],
+					col_pos[c] + window_dim - 1));
+			}
+		
+		windows = new RectangularRegion [by_color.size()][];
+		for (k = 0; k < windows.length; k++)
+			windows[k] = by_color.get(k).toArray(
+				new RectangularRegion [by_color.get(k).size()]);
+		
+		return windows;
+	}
+	
+	/**
+	 * Optimizes a range of windows of the same color as a fork-join task,
+	 * splitting the range in halves, and returns the sum of their
+	 * improvements.
+	 */
+	private class WindowTask extends RecursiveTask<Float>
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private Chip chip;
+		
+		private RectangularRegion window[];
+		
+		private int first;
+		
+		private int last;
+		
+		WindowTask (Chip chip, RectangularRegion window[], int first, int last)
+		{
+			this.chip = chip;
+			this.window = window;
+			this.first = first;
+			this.last = last;
+		}
+		
+		@Override
+		protected Float compute ()
+		{
+			IteractiveOptimizationAlgorithm	opt;
+			WindowTask						left, right;
+			float							impr;
+			
+			if (first > last) return 0f;
+			
+			if (first < last)
+			{
+				int mid = (first + last) >>> 1;
+				
+				left = new WindowTask (chip, window, first, mid);
+				right = new WindowTask (chip, window, mid + 1, last);
+				invokeAll (left, right);
+				
+				return left.join() + right.join();
+			}
+			
+			if ((opt = idle.poll()) == null)
+				opt = optimizer.clone();
+			
+			impr = opt.optimizeLayout (chip, window[first]);
+			
+			idle.offer(opt);
+			
+			return impr;
+		}
+	}
 }
@@ -74,35 +74,35 @@ public class SortedEmbeddingsOrdering implements ProbeOrderingAlgorithm
 		EmbeddingSort (Chip chip, int probe_id[])
 		{
 			this.chip = chip;
-			this.words = chip.embed[0].length;
+			this.words = chip.embed_words;
 			this.probe_id = probe_id;
 		}
 		
 		public int compare (int i, int j)
 		{
-			int id_i = probe_id[i];
-			int id_j = probe_id[j];
+			int o_i = chip.embeddingOffset(probe_id[i]);
+			int o_j = chip.embeddingOffset(probe_id[j]);
 			
 			for (int w = 0; w < words; w++)
 			{
 				// compare first bit (signal)
 				// first bit is 1 => negative number
 				// first bit is 0 => non-negative
-				if (chip.embed[id_i][w] < 0)
+				if (chip.embed[o_i + w] < 0)
 				{
-					if (chip.embed[id_j][w] >= 0)
+					if (chip.embed[o_j + w] >= 0)
 						return 1;
 				}
 				else
 				{
-					if (chip.embed[id_j][w] < 0)
+					if (chip.embed[o_j + w] < 0)
 						return -1;
 				}
 				
 				// compare remaining bits if both have same signal
-				if (chip.embed[id_i][w] < chip.embed[id_j][w])
+				if (chip.embed[o_i + w] < chip.embed[o_j + w])
 					return -1;
-				else if (chip.embed[id_i][w] > chip.embed[id_j][w])
+				else if (chip.embed[o_i + w] > chip.embed[o_j + w])
 					return 1;
 			}
 			
@@ -124,28 +124,29 @@ public class SortedEmbeddingsOrdering implements ProbeOrderingAlgorithm
 		
 		public int compareToPivot (int i)
 		{
-			int id_i = probe_id[i];
+			int o_i = chip.embeddingOffset(probe_id[i]);
+			int o_p = chip.embeddingOffset(pivot);
 
 			for (int w = 0; w < words; w++)
 			{
 				// compare first bit (signal)
 				// first bit is 1 => negative number
 				// first bit is 0 => non-negative
-				if (chip.embed[id_i][w] < 0)
+				if (chip.embed[o_i + w] < 0)
 				{
-					if (chip.embed[pivot][w] >= 0)
+					if (chip.embed[o_p + w] >= 0)
 						return 1;
 				}
 				else
 				{
-					if (chip.embed[pivot][w] < 0)
+					if (chip.embed[o_p + w] < 0)
 						return -1;
 				}
 				
 				// compare remaining bits if both have same signal
-				if (chip.embed[id_i][w] < chip.embed[pivot][w])
+				if (chip.embed[o_i + w] < chip.embed[o_p + w])
 					return -1;
-				else if (chip.embed[id_i][w] > chip.embed[pivot][w])
+				else if (chip.embed[o_i + w] > chip.embed[o_p + w])
 					return 1;
 			}
 			
@@ -58,8 +58,8 @@ public class SortedSequencesOrdering implements ProbeOrderingAlgorithm
 	 */
 	public void orderProbes (Chip chip, int[] id, int start, int end)
 	{
-		long probe_rank[] = chip.computeProbeRanks(id, 0, id.length - 1);
-		QuickSort.sort(new SequenceSorting(id, probe_rank), start,
+		long probe_rank[] = chip.computeProbeRanks(id, start, end);
+		QuickSort.sort(new SequenceSorting(id, probe_rank, start), start,
 				end - start + 1);
 	}
 	
@@ -69,18 +69,21 @@ public class SortedSequencesOrdering implements ProbeOrderingAlgorithm
 		
 		private long rank[];
 		
+		private int offset;
+		
 		private long pivot;
 		
-		SequenceSorting (int probe_id[], long probe_rank[])
+		SequenceSorting (int probe_id[], long probe_rank[], int offset)
 		{
 			this.probe_id = probe_id;
 			this.rank = probe_rank;
+			this.offset = offset;
 		}
 		
 		public int compare (int i, int j)
 		{
-			return rank[i] < rank[j] ? -1 :
-					rank[i] == rank[j] ? 0 : +1;
+			return rank[i - offset] < rank[j - offset] ? -1 :
+					rank[i - offset] == rank[j - offset] ? 0 : +1;
 		}
 		
 		public void swap (int i, int j)
@@ -91,20 +94,20 @@ public class SortedSequencesOrdering implements ProbeOrderingAlgorithm
 			probe_id[j] = tmp1;
 			
 			long tmp2;
-			tmp2 = rank[i];
-			rank[i] = rank[j];
-			rank[j] = tmp2;
+			tmp2 = rank[i - offset];
+			rank[i - offset] = rank[j - offset];
+			rank[j - offset] = tmp2;
 		}
 		
 		public void setPivot (int i)
 		{
-			this.pivot = rank[i];
+			this.pivot = rank[i - offset];
 		}
 		
 		public int compareToPivot (int i)
 		{
-			return rank[i] < pivot ? -1 :
-					rank[i] == pivot ? 0 : +1;
+			return rank[i - offset] < pivot ? -1 :
+					rank[i - offset] == pivot ? 0 : +1;
 		}
 	}
 }
@@ -37,13 +37,90 @@
 
 package arrayopt.layout;
 
+import arrayopt.util.ArrayIndexedCollection;
+import arrayopt.util.QuickSort;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
 /**
- *
+ * This class orders the probes so that the sum of the Hamming distances
+ * between the embeddings of consecutive probes is small. This is the problem
+ * of finding a shortest Hamiltonian path (a TSP-tour without the closing edge)
+ * on a graph where nodes represent the probes and edges are weighted by the
+ * number of masking steps in which their embeddings differ (see
+ * {@link LayoutEvaluation#hammingDistance}). Placing consecutive probes on
+ * neighboring spots, as the {@link SequentialPlacer}, for instance, does, thus
+ * reduces the number of border conflicts.
+ * 
+ * <P>Since the number of probes can reach millions, the distance matrix is
+ * never computed. Instead, a small set of candidate neighbors is selected for
+ * each probe: the embeddings are sorted several times, each time comparing
+ * their bits starting at a different masking step, and the probes that appear
+ * close to a given probe in any of these orderings are candidates. Only the
+ * {@link #NUM_NEIGHBORS} nearest of them are kept.</P>
+ * 
+ * <P>A nearest neighbor tour is then built with the candidate lists. When all
+ * candidates of the current probe have already been visited, the tour moves to
+ * the closest unvisited probe among those adjacent to the current probe in the
+ * sorted orderings. Finally, the tour is improved with the 2-opt and Or-opt
+ * (moving segments of up to three probes) heuristics, restricted to the
+ * candidate lists and driven by don't-look bits, until no improving move is
+ * found. Moves that would shift or reverse more than
+ * {@link #MAX_MOVE_LENGTH} probes are ignored.</P>
+ * 
+ * <P>The sortings, the candidate lists and the improvement are computed in
+ * parallel with the common {@link ForkJoinPool}. For the improvement, the tour
+ * is divided in segments of {@link #SEGMENT_SIZE} probes whose endpoints are
+ * kept fixed; the segments are improved independently and then a final pass
+ * over the whole tour finds the moves that cross the segments. The result
+ * does not depend on the number of threads.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
  */
 public class TSPOrdering implements ProbeOrderingAlgorithm	
 {
 	/**
-	 *
+	 * Number of orderings of the embeddings used to find candidate neighbors.
+	 */
+	public static final int NUM_VIEWS = 4;
+
+	/**
+	 * Number of probes before and after a probe in each ordering of the
+	 * embeddings that are considered as its candidate neighbors.
+	 */
+	public static final int VIEW_WINDOW = 4;
+
+	/**
+	 * Number of candidate neighbors kept for each probe.
+	 */
+	public static final int NUM_NEIGHBORS = 8;
+
+	/**
+	 * Maximum number of probes of a segment moved by the Or-opt heuristic.
+	 */
+	public static final int MAX_SEGMENT_LENGTH = 3;
+
+	/**
+	 * Maximum number of probes that a move can reverse or shift.
+	 */
+	public static final int MAX_MOVE_LENGTH = 50000;
+
+	/**
+	 * Number of probes of each segment of the tour improved in parallel.
+	 */
+	public static final int SEGMENT_SIZE = 25000;
+
+	/**
+	 * Number of probes whose candidate lists are computed by a single task.
+	 */
+	private static final int CANDIDATES_PER_TASK = 4096;
+
+	/**
+	 * Orders the probes with the aim of minimizing the sum of Hamming
+	 * distances between the embeddings of consecutive probes.
+	 * 
+	 * @param chip chip containing the probes
+	 * @param id array of probe IDs
 	 */
 	public void orderProbes (Chip chip, int[] id)
 	{
@@ -51,11 +128,714 @@ public class TSPOrdering implements ProbeOrderingAlgorithm
 	}
 
 	/**
-	 *
+	 * Orders part of an array of probes with the aim of minimizing the sum of
+	 * Hamming distances between the embeddings of consecutive probes.
+	 * 
+	 * @param chip chip containing the probes
+	 * @param id array of probe IDs
+	 * @param start first element of the array to be ordered
+	 * @param end last element of the array to be ordered
 	 */
 	public void orderProbes (Chip chip, int[] id, int start, int end)
 	{
-		// TODO implement
-		throw new IllegalStateException ("Method not implemented!");
+		// nothing to do
+		if (end - start + 1 < 3) return;
+		
+		new Tour (chip, id, start, end).compute ();
+	}
+
+	/**
+	 * Working data of a single call to {@link #orderProbes}.
+	 */
+	private static class Tour
+	{
+		private Chip chip;
+
+		private int id[];
+
+		private int start;
+
+		/**
+		 * Number of probes (nodes).
+		 */
+		private int n;
+
+		/**
+		 * Probe ID of each node.
+		 */
+		private int probe[];
+
+		/**
+		 * Nodes sorted according to each view of the embeddings.
+		 */
+		private int view[][];
+
+		/**
+		 * Position of each node in each view.
+		 */
+		private int view_pos[][];
+
+		/**
+		 * Candidate neighbors of each node (sorted by distance), at positions
+		 * node * NUM_NEIGHBORS to (node + 1) * NUM_NEIGHBORS - 1 (-1 if
+		 * unused).
+		 */
+		private int cand[];
+
+		/**
+		 * Distance between each node and its candidate neighbors.
+		 */
+		private int cand_dist[];
+
+		/**
+		 * Node at each position of the tour.
+		 */
+		private int tour[];
+
+		/**
+		 * Position of each node in the tour.
+		 */
+		private int pos[];
+
+		/**
+		 * Flags the nodes that are in the queue of the local search (the
+		 * don't-look bits are the negation of these flags).
+		 */
+		private boolean active[];
+
+		Tour (Chip chip, int id[], int start, int end)
+		{
+			this.chip = chip;
+			this.id = id;
+			this.start = start;
+			this.n = end - start + 1;
+			this.probe = new int [n];
+			System.arraycopy(id, start, probe, 0, n);
+		}
+
+		/**
+		 * Computes the tour and stores the corresponding ordering of the
+		 * probes back in the array of probe IDs.
+		 */
+		void compute ()
+		{
+			ForkJoinPool pool = ForkJoinPool.commonPool();
+			
+			buildViews (pool);
+			
+			cand = new int [n * NUM_NEIGHBORS];
+			cand_dist = new int [n * NUM_NEIGHBORS];
+			pool.invoke(new CandidateTask (0, n - 1));
+			
+			nearestNeighborTour ();
+			
+			// the views are no longer needed
+			view = view_pos = null;
+			
+			active = new boolean [n];
+			
+			if (n >= 2 * SEGMENT_SIZE)
+				pool.invoke(new SegmentTask (0, (n - 1) / SEGMENT_SIZE));
+			
+			improve (0, n - 1);
+			
+			for (int i = 0; i < n; i++)
+				id[start + i] = probe[tour[i]];
+		}
+
+		/**
+		 * Returns the distance between two nodes, or zero if any of them is
+		 * missing (-1), which happens at the ends of the path.
+		 */
+		private int distance (int u, int v)
+		{
+			if (u < 0 || v < 0) return 0;
+			
+			return LayoutEvaluation.hammingDistance (chip, probe[u], probe[v]);
+		}
+
+		/**
+		 * Sorts the nodes according to each view of the embeddings. The key of
+		 * a node in view v consists of the 64 bits of its embedding starting
+		 * at masking step v * embed_len / NUM_VIEWS (wrapping around).
+		 */
+		private void buildViews (ForkJoinPool pool)
+		{
+			ViewSort task[] = new ViewSort [NUM_VIEWS];
+			
+			view = new int [NUM_VIEWS][];
+			view_pos = new int [NUM_VIEWS][];
+			
+			for (int v = 0; v < NUM_VIEWS; v++)
+				task[v] = new ViewSort (v);
+			
+			pool.invoke(new RecursiveAction ()
+			{
+				@Override
+				protected void compute ()
+				{
+					invokeAll (task);
+				}
+			});
+		}
+
+		/**
+		 * Returns 64 bits of the embedding of a probe starting at the given
+		 * masking step (with zeros after the last step).
+		 */
+		private long extractBits (int offset, int step)
+		{
+			int  w = step >>> 6, s = step & 63;
+			long bits;
+			
+			if (w >= chip.embed_words) return 0;
+			
+			bits = chip.embed[offset + w] << s;
+			
+			if (s > 0 && w + 1 < chip.embed_words)
+				bits |= chip.embed[offset + w + 1] >>> (64 - s);
+			
+			return bits;
+		}
+
+		/**
+		 * Returns the key of a node in the view starting at the given masking
+		 * step.
+		 */
+		private long viewKey (int node, int step)
+		{
+			int  offset = chip.embeddingOffset(probe[node]);
+			int  len = chip.embed_len - step;
+			long key;
+			
+			key = extractBits (offset, step);
+			
+			// wrap around
+			if (len < 64)
+				key |= extractBits (offset, 0) >>> len;
+			
+			return key;
+		}
+
+		/**
+		 * Collects the candidate neighbors of a node from the views and keeps
+		 * the nearest ones.
+		 */
+		private void computeCandidates (int u, int buf[], int buf_dist[])
+		{
+			int v, k, p, q, c, d, m = 0, base;
+			
+			for (v = 0; v < NUM_VIEWS; v++)
+			{
+				p = view_pos[v][u];
+				
+				for (k = -VIEW_WINDOW; k <= VIEW_WINDOW; k++)
+				{
+					if (k == 0 || (q = p + k) < 0 || q >= n) continue;
+					
+					c = view[v][q];
+					
+					// skip duplicates
+					for (d = 0; d < m; d++)
+						if (buf[d] == c) break;
+					if (d < m) continue;
+					
+					buf[m] = c;
+					buf_dist[m] = distance (u, c);
+					m++;
+				}
+			}
+			
+			// keep the nearest (ties broken by node index)
+			base = u * NUM_NEIGHBORS;
+			for (k = 0; k < NUM_NEIGHBORS; k++)
+			{
+				int best = -1;
+				
+				for (d = 0; d < m; d++)
+				{
+					if (buf[d] < 0) continue;
+					
+					if (best < 0 || buf_dist[d] < buf_dist[best] ||
+						(buf_dist[d] == buf_dist[best] && buf[d] < buf[best]))
+						best = d;
+				}
+				
+				if (best < 0)
+				{
+					cand[base + k] = -1;
+					continue;
+				}
+				
+				cand[base + k] = buf[best];
+				cand_dist[base + k] = buf_dist[best];
+				buf[best] = -1;
+			}
+		}
+
+		/**
+		 * Builds a tour with the nearest neighbor heuristic. Unvisited nodes
+		 * are kept in one doubly linked list per view, so that the closest
+		 * unvisited node in any view can be found quickly when all candidates
+		 * of the current node have been visited.
+		 */
+		private void nearestNeighborTour ()
+		{
+			int		prev[][], next[][], v, i, k, u, c, d, best, best_dist;
+			boolean	visited[];
+			
+			prev = new int [NUM_VIEWS][n];
+			next = new int [NUM_VIEWS][n];
+			
+			for (v = 0; v < NUM_VIEWS; v++)
+				for (i = 0; i < n; i++)
+				{
+					u = view[v][i];
+					prev[v][u] = (i > 0) ? view[v][i - 1] : -1;
+					next[v][u] = (i < n - 1) ? view[v][i + 1] : -1;
+				}
+			
+			visited = new boolean [n];
+			tour = new int [n];
+			pos = new int [n];
+			
+			// start with the first node of the first view
+			u = view[0][0];
+			
+			for (i = 0; ; i++)
+			{
+				tour[i] = u;
+				pos[u] = i;
+				visited[u] = true;
+				
+				// remove u from the lists (its links are kept)
+				for (v = 0; v < NUM_VIEWS; v++)
+				{
+					if (prev[v][u] >= 0) next[v][prev[v][u]] = next[v][u];
+					if (next[v][u] >= 0) prev[v][next[v][u]] = prev[v][u];
+				}
+				
+				if (i == n - 1) break;
+				
+				// nearest unvisited candidate
+				best = -1;
+				for (k = u * NUM_NEIGHBORS; k < (u + 1) * NUM_NEIGHBORS; k++)
+					if ((c = cand[k]) >= 0 && !visited[c])
+					{
+						best = c;
+						break;
+					}
+				
+				if (best < 0)
+				{
+					// closest unvisited neighbor in any view
+					best_dist = Integer.MAX_VALUE;
+					for (v = 0; v < NUM_VIEWS; v++)
+						for (k = 0; k < 2; k++)
+						{
+							c = (k == 0) ? prev[v][u] : next[v][u];
+							if (c < 0) continue;
+							
+							if ((d = distance (u, c)) < best_dist)
+							{
+								best = c;
+								best_dist = d;
+							}
+						}
+				}
+				
+				u = best;
+			}
+		}
+
+		/**
+		 * Returns the node at a given position of the tour, or -1 if the
+		 * position is outside the tour.
+		 */
+		private int nodeAt (int p)
+		{
+			return (p >= 0 && p < n) ? tour[p] : -1;
+		}
+
+		/**
+		 * Improves the part of the tour between the given positions with the
+		 * 2-opt and Or-opt heuristics. Nodes outside this range are not moved.
+		 */
+		private void improve (int lo, int hi)
+		{
+			int queue[], head = 0, size = 0, u, len;
+			
+			len = hi - lo + 1;
+			queue = new int [len];
+			
+			for (int p = lo; p <= hi; p++)
+			{
+				queue[size++] = tour[p];
+				active[tour[p]] = true;
+			}
+			
+			while (size > 0)
+			{
+				u = queue[head];
+				head = (head + 1) % len;
+				size--;
+				active[u] = false;
+				
+				int moved[] = twoOptMove (u, lo, hi);
+				
+				if (moved == null)
+					moved = orOptMove (u, lo, hi);
+				
+				if (moved == null) continue;
+				
+				// reconsider the endpoints of the changed edges
+				for (int k = 0; k < moved.length; k++)
+				{
+					int w = moved[k];
+					
+					if (w < 0 || active[w] || pos[w] < lo || pos[w] > hi)
+						continue;
+					
+					queue[(head + size) % len] = w;
+					active[w] = true;
+					size++;
+				}
+			}
+		}
+
+		/**
+		 * Finds and applies an improving 2-opt move that creates an edge
+		 * between node a and one of its candidates. Returns the endpoints of
+		 * the changed edges, or null if no move was found.
+		 */
+		private int[] twoOptMove (int a, int lo, int hi)
+		{
+			int i = pos[a], j, b, c, d, dir, k, g1, gain, first, last;
+			
+			for (dir = 1; dir >= -1; dir -= 2)
+			{
+				b = nodeAt(i + dir);
+				
+				for (k = a * NUM_NEIGHBORS; k < (a + 1) * NUM_NEIGHBORS; k++)
+				{
+					if ((c = cand[k]) < 0) break;
+					
+					// candidates are sorted by distance
+					if ((g1 = distance (a, b) - cand_dist[k]) <= 0) break;
+					
+					if (c == b || (j = pos[c]) < lo || j > hi) continue;
+					
+					d = nodeAt(j + dir);
+					
+					gain = g1 + distance (c, d) - distance (b, d);
+					if (gain <= 0) continue;
+					
+					// edges (a,b) and (c,d) become (a,c) and (b,d)
+					if (dir == 1)
+					{
+						first = Math.min(i, j) + 1;
+						last = Math.max(i, j);
+					}
+					else
+					{
+						first = Math.min(i, j);
+						last = Math.max(i, j) - 1;
+					}
+					
+					if (last - first + 1 > MAX_MOVE_LENGTH) continue;
+					
+					reverse (first, last);
+					
+					return new int [] {a, b, c, d};
+				}
+			}
+			
+			return null;
+		}
+
+		/**
+		 * Finds and applies an improving Or-opt move that takes a segment
+		 * starting or ending at node a and inserts it next to one of the
+		 * candidates of a (possibly reversed). Returns the endpoints of the
+		 * changed edges, or null if no move was found.
+		 */
+		private int[] orOptMove (int a, int lo, int hi)
+		{
+			int		i = pos[a], len, end, seg_lo, seg_hi, s1, s2, p, q, g0;
+			int		k, c, j, x, y, ins, added, gain;
+			boolean	rev;
+			
+			for (len = 1; len <= MAX_SEGMENT_LENGTH; len++)
+				for (end = 0; end < (len == 1 ? 1 : 2); end++)
+				{
+					// segment starting (end = 0) or ending (end = 1) at a
+					seg_lo = (end == 0) ? i : i - len + 1;
+					seg_hi = seg_lo + len - 1;
+					
+					if (seg_lo < lo || seg_hi > hi) continue;
+					
+					s1 = tour[seg_lo];
+					s2 = tour[seg_hi];
+					p = nodeAt(seg_lo - 1);
+					q = nodeAt(seg_hi + 1);
+					
+					// gain of removing the segment
+					g0 = distance (p, s1) + distance (s2, q) - distance (p, q);
+					
+					for (k = a * NUM_NEIGHBORS; k < (a + 1) * NUM_NEIGHBORS; k++)
+					{
+						if ((c = cand[k]) < 0 || cand_dist[k] >= g0) break;
+						
+						if ((j = pos[c]) < lo || j > hi ||
+							(j >= seg_lo && j <= seg_hi))
+							continue;
+						
+						// insert between c and its successor, or between its
+						// predecessor and c, with a adjacent to c
+						for (ins = j; ins >= j - 1; ins--)
+						{
+							if (ins >= seg_lo - 1 && ins <= seg_hi) continue;
+							
+							x = nodeAt(ins);
+							y = nodeAt(ins + 1);
+							
+							// a must be adjacent to c
+							rev = (ins == j) == (a == s2);
+							
+							if (rev)
+								added = distance (x, s2) + distance (s1, y);
+							else
+								added = distance (x, s1) + distance (s2, y);
+							
+							gain = g0 + distance (x, y) - added;
+							if (gain <= 0) continue;
+							
+							if (Math.abs(ins - seg_lo) > MAX_MOVE_LENGTH)
+								continue;
+							
+							moveSegment (seg_lo, seg_hi, ins, rev);
+							
+							return new int [] {p, q, s1, s2, x, y};
+						}
+					}
+				}
+			
+			return null;
+		}
+
+		/**
+		 * Reverses the part of the tour between the given positions.
+		 */
+		private void reverse (int first, int last)
+		{
+			int u;
+			
+			for (; first < last; first++, last--)
+			{
+				u = tour[first];
+				tour[first] = tour[last];
+				tour[last] = u;
+				pos[tour[first]] = first;
+				pos[tour[last]] = last;
+			}
+		}
+
+		/**
+		 * Moves the segment between positions seg_lo and seg_hi so that it
+		 * follows the node currently at position ins, possibly reversed.
+		 */
+		private void moveSegment (int seg_lo, int seg_hi, int ins, boolean rev)
+		{
+			int seg[], len, p;
+			
+			len = seg_hi - seg_lo + 1;
+			seg = new int [len];
+			System.arraycopy(tour, seg_lo, seg, 0, len);
+			
+			if (ins > seg_hi)
+			{
+				// shift nodes after the segment to the left
+				for (p = seg_hi + 1; p <= ins; p++)
+				{
+					tour[p - len] = tour[p];
+					pos[tour[p - len]] = p - len;
+				}
+				p = ins - len + 1;
+			}
+			else
+			{
+				// shift nodes before the segment to the right
+				for (p = seg_lo - 1; p > ins; p--)
+				{
+					tour[p + len] = tour[p];
+					pos[tour[p + len]] = p + len;
+				}
+				p = ins + 1;
+			}
+			
+			for (int k = 0; k < len; k++)
+			{
+				tour[p + k] = rev ? seg[len - 1 - k] : seg[k];
+				pos[tour[p + k]] = p + k;
+			}
+		}
+
+		/**
+		 * Sorts the nodes according to one view of the embeddings.
+		 */
+		private class ViewSort extends RecursiveAction
+			implements ArrayIndexedCollection
+		{
+			private static final long serialVersionUID = 1L;
+
+			private int v;
+
+			private int order[];
+
+			private long key[];
+
+			private long pivot_key;
+
+			private int pivot_node;
+
+			ViewSort (int v)
+			{
+				this.v = v;
+			}
+
+			@Override
+			protected void compute ()
+			{
+				int step = (int) ((long) v * chip.embed_len / NUM_VIEWS);
+				
+				order = new int [n];
+				key = new long [n];
+				
+				for (int i = 0; i < n; i++)
+				{
+					order[i] = i;
+					key[i] = viewKey (i, step);
+				}
+				
+				QuickSort.sort(this, 0, n);
+				
+				view[v] = order;
+				view_pos[v] = new int [n];
+				for (int i = 0; i < n; i++)
+					view_pos[v][order[i]] = i;
+				
+				key = null;
+			}
+
+			public int compare (int i, int j)
+			{
+				int c = Long.compareUnsigned(key[i], key[j]);
+				
+				return (c != 0) ? c : Integer.compare(order[i], order[j]);
+			}
+
+			public void swap (int i, int j)
+			{
+				long k = key[i];
+				key[i] = key[j];
+				key[j] = k;
+				
+				int o = order[i];
+				order[i] = order[j];
+				order[j] = o;
+			}
+
+			public void setPivot (int i)
+			{
+				pivot_key = key[i];
+				pivot_node = order[i];
+			}
+
+			public int compareToPivot (int i)
+			{
+				int c = Long.compareUnsigned(key[i], pivot_key);
+				
+				return (c != 0) ? c : Integer.compare(order[i], pivot_node);
+			}
+		}
+
+		/**
+		 * Computes the candidate lists of a range of nodes.
+		 */
+		private class CandidateTask extends RecursiveAction
+		{
+			private static final long serialVersionUID = 1L;
+
+			private int first;
+
+			private int last;
+
+			CandidateTask (int first, int last)
+			{
+				this.first = first;
+				this.last = last;
+			}
+
+			@Override
+			protected void compute ()
+			{
+				int mid, buf[], buf_dist[];
+				
+				if (last - first + 1 > CANDIDATES_PER_TASK)
+				{
+					mid = (first + last) >>> 1;
+					
+					invokeAll (new CandidateTask (first, mid),
+							   new CandidateTask (mid + 1, last));
+					return;
+				}
+				
+				buf = new int [2 * VIEW_WINDOW * NUM_VIEWS];
+				buf_dist = new int [buf.length];
+				
+				for (int u = first; u <= last; u++)
+					computeCandidates (u, buf, buf_dist);
+			}
+		}
+
+		/**
+		 * Improves a range of segments of the tour. The nodes at positions
+		 * multiple of SEGMENT_SIZE are the endpoints of the segments and are
+		 * not moved, so that the segments can be improved independently.
+		 */
+		private class SegmentTask extends RecursiveAction
+		{
+			private static final long serialVersionUID = 1L;
+
+			private int first;
+
+			private int last;
+
+			SegmentTask (int first, int last)
+			{
+				this.first = first;
+				this.last = last;
+			}
+
+			@Override
+			protected void compute ()
+			{
+				int mid, lo, hi;
+				
+				if (last > first)
+				{
+					mid = (first + last) >>> 1;
+					
+					invokeAll (new SegmentTask (first, mid),
+							   new SegmentTask (mid + 1, last));
+					return;
+				}
+				
+				lo = first * SEGMENT_SIZE + 1;
+				hi = Math.min((first + 1) * SEGMENT_SIZE - 1, n - 1);
+				
+				if (lo < hi) improve (lo, hi);
+			}
+		}
 	}
 }
@@ -37,6 +37,8 @@
 
 package arrayopt.layout;
 
+import java.util.concurrent.*;
+
 /**
  * This class implements the 2-dimensional Partitioning. The algorithm
  * partitions the chip recursively based on the stated of the embeddings at a
@@ -63,6 +65,14 @@ package arrayopt.layout;
  * increased so that the filling algorithm will have more freedom on where to
  * place the probes.</P>
  * 
+ * <P>In parallel mode, the sub-regions of a region with at least
+ * {@link #MIN_PARALLEL_PROBES} probes are partitioned concurrently, since they
+ * receive disjoint sets of probes. The final sub-regions are then filled in
+ * parallel by {@link ParallelFilling}, each with its own copy of the filling
+ * algorithm. The resulting layout does not depend on the number of threads,
+ * although it usually differs from the one produced in serial mode, where
+ * every sub-region is filled as soon as it is created.</P>
+ * 
  * <P>TODO take into account fixed spots when checking if probes fit into a
  * partition.</P>
  * 
@@ -83,6 +93,12 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 	 */
 	private static final double MIN_DIV_RATE = .1;
 	
+	/**
+	 * Minimum number of probes of a region for its sub-regions to be
+	 * partitioned concurrently (parallel mode only).
+	 */
+	private static final int MIN_PARALLEL_PROBES = 1024;
+	
 	/**
 	 * Filling algorithm used to place the probes in each final sub-region.
 	 */
@@ -96,6 +112,16 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 	
 	private int rows_per_probe;
 	
+	/**
+	 * Whether the partitioning and the filling run in parallel.
+	 */
+	private boolean parallel;
+	
+	/**
+	 * Final sub-regions waiting to be filled (parallel mode only).
+	 */
+	private ParallelFilling<FillingAlgorithm> leaves;
+	
 	/**
 	 * Creates an instance of the 2-D Partitioning algorithm with the specified
 	 * filling algorithm.
@@ -115,9 +141,25 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 	 * @param stop_dim stopping dimension
 	 */
 	public TwoDimensionalPartitioning (FillingAlgorithm filler, int stop_dim)
+	{
+		this(filler, stop_dim, false);
+	}
+
+	/**
+	 * Creates an instance of the 2-D Partitioning algorithm with the specified
+	 * filling algorithm and stopping dimension, optionally running in
+	 * parallel.
+	 * 
+	 * @param filler filling algorithm used in the final sub-regions
+	 * @param stop_dim stopping dimension
+	 * @param parallel whether to partition and fill the regions in parallel
+	 */
+	public TwoDimensionalPartitioning (FillingAlgorithm filler, int stop_dim,
+			boolean parallel)
 	{
 		this.filler = filler;
 		this.stop_dim = (stop_dim < 1) ? 1 : stop_dim;
+		this.parallel = parallel;
 	}
 
 	/**
@@ -147,7 +189,32 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 		this.probe_id = chip.getMovableProbes ();
 		region = chip.getChipRegion();
 		
-		horizontalDivide (region, 0, 0, 0, 0, probe_id.length - 1);
+		if (!parallel)
+		{
+			horizontalDivide (region, 0, 0, 0, 0, probe_id.length - 1);
+			return;
+		}
+		
+		// partition the chip concurrently, collecting the final sub-regions
+		this.leaves = new ParallelFilling<FillingAlgorithm> (chip, filler)
+		{
+			FillingAlgorithm newWorker ()
+			{
+				return filler.clone();
+			}
+			
+			int fillLeaf (FillingAlgorithm f, RectangularRegion r, int range[])
+			{
+				return f.fillRegion(chip, r, probe_id, range[0], range[1]);
+			}
+		};
+		
+		ForkJoinPool.commonPool().invoke(
+			new Division (true, region, 0, 0, 0, 0, probe_id.length - 1));
+		
+		leaves.fillLeaves ();
+		
+		this.leaves = null;
 	}
 
 	private void horizontalDivide (RectangularRegion r, int step,
@@ -250,6 +317,24 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 		b_region = new RectangularRegion (row_div, r.last_row,
 											r.first_col, r.last_col);
 
+		if (parallel && end - start + 1 >= MIN_PARALLEL_PROBES)
+		{
+			// partition the sub-regions concurrently
+			if (hpar == 0)
+				ForkJoinTask.invokeAll (
+					new Division (false, t_region, step, 0, vpar, start,
+							probe_div - 1),
+					new Division (false, b_region, step, 1, vpar, probe_div,
+							end));
+			else
+				ForkJoinTask.invokeAll (
+					new Division (false, b_region, step, 1, vpar, start,
+							probe_div - 1),
+					new Division (false, t_region, step, 0, vpar, probe_div,
+							end));
+			return;
+		}
+
 		if (hpar == 0)
 		{
 			// assign masked probes to top sub-region
@@ -357,6 +442,24 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 		r_region = new RectangularRegion (r.first_row, r.last_row,
 											col_div, r.last_col);
 
+		if (parallel && end - start + 1 >= MIN_PARALLEL_PROBES)
+		{
+			// partition the sub-regions concurrently
+			if (vpar == 0)
+				ForkJoinTask.invokeAll (
+					new Division (true, l_region, step, hpar, 0, start,
+							probe_div - 1),
+					new Division (true, r_region, step, hpar, 1, probe_div,
+							end));
+			else
+				ForkJoinTask.invokeAll (
+					new Division (true, r_region, step, hpar, 1, start,
+							probe_div - 1),
+					new Division (true, l_region, step, hpar, 0, probe_div,
+							end));
+			return;
+		}
+
 		if (vpar == 0)
 		{
 			// assign masked probes to left sub-region
@@ -377,19 +480,20 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 
 	private int divideProbes (int step, int start, int end)
 	{
-		int	p_id, w, mask;
+		int	p_id, w;
+		long mask;
 
-		// which 4-byte word will be interrogated?
-		w = (int) Math.floor((double) step / Integer.SIZE);
+		// which 8-byte word will be interrogated?
+		w = (int) Math.floor((double) step / Long.SIZE);
 
 		// prepare mask to interrogate corresponding bit
-		mask = 0x01 << (Integer.SIZE - 1 - (step - w * Integer.SIZE));
+		mask = 0x01L << (Long.SIZE - 1 - (step - w * Long.SIZE));
 
 		while (start <= end)
 		{
 			p_id = probe_id[start];
 
-			if ((chip.embed[p_id][w] & mask) == 0)
+			if ((chip.embed[chip.embeddingOffset(p_id) + w] & mask) == 0)
 			{
 				// probe is masked at this step:
 				// proceed to next embedding on the list
@@ -410,9 +514,16 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 	
 	private void fillRegion (RectangularRegion r, int start, int end)
 	{
+		if (parallel)
+		{
+			// region will be filled later
+			leaves.addLeaf (r, start, end);
+			return;
+		}
+		
 		filler.fillRegion(this.chip, r, this.probe_id, start, end);
 	}
-
+	
 	/**
 	 * Returns the algorithm's name together with current options.
 	 * 
@@ -421,6 +532,42 @@ public class TwoDimensionalPartitioning implements LayoutAlgorithm
 	@Override
 	public String toString ()
 	{		
-		return "2DPartitioning-" + stop_dim + "-" + filler;
+		return "2DPartitioning-" + stop_dim + (parallel ? "-Parallel" : "") +
+				"-" + filler;
+	}
+	
+	/**
+	 * Partitions a region (horizontally or vertically) as a fork-join task.
+	 */
+	private class Division extends RecursiveAction
+	{
+		private static final long serialVersionUID = 1L;
+		
+		private boolean horizontal;
+		
+		private RectangularRegion region;
+		
+		private int step, hpar, vpar, start, end;
+		
+		Division (boolean horizontal, RectangularRegion region, int step,
+				int hpar, int vpar, int start, int end)
+		{
+			this.horizontal = horizontal;
+			this.region = region;
+			this.step = step;
+			this.hpar = hpar;
+			this.vpar = vpar;
+			this.start = start;
+			this.end = end;
+		}
+		
+		@Override
+		protected void compute ()
+		{
+			if (horizontal)
+				horizontalDivide (region, step, hpar, vpar, start, end);
+			else
+				verticalDivide (region, step, hpar, vpar, start, end);
+		}
 	}
 }
@@ -158,4 +158,14 @@ public class GraspDense extends QAPSolverAlgorithm
 	{
 		return this.last_num_iter;
 	}
+
+	@Override
+	public GraspDense clone ()
+	{
+		GraspDense c = (GraspDense) super.clone();
+		
+		c.in_out = new int [2];
+		
+		return c;
+	}
 }
@@ -177,4 +177,14 @@ public class GraspPathRelinking extends QAPSolverAlgorithm
 	{
 		return this.last_num_iter;
 	}
+
+	@Override
+	public GraspPathRelinking clone ()
+	{
+		GraspPathRelinking c = (GraspPathRelinking) super.clone();
+		
+		c.in_out = new int [2];
+		
+		return c;
+	}
 }
@@ -160,4 +160,14 @@ public class GraspSparse extends QAPSolverAlgorithm
 	{
 		return this.last_num_iter;
 	}
+
+	@Override
+	public GraspSparse clone ()
+	{
+		GraspSparse c = (GraspSparse) super.clone();
+		
+		c.in_out = new int [2];
+		
+		return c;
+	}
 }
@@ -0,0 +1,937 @@
+/*
+ * JavaGraspPathRelinking.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.qap;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class implements a GRASP with path relinking for the QAP entirely in
+ * Java. It follows the algorithm of the native {@link GraspPathRelinking}
+ * solver (by Oliveira, Pardalos and Resende) and accepts the same parameters,
+ * but does not require any external library.
+ * 
+ * <P>Each GRASP iteration constructs a solution in two phases. In phase 1, the
+ * {@link #beta} fraction of smallest distances is paired with the same number
+ * of largest flows, and one of the {@link #alpha} fraction of pairs with
+ * smallest products is chosen at random as the first two assignments. In
+ * phase 2, the remaining assignments are done one at a time, each chosen at
+ * random among the {@link #alpha} fraction of cheapest assignments in relation
+ * to those already made. The solution is then improved by a local search with
+ * random restarts, and relinked with a solution from a pool of elite solutions
+ * in both directions.</P>
+ * 
+ * <P>The cost of exchanging two assignments is computed in O(n) time (see
+ * {@link QAPSolverAlgorithm#swapDelta}). The random number generator is
+ * seeded from {@link #seed} at every call, so the same instance always
+ * produces the same solution.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class JavaGraspPathRelinking extends QAPSolverAlgorithm
+{
+	/**
+	 * Number of independent runs of the GRASP.
+	 */
+	protected int runs;
+
+	/**
+	 * Number of GRASP iterations of each run.
+	 */
+	protected int max_iter;
+
+	/**
+	 * Size of the restricted candidate lists (as a fraction of candidates).
+	 */
+	protected float alpha;
+
+	/**
+	 * Fraction of distances and flows considered in phase 1.
+	 */
+	protected float beta;
+
+	/**
+	 * Maximum size of the pool of elite solutions.
+	 */
+	protected int elite_size;
+
+	/**
+	 * Seed of the random number generator.
+	 */
+	protected int seed;
+
+	/**
+	 * Number of GRASP iterations performed by the last call.
+	 */
+	protected int last_num_iter;
+
+	public static final int DEFAULT_RUNS = 1;
+
+	public static final int DEFAULT_MAX_ITERACTIONS = 32;
+
+	public static final float DEFAULT_ALPHA = .1f;
+
+	public static final float DEFAULT_BETA = .4f;
+
+	public static final int DEFAULT_ELITE_SIZE = 10;
+
+	public static final int DEFAULT_SEED = 270001;
+
+	/**
+	 * Minimum number of different assignments for a solution to enter the
+	 * elite pool while it is not full.
+	 */
+	private static final int MIN_DIFF = 3;
+
+	/**
+	 * Number of iterations without improvement after which the worst half of
+	 * the elite pool is discarded.
+	 */
+	private static final int MAX_ITER_NO_IMPROV = 20;
+
+	/**
+	 * Number of consecutive failed attempts that stops the local search.
+	 */
+	private static final int MAX_LS_NO_CHANGE = 20;
+
+	/**
+	 * Number of restarts of the local search in each GRASP iteration.
+	 */
+	private static final int LS_RESTARTS = 10;
+
+	// current instance
+	private int n;
+
+	private int dist[];
+
+	private int flow[];
+
+	private Random rand;
+
+	// current solution and its cost
+	private int cur[];
+
+	private long cur_cost;
+
+	// best solution and its cost
+	private int best[];
+
+	private long best_cost;
+
+	// elite pool
+	private int elite[][];
+
+	private long elite_cost[];
+
+	private int elite_count;
+
+	// iteration counters
+	private int iter;
+
+	private int last_improv;
+
+	// working arrays
+	private int tmp[], tmp_best[], prev[], lopt[], rev[], guide_buf[];
+
+	private long cand[], key[];
+
+	private long partial[];
+
+	private int diff[];
+
+	public JavaGraspPathRelinking ()
+	{
+		this (DEFAULT_RUNS, DEFAULT_MAX_ITERACTIONS);
+	}
+
+	public JavaGraspPathRelinking (int runs, int max_iter)
+	{
+		this (runs, max_iter, DEFAULT_ALPHA, DEFAULT_BETA, DEFAULT_ELITE_SIZE);
+	}
+
+	public JavaGraspPathRelinking (int runs, int max_iter, float alpha,
+		float beta, int elite_size)
+	{
+		this (runs, max_iter, alpha, beta, elite_size, DEFAULT_SEED);
+	}
+
+	public JavaGraspPathRelinking (int runs, int max_iter, float alpha,
+		float beta, int elite_size, int seed)
+	{
+		if (runs < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'runs'.");
+
+		if (max_iter < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_iter'.");
+
+		if (alpha < 0 || alpha > 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'alpha'.");
+
+		if (beta <= 0 || beta > 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'beta'.");
+
+		if (elite_size < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'elite_size'.");
+
+		this.runs = runs;
+		this.max_iter = max_iter;
+		this.alpha = alpha;
+		this.beta = beta;
+		this.elite_size = elite_size;
+		this.seed = seed;
+	}
+
+	@Override
+	long solveQAP (int dim, int dist[], int flow[], int sol[])
+	{
+		int  run_best[];
+		long run_best_cost = Long.MAX_VALUE;
+		
+		if (dim <= 2)
+			return solveSmall (dim, dist, flow, sol);
+		
+		setup (dim, dist, flow);
+		
+		run_best = new int [dim];
+		last_num_iter = 0;
+		
+		for (int r = 0; r < runs && (r == 0 || !isInterrupted()); r++)
+		{
+			rand = new Random (seed + r + 1);
+			
+			grasp ();
+			
+			if (best_cost < run_best_cost)
+			{
+				run_best_cost = best_cost;
+				System.arraycopy(best, 0, run_best, 0, n);
+			}
+		}
+		
+		System.arraycopy(run_best, 0, sol, 0, n);
+		
+		// release the instance
+		this.dist = this.flow = null;
+		
+		return run_best_cost;
+	}
+
+	/**
+	 * Solves instances with at most two locations by enumeration.
+	 */
+	private long solveSmall (int dim, int dist[], int flow[], int sol[])
+	{
+		long cost;
+		
+		for (int i = 0; i < dim; i++)
+			sol[i] = i;
+		
+		cost = computeCost (dim, dist, flow, sol);
+		
+		if (dim == 2 && swapDelta (dim, dist, flow, sol, 0, 1) < 0)
+		{
+			cost += swapDelta (dim, dist, flow, sol, 0, 1);
+			sol[0] = 1;
+			sol[1] = 0;
+		}
+		
+		last_num_iter = 0;
+		
+		return cost;
+	}
+
+	/**
+	 * Allocates the working data for an instance of the given dimension.
+	 */
+	private void setup (int dim, int dist[], int flow[])
+	{
+		this.dist = dist;
+		this.flow = flow;
+		
+		if (dim == n && elite != null && elite.length == elite_size)
+			return;
+		
+		this.n = dim;
+		
+		cur = new int [n];
+		best = new int [n];
+		tmp = new int [n];
+		tmp_best = new int [n];
+		prev = new int [n];
+		lopt = new int [n];
+		guide_buf = new int [n];
+		rev = new int [n];
+		partial = new long [n * n];
+		cand = new long [n * n];
+		key = new long [n * n];
+		diff = new int [elite_size];
+		elite = new int [elite_size][n];
+		elite_cost = new long [elite_size];
+	}
+
+	/**
+	 * Runs the GRASP with path relinking.
+	 */
+	private void grasp ()
+	{
+		elite_count = 0;
+		last_improv = 0;
+		
+		// start with a random solution
+		randomPermutation (best);
+		best_cost = computeCost (n, dist, flow, best);
+		
+		for (iter = 1; iter <= max_iter && !isInterrupted(); iter++)
+		{
+			construct ();
+			
+			extraLocalSearch ();
+			
+			// relink with the elite pool (both directions)
+			forwardRelinking ();
+			backwardRelinking ();
+			updateElite ();
+			
+			updateBest ();
+		}
+		
+		last_num_iter += iter - 1;
+		
+		postOptimization ();
+	}
+
+	/**
+	 * Creates a random permutation.
+	 */
+	private void randomPermutation (int p[])
+	{
+		int i, r, t;
+		
+		for (i = 0; i < n; i++)
+			p[i] = i;
+		
+		for (i = 0; i < n; i++)
+		{
+			r = i + rand.nextInt(n - i);
+			t = p[i];
+			p[i] = p[r];
+			p[r] = t;
+		}
+	}
+
+	/**
+	 * Greedy randomized construction of the current solution.
+	 */
+	private void construct ()
+	{
+		int nn = n * n, last, rcl, pos, k, i, j, l, f, m;
+		long c;
+		
+		// phase 1: pair the smallest distances with the largest flows
+		for (k = 0, i = 0; i < n; i++)
+			for (j = 0; j < n; j++)
+				if (i != j)
+				{
+					cand[k] = (long) dist[i * n + j] * nn + i * n + j;
+					key[k] = - (long) flow[i * n + j] * nn + i * n + j;
+					k++;
+				}
+		
+		Arrays.sort(cand, 0, k);
+		Arrays.sort(key, 0, k);
+		
+		if ((last = (int) (k * beta)) < 1) last = 1;
+		
+		// cand[m] keeps the pair of locations, key[m] the pair of facilities
+		for (m = 0; m < last; m++)
+		{
+			cand[m] = mod (cand[m], nn);
+			key[m] = mod (key[m], nn);
+		}
+		
+		// sort pairs by the product of distance and flow
+		for (m = 0; m < last; m++)
+		{
+			l = (int) cand[m];
+			f = (int) key[m];
+			partial[m] = ((long) dist[l] * flow[f]) * last + m;
+		}
+		
+		if ((rcl = (int) (last * alpha)) < 1) rcl = 1;
+		
+		pos = (int) mod (select (partial, last, rand.nextInt(rcl)), last);
+		
+		l = (int) cand[pos];
+		f = (int) key[pos];
+		
+		Arrays.fill(cur, -1);
+		Arrays.fill(rev, -1);
+		Arrays.fill(partial, 0);
+		
+		assign (l / n, f / n);
+		assign (l % n, f % n);
+		
+		// phase 2: remaining assignments
+		for (k = 2; k < n; k++)
+		{
+			m = 0;
+			for (l = 0; l < n; l++)
+			{
+				if (cur[l] >= 0) continue;
+				
+				for (f = 0; f < n; f++)
+					if (rev[f] < 0)
+					{
+						c = partial[l * n + f];
+						cand[m++] = c * nn + l * n + f;
+					}
+			}
+			
+			if ((rcl = (int) (m * alpha)) < 1) rcl = 1;
+			
+			pos = (int) mod (select (cand, m, rand.nextInt(rcl)), nn);
+			
+			assign (pos / n, pos % n);
+		}
+		
+		cur_cost = computeCost (n, dist, flow, cur);
+	}
+
+	/**
+	 * Returns the k-th smallest of the first len elements of an array with
+	 * distinct elements (partially reordering the array).
+	 */
+	private static long select (long a[], int len, int k)
+	{
+		int  lo = 0, hi = len - 1, i, j;
+		long p, t;
+		
+		while (lo < hi)
+		{
+			p = a[(lo + hi) >>> 1];
+			i = lo;
+			j = hi;
+			
+			while (i <= j)
+			{
+				while (a[i] < p) i++;
+				while (a[j] > p) j--;
+				
+				if (i <= j)
+				{
+					t = a[i];
+					a[i] = a[j];
+					a[j] = t;
+					i++;
+					j--;
+				}
+			}
+			
+			if (k <= j)
+				hi = j;
+			else if (k >= i)
+				lo = i;
+			else
+				return a[k];
+		}
+		
+		return a[k];
+	}
+
+	/**
+	 * Returns the non-negative remainder of a division.
+	 */
+	private static long mod (long a, long b)
+	{
+		long r = a % b;
+		return r < 0 ? r + b : r;
+	}
+
+	/**
+	 * Assigns facility f to location l during the construction, and updates
+	 * the cost of the remaining assignments in relation to those already made.
+	 */
+	private void assign (int l, int f)
+	{
+		int i, j, ln = l * n, fn = f * n;
+		
+		cur[l] = f;
+		rev[f] = l;
+		
+		for (i = 0; i < n; i++)
+		{
+			if (cur[i] >= 0) continue;
+			
+			for (j = 0; j < n; j++)
+				if (rev[j] < 0)
+					partial[i * n + j] +=
+						(long) dist[i * n + l] * flow[j * n + f] +
+						(long) dist[ln + i] * flow[fn + j];
+		}
+	}
+
+	/**
+	 * Local search that repeatedly picks a random location and applies its
+	 * best improving exchange, until it fails {@link #MAX_LS_NO_CHANGE} times
+	 * in a row.
+	 */
+	private void localSearch (int p[])
+	{
+		int i, j, q = -1, no_change = 0, t;
+		long d, min;
+		
+		while (no_change < MAX_LS_NO_CHANGE)
+		{
+			i = rand.nextInt(n);
+			min = 0;
+			
+			for (j = 0; j < n; j++)
+				if (j != i && (d = swapDelta(n, dist, flow, p, i, j)) < min)
+				{
+					min = d;
+					q = j;
+				}
+			
+			if (min < 0)
+			{
+				t = p[i];
+				p[i] = p[q];
+				p[q] = t;
+				cur_cost += min;
+				no_change = 0;
+			}
+			else
+				no_change++;
+		}
+	}
+
+	/**
+	 * Local search with random restarts (two random exchanges) applied to the
+	 * current solution.
+	 */
+	private void extraLocalSearch ()
+	{
+		int i, j, t;
+		
+		for (int k = 0; k < LS_RESTARTS; k++)
+		{
+			localSearch (cur);
+			updateBest ();
+			
+			for (int s = 0; s < 2; s++)
+			{
+				i = rand.nextInt(n);
+				do j = rand.nextInt(n); while (j == i);
+				
+				cur_cost += swapDelta (n, dist, flow, cur, i, j);
+				t = cur[i];
+				cur[i] = cur[j];
+				cur[j] = t;
+			}
+		}
+	}
+
+	/**
+	 * Saves the current solution as the best one if it is better.
+	 */
+	private void updateBest ()
+	{
+		if (cur_cost < best_cost)
+		{
+			best_cost = cur_cost;
+			System.arraycopy(cur, 0, best, 0, n);
+			last_improv = iter;
+		}
+	}
+
+	/**
+	 * Number of locations where two solutions differ.
+	 */
+	private int difference (int p1[], int p2[])
+	{
+		int d = 0;
+		
+		for (int i = 0; i < n; i++)
+			if (p1[i] != p2[i]) d++;
+		
+		return d;
+	}
+
+	/**
+	 * Chooses an elite solution with probability proportional to its
+	 * difference to the current solution.
+	 */
+	private int guidingSolution ()
+	{
+		int i, r, total = 0;
+		
+		for (i = 0; i < elite_count; i++)
+			total += (diff[i] = difference(cur, elite[i]));
+		
+		if (total == 0) return 0;
+		
+		r = rand.nextInt(total);
+		
+		for (i = 0; r >= diff[i]; i++)
+			r -= diff[i];
+		
+		return i;
+	}
+
+	/**
+	 * Relinks the current solution towards an elite solution, or adds it to
+	 * the pool if the pool is not full.
+	 */
+	private void forwardRelinking ()
+	{
+		int g;
+		
+		if (elite_count < elite_size)
+		{
+			// only accept solutions different enough from the others
+			for (int i = 0; i < elite_count; i++)
+				if (difference(cur, elite[i]) < MIN_DIFF)
+					return;
+			
+			insertElite ();
+			return;
+		}
+		
+		g = guidingSolution ();
+		
+		System.arraycopy(cur, 0, tmp, 0, n);
+		pathRelinking (tmp, cur_cost, elite[g], elite_cost[g]);
+	}
+
+	/**
+	 * Relinks an elite solution towards the current solution.
+	 */
+	private void backwardRelinking ()
+	{
+		int g;
+		
+		if (elite_count < elite_size) return;
+		
+		g = guidingSolution ();
+		
+		// the guiding solution must not change during the relinking
+		System.arraycopy(cur, 0, guide_buf, 0, n);
+		System.arraycopy(elite[g], 0, tmp, 0, n);
+		
+		pathRelinking (tmp, elite_cost[g], guide_buf, cur_cost);
+	}
+
+	/**
+	 * Walks from the starting solution (which is modified) towards the guiding
+	 * solution, one exchange at a time, and leaves the result in the current
+	 * solution: the best solution found on the path (after a local search) if
+	 * it is better than the guiding solution; otherwise a local optimum found
+	 * on the path, if any; or the best solution on the path.
+	 */
+	private void pathRelinking (int s[], long s_cost, int guide[],
+		long guide_cost)
+	{
+		int  i, j, t, pos[];
+		long d, cp = -1, cpp = -1, sbest_cost, lopt_cost = -1;
+		
+		pos = rev;
+		for (i = 0; i < n; i++)
+			pos[s[i]] = i;
+		
+		System.arraycopy(s, 0, tmp_best, 0, n);
+		sbest_cost = s_cost;
+		
+		for (i = 0; i < n; i++)
+		{
+			if (s[i] == guide[i]) continue;
+			
+			cpp = cp;
+			cp = s_cost;
+			System.arraycopy(s, 0, prev, 0, n);
+			
+			// bring the guiding facility to location i
+			j = pos[guide[i]];
+			d = swapDelta (n, dist, flow, s, i, j);
+			
+			t = s[i];
+			s[i] = s[j];
+			s[j] = t;
+			pos[s[i]] = i;
+			pos[s[j]] = j;
+			
+			s_cost += d;
+			
+			if (s_cost < sbest_cost)
+			{
+				System.arraycopy(s, 0, cur, 0, n);
+				cur_cost = s_cost;
+				
+				localSearch (cur);
+				
+				System.arraycopy(cur, 0, tmp_best, 0, n);
+				sbest_cost = cur_cost;
+			}
+			
+			if (cpp != -1 && cp < cpp && cp < s_cost &&
+				(lopt_cost == -1 || cp < lopt_cost))
+			{
+				// the previous solution is a local optimum
+				System.arraycopy(prev, 0, lopt, 0, n);
+				lopt_cost = cp;
+			}
+		}
+		
+		if (sbest_cost < guide_cost || lopt_cost == -1)
+		{
+			System.arraycopy(tmp_best, 0, cur, 0, n);
+			cur_cost = sbest_cost;
+		}
+		else
+		{
+			System.arraycopy(lopt, 0, cur, 0, n);
+			cur_cost = lopt_cost;
+		}
+	}
+
+	/**
+	 * Adds the current solution to the elite pool.
+	 */
+	private void insertElite ()
+	{
+		System.arraycopy(cur, 0, elite[elite_count], 0, n);
+		elite_cost[elite_count] = cur_cost;
+		elite_count++;
+	}
+
+	/**
+	 * Indices of the best and worst elite solutions.
+	 */
+	private int eliteBest ()
+	{
+		int b = 0;
+		
+		for (int i = 1; i < elite_count; i++)
+			if (elite_cost[i] < elite_cost[b]) b = i;
+		
+		return b;
+	}
+
+	private int eliteWorst ()
+	{
+		int w = 0;
+		
+		for (int i = 1; i < elite_count; i++)
+			if (elite_cost[i] > elite_cost[w]) w = i;
+		
+		return w;
+	}
+
+	/**
+	 * Checks whether the current solution (or one very close to it) is already
+	 * in the elite pool.
+	 */
+	private boolean inElite ()
+	{
+		for (int i = 0; i < elite_count; i++)
+			if (elite_cost[i] == cur_cost ||
+				difference(elite[i], cur) < MIN_DIFF)
+				return true;
+		
+		return false;
+	}
+
+	/**
+	 * Updates the elite pool with the current solution: it replaces the most
+	 * similar elite solution that is not better than it. If there has been no
+	 * improvement for a while, the worst half of the pool is discarded.
+	 */
+	private void updateElite ()
+	{
+		int i, d, min, pos;
+		
+		if (elite_count < elite_size) return;
+		
+		if (cur_cost < elite_cost[eliteBest()] ||
+			(cur_cost < elite_cost[eliteWorst()] && !inElite()))
+		{
+			min = n + 1;
+			pos = 0;
+			
+			for (i = 0; i < elite_count; i++)
+				if (elite_cost[i] >= cur_cost &&
+					(d = difference(elite[i], cur)) < min)
+				{
+					min = d;
+					pos = i;
+				}
+			
+			System.arraycopy(cur, 0, elite[pos], 0, n);
+			elite_cost[pos] = cur_cost;
+		}
+		else if (iter - last_improv >= MAX_ITER_NO_IMPROV)
+		{
+			discardWorstHalf ();
+			last_improv = iter;
+		}
+	}
+
+	/**
+	 * Removes the worst half of the elite pool.
+	 */
+	private void discardWorstHalf ()
+	{
+		int w, t[];
+		
+		for (int k = elite_count / 2; k > 0; k--)
+		{
+			w = eliteWorst ();
+			
+			// move the last solution to the freed position
+			elite_count--;
+			t = elite[w];
+			elite[w] = elite[elite_count];
+			elite[elite_count] = t;
+			elite_cost[w] = elite_cost[elite_count];
+		}
+	}
+
+	/**
+	 * Relinks every pair of elite solutions in both directions, rebuilding
+	 * the pool with the results, until the best solution stops improving.
+	 */
+	private void postOptimization ()
+	{
+		int  pool[][], count, i, j;
+		long pool_cost[], cost;
+		
+		if (elite_count < elite_size) return;
+		
+		pool = new int [elite_size][n];
+		pool_cost = new long [elite_size];
+		
+		do
+		{
+			count = elite_count;
+			for (i = 0; i < count; i++)
+			{
+				System.arraycopy(elite[i], 0, pool[i], 0, n);
+				pool_cost[i] = elite_cost[i];
+			}
+			
+			elite_count = 0;
+			cost = best_cost;
+			
+			for (i = 0; i < count; i++)
+				for (j = 0; j < count; j++)
+				{
+					if (i == j) continue;
+					
+					relinkPair (pool[i], pool_cost[i], pool[j], pool_cost[j]);
+					relinkPair (pool[j], pool_cost[j], pool[i], pool_cost[i]);
+				}
+		}
+		while (best_cost < cost && elite_count == elite_size);
+	}
+
+	/**
+	 * Relinks two solutions of the post-optimization phase and updates the
+	 * elite pool and the best solution with the result.
+	 */
+	private void relinkPair (int s[], long s_cost, int guide[],
+		long guide_cost)
+	{
+		System.arraycopy(s, 0, tmp, 0, n);
+		pathRelinking (tmp, s_cost, guide, guide_cost);
+		
+		if (elite_count < elite_size)
+			insertElite ();
+		else
+			updateElite ();
+		
+		updateBest ();
+	}
+
+	public void setPhase1Parameters (float alpha, float beta)
+	{
+		this.alpha = alpha;
+		this.beta = beta;
+	}
+
+	public float getAlpha ()
+	{
+		return this.alpha;
+	}
+
+	public float getBeta ()
+	{
+		return this.beta;
+	}
+
+	public void setSeed (int seed)
+	{
+		this.seed = seed;
+	}
+
+	public int getCurrentSeed ()
+	{
+		return this.seed;
+	}
+
+	public int getLastNumberOfIteractions ()
+	{
+		return this.last_num_iter;
+	}
+
+	@Override
+	public JavaGraspPathRelinking clone ()
+	{
+		JavaGraspPathRelinking c = (JavaGraspPathRelinking) super.clone();
+		
+		// working data is created on demand
+		c.n = 0;
+		c.elite = null;
+		c.rand = null;
+		
+		return c;
+	}
+}
@@ -0,0 +1,552 @@
+/*
+ * ParallelQAPSolver.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.qap;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.*;
+
+/**
+ * This class runs several independently seeded copies of a
+ * {@link QAPSolverAlgorithm} on separate threads and returns the best solution
+ * found. It is useful with randomized solvers such as the
+ * {@link JavaGraspPathRelinking}, the {@link RobustTabuSearch} or the
+ * {@link SimulatedAnnealing}, which are multi-start by nature.
+ * 
+ * <P>The search consists of a given number of starts. Each start is solved by
+ * a copy of the solver (see {@link QAPSolverAlgorithm#clone}) whose seed is
+ * the base seed plus the index of the start. The threads take the starts in
+ * order, as soon as they become idle, until all starts have been run. The
+ * starts do not share any information while they run: the result of a start
+ * is only compared with the others once it is completed. If a target cost is
+ * given, the search stops as soon as a start reaches it; starts with a higher
+ * index than the one that reached the target are then interrupted (see
+ * {@link QAPSolverAlgorithm#interrupt}) or not even begun.</P>
+ * 
+ * <P>The solution returned is the best one among the starts up to the first
+ * one that reached the target cost (or among all starts), the one with the
+ * lowest index being preferred in case of ties. Since the result of each
+ * start depends only on its seed, the solution is the same regardless of the
+ * number of threads and of how the starts are scheduled. The only exception is
+ * when a time limit is given: when it expires, the running starts are
+ * interrupted, no other start is begun, and the best solution among the
+ * completed or interrupted ones is returned.</P>
+ * 
+ * <P>The threads belong to a fork-join pool owned by the solver. The pool is
+ * created on the first call and reused by the following ones (a clone creates
+ * its own pool). Its threads are daemon threads that terminate after being
+ * idle for a while. If a start throws an exception or an error, the search is
+ * stopped and the exception is thrown again by the solve method.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class ParallelQAPSolver extends QAPSolverAlgorithm
+{
+	/**
+	 * Constant used to indicate that there is no target cost.
+	 */
+	public static final long NO_TARGET = Long.MIN_VALUE;
+
+	public static final int DEFAULT_SEED = 270001;
+
+	/**
+	 * Solver whose copies are run on the threads.
+	 */
+	protected QAPSolverAlgorithm solver;
+
+	/**
+	 * Number of threads.
+	 */
+	protected int num_threads;
+
+	/**
+	 * Maximum number of starts.
+	 */
+	protected int num_starts;
+
+	/**
+	 * Maximum running time in milliseconds (0 for no limit).
+	 */
+	protected long max_time;
+
+	/**
+	 * The search stops when a solution with this cost (or lower) is found.
+	 */
+	protected long target_cost;
+
+	/**
+	 * Base seed of the starts.
+	 */
+	protected int seed;
+
+	/**
+	 * Number of starts run by the last call.
+	 */
+	protected int last_num_starts;
+
+	/**
+	 * Pool on which the starts are run (created on demand).
+	 */
+	private ForkJoinPool pool;
+
+	// working data
+	private QAPSolverAlgorithm worker[];
+
+	private int worker_sol[][];
+
+	private int n;
+
+	private int dist[], flow[];
+
+	private SparseMatrix sparse_dist;
+
+	/**
+	 * Index of the next start to be run.
+	 */
+	private AtomicInteger next_start;
+
+	/**
+	 * Starts with this index (or higher) are not considered.
+	 */
+	private volatile int limit;
+
+	/**
+	 * Index of the start being run by each thread (-1 if none).
+	 */
+	private AtomicIntegerArray running;
+
+	/**
+	 * Results of the starts that could not be considered yet because starts
+	 * with a lower index are still running.
+	 */
+	private TreeMap<Integer,Result> pending;
+
+	/**
+	 * Index of the next start to be considered.
+	 */
+	private int next_result;
+
+	/**
+	 * Number of results considered.
+	 */
+	private int num_results;
+
+	private long best_cost;
+
+	private int best[];
+
+	private Throwable error;
+
+	/**
+	 * Creates a parallel solver that runs one start per available processor,
+	 * on as many threads, using the given solver.
+	 * 
+	 * @param solver a QAP solver algorithm
+	 */
+	public ParallelQAPSolver (QAPSolverAlgorithm solver)
+	{
+		this (solver, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Creates a parallel solver that runs one start per thread using the given
+	 * solver.
+	 * 
+	 * @param solver a QAP solver algorithm
+	 * @param num_threads number of threads
+	 */
+	public ParallelQAPSolver (QAPSolverAlgorithm solver, int num_threads)
+	{
+		this (solver, num_threads, num_threads, 0, NO_TARGET, DEFAULT_SEED);
+	}
+
+	/**
+	 * Creates a parallel solver with the given options.
+	 * 
+	 * @param solver a QAP solver algorithm
+	 * @param num_threads number of threads
+	 * @param num_starts maximum number of starts
+	 * @param max_time maximum running time in milliseconds (0 for no limit)
+	 * @param target_cost stop when a solution with this cost is found (or
+	 * {@link #NO_TARGET})
+	 * @param seed base seed of the starts
+	 */
+	public ParallelQAPSolver (QAPSolverAlgorithm solver, int num_threads,
+		int num_starts, long max_time, long target_cost, int seed)
+	{
+		if (solver == null)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'solver'.");
+
+		if (num_threads < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'num_threads'.");
+
+		if (num_starts < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'num_starts'.");
+
+		if (max_time < 0)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_time'.");
+
+		this.solver = solver;
+		this.num_threads = num_threads;
+		this.num_starts = num_starts;
+		this.max_time = max_time;
+		this.target_cost = target_cost;
+		this.seed = seed;
+	}
+
+	@Override
+	long solveQAP (int dim, int dist[], int flow[], int sol[])
+	{
+		return search (dim, dist, null, flow, sol);
+	}
+
+	@Override
+	long solveSparseQAP (int dim, SparseMatrix dist, int flow[], int sol[])
+	{
+		return search (dim, null, dist, flow, sol);
+	}
+
+	/**
+	 * Runs the starts on an instance given either with a dense (dist) or with
+	 * a sparse (sparse_dist) distance matrix.
+	 */
+	private long search (int dim, int dist[], SparseMatrix sparse_dist,
+		int flow[], int sol[])
+	{
+		ForkJoinTask<?>	task[];
+		long			stop = 0, wait;
+		int				k, num_run;
+		
+		setup (dim, dist, sparse_dist, flow);
+		
+		if (max_time > 0)
+			stop = System.currentTimeMillis() + max_time;
+		
+		num_run = Math.min(num_threads, num_starts);
+		task = new ForkJoinTask<?> [num_run];
+		
+		for (k = 0; k < num_run; k++)
+		{
+			final int w = k;
+			
+			task[k] = pool.submit(new Runnable ()
+			{
+				@Override
+				public void run ()
+				{
+					runStarts (w);
+				}
+			});
+		}
+		
+		// wait for the tasks (until the time limit, if any)
+		for (k = 0; k < num_run; k++)
+		{
+			while (!task[k].isDone())
+			{
+				try
+				{
+					if (stop > 0)
+					{
+						if ((wait = stop - System.currentTimeMillis()) <= 0)
+						{
+							interrupt ();
+							stop = 0;
+							continue;
+						}
+						task[k].get(wait, TimeUnit.MILLISECONDS);
+					}
+					else
+						task[k].get();
+				}
+				catch (TimeoutException e)
+				{
+					// the time limit is checked again
+				}
+				catch (InterruptedException e)
+				{
+					// stop the search and keep waiting for the tasks
+					interrupt ();
+				}
+				catch (ExecutionException e)
+				{
+					// this shouldn't happen anyway since
+					// runStarts catches everything
+					synchronized (this)
+					{
+						if (error == null) error = e.getCause();
+					}
+				}
+			}
+		}
+		
+		if (error != null)
+		{
+			// release the instance
+			this.dist = this.flow = null;
+			this.sparse_dist = null;
+			this.pending = null;
+			
+			if (error instanceof RuntimeException)
+				throw (RuntimeException) error;
+			if (error instanceof Error)
+				throw (Error) error;
+			throw new RuntimeException (error);
+		}
+		
+		// the remaining results are only left when the search was interrupted
+		while (!pending.isEmpty())
+			consider (pending.pollFirstEntry().getValue());
+		
+		System.arraycopy(best, 0, sol, 0, n);
+		
+		last_num_starts = num_results;
+		
+		// release the instance
+		this.dist = this.flow = null;
+		this.sparse_dist = null;
+		this.pending = null;
+		
+		return best_cost;
+	}
+
+	/**
+	 * Runs starts on the given worker until there are no more starts or the
+	 * search is stopped.
+	 */
+	private void runStarts (int w)
+	{
+		QAPSolverAlgorithm	s = worker[w];
+		long				cost;
+		int					i;
+		
+		try
+		{
+			while ((i = next_start.getAndIncrement()) < limit)
+			{
+				// at least the first start is always run
+				if (i > 0 && isInterrupted()) break;
+				
+				running.set(w, i);
+				
+				// check again in case it changed in the meantime
+				if (i >= limit || (i > 0 && isInterrupted())) break;
+				
+				s.setSeed (seed + i);
+				if (sparse_dist != null)
+					cost = s.solve (n, sparse_dist, flow, worker_sol[w]);
+				else
+					cost = s.solve (n, dist, flow, worker_sol[w]);
+				
+				running.set(w, -1);
+				
+				addResult (i, cost, worker_sol[w]);
+			}
+		}
+		catch (Throwable e)
+		{
+			synchronized (this)
+			{
+				if (error == null) error = e;
+			}
+			interrupt ();
+		}
+		finally
+		{
+			running.set(w, -1);
+		}
+	}
+
+	/**
+	 * Adds the result of a start. Results are considered in the order of their
+	 * starts so that the solution does not depend on the scheduling of the
+	 * threads.
+	 */
+	private synchronized void addResult (int i, long cost, int sol[])
+	{
+		if (i >= limit) return;
+		
+		if (cost <= target_cost)
+		{
+			// starts after this one are no longer needed
+			limit = i + 1;
+			pending.tailMap(limit).clear();
+			
+			for (int w = 0; w < worker.length; w++)
+				if (running.get(w) >= limit)
+					worker[w].interrupt();
+		}
+		
+		pending.put(i, new Result (i, cost, sol.clone()));
+		
+		while (!pending.isEmpty() && pending.firstKey() == next_result)
+			consider (pending.pollFirstEntry().getValue());
+	}
+
+	/**
+	 * Updates the best solution with the result of a start.
+	 */
+	private void consider (Result r)
+	{
+		if (r.cost < best_cost)
+		{
+			best_cost = r.cost;
+			System.arraycopy(r.sol, 0, best, 0, n);
+		}
+		
+		next_result = r.start + 1;
+		num_results++;
+	}
+
+	/**
+	 * Allocates the working data for an instance of the given dimension.
+	 */
+	private void setup (int dim, int dist[], SparseMatrix sparse_dist,
+		int flow[])
+	{
+		int k;
+		
+		this.dist = dist;
+		this.sparse_dist = sparse_dist;
+		this.flow = flow;
+		
+		if (pool == null)
+			pool = new ForkJoinPool (num_threads);
+		
+		if (worker == null)
+		{
+			worker = new QAPSolverAlgorithm [num_threads];
+			for (k = 0; k < num_threads; k++)
+				worker[k] = solver.clone();
+		}
+		
+		for (k = 0; k < num_threads; k++)
+			worker[k].clearInterrupt();
+		
+		if (dim != n || best == null)
+		{
+			this.n = dim;
+			best = new int [n];
+			worker_sol = new int [num_threads][n];
+		}
+		
+		next_start = new AtomicInteger (0);
+		running = new AtomicIntegerArray (num_threads);
+		for (k = 0; k < num_threads; k++)
+			running.set(k, -1);
+		pending = new TreeMap<Integer,Result> ();
+		limit = num_starts;
+		next_result = 0;
+		num_results = 0;
+		best_cost = Long.MAX_VALUE;
+		error = null;
+	}
+
+	/**
+	 * Stops the search: the running starts are interrupted and no other start
+	 * is begun.
+	 */
+	@Override
+	public void interrupt ()
+	{
+		super.interrupt ();
+		
+		if (worker == null || running == null) return;
+		
+		for (int w = 0; w < worker.length; w++)
+			if (running.get(w) >= 0)
+				worker[w].interrupt();
+	}
+
+	public void setSeed (int seed)
+	{
+		this.seed = seed;
+	}
+
+	public int getCurrentSeed ()
+	{
+		return this.seed;
+	}
+
+	public int getLastNumberOfStarts ()
+	{
+		return this.last_num_starts;
+	}
+
+	@Override
+	public ParallelQAPSolver clone ()
+	{
+		ParallelQAPSolver c = (ParallelQAPSolver) super.clone();
+		
+		c.solver = solver.clone();
+		
+		// working data is created on demand
+		c.pool = null;
+		c.worker = null;
+		c.worker_sol = null;
+		c.best = null;
+		c.n = 0;
+		c.running = null;
+		c.pending = null;
+		
+		return c;
+	}
+
+	/**
+	 * Result of a start.
+	 */
+	private static class Result
+	{
+		int start;
+
+		long cost;
+
+		int sol[];
+
+		Result (int start, long cost, int sol[])
+		{
+			this.start = start;
+			this.cost = cost;
+			this.sol = sol;
+		}
+	}
+}
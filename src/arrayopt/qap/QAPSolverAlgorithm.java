@@ -70,7 +70,7 @@ package arrayopt.qap;
  * 
  * @author Sergio A. de Carvalho Jr.
  */
-public abstract class QAPSolverAlgorithm
+public abstract class QAPSolverAlgorithm implements Cloneable
 {
 	/**
 	 * Swap the distance and flow matrices before calling the internal
@@ -78,6 +78,12 @@ public abstract class QAPSolverAlgorithm
 	 */
 	private boolean swap = false;
 
+	/**
+	 * Set by {@link #interrupt} to ask the current (or next) call of the
+	 * {@link #solve} method to return as soon as possible.
+	 */
+	private volatile boolean interrupted = false;
+
 	/**
 	 * Set or unset the swap of flow and distance matrices before the QAP is
 	 * solved.
@@ -114,22 +120,103 @@ public abstract class QAPSolverAlgorithm
 	 */
 	public long solve (int dim, int dist[], int flow[], int sol[])
 	{
-		if (swap)
+		try
 		{
-			int tmp[] = new int [sol.length];
-			
-			// use tmp permutation, and swap flow and distance matrices
-			long cost = solveQAP (dim, flow, dist, tmp);
+			if (swap)
+			{
+				int tmp[] = new int [sol.length];
+				
+				// use tmp permutation, and swap flow and distance matrices
+				long cost = solveQAP (dim, flow, dist, tmp);
+				
+				// invert permutation
+				for (int i = 0; i < dim; i++)
+					sol[tmp[i]] = i;
+				
+				return cost;
+			}
 			
-			// invert permutation
-			for (int i = 0; i < dim; i++)
-				sol[tmp[i]] = i;
-			
-			return cost;
+			// else: no swap
+			return solveQAP (dim, dist, flow, sol);
+		}
+		finally
+		{
+			interrupted = false;
 		}
+	}
+
+	/**
+	 * Solve an instance of a QAP whose distance matrix is sparse. This method
+	 * calls the internal method {@link #solveSparseQAP}, which by default
+	 * solves the instance with the dense representation of the distance
+	 * matrix, unless sub-classes are able to take advantage of its sparsity.
+	 * If swap is enabled, the dense representation is always used.
+	 * 
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix in sparse format
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the QAP solution (returned)
+	 * @return cost of (best) solution found
+	 */
+	public long solve (int dim, SparseMatrix dist, int flow[], int sol[])
+	{
+		if (dist.dim != dim)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'dist'.");
+
+		if (swap)
+			return solve (dim, dist.toDense(), flow, sol);
 		
-		// else: no swap
-		return solveQAP (dim, dist, flow, sol);
+		try
+		{
+			return solveSparseQAP (dim, dist, flow, sol);
+		}
+		finally
+		{
+			interrupted = false;
+		}
+	}
+
+	/**
+	 * Asks the current call of the {@link #solve} method, possibly running on
+	 * another thread, to stop and return the best solution found so far. If
+	 * the solver is idle, the next call is affected instead. Solvers that do
+	 * not support interruption, such as the native ones, simply ignore the
+	 * request.
+	 */
+	public void interrupt ()
+	{
+		this.interrupted = true;
+	}
+
+	/**
+	 * Checks whether the solver has been asked to stop. Sub-classes should
+	 * call this method from time to time during the search.
+	 * 
+	 * @return true if the solver has been interrupted, false otherwise
+	 */
+	protected final boolean isInterrupted ()
+	{
+		return interrupted;
+	}
+
+	/**
+	 * Clears a pending interruption request.
+	 */
+	void clearInterrupt ()
+	{
+		this.interrupted = false;
+	}
+
+	/**
+	 * Sets the seed of the random number generator used by randomized solvers.
+	 * Deterministic solvers ignore it.
+	 * 
+	 * @param seed seed of the random number generator
+	 */
+	public void setSeed (int seed)
+	{
+		// nothing to do
 	}
 
 	/**
@@ -144,6 +231,44 @@ public abstract class QAPSolverAlgorithm
 	 */
 	abstract long solveQAP (int dim, int dist[], int flow[], int sol[]);
 
+	/**
+	 * Internal method that solves a QAP instance whose distance matrix is
+	 * sparse. Sub-classes able to exploit the sparsity should override this
+	 * method; by default, it calls {@link #solveQAP} with the dense
+	 * representation of the distance matrix.
+	 * 
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix in sparse format
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the QAP solution (returned)
+	 * @return cost of (best) solution found
+	 */
+	long solveSparseQAP (int dim, SparseMatrix dist, int flow[], int sol[])
+	{
+		return solveQAP (dim, dist.toDense(), flow, sol);
+	}
+
+	/**
+	 * Creates and returns a copy of this solver with the same options.
+	 * Sub-classes that keep working data must override this method so that
+	 * the copies can be used concurrently.
+	 * 
+	 * @return a clone of this instance
+	 */
+	@Override
+	public QAPSolverAlgorithm clone ()
+	{
+		try
+		{
+			return (QAPSolverAlgorithm) super.clone();
+		}
+		catch (CloneNotSupportedException e)
+		{
+			// this shouldn't happen anyway...
+			throw new AssertionError();
+		}
+	}
+
 	/**
 	 * Computes the cost of a solution for the given QAP instance.
 	 *  
@@ -163,4 +288,203 @@ public abstract class QAPSolverAlgorithm
 
 		return cost;
 	}
+
+	/**
+	 * Computes the cost of a solution for the given QAP instance whose distance
+	 * matrix is sparse. This takes time proportional to the number of non-zero
+	 * entries of the distance matrix.
+	 *  
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix in sparse format
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the proposed QAP solution
+	 * @return cost of the given solution
+	 */
+	public long computeCost (int dim, SparseMatrix dist, int flow[], int sol[])
+	{
+		long cost = 0;
+		int  row;
+
+		for (int i = 0; i < dim; i++)
+		{
+			row = sol[i] * dim;
+			for (int k = dist.ptr[i]; k < dist.ptr[i + 1]; k++)
+				cost += (long) dist.val[k] * flow[row + sol[dist.idx[k]]];
+		}
+
+		return cost;
+	}
+
+	/**
+	 * Computes the change in the cost of a solution if the facilities assigned
+	 * to locations i and j are exchanged. This takes O(n) time, and the
+	 * solution is not modified.
+	 *  
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix as an integer array
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the current QAP solution
+	 * @param i first location
+	 * @param j second location
+	 * @return new cost minus the current cost
+	 */
+	public static long swapDelta (int dim, int dist[], int flow[], int sol[],
+		int i, int j)
+	{
+		int  pi = sol[i], pj = sol[j], pk, ri, rj;
+		long delta;
+		
+		ri = i * dim;
+		rj = j * dim;
+		
+		delta = (long) (dist[ri + i] - dist[rj + j]) *
+					(flow[pj * dim + pj] - flow[pi * dim + pi]) +
+				(long) (dist[ri + j] - dist[rj + i]) *
+					(flow[pj * dim + pi] - flow[pi * dim + pj]);
+		
+		for (int k = 0; k < dim; k++)
+		{
+			if (k == i || k == j) continue;
+			
+			pk = sol[k];
+			
+			delta += (long) (dist[k * dim + i] - dist[k * dim + j]) *
+						(flow[pk * dim + pj] - flow[pk * dim + pi]) +
+					 (long) (dist[ri + k] - dist[rj + k]) *
+						(flow[pj * dim + pk] - flow[pi * dim + pk]);
+		}
+		
+		return delta;
+	}
+
+	/**
+	 * Computes the change in the cost of a solution if the facilities assigned
+	 * to locations i and j are exchanged, when the distance matrix is sparse
+	 * and symmetric. This takes time proportional to the number of non-zero
+	 * entries in rows i and j of the distance matrix, and the solution is not
+	 * modified.
+	 *  
+	 * @param dim dimension of QAP
+	 * @param dist symmetric distance matrix in sparse format
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the current QAP solution
+	 * @param i first location
+	 * @param j second location
+	 * @return new cost minus the current cost
+	 */
+	public static long swapDelta (int dim, SparseMatrix dist, int flow[],
+		int sol[], int i, int j)
+	{
+		int  pi = sol[i], pj = sol[j], pk, k, l;
+		long delta = 0;
+		
+		// entries (i,k) and (k,i), and diagonal entry (i,i)
+		for (l = dist.ptr[i]; l < dist.ptr[i + 1]; l++)
+		{
+			if ((k = dist.idx[l]) == j) continue;
+			
+			if (k == i)
+			{
+				delta += (long) dist.val[l] *
+							(flow[pj * dim + pj] - flow[pi * dim + pi]);
+				continue;
+			}
+			
+			pk = sol[k];
+			delta += (long) dist.val[l] *
+						(flow[pj * dim + pk] - flow[pi * dim + pk] +
+						 flow[pk * dim + pj] - flow[pk * dim + pi]);
+		}
+		
+		// entries (j,k) and (k,j), and diagonal entry (j,j)
+		for (l = dist.ptr[j]; l < dist.ptr[j + 1]; l++)
+		{
+			if ((k = dist.idx[l]) == i) continue;
+			
+			if (k == j)
+			{
+				delta += (long) dist.val[l] *
+							(flow[pi * dim + pi] - flow[pj * dim + pj]);
+				continue;
+			}
+			
+			pk = sol[k];
+			delta += (long) dist.val[l] *
+						(flow[pi * dim + pk] - flow[pj * dim + pk] +
+						 flow[pk * dim + pi] - flow[pk * dim + pj]);
+		}
+		
+		// entries (i,j) and (j,i) cancel out since the matrix is symmetric
+		
+		return delta;
+	}
+
+	/**
+	 * Computes the change in cost of every exchange of two locations, and
+	 * stores the change of exchanging locations i and j (with i &lt; j) at
+	 * position i * dim + j of the delta array. This takes O(n^3) time.
+	 *  
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix as an integer array
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the current QAP solution
+	 * @param delta array of size dim * dim (returned)
+	 */
+	public static void computeDeltas (int dim, int dist[], int flow[],
+		int sol[], long delta[])
+	{
+		for (int i = 0; i < dim - 1; i++)
+			for (int j = i + 1; j < dim; j++)
+				delta[i * dim + j] = swapDelta (dim, dist, flow, sol, i, j);
+	}
+
+	/**
+	 * Updates the array of exchange costs (see {@link #computeDeltas}) after
+	 * the facilities of locations r and s have been exchanged. The cost of
+	 * exchanges that do not involve r nor s is updated in O(1) time with the
+	 * formula of Taillard's robust taboo search, the others are recomputed in
+	 * O(n) time, for a total of O(n^2) time.
+	 *  
+	 * @param dim dimension of QAP
+	 * @param dist distance matrix as an integer array
+	 * @param flow flow matrix an integer array
+	 * @param sol permutation with the QAP solution after the exchange
+	 * @param delta array of exchange costs before the exchange (updated)
+	 * @param r first exchanged location
+	 * @param s second exchanged location
+	 */
+	public static void updateDeltas (int dim, int dist[], int flow[],
+		int sol[], long delta[], int r, int s)
+	{
+		int i, j, pi, pj, pr = sol[r], ps = sol[s], rn = r * dim, sn = s * dim;
+		int in, jn;
+		
+		for (i = 0; i < dim - 1; i++)
+		{
+			in = i * dim;
+			pi = sol[i];
+			
+			for (j = i + 1; j < dim; j++)
+			{
+				if (i == r || i == s || j == r || j == s)
+				{
+					delta[in + j] = swapDelta (dim, dist, flow, sol, i, j);
+					continue;
+				}
+				
+				jn = j * dim;
+				pj = sol[j];
+				
+				delta[in + j] +=
+					(long) (dist[rn + i] - dist[rn + j] + dist[sn + j] -
+						dist[sn + i]) *
+					(flow[ps * dim + pi] - flow[ps * dim + pj] +
+						flow[pr * dim + pj] - flow[pr * dim + pi]) +
+					(long) (dist[in + r] - dist[jn + r] + dist[jn + s] -
+						dist[in + s]) *
+					(flow[pi * dim + ps] - flow[pj * dim + ps] +
+						flow[pj * dim + pr] - flow[pi * dim + pr]);
+			}
+		}
+	}
 }
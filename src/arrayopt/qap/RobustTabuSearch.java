@@ -0,0 +1,286 @@
+/*
+ * RobustTabuSearch.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.qap;
+
+import java.util.Random;
+
+/**
+ * This class implements the robust taboo search of E. Taillard ("Robust taboo
+ * search for the quadratic assignment problem", Parallel Computing 17, 1991)
+ * entirely in Java, following the author's reference implementation.
+ * 
+ * <P>At each iteration, the best exchange of two locations that is not taboo
+ * is applied, even if it does not improve the solution. After an exchange,
+ * placing any of the two facilities back to its previous location becomes
+ * taboo for a random number of iterations. A taboo exchange is still allowed
+ * if it leads to a new best solution, or if one of its assignments has not
+ * been made for more than the aspiration number of iterations.</P>
+ * 
+ * <P>The cost of every exchange is kept in a matrix that is updated after each
+ * move in O(n^2) time, i.e. in O(1) amortized time per exchange (see
+ * {@link QAPSolverAlgorithm#updateDeltas}). The search stops after a given
+ * number of iterations or, optionally, after a given amount of time. The
+ * random number generator is seeded from {@link #seed} at every call, so the
+ * same instance always produces the same solution when no time limit is
+ * set. The search also stops if the solver is interrupted.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class RobustTabuSearch extends QAPSolverAlgorithm
+{
+	/**
+	 * Maximum number of iterations.
+	 */
+	protected int max_iter;
+
+	/**
+	 * Maximum running time in milliseconds (0 for no limit).
+	 */
+	protected long max_time;
+
+	/**
+	 * Seed of the random number generator.
+	 */
+	protected int seed;
+
+	/**
+	 * Number of iterations performed by the last call.
+	 */
+	protected int last_num_iter;
+
+	public static final int DEFAULT_MAX_ITERACTIONS = 10000;
+
+	public static final int DEFAULT_SEED = 270001;
+
+	/**
+	 * Minimum and maximum taboo tenures, as fractions of the problem size.
+	 */
+	private static final double MIN_TENURE = .9, MAX_TENURE = 1.1;
+
+	/**
+	 * Aspiration period, as a multiple of the square of the problem size.
+	 */
+	private static final int ASPIRATION = 2;
+
+	/**
+	 * Number of iterations between checks of the running time.
+	 */
+	private static final int TIME_CHECK_INTERVAL = 64;
+
+	// working data
+	private int n;
+
+	private int cur[];
+
+	private long delta[];
+
+	private long taboo[];
+
+	public RobustTabuSearch ()
+	{
+		this (DEFAULT_MAX_ITERACTIONS);
+	}
+
+	public RobustTabuSearch (int max_iter)
+	{
+		this (max_iter, 0, DEFAULT_SEED);
+	}
+
+	public RobustTabuSearch (int max_iter, long max_time, int seed)
+	{
+		if (max_iter < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_iter'.");
+
+		if (max_time < 0)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_time'.");
+
+		this.max_iter = max_iter;
+		this.max_time = max_time;
+		this.seed = seed;
+	}
+
+	@Override
+	long solveQAP (int dim, int dist[], int flow[], int sol[])
+	{
+		Random rand;
+		long   cur_cost, best_cost, min_delta, d, stop = 0, aspiration;
+		int    i, j, t, i_ret, j_ret, min_tenure, max_tenure, iter;
+		boolean aspired, already_aspired, authorized;
+		
+		setup (dim);
+		
+		rand = new Random (seed);
+		
+		if (max_time > 0)
+			stop = System.currentTimeMillis() + max_time;
+		
+		// start with a random solution
+		for (i = 0; i < n; i++)
+			cur[i] = i;
+		for (i = 0; i < n - 1; i++)
+		{
+			j = i + rand.nextInt(n - i);
+			t = cur[i];
+			cur[i] = cur[j];
+			cur[j] = t;
+		}
+		
+		System.arraycopy(cur, 0, sol, 0, n);
+		best_cost = cur_cost = computeCost (n, dist, flow, cur);
+		last_num_iter = 0;
+		
+		if (n < 2) return best_cost;
+		
+		computeDeltas (n, dist, flow, cur, delta);
+		
+		for (i = 0; i < n; i++)
+			for (j = 0; j < n; j++)
+				taboo[i * n + j] = - (n * i + j) - 1;
+		
+		min_tenure = Math.max((int) (MIN_TENURE * n), 1);
+		max_tenure = Math.max((int) (MAX_TENURE * n), min_tenure);
+		aspiration = (long) ASPIRATION * n * n;
+		
+		for (iter = 1; iter <= max_iter; iter++)
+		{
+			if (iter % TIME_CHECK_INTERVAL == 0 && (isInterrupted() ||
+				(stop > 0 && System.currentTimeMillis() >= stop)))
+				break;
+			
+			// find the best move
+			i_ret = j_ret = -1;
+			min_delta = Long.MAX_VALUE;
+			already_aspired = false;
+			
+			for (i = 0; i < n - 1; i++)
+				for (j = i + 1; j < n; j++)
+				{
+					d = delta[i * n + j];
+					
+					authorized = taboo[i * n + cur[j]] < iter ||
+								 taboo[j * n + cur[i]] < iter;
+					
+					aspired = taboo[i * n + cur[j]] < iter - aspiration ||
+							  taboo[j * n + cur[i]] < iter - aspiration ||
+							  cur_cost + d < best_cost;
+					
+					if ((aspired && !already_aspired) ||
+						(aspired && already_aspired && d < min_delta) ||
+						(!aspired && !already_aspired && d < min_delta &&
+							authorized))
+					{
+						i_ret = i;
+						j_ret = j;
+						min_delta = d;
+						if (aspired) already_aspired = true;
+					}
+				}
+			
+			// all moves are taboo
+			if (i_ret < 0) continue;
+			
+			t = cur[i_ret];
+			cur[i_ret] = cur[j_ret];
+			cur[j_ret] = t;
+			cur_cost += min_delta;
+			
+			// forbid the reverse move for a random number of iterations
+			taboo[i_ret * n + cur[j_ret]] = iter + min_tenure +
+				rand.nextInt(max_tenure - min_tenure + 1);
+			taboo[j_ret * n + cur[i_ret]] = iter + min_tenure +
+				rand.nextInt(max_tenure - min_tenure + 1);
+			
+			if (cur_cost < best_cost)
+			{
+				best_cost = cur_cost;
+				System.arraycopy(cur, 0, sol, 0, n);
+			}
+			
+			updateDeltas (n, dist, flow, cur, delta, i_ret, j_ret);
+		}
+		
+		last_num_iter = iter - 1;
+		
+		return best_cost;
+	}
+
+	/**
+	 * Allocates the working data for an instance of the given dimension.
+	 */
+	private void setup (int dim)
+	{
+		if (dim == n && cur != null) return;
+		
+		this.n = dim;
+		
+		cur = new int [n];
+		delta = new long [n * n];
+		taboo = new long [n * n];
+	}
+
+	public void setSeed (int seed)
+	{
+		this.seed = seed;
+	}
+
+	public int getCurrentSeed ()
+	{
+		return this.seed;
+	}
+
+	public int getLastNumberOfIteractions ()
+	{
+		return this.last_num_iter;
+	}
+
+	@Override
+	public RobustTabuSearch clone ()
+	{
+		RobustTabuSearch c = (RobustTabuSearch) super.clone();
+		
+		// working data is created on demand
+		c.n = 0;
+		c.cur = null;
+		c.delta = null;
+		c.taboo = null;
+		
+		return c;
+	}
+}
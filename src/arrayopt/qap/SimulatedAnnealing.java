@@ -0,0 +1,346 @@
+/*
+ * SimulatedAnnealing.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.qap;
+
+import java.util.Random;
+
+/**
+ * This class implements the simulated annealing for the QAP of D. T. Connolly
+ * ("An improved annealing scheme for the QAP", European Journal of Operational
+ * Research 46, 1990) entirely in Java, following E. Taillard's reference
+ * implementation.
+ * 
+ * <P>The exchanges of two locations are tried in a fixed cyclic order. An
+ * exchange is accepted if it improves the solution or with probability
+ * exp(-delta/T), where the temperature T decreases at every iteration from an
+ * initial value estimated by a short random walk. After a whole cycle of
+ * rejected exchanges, the next one is accepted anyway and the temperature is
+ * fixed at the value where the best solution was found.</P>
+ * 
+ * <P>The cost of every exchange is kept in a matrix that is updated after each
+ * accepted move in O(n^2) time (see {@link QAPSolverAlgorithm#updateDeltas}),
+ * so that trying an exchange takes O(1) time. The annealing stops after a
+ * given number of iterations or, optionally, after a given amount of time. The
+ * random number generator is seeded from {@link #seed} at every call, so the
+ * same instance always produces the same solution when no time limit is
+ * set. The search also stops if the solver is interrupted.</P>
+ * 
+ * <P>If the distance matrix is given in sparse format and is symmetric (see
+ * {@link SparseMatrix}), the matrix of exchange costs is not used. Instead,
+ * the cost of each exchange is computed from the non-zero distances of the two
+ * locations (see {@link QAPSolverAlgorithm#swapDelta(int, SparseMatrix, int[],
+ * int[], int, int)}), which takes constant time when the number of non-zero
+ * entries per row is bounded, as in the adjacency of the spots of a chip. This
+ * allows much larger instances to be solved, since neither the O(n^2) update
+ * after each accepted exchange nor the O(n^2) memory of the matrix is
+ * required.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class SimulatedAnnealing extends QAPSolverAlgorithm
+{
+	/**
+	 * Maximum number of iterations.
+	 */
+	protected int max_iter;
+
+	/**
+	 * Maximum running time in milliseconds (0 for no limit).
+	 */
+	protected long max_time;
+
+	/**
+	 * Seed of the random number generator.
+	 */
+	protected int seed;
+
+	/**
+	 * Number of iterations performed by the last call.
+	 */
+	protected int last_num_iter;
+
+	public static final int DEFAULT_MAX_ITERACTIONS = 100000;
+
+	public static final int DEFAULT_SEED = 270001;
+
+	/**
+	 * Number of iterations of the random walk that estimates the initial
+	 * temperature (at most a tenth of the iterations).
+	 */
+	private static final int INIT_ITERACTIONS = 1000;
+
+	/**
+	 * Number of iterations between checks of the running time.
+	 */
+	private static final int TIME_CHECK_INTERVAL = 1024;
+
+	// working data
+	private int n;
+
+	private int cur[];
+
+	private long delta[];
+
+	public SimulatedAnnealing ()
+	{
+		this (DEFAULT_MAX_ITERACTIONS);
+	}
+
+	public SimulatedAnnealing (int max_iter)
+	{
+		this (max_iter, 0, DEFAULT_SEED);
+	}
+
+	public SimulatedAnnealing (int max_iter, long max_time, int seed)
+	{
+		if (max_iter < 1)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_iter'.");
+
+		if (max_time < 0)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'max_time'.");
+
+		this.max_iter = max_iter;
+		this.max_time = max_time;
+		this.seed = seed;
+	}
+
+	@Override
+	long solveQAP (int dim, int dist[], int flow[], int sol[])
+	{
+		return anneal (dim, dist, null, flow, sol);
+	}
+
+	@Override
+	long solveSparseQAP (int dim, SparseMatrix dist, int flow[], int sol[])
+	{
+		if (!dist.isSymmetric())
+			return super.solveSparseQAP (dim, dist, flow, sol);
+		
+		return anneal (dim, null, dist, flow, sol);
+	}
+
+	/**
+	 * Runs the simulated annealing on an instance given either with a dense
+	 * (dist) or with a sparse (sparse_dist) distance matrix.
+	 */
+	private long anneal (int dim, int dist[], SparseMatrix sparse_dist,
+		int flow[], int sol[])
+	{
+		Random rand;
+		long   cur_cost, best_cost, d, dmin, dmax, stop = 0;
+		double t0, tf, beta, t_found, temp;
+		int    i, r, s, t, iter, init_iter, max_fail, num_fail;
+		
+		setup (dim, sparse_dist == null);
+		
+		rand = new Random (seed);
+		
+		if (max_time > 0)
+			stop = System.currentTimeMillis() + max_time;
+		
+		// start with a random solution
+		for (i = 0; i < n; i++)
+			cur[i] = i;
+		for (i = 0; i < n - 1; i++)
+		{
+			r = i + rand.nextInt(n - i);
+			t = cur[i];
+			cur[i] = cur[r];
+			cur[r] = t;
+		}
+		
+		System.arraycopy(cur, 0, sol, 0, n);
+		if (sparse_dist != null)
+			best_cost = cur_cost = computeCost (n, sparse_dist, flow, cur);
+		else
+			best_cost = cur_cost = computeCost (n, dist, flow, cur);
+		last_num_iter = 0;
+		
+		if (n < 2) return best_cost;
+		
+		// random walk to estimate the range of uphill moves
+		init_iter = Math.min(INIT_ITERACTIONS, max_iter / 10);
+		dmin = Long.MAX_VALUE;
+		dmax = 0;
+		
+		for (iter = 0; iter < init_iter; iter++)
+		{
+			r = rand.nextInt(n);
+			s = rand.nextInt(n - 1);
+			if (s >= r) s++;
+			
+			if (sparse_dist != null)
+				d = swapDelta (n, sparse_dist, flow, cur, r, s);
+			else
+				d = swapDelta (n, dist, flow, cur, r, s);
+			
+			if (d > 0)
+			{
+				dmin = Math.min(dmin, d);
+				dmax = Math.max(dmax, d);
+			}
+			
+			cur_cost += d;
+			t = cur[r];
+			cur[r] = cur[s];
+			cur[s] = t;
+			
+			if (cur_cost < best_cost)
+			{
+				best_cost = cur_cost;
+				System.arraycopy(cur, 0, sol, 0, n);
+			}
+		}
+		
+		// no uphill move was seen
+		if (dmin == Long.MAX_VALUE)
+			dmin = dmax = 1;
+		
+		t0 = dmin + (dmax - dmin) / 10.0;
+		tf = dmin;
+		beta = (t0 - tf) / (max_iter * t0 * tf);
+		
+		temp = t_found = t0;
+		max_fail = n * (n - 1) / 2;
+		num_fail = 0;
+		
+		if (sparse_dist == null)
+			computeDeltas (n, dist, flow, cur, delta);
+		
+		r = 0;
+		s = 0;
+		
+		for (iter = init_iter + 1; iter <= max_iter; iter++)
+		{
+			if (iter % TIME_CHECK_INTERVAL == 0 && (isInterrupted() ||
+				(stop > 0 && System.currentTimeMillis() >= stop)))
+				break;
+			
+			temp = temp / (1.0 + beta * temp);
+			
+			// next exchange in cyclic order
+			if (++s >= n)
+			{
+				if (++r >= n - 1) r = 0;
+				s = r + 1;
+			}
+			
+			if (sparse_dist != null)
+				d = swapDelta (n, sparse_dist, flow, cur, r, s);
+			else
+				d = delta[r * n + s];
+			
+			if (d < 0 || num_fail == max_fail ||
+				rand.nextDouble() < Math.exp(-d / temp))
+			{
+				t = cur[r];
+				cur[r] = cur[s];
+				cur[s] = t;
+				cur_cost += d;
+				num_fail = 0;
+				
+				if (sparse_dist == null)
+					updateDeltas (n, dist, flow, cur, delta, r, s);
+				
+				if (cur_cost < best_cost)
+				{
+					best_cost = cur_cost;
+					System.arraycopy(cur, 0, sol, 0, n);
+					t_found = temp;
+				}
+			}
+			else if (++num_fail == max_fail)
+			{
+				// stop cooling at the temperature of the best solution
+				beta = 0;
+				temp = t_found;
+			}
+		}
+		
+		last_num_iter = iter - 1;
+		
+		return best_cost;
+	}
+
+	/**
+	 * Allocates the working data for an instance of the given dimension. The
+	 * matrix of exchange costs is only needed with dense distance matrices.
+	 */
+	private void setup (int dim, boolean dense)
+	{
+		if (dim != n || cur == null)
+		{
+			this.n = dim;
+			cur = new int [n];
+			delta = null;
+		}
+		
+		if (dense && delta == null)
+			delta = new long [n * n];
+	}
+
+	public void setSeed (int seed)
+	{
+		this.seed = seed;
+	}
+
+	public int getCurrentSeed ()
+	{
+		return this.seed;
+	}
+
+	public int getLastNumberOfIteractions ()
+	{
+		return this.last_num_iter;
+	}
+
+	@Override
+	public SimulatedAnnealing clone ()
+	{
+		SimulatedAnnealing c = (SimulatedAnnealing) super.clone();
+		
+		// working data is created on demand
+		c.n = 0;
+		c.cur = null;
+		c.delta = null;
+		
+		return c;
+	}
+}
@@ -0,0 +1,261 @@
+/*
+ * SparseMatrix.java
+ *
+ * $Revision$
+ *
+ * $Date$
+ *
+ * Copyright 2005 Sergio Anibal de Carvalho Junior
+ *
+ * This file is part of ArrayOpt.
+ *
+ * --- License ----------------------------------------------------------------
+ * ArrayOpt is free software; you can redistribute it and/or modify it under
+ * the terms of the GNU General Public License as published by the Free
+ * Software Foundation; either version 2 of the License, or (at your option)
+ * any later version.
+ *
+ * rrayOpt is distributed in the hope that it will be useful, but WITHOUT ANY
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS
+ * FOR A PARTICULAR PURPOSE. See the GNU General Public License for more
+ * details.
+ *
+ * You should have received a copy of the GNU General Public License along with
+ * ArrayOpt; if not, write to the Free Software Foundation, Inc., 59 Temple
+ * Place, Suite 330, Boston, MA 02111-1307, USA.
+ * ----------------------------------------------------------------------------
+ *
+ * This is the result of a PhD work developed at the Universitaet Bielefeld
+ * under the supervision of Dr. Sven Rahmann. Proper attribution of the author
+ * as the source of the software is appreciated.
+ *
+ * Sergio Anibal de Carvalho Jr.  http://www.cebitec.uni-bielefeld.de/~scarvalh
+ * AG Genominformatik             http://gi.cebitec.uni-bielefeld.de
+ * Universitaet Bielefeld         http://www.uni-bielefeld.de
+ *
+ */
+
+package arrayopt.qap;
+
+/**
+ * This class represents a square integer matrix in compressed sparse row (CSR)
+ * format. It is used to pass sparse distance matrices, such as the adjacency
+ * of the spots of a chip, to the {@link QAPSolverAlgorithm}s.
+ * 
+ * <P>The non-zero entries of row i are stored at the positions ptr[i] to
+ * ptr[i+1]-1 of two arrays: idx, with their column indices, and val, with
+ * their values. Instances of this class are immutable and can thus be shared
+ * between threads.</P>
+ * 
+ * <P>Solvers that do not handle sparse matrices work with the dense
+ * representation returned by {@link #toDense}, which is computed once and
+ * kept for later use. Solvers that do (see
+ * {@link SimulatedAnnealing}) require the matrix to be symmetric, which can be
+ * checked with the {@link #isSymmetric} method.</P>
+ * 
+ * @author Sergio A. de Carvalho Jr.
+ */
+public class SparseMatrix
+{
+	/**
+	 * Dimension of the matrix (number of rows and columns).
+	 */
+	final int dim;
+
+	/**
+	 * Position of the first non-zero entry of each row (plus the total number
+	 * of non-zero entries at the end).
+	 */
+	final int ptr[];
+
+	/**
+	 * Column indices of the non-zero entries.
+	 */
+	final int idx[];
+
+	/**
+	 * Values of the non-zero entries.
+	 */
+	final int val[];
+
+	/**
+	 * Indicates whether the matrix is symmetric.
+	 */
+	private final boolean symmetric;
+
+	/**
+	 * Dense representation of the matrix, created on demand.
+	 */
+	private volatile int dense[];
+
+	/**
+	 * Creates a sparse matrix from its CSR representation. Each entry must
+	 * appear at most once in its row. The arrays are not copied and must not be
+	 * modified afterwards.
+	 * 
+	 * @param dim dimension of the matrix
+	 * @param ptr position of the first entry of each row, with dim + 1 elements
+	 * @param idx column indices of the non-zero entries
+	 * @param val values of the non-zero entries
+	 */
+	public SparseMatrix (int dim, int ptr[], int idx[], int val[])
+	{
+		if (dim < 0)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'dim'.");
+
+		if (ptr.length != dim + 1 || ptr[0] != 0)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'ptr'.");
+
+		if (idx.length < ptr[dim])
+			throw new IllegalArgumentException
+				("Illegal value for argument 'idx'.");
+
+		if (val.length < ptr[dim])
+			throw new IllegalArgumentException
+				("Illegal value for argument 'val'.");
+
+		for (int i = 0; i < dim; i++)
+			if (ptr[i] > ptr[i + 1])
+				throw new IllegalArgumentException
+					("Illegal value for argument 'ptr'.");
+
+		for (int k = 0; k < ptr[dim]; k++)
+			if (idx[k] < 0 || idx[k] >= dim)
+				throw new IllegalArgumentException
+					("Illegal value for argument 'idx'.");
+
+		this.dim = dim;
+		this.ptr = ptr;
+		this.idx = idx;
+		this.val = val;
+		this.symmetric = checkSymmetry ();
+	}
+
+	/**
+	 * Creates a sparse matrix with the non-zero entries of a dense matrix. The
+	 * dense matrix is kept as the dense representation of this matrix and must
+	 * not be modified afterwards.
+	 * 
+	 * @param dim dimension of the matrix
+	 * @param dense dense matrix as an integer array
+	 */
+	public SparseMatrix (int dim, int dense[])
+	{
+		int i, j, k, nnz = 0;
+		
+		if (dim < 0 || dense.length < dim * dim)
+			throw new IllegalArgumentException
+				("Illegal value for argument 'dense'.");
+
+		for (i = 0; i < dim * dim; i++)
+			if (dense[i] != 0) nnz++;
+		
+		this.dim = dim;
+		this.ptr = new int [dim + 1];
+		this.idx = new int [nnz];
+		this.val = new int [nnz];
+		
+		for (k = 0, i = 0; i < dim; i++)
+		{
+			ptr[i] = k;
+			for (j = 0; j < dim; j++)
+				if (dense[i * dim + j] != 0)
+				{
+					idx[k] = j;
+					val[k] = dense[i * dim + j];
+					k++;
+				}
+		}
+		ptr[dim] = k;
+		
+		this.dense = dense;
+		this.symmetric = checkSymmetry ();
+	}
+
+	/**
+	 * Returns the dimension of the matrix.
+	 * 
+	 * @return number of rows (and columns) of the matrix
+	 */
+	public int getDimension ()
+	{
+		return dim;
+	}
+
+	/**
+	 * Returns the number of non-zero entries of the matrix.
+	 * 
+	 * @return number of non-zero entries
+	 */
+	public int getNumberOfNonZeros ()
+	{
+		return ptr[dim];
+	}
+
+	/**
+	 * Returns the value of an entry of the matrix. This takes time
+	 * proportional to the number of non-zero entries of the row.
+	 * 
+	 * @param i row index
+	 * @param j column index
+	 * @return value of the entry
+	 */
+	public int get (int i, int j)
+	{
+		for (int k = ptr[i]; k < ptr[i + 1]; k++)
+			if (idx[k] == j)
+				return val[k];
+		
+		return 0;
+	}
+
+	/**
+	 * Checks whether the matrix is symmetric.
+	 * 
+	 * @return true if the matrix is symmetric, false otherwise
+	 */
+	public boolean isSymmetric ()
+	{
+		return symmetric;
+	}
+
+	/**
+	 * Returns the dense representation of this matrix as an integer array. The
+	 * array is created on the first call and shared afterwards, so it must not
+	 * be modified.
+	 * 
+	 * @return the matrix as a dense integer array
+	 */
+	public int[] toDense ()
+	{
+		int d[] = dense;
+		
+		if (d == null)
+		{
+			d = new int [dim * dim];
+			
+			for (int i = 0; i < dim; i++)
+				for (int k = ptr[i]; k < ptr[i + 1]; k++)
+					d[i * dim + idx[k]] += val[k];
+			
+			dense = d;
+		}
+		
+		return d;
+	}
+
+	/**
+	 * Checks whether every non-zero entry (i,j) has a matching (j,i) entry.
+	 */
+	private boolean checkSymmetry ()
+	{
+		for (int i = 0; i < dim; i++)
+			for (int k = ptr[i]; k < ptr[i + 1]; k++)
+				if (get (idx[k], i) != val[k])
+					return false;
+		
+		return true;
+	}
+}
@@ -40,6 +40,7 @@ package arrayopt.textui;
 import arrayopt.layout.*;
 import arrayopt.qap.*;
 import java.io.*;
+import java.util.concurrent.ForkJoinPool;
 
 /**
  *
@@ -279,7 +280,8 @@ public class ArrayOpt
 		{
 			if (calc_bl)
 			{
-				bl = LayoutEvaluation.borderLength(chip);
+				bl = LayoutEvaluation.borderLength(chip,
+					chip.getChipRegion(), ForkJoinPool.commonPool());
 				norm_bl = bl / (double) chip.getNumberOfBorders();
 				System.err.println("Total border length: " + bl +
 						" -> normalized: " + norm_bl);
@@ -287,7 +289,8 @@ public class ArrayOpt
 			else if (calc_ci)
 			{
 				System.err.println("Average conflict index: " +
-						LayoutEvaluation.averageConflictIndex(chip));
+						LayoutEvaluation.averageConflictIndex(chip,
+							ForkJoinPool.commonPool()));
 			}
 			
 			System.err.println("Running " + alg[a] + "...");
@@ -307,7 +310,8 @@ public class ArrayOpt
 
 		if (calc_bl)
 		{
-			bl = LayoutEvaluation.borderLength(chip);
+			bl = LayoutEvaluation.borderLength(chip,
+					chip.getChipRegion(), ForkJoinPool.commonPool());
 			norm_bl = bl / (double) chip.getNumberOfBorders();
 			System.err.println("Total border length: " + bl +
 					" -> normalized: " + norm_bl);
@@ -315,7 +319,8 @@ public class ArrayOpt
 		else if (calc_ci)
 		{
 			System.err.println("Average conflict index: " +
-					LayoutEvaluation.averageConflictIndex(chip));
+					LayoutEvaluation.averageConflictIndex(chip,
+							ForkJoinPool.commonPool()));
 		}
 
 		if (total > 0)
@@ -348,7 +353,7 @@ public class ArrayOpt
 		{
 			// print border length per masking step
 			LayoutEvaluation.analyzeBorderLength(chip,
-					new PrintWriter(System.out));
+					new PrintWriter(System.out), ForkJoinPool.commonPool());
 		}
 		
 		System.exit(0);
@@ -429,9 +434,9 @@ public class ArrayOpt
 		// ****************
 		else if (args[0].equalsIgnoreCase("GREEDYPLACER"))
 		{
-			int mode, window, order, kvalue;
+			int mode, window, order, kvalue, search;
 			
-			if (args.length != 5)
+			if (args.length != 5 && args.length != 6)
 				throw new IllegalArgumentException
 					("Missing arguments for Greedy placement algorithm.");
 			
@@ -473,7 +478,19 @@ public class ArrayOpt
 				throw new IllegalArgumentException ("Unknown ordering '" +
 						args[4] + "' for Greedy placement algorithm.");
 			
-			alg = new GreedyPlacer(mode, window, kvalue, order);
+			// optional parallel or indexed search of candidates
+			// (indexed search in conflict index mode only)
+			if (args.length == 5)
+				search = GreedyPlacer.WINDOW_SEARCH;
+			else if (args[5].equalsIgnoreCase("PAR"))
+				search = GreedyPlacer.PARALLEL_SEARCH;
+			else if (args[5].equalsIgnoreCase("INDEX"))
+				search = GreedyPlacer.INDEX_SEARCH;
+			else
+				throw new IllegalArgumentException ("Unknown option '" +
+						args[5] + "' for Greedy placement algorithm.");
+			
+			alg = new GreedyPlacer(mode, window, kvalue, order, search);
 		}		
 		
 		// *********************
@@ -481,9 +498,9 @@ public class ArrayOpt
 		// *********************
 		else if (args[0].equalsIgnoreCase("GREEDYPLUS"))
 		{
-			int mode, window, kvalue;
+			int mode, window, kvalue, search;
 			
-			if (args.length != 4)
+			if (args.length != 4 && args.length != 5)
 				throw new IllegalArgumentException
 					("Missing arguments for Greedy Plus placement algorithm.");
 			
@@ -511,7 +528,16 @@ public class ArrayOpt
 				throw new IllegalArgumentException ("Invalid k-value '" +
 						args[3] + "' for Greedy PLus placement algorithm.");
 			
-			alg = new GreedyPlusPlacer(mode, window, kvalue);
+			// optional indexed search of candidates (conflict index mode only)
+			if (args.length == 4)
+				search = GreedyPlacer.WINDOW_SEARCH;
+			else if (args[4].equalsIgnoreCase("INDEX"))
+				search = GreedyPlacer.INDEX_SEARCH;
+			else
+				throw new IllegalArgumentException ("Unknown option '" +
+						args[4] + "' for Greedy Plus placement algorithm.");
+			
+			alg = new GreedyPlusPlacer(mode, window, kvalue, search);
 		}		
 		
 		// *************
@@ -596,6 +622,7 @@ public class ArrayOpt
 			FillingAlgorithm filler;
 			String filler_name;
 			int stop_dim, idx;
+			boolean parallel = false;
 			
 			if (args.length < 3)
 				throw new IllegalArgumentException
@@ -609,6 +636,14 @@ public class ArrayOpt
 			
 			// get filling algorithm's name
 			idx = args[0].length() + args[1].length() + 2;
+			
+			// optional parallel mode
+			if (args[2].equalsIgnoreCase("PAR") && args.length > 3)
+			{
+				parallel = true;
+				idx += args[2].length() + 1;
+			}
+			
 			filler_name = name.substring(idx);
 			
 			try
@@ -627,7 +662,7 @@ public class ArrayOpt
 						e.getMessage());				
 			}
 			
-			alg = new TwoDimensionalPartitioning (filler, stop_dim);
+			alg = new TwoDimensionalPartitioning (filler, stop_dim, parallel);
 		}
 		
 		// **********************************************
@@ -681,6 +716,7 @@ public class ArrayOpt
 			String filler_name;
 			
 			int mode, max_depth, idx;
+			boolean parallel = false;
 			
 			if (args.length < 4)
 				throw new IllegalArgumentException
@@ -702,6 +738,14 @@ public class ArrayOpt
 			
 			// get filling algorithm's name
 			idx = args[0].length() + args[1].length() + args[2].length() + 3;
+			
+			// optional parallel mode
+			if (args[3].equalsIgnoreCase("PAR") && args.length > 4)
+			{
+				parallel = true;
+				idx += args[3].length() + 1;
+			}
+			
 			filler_name = name.substring(idx);
 			
 			try
@@ -720,7 +764,7 @@ public class ArrayOpt
 						e.getMessage());				
 			}
 			
-			alg = new PivotPartitioning (filler, mode, max_depth);
+			alg = new PivotPartitioning (filler, mode, max_depth, parallel);
 		}
 		
 		// ******************************
@@ -744,10 +788,10 @@ public class ArrayOpt
 		else if (args[0].equalsIgnoreCase("SEQREEMBED"))
 		{
 			int mode;
-			boolean reset;
+			boolean reset, parallel;
 			double threshold;
 			
-			if (args.length != 4)
+			if (args.length != 4 && args.length != 5)
 				throw new IllegalArgumentException
 					("Missing arguments for Sequential re-embedding.");
 			
@@ -773,7 +817,16 @@ public class ArrayOpt
 				throw new IllegalArgumentException ("Invalid threshold/passes '"
 						+ args[3] + "' for Sequential re-embedding algorithm.");
 			
-			alg = new SequentialReembedding(mode, reset, threshold);
+			// optional parallel re-embedding
+			if (args.length == 4)
+				parallel = false;
+			else if (args[4].equalsIgnoreCase("PAR"))
+				parallel = true;
+			else
+				throw new IllegalArgumentException ("Unknown option '" +
+						args[4] + "' for Sequential re-embedding algorithm.");
+			
+			alg = new SequentialReembedding(mode, reset, threshold, parallel);
 		}
 		
 		// *********************
@@ -64,6 +64,7 @@ public class PrintMask
 	{
 		OutputStream out;
 		Chip	chip;
+		MaskBitplanes planes;
 		String	filename, dep_seq, outfile;
 		int		type, rows, cols, probes, probe_len, start, end;
 
@@ -174,6 +175,9 @@ public class PrintMask
 			return;
 		}
 		
+		// transpose the embeddings into one bitmap per mask
+		planes = new MaskBitplanes (chip);
+		
 		for (int m = start; m <= end; m++)
 		{
 			if (m < 10)
@@ -187,7 +191,7 @@ public class PrintMask
 			{
 				out = new BufferedOutputStream (new FileOutputStream(outfile));
 				
-				chip.writeMaskBMP(m - 1, out);
+				planes.writeMaskBMP(m - 1, out);
 			}
 			catch (IOException e)
 			{
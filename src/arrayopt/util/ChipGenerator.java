@@ -211,29 +211,33 @@ public class ChipGenerator
 	
 	private void addProbe (byte probe[])
 	{
-		int w, pos, bitmask = 0;
+		int w, pos, off;
+		long bitmask = 0;
 		
 		if (id >= num_probes)
 			throw new IllegalArgumentException
 				("Insufficient number of probes.");
 		
+		// position of the probe's embedding
+		off = chip.embeddingOffset(id);
+
 		// turn all bits off
-		for (w = 0; w < chip.embed[id].length; w++)
-			chip.embed[id][w] = 0;
+		for (w = 0; w < chip.getEmbeddingWords(); w++)
+			chip.embed[off + w] = 0;
 
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
 				// turn on very first bit of mask only
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 				w++;
 			}
 			else
 				bitmask >>>= 1;
 			
 			if (probe[pos / dep_seq_cycle] == (pos % dep_seq_cycle))
-				chip.embed[id][w] |= bitmask;
+				chip.embed[off + w] |= bitmask;
 		}
 		
 		chip.spot[row][col] = id;
@@ -248,29 +252,33 @@ public class ChipGenerator
 	
 	private void addEmbedding (byte emb[])
 	{
-		int w, pos, bitmask = 0;
+		int w, pos, off;
+		long bitmask = 0;
 		
 		if (id >= num_probes)
 			throw new IllegalArgumentException
 				("Insufficient number of probes.");
 		
+		// position of the probe's embedding
+		off = chip.embeddingOffset(id);
+
 		// turn all bits off
-		for (w = 0; w < chip.embed[id].length; w++)
-			chip.embed[id][w] = 0;
+		for (w = 0; w < chip.getEmbeddingWords(); w++)
+			chip.embed[off + w] = 0;
 
 		for (w = -1, pos = 0; pos < embed_len; pos++)
 		{
-			if (pos % Integer.SIZE == 0)
+			if (pos % Long.SIZE == 0)
 			{
 				// turn on very first bit of mask only
-				bitmask = 0x01 << (Integer.SIZE - 1);
+				bitmask = 0x01L << (Long.SIZE - 1);
 				w++;
 			}
 			else
 				bitmask >>>= 1;
 
 			if (emb[pos] == 1)
-				chip.embed[id][w] |= bitmask;
+				chip.embed[off + w] |= bitmask;
 		}
 		
 		chip.spot[row][col] = id;